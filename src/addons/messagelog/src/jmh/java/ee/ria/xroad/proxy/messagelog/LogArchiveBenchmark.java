@@ -0,0 +1,202 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.messagelog.MessageLogProperties;
+import ee.ria.xroad.common.messagelog.MessageRecord;
+import ee.ria.xroad.common.messagelog.TimestampRecord;
+import ee.ria.xroad.common.messagelog.archive.DigestEntry;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
+
+/**
+ * Measures the throughput (archived message records per second) of the log archiver with different numbers of
+ * threads building the ASiC containers. Every invocation archives the same time-stamped message records, which are
+ * marked as not archived again before the next invocation. Uses a file based HSQLDB database by default, a local
+ * PostgreSQL database can be used by pointing xroad.proxy.database-properties to a suitable properties file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(LogArchiveBenchmark.MESSAGE_RECORDS)
+@Fork(1)
+public class LogArchiveBenchmark {
+
+    /** The number of message records archived per invocation. */
+    static final int MESSAGE_RECORDS = 5000;
+
+    private static final int RECORDS_PER_TIMESTAMP = 100;
+
+    private static final String DATABASE_PROPERTIES = "src/jmh/resources/hibernate.properties";
+
+    private static final String RUN_ARCHIVER = "runArchiver";
+
+    private static final Timeout TIMEOUT = new Timeout(10, TimeUnit.MINUTES);
+
+    private static final ClientId CLIENT = ClientId.create("EE", "GOV", "00000001", "System1");
+
+    private static final String MESSAGE = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/"
+            + "envelope/\"><SOAP-ENV:Header><id>%s</id></SOAP-ENV:Header><SOAP-ENV:Body><getRandom>%s</getRandom>"
+            + "</SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+    private static final String SIGNATURE = "<signature/>";
+
+    /** The number of threads building the ASiC containers. */
+    @Param({"1", "4"})
+    private int archiveThreads;
+
+    private Path archivePath;
+    private ActorSystem actorSystem;
+    private ActorRef archiver;
+
+    /**
+     * Configures the database, saves the time-stamped message records and starts the archiver.
+     * @throws Exception if the records cannot be saved
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if (System.getProperty(SystemProperties.DATABASE_PROPERTIES) == null) {
+            System.setProperty(SystemProperties.DATABASE_PROPERTIES, DATABASE_PROPERTIES);
+        }
+
+        System.setProperty(MessageLogProperties.ARCHIVE_THREADS, String.valueOf(archiveThreads));
+
+        for (int i = 0; i < MESSAGE_RECORDS; i += RECORDS_PER_TIMESTAMP) {
+            int first = i;
+
+            doInTransaction(session -> {
+                TimestampRecord timestamp = new TimestampRecord();
+                timestamp.setTime(System.currentTimeMillis());
+                timestamp.setTimestamp("dGltZXN0YW1w");
+                timestamp.setHashChainResult("<hashChainResult/>");
+                session.save(timestamp);
+
+                for (int j = first; j < first + RECORDS_PER_TIMESTAMP; j++) {
+                    String queryId = "query" + j;
+                    MessageRecord record = new MessageRecord(queryId, String.format(MESSAGE, queryId, j),
+                            SIGNATURE, false, CLIENT, null);
+                    record.setTime(System.currentTimeMillis());
+                    record.setHashChainResult("<hashChainResult/>");
+                    record.setHashChain("<hashChain/>");
+                    record.setTimestampRecord(timestamp);
+                    record.setTimestampHashChain("<hashChain/>");
+                    session.save(record);
+                }
+
+                return null;
+            });
+        }
+
+        archivePath = Files.createTempDirectory("mlog-archive");
+        actorSystem = ActorSystem.create("LogArchiveBenchmark");
+        archiver = actorSystem.actorOf(Props.create(BenchmarkLogArchiver.class, archivePath, archivePath));
+    }
+
+    /**
+     * Marks the records as not archived and removes the archive files of the previous invocation.
+     * @throws Exception if the records cannot be updated
+     */
+    @Setup(Level.Invocation)
+    public void reset() throws Exception {
+        doInTransaction(session -> {
+            session.createQuery("UPDATE MessageRecord m set m.archived = false").executeUpdate();
+            session.createQuery("UPDATE TimestampRecord t set t.archived = false").executeUpdate();
+            session.createQuery("delete from " + DigestEntry.class.getName()).executeUpdate();
+
+            return null;
+        });
+
+        FileUtils.cleanDirectory(archivePath.toFile());
+    }
+
+    /**
+     * Stops the archiver, removes the records and closes the database connections.
+     * @throws Exception if the records cannot be removed
+     */
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        Await.ready(actorSystem.terminate(), Duration.Inf());
+        FileUtils.deleteDirectory(archivePath.toFile());
+
+        doInTransaction(session -> session.createQuery("delete AbstractLogRecord").executeUpdate());
+        MessageLogDatabaseCtx.get().closeSessionFactory();
+    }
+
+    /**
+     * Archives all the message records and waits until the archiver has finished.
+     * @throws Exception if archiving does not finish in time
+     */
+    @Benchmark
+    public void archive() throws Exception {
+        Await.result(Patterns.ask(archiver, RUN_ARCHIVER, TIMEOUT), TIMEOUT.duration());
+    }
+
+    /**
+     * Log archiver that lets the benchmark know when an archiving round has finished.
+     */
+    static class BenchmarkLogArchiver extends LogArchiver {
+
+        BenchmarkLogArchiver(Path archivePath, Path workingPath) {
+            super(archivePath, workingPath);
+        }
+
+        @Override
+        public void onReceive(Object message) {
+            if (RUN_ARCHIVER.equals(message)) {
+                super.onReceive(START_ARCHIVING);
+                getSender().tell(RUN_ARCHIVER, getSelf());
+            } else {
+                super.onReceive(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.messagelog.MessageRecord;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
+
+/**
+ * Measures the throughput (logged messages per second) of concurrently logged messages when every message record is
+ * saved in its own transaction, one at a time like the log manager actor does, against saving them with the message
+ * record writer. Uses a file based HSQLDB database that syncs each commit to disk by default, a local PostgreSQL
+ * database can be used by pointing xroad.proxy.database-properties to a suitable properties file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(MessageRecordWriteBenchmark.LOGGING_THREADS)
+@Fork(1)
+public class MessageRecordWriteBenchmark {
+
+    /** The number of concurrently logging request threads. */
+    static final int LOGGING_THREADS = 16;
+
+    private static final String DATABASE_PROPERTIES = "src/jmh/resources/hibernate.properties";
+
+    private static final int WRITE_QUEUE_SIZE = 10000;
+    private static final int WRITE_BATCH_SIZE = 100;
+
+    private static final ClientId CLIENT = ClientId.create("EE", "GOV", "00000001", "System1");
+
+    private static final String MESSAGE = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/"
+            + "envelope/\"><SOAP-ENV:Body><getRandom/></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+    private static final String SIGNATURE = "<signature/>";
+
+    /** The number of writer threads, zero saves the records one at a time in the calling thread. */
+    @Param({"0", "2", "4"})
+    private int writerThreads;
+
+    private MessageRecordWriter writer;
+
+    private final Object logManagerLock = new Object();
+
+    /**
+     * Configures the database and starts the writer.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        if (System.getProperty(SystemProperties.DATABASE_PROPERTIES) == null) {
+            System.setProperty(SystemProperties.DATABASE_PROPERTIES, DATABASE_PROPERTIES);
+        }
+
+        if (writerThreads > 0) {
+            writer = new MessageRecordWriter(writerThreads, WRITE_QUEUE_SIZE, WRITE_BATCH_SIZE,
+                    LogRecordManager::saveMessageRecords);
+        }
+    }
+
+    /**
+     * Removes the saved records so that every iteration starts with an empty table.
+     * @throws Exception if the records cannot be removed
+     */
+    @TearDown(Level.Iteration)
+    public void cleanup() throws Exception {
+        doInTransaction(session -> session.createQuery("delete MessageRecord").executeUpdate());
+    }
+
+    /**
+     * Stops the writer and closes the database connections.
+     * @throws Exception if stopping the writer fails
+     */
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        if (writer != null) {
+            writer.stop();
+        }
+
+        MessageLogDatabaseCtx.get().closeSessionFactory();
+    }
+
+    /**
+     * Logs one message and waits until its record has been committed.
+     * @throws Exception if saving fails
+     */
+    @Benchmark
+    public void logMessage() throws Exception {
+        MessageRecord record = new MessageRecord(UUID.randomUUID().toString(), MESSAGE, SIGNATURE, false, CLIENT,
+                null);
+        record.setTime(System.currentTimeMillis());
+
+        if (writer == null) {
+            // The log manager actor handles one message at a time
+            synchronized (logManagerLock) {
+                LogRecordManager.saveMessageRecord(record);
+            }
+        } else {
+            writer.write(() -> record).get();
+        }
+    }
+}
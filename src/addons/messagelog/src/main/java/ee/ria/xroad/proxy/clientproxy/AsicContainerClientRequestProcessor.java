@@ -57,8 +57,9 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Function;
+import java.util.function.Consumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -200,22 +201,26 @@ class AsicContainerClientRequestProcessor extends MessageProcessorBase {
     }
 
     private void ensureTimestamped(ClientId id, String queryId, Boolean response, boolean force) throws Exception {
-        final List<MessageRecord> records = LogRecordManager.getByQueryId(queryId, id, response, Function.identity());
+        // Only the records not time-stamped yet are kept, the others are not needed here
+        final List<MessageRecord> notTimestamped = new ArrayList<>();
+        final int count = LogRecordManager.forEachByQueryId(queryId, id, response, record -> {
+            if (record.getTimestampRecord() == null) {
+                notTimestamped.add(record);
+            }
+        });
 
-        if (records.isEmpty()) {
+        if (count == 0) {
             throw new CodedExceptionWithHttpStatus(HttpServletResponse.SC_NOT_FOUND, ErrorCodes.X_NOT_FOUND,
                     DOCUMENTS_NOT_FOUND_FAULT_MESSAGE);
         }
 
-        for (MessageRecord record : records) {
-            if (record.getTimestampRecord() == null) {
-                if (force) {
-                    if (MessageLog.timestamp(record) == null) {
-                        throw new Exception(TIMESTAMPING_FAILED_FAULT_MESSAGE);
-                    }
-                } else {
-                    throw new Exception(MISSING_TIMESTAMP_FAULT_MESSAGE);
+        for (MessageRecord record : notTimestamped) {
+            if (force) {
+                if (MessageLog.timestamp(record) == null) {
+                    throw new Exception(TIMESTAMPING_FAILED_FAULT_MESSAGE);
                 }
+            } else {
+                throw new Exception(MISSING_TIMESTAMP_FAULT_MESSAGE);
             }
         }
     }
@@ -230,36 +235,78 @@ class AsicContainerClientRequestProcessor extends MessageProcessorBase {
         final String filename = AsicUtils.escapeString(queryId)
                 + (response == null ? "" : (response ? "-response" : "-request"));
 
-        LogRecordManager.getByQueryId(queryId, clientId, response, records -> {
-            if (records.isEmpty()) {
+        // The containers are streamed into the response one record at a time, the response is started when
+        // the first record has been found
+        try (ContainerWriter writer = new ContainerWriter(filename, queryId, nameGen)) {
+            if (LogRecordManager.forEachByQueryId(queryId, clientId, response, writer) == 0) {
                 throw new CodedExceptionWithHttpStatus(HttpServletResponse.SC_NOT_FOUND, ErrorCodes.X_NOT_FOUND,
                         DOCUMENTS_NOT_FOUND_FAULT_MESSAGE);
             }
-            try (ZipOutputStream zos = startZipResponse(filename)) {
-                zos.setLevel(0);
-                for (MessageRecord record : records) {
-                    if (record.getTimestampRecord() == null) {
-                        // Only happens if there are matching messages that are sent after
-                        // the ensureTimestamped check was made. Ignore to emulate the previous behavior.
-                        continue;
-                    }
-                    String type = record.isResponse() ? AsicContainerNameGenerator.TYPE_RESPONSE
-                            : AsicContainerNameGenerator.TYPE_REQUEST;
-                    zos.putNextEntry(new ZipEntry(nameGen.getArchiveFilename(queryId, type)));
-
-                    try (EntryStream es = new EntryStream(zos)) {
-                        record.toAsicContainer().write(es);
-                    }
-
-                    zos.closeEntry();
+        }
+    }
+
+    /**
+     * Writes the ASiC container of each message record into the ZIP response as the records are read.
+     */
+    private final class ContainerWriter implements Consumer<MessageRecord>, Closeable {
+
+        private final String filename;
+        private final String queryId;
+        private final AsicContainerNameGenerator nameGen;
+
+        private ZipOutputStream zos;
+        private boolean recordsFound;
+
+        ContainerWriter(String filename, String queryId, AsicContainerNameGenerator nameGen) {
+            this.filename = filename;
+            this.queryId = queryId;
+            this.nameGen = nameGen;
+        }
+
+        @Override
+        public void accept(MessageRecord record) {
+            recordsFound = true;
+
+            if (record.getTimestampRecord() == null) {
+                // Only happens if there are matching messages that are sent after
+                // the ensureTimestamped check was made. Ignore to emulate the previous behavior.
+                return;
+            }
+
+            try {
+                start();
+
+                String type = record.isResponse() ? AsicContainerNameGenerator.TYPE_RESPONSE
+                        : AsicContainerNameGenerator.TYPE_REQUEST;
+                zos.putNextEntry(new ZipEntry(nameGen.getArchiveFilename(queryId, type)));
+
+                try (EntryStream es = new EntryStream(zos)) {
+                    record.toAsicContainer().write(es);
                 }
+
+                zos.closeEntry();
             } catch (CodedException ce) {
                 throw ce;
             } catch (Exception e) {
                 throw new CodedException(X_INTERNAL_ERROR, e);
             }
-            return null;
-        });
+        }
+
+        private void start() throws IOException {
+            if (zos == null) {
+                zos = startZipResponse(filename);
+                zos.setLevel(0);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (recordsFound) {
+                // An empty ZIP file is returned, if none of the found records has been time-stamped
+                start();
+                zos.close();
+            }
+        }
     }
 
     /**
@@ -31,6 +31,7 @@ import ee.ria.xroad.common.messagelog.MessageRecord;
 import ee.ria.xroad.common.messagelog.TimestampRecord;
 import ee.ria.xroad.common.messagelog.archive.DigestEntry;
 import ee.ria.xroad.common.messagelog.archive.LogArchiveBase;
+import ee.ria.xroad.common.messagelog.archive.LogArchiveEntry;
 import ee.ria.xroad.common.messagelog.archive.LogArchiveWriter;
 
 import akka.actor.UntypedAbstractActor;
@@ -50,9 +51,18 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveThreads;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveTransactionBatchSize;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveTransferCommand;
 import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
@@ -62,6 +72,10 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 /**
  * Reads all non-archived time-stamped records from the database, writes them
  * to archive file and marks the records as archived.
+ *
+ * The records are read with a streaming query, their ASiC containers are built by a pool of worker threads and the
+ * containers are written to the archive and the linking info sequentially, in the order the records were read. The
+ * archived records are marked in bulk by the ids of the archived time-stamp records at the end of each transaction.
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -70,6 +84,8 @@ public class LogArchiver extends UntypedAbstractActor {
     private static final int MAX_RECORDS_IN_ARCHIVE = 10;
     private static final int MAX_RECORDS_IN_BATCH = 360;
     private static final String PROPERTY_NAME_ARCHIVED = "archived";
+    private static final int PENDING_ENTRIES_PER_THREAD = 4;
+    private static final int MAX_IDS_IN_UPDATE = 1000;
 
     public static final String START_ARCHIVING = "doArchive";
 
@@ -81,21 +97,36 @@ public class LogArchiver extends UntypedAbstractActor {
         log.trace("onReceive({})", message);
 
         if (START_ARCHIVING.equals(message)) {
+            ExecutorService workers = createWorkers(getArchiveThreads());
+
             try {
                 Long maxTimestampId = doInTransaction(session -> getMaxTimestampId(session));
                 if (maxTimestampId != null) {
-                    while (handleArchive(maxTimestampId)) {
+                    while (handleArchive(maxTimestampId, workers)) {
                     }
                 }
             } catch (Exception ex) {
                 log.error("Failed to archive log records", ex);
+            } finally {
+                workers.shutdownNow();
             }
         } else {
             unhandled(message);
         }
     }
 
-    private boolean handleArchive(long maxTimestampId) throws Exception {
+    private static ExecutorService createWorkers(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "LogArchiver-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    private boolean handleArchive(long maxTimestampId, ExecutorService workers) throws Exception {
         return doInTransaction(session -> {
             final List<TimestampRecord> batch =
                     getNonArchivedTimestampRecords(session, MAX_RECORDS_IN_BATCH, maxTimestampId);
@@ -111,33 +142,41 @@ public class LogArchiver extends UntypedAbstractActor {
             log.info("Archiving log records...");
 
             try (LogArchiveWriter archiveWriter = createLogArchiveWriter(session)) {
+                ArchivePipeline pipeline = new ArchivePipeline(archiveWriter, workers,
+                        getArchiveThreads() * PENDING_ENTRIES_PER_THREAD);
+                List<Long> timestampIds = new ArrayList<>(batch.size());
+
                 for (TimestampRecord ts : batch) {
 
                     try (Stream<MessageRecord> records = getNonArchivedMessageRecords(session, ts.getId())) {
                         recordsArchived += records.peek(record -> {
                             try {
-                                if (archiveWriter.write(record)) {
-                                    runTransferCommand(getArchiveTransferCommand());
+                                if (record.getAttachment() != null) {
+                                    // the attachment can only be read with the session, write it right away
+                                    pipeline.write(record);
+                                    session.detach(record);
+                                } else {
+                                    //evict record from persistence context to avoid running out of memory
+                                    session.detach(record);
+                                    pipeline.add(record);
                                 }
-                                //evict record from persistence context to avoid running out of memory
-                                session.detach(record);
                             } catch (Exception e) {
                                 throw new CodedException(ErrorCodes.X_INTERNAL_ERROR, e);
                             }
                         }).count();
 
-                        archiveWriter.write(ts);
                         recordsArchived++;
-                        session.flush();
+                        timestampIds.add(ts.getId());
                         session.detach(ts);
                     }
 
                     if (recordsArchived >= limit) {
-                        log.info("Archived {} log records in {} ms", recordsArchived,
-                                System.currentTimeMillis() - start);
-                        return true;
+                        break;
                     }
                 }
+
+                pipeline.flush();
+                markRecordsArchived(session, timestampIds);
             } catch (Exception e) {
                 throw new CodedException(ErrorCodes.X_INTERNAL_ERROR, e);
             } finally {
@@ -146,11 +185,31 @@ public class LogArchiver extends UntypedAbstractActor {
 
             log.info("Archived {} log records in {} ms", recordsArchived, System.currentTimeMillis() - start);
 
-            //try to continue if the batch was full (there might be more)
-            return batch.size() == MAX_RECORDS_IN_BATCH;
+            //try to continue if the transaction limit was reached or the batch was full (there might be more)
+            return recordsArchived >= limit || batch.size() == MAX_RECORDS_IN_BATCH;
         });
     }
 
+    /**
+     * Marks the time-stamp records with the given ids and their message records as archived. Only the records that
+     * were actually archived are marked, since time-stamp records may be committed out of id order.
+     */
+    protected void markRecordsArchived(Session session, List<Long> timestampIds) {
+        for (int from = 0; from < timestampIds.size(); from += MAX_IDS_IN_UPDATE) {
+            List<Long> ids = timestampIds.subList(from, Math.min(from + MAX_IDS_IN_UPDATE, timestampIds.size()));
+
+            session.createQuery("UPDATE MessageRecord m set m.archived = true where m.archived = false"
+                    + " and m.timestampRecord.id in (:ids)")
+                    .setParameterList("ids", ids)
+                    .executeUpdate();
+
+            session.createQuery("UPDATE TimestampRecord t set t.archived = true where t.archived = false"
+                    + " and t.id in (:ids)")
+                    .setParameterList("ids", ids)
+                    .executeUpdate();
+        }
+    }
+
     private LogArchiveWriter createLogArchiveWriter(Session session) {
         return new LogArchiveWriter(
                 getArchivePath(),
@@ -258,6 +317,56 @@ public class LogArchiver extends UntypedAbstractActor {
         }
     }
 
+    /**
+     * Builds the ASiC containers of the message records in the worker threads and writes them to the archive in the
+     * order the records were added. At most the given number of containers are waiting to be written at a time.
+     */
+    @RequiredArgsConstructor
+    private static final class ArchivePipeline {
+
+        private final LogArchiveWriter archiveWriter;
+        private final ExecutorService workers;
+        private final int maxPendingEntries;
+
+        private final Deque<Future<LogArchiveEntry>> pendingEntries = new ArrayDeque<>();
+
+        void add(MessageRecord record) throws Exception {
+            pendingEntries.add(workers.submit(() -> LogArchiveEntry.create(record)));
+
+            while (pendingEntries.size() > maxPendingEntries) {
+                writeNext();
+            }
+        }
+
+        void write(MessageRecord record) throws Exception {
+            flush();
+
+            if (archiveWriter.write(record)) {
+                runTransferCommand(getArchiveTransferCommand());
+            }
+        }
+
+        void flush() throws Exception {
+            while (!pendingEntries.isEmpty()) {
+                writeNext();
+            }
+        }
+
+        private void writeNext() throws Exception {
+            LogArchiveEntry entry;
+
+            try {
+                entry = pendingEntries.remove().get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+
+            if (archiveWriter.write(entry)) {
+                runTransferCommand(getArchiveTransferCommand());
+            }
+        }
+    }
+
     @Value
     private class HibernateLogArchiveBase implements LogArchiveBase {
 
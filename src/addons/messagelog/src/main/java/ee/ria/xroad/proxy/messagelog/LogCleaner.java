@@ -35,7 +35,8 @@ import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransactio
 
 
 /**
- * Deletes all archived log records from the database.
+ * Deletes all archived log records from the database. If the records are stored in partitions, the partitions
+ * containing only archived records are dropped.
  */
 @Slf4j
 public class LogCleaner extends UntypedAbstractActor {
@@ -66,12 +67,22 @@ public class LogCleaner extends UntypedAbstractActor {
 
     protected long handleClean() throws Exception {
 
-        final Long time = new DateTime().minusDays(MessageLogProperties.getKeepRecordsForDays()).getMillis();
+        final DateTime now = new DateTime();
+        final Long time = now.minusDays(MessageLogProperties.getKeepRecordsForDays()).getMillis();
+        final boolean partitioned = LogRecordPartitions.prepare(now.getMillis());
+
+        if (partitioned) {
+            final int dropped = doInTransaction(session -> LogRecordPartitions.dropPartitions(session, time));
+            log.info("Dropped {} archived log record partitions", dropped);
+        }
+
+        // Partitions are dropped only as a whole, delete the records stored before partitioning
+        final String queryName = partitioned ? "delete-unpartitioned-logrecords" : "delete-logrecords";
         long count = 0;
         int removed;
         do {
             removed = doInTransaction(session -> {
-                final Query query = session.getNamedQuery("delete-logrecords");
+                final Query query = session.getNamedQuery(queryName);
                 query.setParameter("time", time);
                 query.setParameter("limit", CLEAN_BATCH_LIMIT);
                 return query.executeUpdate();
@@ -62,6 +62,8 @@ import scala.concurrent.duration.FiniteDuration;
 import java.nio.file.Paths;
 import java.time.LocalTime;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.X_LOGGING_FAILED_X;
@@ -106,6 +108,9 @@ public class LogManager extends AbstractLogManager {
     private final ActorRef timestamper;
     private final ActorRef timestamperJob;
 
+    // Writes the message records when they are not time-stamped immediately, null if records are written here
+    private final MessageRecordWriter messageRecordWriter;
+
     // package private for testing
     final ActorRef taskQueueRef;
     final ActorRef logArchiver;
@@ -119,6 +124,9 @@ public class LogManager extends AbstractLogManager {
         timestamperJob = createTimestamperJob();
         logArchiver = createArchiver(jobManager);
         logCleaner = createCleaner(jobManager);
+        messageRecordWriter = createMessageRecordWriter();
+
+        preparePartitions();
     }
 
     private ActorRef createTaskQueue() {
@@ -156,6 +164,35 @@ public class LogManager extends AbstractLogManager {
         return ref;
     }
 
+    private static void preparePartitions() {
+        try {
+            LogRecordPartitions.prepare(System.currentTimeMillis());
+        } catch (Exception e) {
+            // Retried when cleaning the log records
+            log.error("Failed to prepare log record partitions", e);
+        }
+    }
+
+    private MessageRecordWriter createMessageRecordWriter() {
+        int threads = MessageLogProperties.getWriterThreads();
+
+        if (threads <= 0) {
+            return null;
+        }
+
+        return new MessageRecordWriter(threads, MessageLogProperties.getWriteQueueSize(),
+                MessageLogProperties.getWriteBatchSize(), this::saveMessageRecords);
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        if (messageRecordWriter != null) {
+            messageRecordWriter.stop();
+        }
+
+        super.postStop();
+    }
+
     // ------------------------------------------------------------------------
 
     @Override
@@ -164,19 +201,57 @@ public class LogManager extends AbstractLogManager {
 
         verifyCanLogMessage(shouldTimestampImmediately);
 
-        MessageRecord logRecord;
-        if (message instanceof SoapLogMessage) {
-            logRecord = createMessageRecord((SoapLogMessage) message);
-        } else {
-            logRecord = createMessageRecord((RestLogMessage) message);
-        }
-        logRecord = saveMessageRecord(logRecord);
+        MessageRecord logRecord = saveMessageRecord(createMessageRecord(message));
 
         if (shouldTimestampImmediately) {
             timestampImmediately(logRecord);
         }
     }
 
+    /**
+     * Queues the message record for the message record writer and replies to the sender when the record has been
+     * committed, or right away in relaxed durability mode. The actor does not wait for the database meanwhile.
+     */
+    private void write(LogMessage message) throws Exception {
+        verifyCanLogMessage(false);
+
+        ActorRef sender = getSender();
+        CompletableFuture<MessageRecord> written = messageRecordWriter.write(() -> createMessageRecord(message));
+
+        if (MessageLogProperties.isRelaxedDurability() && !hasLoggedBody(message)) {
+            written.whenComplete((record, e) -> {
+                if (e != null) {
+                    log.error("Failed to save message record", e);
+                }
+            });
+
+            sender.tell(new Object(), getSelf());
+        } else {
+            ActorRef self = getSelf();
+
+            written.whenComplete((record, e) -> {
+                if (e != null) {
+                    sender.tell(e instanceof Exception ? e : new RuntimeException(e), self);
+                } else {
+                    sender.tell(new Object(), self);
+                }
+            });
+        }
+    }
+
+    private boolean isWrittenByWriter(Object message) {
+        return message instanceof LogMessage && messageRecordWriter != null && !shouldTimestampImmediately();
+    }
+
+    // The sender releases the body stream and the content of a streamed SOAP message once it gets the reply
+    private static boolean hasLoggedBody(LogMessage message) {
+        if (message instanceof SoapLogMessage) {
+            return ((SoapLogMessage) message).getMessage().isStreamed();
+        }
+
+        return message instanceof RestLogMessage && ((RestLogMessage) message).getBody() != null;
+    }
+
     @Override
     protected TimestampRecord timestamp(Long messageRecordId) throws Exception {
         log.trace("timestamp({})", messageRecordId);
@@ -212,6 +287,8 @@ public class LogManager extends AbstractLogManager {
                 getSender().tell(statusMap, getSelf());
             } else if (message instanceof SetTimestampingStatusMessage) {
                 setTimestampingStatus((SetTimestampingStatusMessage) message);
+            } else if (isWrittenByWriter(message)) {
+                write((LogMessage) message);
             } else {
                 super.onReceive(message);
             }
@@ -262,6 +339,14 @@ public class LogManager extends AbstractLogManager {
         }
     }
 
+    private static MessageRecord createMessageRecord(LogMessage message) throws Exception {
+        if (message instanceof SoapLogMessage) {
+            return createMessageRecord((SoapLogMessage) message);
+        } else {
+            return createMessageRecord((RestLogMessage) message);
+        }
+    }
+
     private static MessageRecord createMessageRecord(SoapLogMessage message) throws Exception {
         log.trace("createMessageRecord()");
 
@@ -326,6 +411,10 @@ public class LogManager extends AbstractLogManager {
         return messageRecord;
     }
 
+    protected void saveMessageRecords(List<MessageRecord> messageRecords) throws Exception {
+        LogRecordManager.saveMessageRecords(messageRecords);
+    }
+
     static TimestampRecord saveTimestampRecord(Timestamper.TimestampSucceeded message) throws Exception {
         log.trace("saveTimestampRecord()");
 
@@ -32,6 +32,8 @@ import ee.ria.xroad.common.messagelog.MessageRecord;
 import ee.ria.xroad.common.messagelog.TimestampRecord;
 
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
 
@@ -45,8 +47,10 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
@@ -58,6 +62,7 @@ import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransactio
 public final class LogRecordManager {
 
     private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int SCROLL_FETCH_SIZE = 10;
     private static final String GET_BY_QUERY_ID_LOG_FORMAT = "getByQueryId({}, {}, {})";
     private static int configuredBatchSize = 0;
 
@@ -103,19 +108,22 @@ public final class LogRecordManager {
     }
 
     /**
-     * Returns a list of log records for a given message Query Id and sender Client Id.
+     * Passes the message records for a given message Query Id and sender Client Id to the consumer one at a time.
+     * The records are read from a scrollable result and detached after they have been consumed, so that they are
+     * not all held in memory at once. The consumer is called within the transaction, so it can read the attachment
+     * of the record.
      * @param queryId    the message query id.
      * @param clientId   the sender client id.
-     * @param isResponse whether the response record should be retrieved.
-     * @return the log record list or empty list, if no log records were not found in database.
+     * @param isResponse whether the response records should be retrieved.
+     * @param consumer   the consumer of the records.
+     * @return the number of records found.
      * @throws Exception if an error occurs while communicating with database.
      */
-    public static <R> R getByQueryId(String queryId, ClientId clientId, Boolean isResponse,
-            Function<List<MessageRecord>, R> processor)
-            throws Exception {
+    public static int forEachByQueryId(String queryId, ClientId clientId, Boolean isResponse,
+            Consumer<MessageRecord> consumer) throws Exception {
         log.trace(GET_BY_QUERY_ID_LOG_FORMAT, queryId, clientId, isResponse);
 
-        return doInTransaction(session -> processor.apply(getMessageRecords(session, queryId, clientId, isResponse)));
+        return doInTransaction(session -> forEachMessageRecord(session, queryId, clientId, isResponse, consumer));
     }
 
     /**
@@ -136,14 +144,27 @@ public final class LogRecordManager {
      * @throws Exception if an error occurs while communicating with database.
      */
     static void saveMessageRecord(MessageRecord messageRecord) throws Exception {
+        saveMessageRecords(Collections.singletonList(messageRecord));
+    }
+
+    /**
+     * Saves the message records to database in one transaction, using JDBC batching for the inserts.
+     * @param messageRecords the message records to be saved.
+     * @throws Exception if an error occurs while communicating with database.
+     */
+    static void saveMessageRecords(List<MessageRecord> messageRecords) throws Exception {
         doInTransaction(session -> {
-            //the blob must be created within hibernate session
-            final InputStream is = messageRecord.getAttachmentStream();
-            if (is != null) {
-                messageRecord.setAttachment(session.getLobHelper().createBlob(is,
-                        messageRecord.getAttachmentStreamSize()));
+            session.setJdbcBatchSize(getConfiguredBatchSize(session));
+
+            for (MessageRecord messageRecord : messageRecords) {
+                //the blob must be created within hibernate session
+                final InputStream is = messageRecord.getAttachmentStream();
+                if (is != null) {
+                    messageRecord.setAttachment(session.getLobHelper().createBlob(is,
+                            messageRecord.getAttachmentStreamSize()));
+                }
+                save(session, messageRecord);
             }
-            save(session, messageRecord);
             return null;
         });
     }
@@ -277,11 +298,23 @@ public final class LogRecordManager {
         return session.createQuery(query).setReadOnly(true).setMaxResults(1).uniqueResult();
     }
 
-    private static List<MessageRecord> getMessageRecords(Session session, String queryId, ClientId
-            clientId,
-            Boolean isResponse) {
+    private static int forEachMessageRecord(Session session, String queryId, ClientId clientId, Boolean isResponse,
+            Consumer<MessageRecord> consumer) {
         final CriteriaQuery<MessageRecord> query = createRecordCriteria(session, queryId, clientId, isResponse);
-        return session.createQuery(query).setReadOnly(true).getResultList();
+        int count = 0;
+
+        try (ScrollableResults results = session.createQuery(query).setReadOnly(true).setFetchSize(SCROLL_FETCH_SIZE)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                final MessageRecord messageRecord = (MessageRecord) results.get(0);
+
+                consumer.accept(messageRecord);
+                session.detach(messageRecord);
+                count++;
+            }
+        }
+
+        return count;
     }
 
     private static CriteriaQuery<MessageRecord> createRecordCriteria(Session session, String queryId, ClientId clientId,
@@ -0,0 +1,282 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.messagelog.MessageLogProperties;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
+
+/**
+ * Manages the daily partitions of the log record table on PostgreSQL. The partitions are tables inheriting from the
+ * log record table, with a check constraint on the record time. An insert trigger of the log record table routes the
+ * inserted records to the partition of their day, so archived records can be removed by dropping whole partitions
+ * instead of deleting them row by row. Table inheritance is used instead of declarative partitioning, because
+ * PostgreSQL 9.x is still supported.
+ */
+@Slf4j
+final class LogRecordPartitions {
+
+    static final String TABLE_NAME = "logrecord";
+
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static final DateTimeFormatter PARTITION_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    // Number of days the partitions are created ahead, so that the records are routed to partitions even if
+    // a cleaning is missed
+    private static final int PARTITIONS_AHEAD = 2;
+
+    private static final String INSERT_TRIGGER = "t_logrecord_partition";
+    private static final String INSERT_FUNCTION = "logrecord_partition_insert";
+
+    // Removes the attachment of a deleted record, the triggers of the log record table are not inherited
+    private static final String ATTACHMENT_TRIGGER = "t_logrecord_attachment";
+    private static final String ATTACHMENT_FUNCTION = "del_logrecord_attachment";
+
+    // Serializes the creation and removal of partitions between proxy instances sharing the database
+    private static final long PARTITION_LOCK_ID = 0x6d73676c6f670001L;
+
+    private static final boolean PARTITIONED_STORAGE = MessageLogProperties.isPartitionedStorage();
+
+    private LogRecordPartitions() {
+    }
+
+    /**
+     * Prepares the log record table for storing the records. With partitioned storage switched on, installs the
+     * insert trigger and creates the partitions for the current and the following days. Otherwise removes the
+     * insert trigger, if partitioned storage has been switched off. Does nothing on other databases than
+     * PostgreSQL.
+     * @param now the current time in milliseconds
+     * @return true if the records are stored in partitions
+     * @throws Exception if preparing the table fails
+     */
+    static boolean prepare(long now) throws Exception {
+        return doInTransaction(session -> session.doReturningWork(connection -> {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                if (PARTITIONED_STORAGE) {
+                    log.warn("Partitioned storage of log records is supported on PostgreSQL only");
+                }
+
+                return false;
+            }
+
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("SELECT pg_advisory_xact_lock(" + PARTITION_LOCK_ID + ")");
+
+                boolean triggerExists = triggerExists(connection);
+
+                if (!PARTITIONED_STORAGE) {
+                    if (triggerExists) {
+                        log.info("Partitioned storage switched off, removing log record insert trigger");
+
+                        stmt.execute("DROP TRIGGER " + INSERT_TRIGGER + " ON " + TABLE_NAME);
+                    }
+
+                    return false;
+                }
+
+                LocalDate today = getDay(now);
+
+                for (int i = 0; i <= PARTITIONS_AHEAD; i++) {
+                    createPartition(connection, today.plusDays(i));
+                }
+
+                if (!triggerExists) {
+                    log.info("Installing log record insert trigger");
+
+                    stmt.execute("CREATE TRIGGER " + INSERT_TRIGGER + " BEFORE INSERT ON " + TABLE_NAME
+                            + " FOR EACH ROW EXECUTE PROCEDURE " + INSERT_FUNCTION + "()");
+                }
+            }
+
+            return true;
+        }));
+    }
+
+    /**
+     * Drops the partitions containing only archived records older than the given time. The attachments of the
+     * records are removed with the partition.
+     * @param session the Hibernate session
+     * @param before the time in milliseconds
+     * @return the number of dropped partitions
+     */
+    static int dropPartitions(Session session, long before) {
+        return session.doReturningWork(connection -> {
+            int dropped = 0;
+
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("SELECT pg_advisory_xact_lock(" + PARTITION_LOCK_ID + ")");
+
+                for (String partition : getPartitions(connection)) {
+                    Long end = getPartitionEnd(partition);
+
+                    if (end == null || end > before) {
+                        continue;
+                    }
+
+                    if (hasRecordsNotArchived(connection, partition)) {
+                        log.warn("Log record partition {} contains records not archived, not dropping it",
+                                partition);
+
+                        continue;
+                    }
+
+                    log.info("Dropping archived log record partition {}", partition);
+
+                    stmt.execute("SELECT lo_unlink(attachment) FROM " + partition + " WHERE attachment IS NOT NULL");
+                    stmt.execute("DROP TABLE " + partition);
+
+                    dropped++;
+                }
+            }
+
+            return dropped;
+        });
+    }
+
+    /**
+     * @param time the record time in milliseconds
+     * @return the name of the partition of the records with the given time
+     */
+    static String getPartitionName(long time) {
+        return getPartitionName(getDay(time));
+    }
+
+    /**
+     * @param partition the partition name
+     * @return the (exclusive) end of the record times of the partition in milliseconds or null, if the name is not
+     * a partition name
+     */
+    static Long getPartitionEnd(String partition) {
+        String prefix = TABLE_NAME + "_";
+
+        if (!partition.startsWith(prefix)) {
+            return null;
+        }
+
+        try {
+            return getDayStart(LocalDate.parse(partition.substring(prefix.length()), PARTITION_DATE).plusDays(1));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String getPartitionName(LocalDate day) {
+        return TABLE_NAME + "_" + day.format(PARTITION_DATE);
+    }
+
+    private static LocalDate getDay(long time) {
+        return LocalDate.ofEpochDay(Math.floorDiv(time, MILLIS_PER_DAY));
+    }
+
+    private static long getDayStart(LocalDate day) {
+        return day.toEpochDay() * MILLIS_PER_DAY;
+    }
+
+    private static void createPartition(Connection connection, LocalDate day) throws SQLException {
+        String partition = getPartitionName(day);
+
+        if (partitionExists(connection, partition)) {
+            return;
+        }
+
+        log.info("Creating log record partition {}", partition);
+
+        long start = getDayStart(day);
+
+        try (Statement stmt = connection.createStatement()) {
+            // The partition gets the primary key and the (partial) indexes of the log record table
+            stmt.execute("CREATE TABLE " + partition + " (LIKE " + TABLE_NAME + " INCLUDING INDEXES, CHECK (time >= "
+                    + start + " AND time < " + (start + MILLIS_PER_DAY) + "))");
+            stmt.execute("ALTER TABLE " + partition + " INHERIT " + TABLE_NAME);
+            stmt.execute("CREATE TRIGGER " + ATTACHMENT_TRIGGER + " BEFORE DELETE ON " + partition
+                    + " FOR EACH ROW WHEN (old.attachment IS NOT NULL) EXECUTE PROCEDURE " + ATTACHMENT_FUNCTION
+                    + "()");
+        }
+    }
+
+    private static boolean hasRecordsNotArchived(Connection connection, String partition) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + partition + " WHERE NOT archived LIMIT 1")) {
+            return rs.next();
+        }
+    }
+
+    private static boolean triggerExists(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT 1 FROM pg_trigger"
+                + " WHERE tgrelid = CAST(? AS regclass) AND tgname = ?")) {
+            stmt.setString(1, TABLE_NAME);
+            stmt.setString(2, INSERT_TRIGGER);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean partitionExists(Connection connection, String partition) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT 1 FROM pg_class WHERE relname = ? AND relkind = 'r' AND pg_table_is_visible(oid)")) {
+            stmt.setString(1, partition);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static List<String> getPartitions(Connection connection) throws SQLException {
+        List<String> partitions = new ArrayList<>();
+
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT c.relname FROM pg_inherits i"
+                + " JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = CAST(? AS regclass)")) {
+            stmt.setString(1, TABLE_NAME);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    partitions.add(rs.getString(1));
+                }
+            }
+        }
+
+        return partitions;
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.messagelog.MessageLogProperties;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.engine.spi.ExecuteUpdateResultCheckStyle;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.persister.entity.SingleTableEntityPersister;
+import org.hibernate.persister.spi.PersisterCreationContext;
+
+import java.util.Arrays;
+
+/**
+ * Persister of the log records. When the log records are stored in partitions, the insert trigger of the log record
+ * table routes the inserted row to its partition and the insert reports no rows inserted into the log record table.
+ * The persister does not check the inserted row count in that case.
+ */
+public class LogRecordPersister extends SingleTableEntityPersister {
+
+    /**
+     * Creates the persister.
+     * @param persistentClass the mapping of the log record class
+     * @param cacheAccessStrategy the entity cache access
+     * @param naturalIdRegionAccessStrategy the natural identifier cache access
+     * @param creationContext the persister creation context
+     * @throws HibernateException if creating the persister fails
+     */
+    public LogRecordPersister(PersistentClass persistentClass, EntityDataAccess cacheAccessStrategy,
+            NaturalIdDataAccess naturalIdRegionAccessStrategy, PersisterCreationContext creationContext)
+            throws HibernateException {
+        super(persistentClass, cacheAccessStrategy, naturalIdRegionAccessStrategy, creationContext);
+
+        if (MessageLogProperties.isPartitionedStorage()) {
+            Arrays.fill(insertResultCheckStyles, ExecuteUpdateResultCheckStyle.NONE);
+        }
+    }
+}
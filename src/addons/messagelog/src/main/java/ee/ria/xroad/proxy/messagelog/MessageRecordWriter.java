@@ -0,0 +1,204 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.messagelog.MessageRecord;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes message records to the database with a pool of writer threads. A writer takes all the records waiting in
+ * the queue, up to the write batch size, and saves them in one transaction, so that the messages logged concurrently
+ * share a single commit instead of each waiting for its own.
+ */
+@Slf4j
+class MessageRecordWriter {
+
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    /**
+     * Saves a batch of message records in one transaction.
+     */
+    @FunctionalInterface
+    interface Saver {
+        void save(List<MessageRecord> messageRecords) throws Exception;
+    }
+
+    private final BlockingQueue<PendingRecord> queue;
+    private final int batchSize;
+    private final Saver saver;
+    private final List<Thread> writers = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    /**
+     * Creates the writer and starts the writer threads.
+     * @param threads number of writer threads
+     * @param queueSize maximum number of records waiting to be written
+     * @param batchSize maximum number of records written in one transaction
+     * @param saver saves the records of a batch
+     */
+    MessageRecordWriter(int threads, int queueSize, int batchSize, Saver saver) {
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.saver = saver;
+
+        for (int i = 0; i < threads; i++) {
+            Thread writer = new Thread(this::run, "MessageRecordWriter-" + i);
+            writer.setDaemon(true);
+            writer.start();
+
+            writers.add(writer);
+        }
+    }
+
+    /**
+     * Queues a message record for writing, blocking while the queue is full. The record is created by the writer
+     * thread, so that creating the records of concurrently logged messages is not serialized either.
+     * @param recordFactory creates the message record to write
+     * @return future that completes with the saved record when it has been committed
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    CompletableFuture<MessageRecord> write(Callable<MessageRecord> recordFactory) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("Message record writer has been stopped");
+        }
+
+        PendingRecord pending = new PendingRecord(recordFactory);
+        queue.put(pending);
+
+        return pending.written;
+    }
+
+    /**
+     * Stops the writer threads after the queued records have been written.
+     * @throws InterruptedException if interrupted while waiting for the writer threads
+     */
+    void stop() throws InterruptedException {
+        running = false;
+
+        for (Thread writer : writers) {
+            writer.join();
+        }
+    }
+
+    private void run() {
+        List<PendingRecord> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingRecord first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingRecord> batch) {
+        List<PendingRecord> created = new ArrayList<>(batch.size());
+
+        for (PendingRecord pending : batch) {
+            try {
+                pending.record = pending.recordFactory.call();
+                created.add(pending);
+            } catch (Exception e) {
+                pending.written.completeExceptionally(e);
+            }
+        }
+
+        if (created.isEmpty()) {
+            return;
+        }
+
+        try {
+            saver.save(getRecords(created));
+        } catch (Exception e) {
+            log.warn("Failed to save {} message records in one transaction, saving them separately",
+                    created.size(), e);
+
+            writeSeparately(created, e);
+
+            return;
+        }
+
+        created.forEach(pending -> pending.written.complete(pending.record));
+    }
+
+    private void writeSeparately(List<PendingRecord> batch, Exception batchFailure) {
+        for (PendingRecord pending : batch) {
+            // The body stream of a record has been consumed by the failed transaction and cannot be saved again
+            if (pending.record.getAttachmentStream() != null) {
+                pending.written.completeExceptionally(batchFailure);
+
+                continue;
+            }
+
+            try {
+                saver.save(Collections.singletonList(pending.record));
+                pending.written.complete(pending.record);
+            } catch (Exception e) {
+                pending.written.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static List<MessageRecord> getRecords(List<PendingRecord> batch) {
+        List<MessageRecord> records = new ArrayList<>(batch.size());
+        batch.forEach(pending -> records.add(pending.record));
+
+        return records;
+    }
+
+    @RequiredArgsConstructor
+    private static final class PendingRecord {
+        private final Callable<MessageRecord> recordFactory;
+        private final CompletableFuture<MessageRecord> written = new CompletableFuture<>();
+
+        private MessageRecord record;
+    }
+}
@@ -24,6 +24,7 @@
  */
 package ee.ria.xroad.proxy.messagelog;
 
+import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampFailed;
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampSucceeded;
@@ -34,17 +35,32 @@ import akka.actor.ActorSelection;
 import akka.actor.UntypedAbstractActor;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.proxy.messagelog.LogManager.TIMESTAMPER_NAME;
 import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
 
 /**
  * Handles the TaskQueues -- adds tasks to the queue and sends the active queue for time-stamping.
+ *
+ * Up to 'timestamp-max-inflight-batches' batches are time-stamped at the same time. The records of the batches in
+ * progress are remembered so that they are not sent again before their result arrives. The batch size starts from
+ * 'timestamp-records-limit' and is adjusted according to how long the batches take compared to
+ * 'timestamp-target-latency'.
+ *
+ * A batch whose result has not arrived within the time the time-stamper client may spend on it (connect and read
+ * timeouts for every configured TSP) is considered failed, so that a lost reply does not hold its slot forever.
  */
 @Slf4j
 @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
@@ -55,6 +71,12 @@ public class TaskQueue extends UntypedAbstractActor {
     static final double TIMESTAMPED_RECORDS_RATIO_THRESHOLD = 0.7;
     static final int TIMESTAMP_RECORDS_LIMIT_RETRY_MODE = 1;
 
+    private final Set<Long> inFlightRecords = new HashSet<>();
+    private final Map<Long, InFlightBatch> inFlightBatches = new HashMap<>();
+
+    private int batchSize = Integer.MAX_VALUE;
+    private boolean moreRecordsPending;
+
     @Override
     public void onReceive(Object message) throws Exception {
         log.trace("onReceive({})", message);
@@ -62,7 +84,7 @@ public class TaskQueue extends UntypedAbstractActor {
         if (message.equals(START_TIMESTAMPING)) {
             handleStartTimestamping();
         } else if (message.equals(START_TIMESTAMPING_RETRY_MODE)) {
-            handleStartTimestamping(TIMESTAMP_RECORDS_LIMIT_RETRY_MODE);
+            handleStartTimestamping(1, TIMESTAMP_RECORDS_LIMIT_RETRY_MODE);
         } else if (message instanceof Timestamper.TimestampSucceeded) {
             handleTimestampSucceeded((Timestamper.TimestampSucceeded) message);
         } else if (message instanceof Timestamper.TimestampFailed) {
@@ -79,6 +101,8 @@ public class TaskQueue extends UntypedAbstractActor {
             log.trace("Time-stamped message records {}", Arrays.toString(message.getMessageRecords()));
         }
 
+        batchCompleted(message.getMessageRecords(), true);
+
         boolean succeeded = true;
 
         try {
@@ -90,11 +114,10 @@ public class TaskQueue extends UntypedAbstractActor {
         } finally {
             if (succeeded) {
                 indicateSuccess();
-                // If time-stamped records count equals to time-stamp records limit, there are probably
-                // still records to be time-stamped. Init another another time-stamping round to prevent
-                // messagelog records to begin to bloat.
-                if (message.getMessageRecords().length == MessageLogProperties.getTimestampRecordsLimit()) {
-                    log.info("Time-stamped records count equaled to time-stamp records limit");
+                // If the previous round did not fetch all the records to be time-stamped, use the freed slot for
+                // another batch right away to prevent messagelog records to begin to bloat.
+                if (moreRecordsPending) {
+                    log.info("More message records are waiting to be time-stamped");
                     handleStartTimestamping();
                 }
             } else {
@@ -103,6 +126,93 @@ public class TaskQueue extends UntypedAbstractActor {
         }
     }
 
+    /**
+     * Releases the records of a completed batch and adjusts the batch size according to the observed latency.
+     * @param messageRecords the records of the batch
+     * @param succeeded whether the batch was time-stamped
+     */
+    private void batchCompleted(Long[] messageRecords, boolean succeeded) {
+        if (messageRecords == null || messageRecords.length == 0) {
+            return;
+        }
+
+        InFlightBatch batch = inFlightBatches.remove(messageRecords[0]);
+
+        if (batch == null) {
+            // Not sent by this queue (e.g. time-stamped immediately) or already expired.
+            return;
+        }
+
+        inFlightRecords.removeAll(Arrays.asList(batch.getMessageRecords()));
+        adjustBatchSize(messageRecords.length, succeeded, batch.getLatency());
+    }
+
+    /**
+     * Fails the batches whose result has not arrived within {@link #getInFlightBatchTimeout()}, releasing their
+     * records for the next time-stamping round.
+     */
+    private void expireInFlightBatches() {
+        if (inFlightBatches.isEmpty()) {
+            return;
+        }
+
+        long timeout = getInFlightBatchTimeout();
+
+        if (timeout <= 0) {
+            return;
+        }
+
+        Iterator<InFlightBatch> it = inFlightBatches.values().iterator();
+
+        while (it.hasNext()) {
+            InFlightBatch batch = it.next();
+            long latency = batch.getLatency();
+
+            if (latency > timeout) {
+                log.warn("No time-stamping result for message records {} in {} ms, considering the batch failed",
+                        Arrays.toString(batch.getMessageRecords()), latency);
+
+                it.remove();
+                inFlightRecords.removeAll(Arrays.asList(batch.getMessageRecords()));
+                adjustBatchSize(batch.getMessageRecords().length, false, latency);
+            }
+        }
+    }
+
+    /**
+     * @return the time in milliseconds after which an in-flight batch is considered failed, or zero if the
+     * time-stamper client timeouts are infinite
+     */
+    private static long getInFlightBatchTimeout() {
+        int connectTimeout = MessageLogProperties.getTimestamperClientConnectTimeout();
+        int readTimeout = MessageLogProperties.getTimestamperClientReadTimeout();
+
+        if (connectTimeout <= 0 || readTimeout <= 0) {
+            return 0;
+        }
+
+        return (long) (connectTimeout + readTimeout) * Math.max(1, ServerConf.getTspUrl().size());
+    }
+
+    private void adjustBatchSize(int batchRecords, boolean succeeded, long latency) {
+        int current = getBatchSize();
+
+        if (!succeeded || latency > MessageLogProperties.getTimestampTargetLatency()) {
+            batchSize = Math.max(1, current / 2);
+        } else if (latency < MessageLogProperties.getTimestampTargetLatency() / 2) {
+            batchSize = (int) Math.min((long) current * 2, MessageLogProperties.getTimestampRecordsLimit());
+        }
+
+        if (batchSize != current) {
+            log.info("Time-stamping {} records {} in {} ms, batch size changed to {}", batchRecords,
+                    succeeded ? "succeeded" : "failed", latency, batchSize);
+        }
+    }
+
+    private int getBatchSize() {
+        return Math.min(batchSize, MessageLogProperties.getTimestampRecordsLimit());
+    }
+
     protected void saveTimestampRecord(TimestampSucceeded message) throws Exception {
         LogManager.saveTimestampRecord(message);
     }
@@ -134,24 +244,43 @@ public class TaskQueue extends UntypedAbstractActor {
     protected void handleTimestampFailed(TimestampFailed message) {
         log.trace("handleTimestampFailed");
 
+        batchCompleted(message.getMessageRecords(), false);
         indicateFailure();
     }
 
     protected void handleStartTimestamping() {
-        handleStartTimestamping(MessageLogProperties.getTimestampRecordsLimit());
+        handleStartTimestamping(MessageLogProperties.getTimestampMaxInflightBatches(), getBatchSize());
     }
 
-    protected void handleStartTimestamping(int timestampRecordsLimit) {
+    protected void handleStartTimestamping(int maxInflightBatches, int timestampRecordsLimit) {
+        expireInFlightBatches();
+
+        int freeSlots = maxInflightBatches - inFlightBatches.size();
+
+        if (freeSlots <= 0) {
+            log.trace("Maximum number of time-stamping batches already in progress");
+
+            return;
+        }
+
+        int queryLimit = freeSlots * timestampRecordsLimit + inFlightRecords.size();
         List<Task> timestampTasks;
 
         try {
-            timestampTasks = doInTransaction(session -> getTimestampTasks(session, timestampRecordsLimit));
+            timestampTasks = doInTransaction(session -> getTimestampTasks(session, queryLimit));
         } catch (Exception e) {
             log.error("Error getting time-stamp tasks", e);
 
             return;
         }
 
+        moreRecordsPending = timestampTasks.size() == queryLimit;
+        timestampTasks.removeIf(task -> inFlightRecords.contains(task.getMessageRecordNo()));
+
+        if (timestampTasks.size() > freeSlots * timestampRecordsLimit) {
+            timestampTasks = timestampTasks.subList(0, freeSlots * timestampRecordsLimit);
+        }
+
         if (timestampTasks.isEmpty()) {
             log.trace("Nothing to time-stamp, task queue is empty");
 
@@ -160,15 +289,27 @@ public class TaskQueue extends UntypedAbstractActor {
 
         int timestampTasksSize = timestampTasks.size();
 
-        log.info("Start time-stamping {} message records", timestampTasksSize);
+        log.info("Start time-stamping {} message records in batches of {}", timestampTasksSize,
+                timestampRecordsLimit);
 
-        if (timestampTasksSize / (double) MessageLogProperties.getTimestampRecordsLimit()
+        int largestBatchSize = Math.min(timestampTasksSize, timestampRecordsLimit);
+
+        if (largestBatchSize / (double) MessageLogProperties.getTimestampRecordsLimit()
                 >= TIMESTAMPED_RECORDS_RATIO_THRESHOLD) {
             log.warn("Number of time-stamped records is over {} % of 'timestamp-records-limit' value",
                     TIMESTAMPED_RECORDS_RATIO_THRESHOLD * 100);
         }
 
-        sendToTimestamper(createTimestampTask(timestampTasks));
+        for (int from = 0; from < timestampTasksSize; from += timestampRecordsLimit) {
+            TimestampTask timestampTask = createTimestampTask(
+                    timestampTasks.subList(from, Math.min(from + timestampRecordsLimit, timestampTasksSize)));
+
+            inFlightRecords.addAll(Arrays.asList(timestampTask.getMessageRecords()));
+            inFlightBatches.put(timestampTask.getMessageRecords()[0],
+                    new InFlightBatch(timestampTask.getMessageRecords(), System.nanoTime()));
+
+            sendToTimestamper(timestampTask);
+        }
     }
 
     private void sendToTimestamper(TimestampTask timestampTask) {
@@ -210,10 +351,20 @@ public class TaskQueue extends UntypedAbstractActor {
 
     static String getTaskQueueQuery() {
         return "select new " + Task.class.getName() + "(m.id, m.signatureHash) "
-                + "from MessageRecord m where m.signatureHash is not null";
+                + "from MessageRecord m where m.signatureHash is not null order by m.id";
     }
 
     private static String getTaskQueueSizeQuery() {
         return "select COUNT(*) from MessageRecord m where m.signatureHash is not null";
     }
+
+    @Value
+    private static class InFlightBatch {
+        Long[] messageRecords;
+        long startTime;
+
+        long getLatency() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        }
+    }
 }
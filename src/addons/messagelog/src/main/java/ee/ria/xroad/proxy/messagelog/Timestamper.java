@@ -37,13 +37,20 @@ import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * Timestamper is responsible for routing timestamping tasks to the timestamp worker.
+ * Timestamper is responsible for routing timestamping tasks to the timestamp worker. Each task gets its own worker,
+ * so several batches can be time-stamped at the same time, and the tasks are spread across the configured
+ * time-stamping providers.
  */
 @Slf4j
 public class Timestamper extends UntypedAbstractActor {
 
+    private int nextTspIndex;
+
     @Data
     @RequiredArgsConstructor
     @ToString(exclude = "signatureHashes")
@@ -92,11 +99,29 @@ public class Timestamper extends UntypedAbstractActor {
 
     private void handleTimestampTask(TimestampTask message) {
         if (!GlobalConf.isValid()) {
+            // Let the task queue know that the records are no longer in progress.
+            getSender().tell(new TimestampFailed(message.getMessageRecords(),
+                    new RuntimeException("Cannot time-stamp, global configuration is not valid")), getSelf());
+
             return;
         }
 
         // Spawn a new temporary child actor that will do the actual time stamping, which is probably lengthy process.
-        ActorRef worker = getContext().actorOf(Props.create(getWorkerImpl(), ServerConf.getTspUrl()));
+        ActorRef worker = getContext().actorOf(Props.create(getWorkerImpl(), getTspUrls()));
         worker.tell(message, getSender());
     }
+
+    /**
+     * Rotates the configured TSP URLs so that consecutive tasks start from a different provider. The remaining
+     * providers are still tried in order if the first one fails.
+     */
+    private List<String> getTspUrls() {
+        List<String> tspUrls = new ArrayList<>(ServerConf.getTspUrl());
+
+        if (tspUrls.size() > 1) {
+            Collections.rotate(tspUrls, -(nextTspIndex++ % tspUrls.size()));
+        }
+
+        return tspUrls;
+    }
 }
@@ -27,15 +27,80 @@ package ee.ria.xroad.proxy.messagelog;
 import org.bouncycastle.tsp.TimeStampRequest;
 
 import java.io.FileInputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Local stub time-stamping provider. Answers every request with a prepared time-stamp response after a configurable
+ * delay and keeps count of the requests per TSP URL and of the records time-stamped.
+ */
 final class DummyTSP {
 
+    private static final String RESPONSE_FILE = "src/test/resources/tsp.response";
+
+    private static final Map<String, AtomicInteger> REQUESTS = new ConcurrentHashMap<>();
+    private static final AtomicInteger TIMESTAMPED_RECORDS = new AtomicInteger();
+    private static final AtomicInteger CONCURRENT_REQUESTS = new AtomicInteger();
+    private static final AtomicInteger MAX_CONCURRENT_REQUESTS = new AtomicInteger();
+
+    private static volatile long latencyMillis;
+    private static volatile long startTime = System.nanoTime();
+
     private DummyTSP() {
     }
 
-    static AbstractTimestampRequest.TsRequest makeRequest(TimeStampRequest req) throws Exception {
-        return new AbstractTimestampRequest.TsRequest(new FileInputStream("src/test/resources/tsp.response"),
-                "src/test/resources/tsp.response");
+    /**
+     * Clears the statistics and sets the delay of the following responses.
+     * @param latency response delay in milliseconds
+     */
+    static void reset(long latency) {
+        latencyMillis = latency;
+        REQUESTS.clear();
+        TIMESTAMPED_RECORDS.set(0);
+        MAX_CONCURRENT_REQUESTS.set(0);
+        startTime = System.nanoTime();
+    }
+
+    static AbstractTimestampRequest.TsRequest makeRequest(TimeStampRequest req, String url, int records)
+            throws Exception {
+        MAX_CONCURRENT_REQUESTS.accumulateAndGet(CONCURRENT_REQUESTS.incrementAndGet(), Math::max);
+
+        try {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+
+            REQUESTS.computeIfAbsent(url, u -> new AtomicInteger()).incrementAndGet();
+            TIMESTAMPED_RECORDS.addAndGet(records);
+
+            return new AbstractTimestampRequest.TsRequest(new FileInputStream(RESPONSE_FILE), url);
+        } finally {
+            CONCURRENT_REQUESTS.decrementAndGet();
+        }
     }
 
+    static int getRequests(String url) {
+        AtomicInteger requests = REQUESTS.get(url);
+
+        return requests != null ? requests.get() : 0;
+    }
+
+    static int getTimestampedRecords() {
+        return TIMESTAMPED_RECORDS.get();
+    }
+
+    static int getMaxConcurrentRequests() {
+        return MAX_CONCURRENT_REQUESTS.get();
+    }
+
+    /**
+     * @return the number of records time-stamped per second since the last reset
+     */
+    static double getRecordsPerSecond() {
+        long elapsed = Math.max(1, System.nanoTime() - startTime);
+
+        return TIMESTAMPED_RECORDS.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
 }
@@ -0,0 +1,61 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the naming of the daily partitions of the log record table.
+ */
+public class LogRecordPartitionsTest {
+
+    // 2019-10-18T00:00:00Z and 2019-10-19T00:00:00Z
+    private static final long DAY_START = 1571356800000L;
+    private static final long NEXT_DAY_START = 1571443200000L;
+
+    /**
+     * Test to ensure the records of a day are stored in the same partition.
+     */
+    @Test
+    public void partitionByDay() {
+        assertEquals("logrecord_20191018", LogRecordPartitions.getPartitionName(DAY_START));
+        assertEquals("logrecord_20191018", LogRecordPartitions.getPartitionName(NEXT_DAY_START - 1));
+        assertEquals("logrecord_20191019", LogRecordPartitions.getPartitionName(NEXT_DAY_START));
+    }
+
+    /**
+     * Test to ensure the end of the partition is parsed from the partition name.
+     */
+    @Test
+    public void partitionEnd() {
+        assertEquals(Long.valueOf(NEXT_DAY_START), LogRecordPartitions.getPartitionEnd("logrecord_20191018"));
+
+        assertNull(LogRecordPartitions.getPartitionEnd("logrecord_archive"));
+        assertNull(LogRecordPartitions.getPartitionEnd("other_table_20191018"));
+    }
+}
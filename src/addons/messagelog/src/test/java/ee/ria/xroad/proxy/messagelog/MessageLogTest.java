@@ -33,6 +33,7 @@ import ee.ria.xroad.common.messagelog.AbstractLogRecord;
 import ee.ria.xroad.common.messagelog.LogRecord;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.messagelog.MessageRecord;
+import ee.ria.xroad.common.messagelog.SoapLogMessage;
 import ee.ria.xroad.common.messagelog.TimestampRecord;
 import ee.ria.xroad.common.messagelog.archive.DigestEntry;
 import ee.ria.xroad.common.signature.SignatureData;
@@ -41,6 +42,8 @@ import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampFailed;
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampSucceeded;
 
 import akka.actor.Props;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.filefilter.RegexFileFilter;
@@ -50,6 +53,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.Future;
 import scala.concurrent.duration.Duration;
 import scala.concurrent.duration.FiniteDuration;
 
@@ -61,7 +66,10 @@ import java.io.File;
 import java.io.FileFilter;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -74,6 +82,7 @@ import static ee.ria.xroad.proxy.messagelog.TestUtil.createMessage;
 import static ee.ria.xroad.proxy.messagelog.TestUtil.createSignature;
 import static ee.ria.xroad.proxy.messagelog.TestUtil.initForTest;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -87,6 +96,13 @@ public class MessageLogTest extends AbstractMessageLogTest {
     private static final String LAST_LOG_ARCHIVE_FILE = "mlog-20150520112233-20150520123344-asdlfjlasa.zip";
     private static final String LAST_DIGEST = "123567890abcdef";
 
+    private static final Timeout ASK_TIMEOUT = new Timeout(10, TimeUnit.SECONDS);
+
+    private static final String TSP_URL_1 = "http://tsp1.example.org/";
+    private static final String TSP_URL_2 = "http://tsp2.example.org/";
+    private static final long TSP_LATENCY = 200;
+    private static final long TIMESTAMPING_TIMEOUT = 10000;
+
     static Date logRecordTime;
 
     @Rule
@@ -172,6 +188,91 @@ public class MessageLogTest extends AbstractMessageLogTest {
         log.info("dead letters: " + getDeadLetters());
     }
 
+    /**
+     * Logs messages with different query IDs and reads the records of one query ID one at a time.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void readRecordsByQueryId() throws Exception {
+        log.trace("readRecordsByQueryId()");
+
+        SoapMessageImpl message = createMessage("scrolled");
+
+        log(message, createSignature());
+        log(createMessage("other"), createSignature());
+        log(message, createSignature());
+
+        List<MessageRecord> records = new ArrayList<>();
+
+        assertEquals(2, LogRecordManager.forEachByQueryId("scrolled", message.getClient(), null, records::add));
+        assertEquals(2, records.size());
+
+        for (MessageRecord record : records) {
+            assertEquals("scrolled", record.getQueryId());
+            assertNotNull(record.getMessage());
+        }
+
+        assertEquals(0, LogRecordManager.forEachByQueryId("scrolled", message.getClient(), Boolean.TRUE,
+                records::add));
+    }
+
+    /**
+     * Logs messages concurrently through the log manager actor. The message records are written by the message
+     * record writer and each message is acknowledged after its record has been saved.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void logMessagesWithWriter() throws Exception {
+        log.trace("logMessagesWithWriter()");
+
+        List<Future<Object>> replies = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            replies.add(Patterns.ask(getLogManagerRef(),
+                    new SoapLogMessage(createMessage("writer" + i), createSignature(), true), ASK_TIMEOUT));
+        }
+
+        for (Future<Object> reply : replies) {
+            Object result = Await.result(reply, ASK_TIMEOUT.duration());
+            assertFalse("Got " + result, result instanceof Exception);
+        }
+
+        assertTaskQueueSize(10);
+
+        MessageRecord record = (MessageRecord) logManager.findByQueryId("writer5", new Date(0), new Date());
+        assertMessageRecord(record, "writer5");
+    }
+
+    /**
+     * Logs a message through the log manager actor in relaxed durability mode. The message is acknowledged before
+     * the message record has been saved, but the record is saved eventually.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void logMessageWithRelaxedDurability() throws Exception {
+        log.trace("logMessageWithRelaxedDurability()");
+
+        System.setProperty(MessageLogProperties.RELAXED_DURABILITY, "true");
+
+        try {
+            Object result = Await.result(Patterns.ask(getLogManagerRef(),
+                    new SoapLogMessage(createMessage("relaxed"), createSignature(), true), ASK_TIMEOUT),
+                    ASK_TIMEOUT.duration());
+            assertFalse("Got " + result, result instanceof Exception);
+        } finally {
+            System.clearProperty(MessageLogProperties.RELAXED_DURABILITY);
+        }
+
+        long deadline = System.currentTimeMillis() + ASK_TIMEOUT.duration().toMillis();
+
+        while (logManager.findByQueryId("relaxed", new Date(0), new Date()) == null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertMessageRecord(logManager.findByQueryId("relaxed", new Date(0), new Date()), "relaxed");
+    }
+
     /**
      * Log message with xRequestId
      * @throws Exception in case of any unexpected errors
@@ -193,6 +294,8 @@ public class MessageLogTest extends AbstractMessageLogTest {
         int orig = MessageLogProperties.getTimestampRecordsLimit();
         try {
             System.setProperty(MessageLogProperties.TIMESTAMP_RECORDS_LIMIT, "2");
+            // one batch at a time, so that the first result is a full batch
+            System.setProperty(MessageLogProperties.TIMESTAMP_MAX_INFLIGHT_BATCHES, "1");
             log(createMessage(), createSignature());
             log(createMessage(), createSignature());
             log(createMessage(), createSignature());
@@ -206,6 +309,47 @@ public class MessageLogTest extends AbstractMessageLogTest {
             assertTrue(TestTaskQueue.waitForTimestampSaved());
 
             assertEquals(2, timestamp.getMessageRecords().length);
+        } finally {
+            System.setProperty(MessageLogProperties.TIMESTAMP_RECORDS_LIMIT, String.valueOf(orig));
+            System.clearProperty(MessageLogProperties.TIMESTAMP_MAX_INFLIGHT_BATCHES);
+        }
+    }
+
+    /**
+     * Time-stamps a backlog of records in several batches at the same time. The batches are spread across the
+     * configured time-stamping providers.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void timestampInParallelBatches() throws Exception {
+        log.trace("timestampInParallelBatches()");
+        int orig = MessageLogProperties.getTimestampRecordsLimit();
+        try {
+            System.setProperty(MessageLogProperties.TIMESTAMP_RECORDS_LIMIT, "2");
+            ServerConf.reload(new EmptyServerConf() {
+                @Override
+                public List<String> getTspUrl() {
+                    return Arrays.asList(TSP_URL_1, TSP_URL_2);
+                }
+            });
+
+            for (int i = 0; i < 8; i++) {
+                log(createMessage(), createSignature());
+            }
+
+            assertTaskQueueSize(8);
+
+            DummyTSP.reset(TSP_LATENCY);
+
+            startTimestamping();
+            waitForTaskQueueEmpty();
+
+            assertEquals(8, DummyTSP.getTimestampedRecords());
+            assertTrue(DummyTSP.getMaxConcurrentRequests() > 1);
+            assertTrue(DummyTSP.getRequests(TSP_URL_1) > 0);
+            assertTrue(DummyTSP.getRequests(TSP_URL_2) > 0);
+
+            log.info("Stub TSP time-stamped {} records per second", DummyTSP.getRecordsPerSecond());
         } finally {
             System.setProperty(MessageLogProperties.TIMESTAMP_RECORDS_LIMIT, String.valueOf(orig));
         }
@@ -284,6 +428,84 @@ public class MessageLogTest extends AbstractMessageLogTest {
         assertArchiveHashChain();
     }
 
+    /**
+     * Archives the records while a time-stamp record inside the id range of the archived ones is not committed yet.
+     * The records of that time-stamp must not be marked archived before they are actually archived.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void archiveTimestampCommittedOutOfOrder() throws Exception {
+        log.trace("archiveTimestampCommittedOutOfOrder()");
+
+        log("02-04-2014 12:34:56.100", createMessage("first"));
+        log("02-04-2014 12:34:56.200", createMessage("second"));
+        log("02-04-2014 12:34:56.300", createMessage("third"));
+
+        MessageRecord first = (MessageRecord) findByQueryId("first", "02-04-2014 12:34:50.100",
+                "02-04-2014 12:34:59.100");
+        MessageRecord second = (MessageRecord) findByQueryId("second", "02-04-2014 12:34:50.100",
+                "02-04-2014 12:34:59.100");
+        MessageRecord third = (MessageRecord) findByQueryId("third", "02-04-2014 12:34:50.100",
+                "02-04-2014 12:34:59.100");
+
+        timestamp(first);
+        TimestampRecord uncommitted = timestamp(second);
+        timestamp(third);
+
+        try {
+            TestLogArchiver.setUncommittedTimestampRecord(uncommitted.getId());
+
+            startArchiving();
+            TestLogArchiver.waitForArchiveSuccessful();
+
+            assertTrue(isArchived(first.getId()));
+            assertFalse(isArchived(second.getId()));
+            assertFalse(isArchived(uncommitted.getId()));
+            assertTrue(isArchived(third.getId()));
+        } finally {
+            TestLogArchiver.setUncommittedTimestampRecord(null);
+        }
+
+        startArchiving();
+        TestLogArchiver.waitForArchiveSuccessful();
+
+        assertTrue(isArchived(second.getId()));
+        assertTrue(isArchived(uncommitted.getId()));
+    }
+
+    /**
+     * Logs messages that are time-stamped in several batches and archives them with several threads building the
+     * ASiC containers. All the records must be archived and the archive hash chain must be intact.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void logTimestampAndArchiveInParallel() throws Exception {
+        log.trace("logTimestampAndArchiveInParallel()");
+        int orig = MessageLogProperties.getTimestampRecordsLimit();
+        try {
+            System.setProperty(MessageLogProperties.TIMESTAMP_RECORDS_LIMIT, "5");
+            System.setProperty(MessageLogProperties.ARCHIVE_THREADS, "4");
+
+            for (int i = 0; i < 20; i++) {
+                log(createMessage(), createSignature());
+            }
+
+            startTimestamping();
+            waitForTaskQueueEmpty();
+
+            startArchiving();
+            TestLogArchiver.waitForArchiveSuccessful();
+
+            assertEquals(24, getNumberOfRecords(true));
+            assertEquals(0, getNumberOfRecords(false));
+
+            assertArchiveHashChain();
+        } finally {
+            System.setProperty(MessageLogProperties.TIMESTAMP_RECORDS_LIMIT, String.valueOf(orig));
+            System.clearProperty(MessageLogProperties.ARCHIVE_THREADS);
+        }
+    }
+
     /**
      * Logs 3 messages, time-stamping fails. Task queue must have 3 tasks. Logs 1 more message, task queue must
      * have 4 tasks.
@@ -309,6 +531,38 @@ public class MessageLogTest extends AbstractMessageLogTest {
         assertTaskQueueSize(4);
     }
 
+    /**
+     * Time-stamping result never arrives. After the time-stamper client timeouts have passed, the batch is
+     * considered failed and its record is time-stamped again.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void timestampingReplyLost() throws Exception {
+        log.trace("timestampingReplyLost()");
+
+        try {
+            System.setProperty(MessageLogProperties.TIMESTAMP_MAX_INFLIGHT_BATCHES, "1");
+            System.setProperty(MessageLogProperties.TIMESTAMPER_CLIENT_CONNECT_TIMEOUT, "100");
+            System.setProperty(MessageLogProperties.TIMESTAMPER_CLIENT_READ_TIMEOUT, "100");
+
+            TestTimestamperWorker.loseNextReply(true);
+
+            log(createMessage(), createSignature());
+            assertTaskQueueSize(1);
+
+            startTimestamping();
+            assertFalse(TestTaskQueue.waitForTimestampSaved());
+
+            startTimestamping();
+            assertTrue(TestTaskQueue.waitForTimestampSaved());
+            assertTaskQueueSize(0);
+        } finally {
+            System.clearProperty(MessageLogProperties.TIMESTAMP_MAX_INFLIGHT_BATCHES);
+            System.clearProperty(MessageLogProperties.TIMESTAMPER_CLIENT_CONNECT_TIMEOUT);
+            System.clearProperty(MessageLogProperties.TIMESTAMPER_CLIENT_READ_TIMEOUT);
+        }
+    }
+
     /**
      * Logs messages, time-stamping failed. After acceptable period no more messages are accepted.
      * @throws Exception in case of any unexpected errors
@@ -444,6 +698,8 @@ public class MessageLogTest extends AbstractMessageLogTest {
         TestTaskQueue.throwWhenSavingTimestamp = null;
 
         TestTimestamperWorker.failNextTimestamping(false);
+        TestTimestamperWorker.loseNextReply(false);
+        DummyTSP.reset(0);
     }
 
     @SneakyThrows
@@ -575,6 +831,16 @@ public class MessageLogTest extends AbstractMessageLogTest {
         return message;
     }
 
+    private static void waitForTaskQueueEmpty() throws Exception {
+        long deadline = System.currentTimeMillis() + TIMESTAMPING_TIMEOUT;
+
+        while (!TestUtil.getTaskQueue().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+
+        assertTaskQueueSize(0);
+    }
+
     private static TimestampSucceeded waitForTimestampSuccessful() throws Exception {
         Object result = waitForMessageInTaskQueue();
         assertTrue("Got " + result, result instanceof TimestampSucceeded);
@@ -596,6 +862,10 @@ public class MessageLogTest extends AbstractMessageLogTest {
         });
     }
 
+    private static boolean isArchived(Long logRecordId) throws Exception {
+        return doInTransaction(session -> session.get(AbstractLogRecord.class, logRecordId).isArchived());
+    }
+
     private static class TestLogManager extends LogManager {
         // Countdownlatch for waiting for next timestamp record save.
         private static CountDownLatch setTimestampingStatusLatch = new CountDownLatch(1);
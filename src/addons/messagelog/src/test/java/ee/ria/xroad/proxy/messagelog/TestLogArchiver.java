@@ -24,17 +24,21 @@
  */
 package ee.ria.xroad.proxy.messagelog;
 
+import ee.ria.xroad.common.messagelog.TimestampRecord;
 import ee.ria.xroad.common.messagelog.archive.DigestEntry;
 
 import org.hibernate.Session;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 class TestLogArchiver extends LogArchiver {
 
     private static CountDownLatch gate = new CountDownLatch(1);
+    private static volatile Long uncommittedTimestampRecord;
 
     TestLogArchiver(Path arhivePath, Path workingPath) {
         super(arhivePath, workingPath);
@@ -48,6 +52,27 @@ class TestLogArchiver extends LogArchiver {
         }
     }
 
+    /**
+     * Leaves the given time-stamp record out of the records read for archiving, as if it had been committed only
+     * after they were read.
+     */
+    static void setUncommittedTimestampRecord(Long timestampRecordId) {
+        uncommittedTimestampRecord = timestampRecordId;
+    }
+
+    @Override
+    protected List<TimestampRecord> getNonArchivedTimestampRecords(Session session, int maxRecordsToGet,
+            long maxTimestampId) {
+        List<TimestampRecord> records =
+                new ArrayList<>(super.getNonArchivedTimestampRecords(session, maxRecordsToGet, maxTimestampId));
+
+        if (uncommittedTimestampRecord != null) {
+            records.removeIf(record -> uncommittedTimestampRecord.equals(record.getId()));
+        }
+
+        return records;
+    }
+
     @Override
     protected void markArchiveCreated(final DigestEntry lastArchive,
             final Session session) throws Exception {
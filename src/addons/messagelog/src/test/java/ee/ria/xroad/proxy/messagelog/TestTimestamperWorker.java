@@ -38,6 +38,7 @@ import static ee.ria.xroad.proxy.messagelog.TimestamperUtil.getTimestampResponse
 class TestTimestamperWorker extends TimestamperWorker {
 
     private static volatile Boolean shouldFail;
+    private static volatile boolean shouldLoseReply;
 
     TestTimestamperWorker(List<String> tspUrls) {
         super(tspUrls);
@@ -47,6 +48,24 @@ class TestTimestamperWorker extends TimestamperWorker {
         TestTimestamperWorker.shouldFail = failureExpected;
     }
 
+    /**
+     * Makes the next worker stop without sending any result back.
+     */
+    public static void loseNextReply(boolean replyLost) {
+        TestTimestamperWorker.shouldLoseReply = replyLost;
+    }
+
+    @Override
+    public void onReceive(Object message) throws Exception {
+        if (shouldLoseReply) {
+            shouldLoseReply = false;
+
+            getContext().stop(getSelf());
+        } else {
+            super.onReceive(message);
+        }
+    }
+
     @Override
     protected AbstractTimestampRequest createSingleTimestampRequest(Long logRecord) {
         return new SingleTimestampRequest(logRecord) {
@@ -60,7 +79,7 @@ class TestTimestamperWorker extends TimestamperWorker {
                         throw new RuntimeException("time-stamping failed");
                     }
                 }
-                TsRequest req = DummyTSP.makeRequest(tsRequest);
+                TsRequest req = DummyTSP.makeRequest(tsRequest, tspUrls.get(0), logRecords.length);
 
                 TimeStampResponse tsResponse = getTimestampResponse(req.getInputStream());
                 verify(tsRequest, tsResponse);
@@ -91,7 +110,7 @@ class TestTimestamperWorker extends TimestamperWorker {
                         throw new RuntimeException("time-stamping failed");
                     }
                 }
-                TsRequest req = DummyTSP.makeRequest(tsRequest);
+                TsRequest req = DummyTSP.makeRequest(tsRequest, tspUrls.get(0), logRecords.length);
 
                 TimeStampResponse tsResponse = getTimestampResponse(req.getInputStream());
                 verify(tsRequest, tsResponse);
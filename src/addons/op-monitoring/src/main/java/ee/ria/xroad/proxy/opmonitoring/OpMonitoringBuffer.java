@@ -30,13 +30,12 @@ import ee.ria.xroad.common.opmonitoring.OpMonitoringDaemonHttpClient;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 import ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataRequest;
-import ee.ria.xroad.common.util.JsonUtils;
 import ee.ria.xroad.common.util.TimeUtils;
 
 import akka.actor.ActorRef;
 import akka.actor.Cancellable;
 import akka.actor.Props;
-import com.google.gson.Gson;
+import akka.routing.BalancingPool;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
@@ -44,10 +43,13 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import scala.concurrent.duration.FiniteDuration;
 
 import java.net.NetworkInterface;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static java.net.NetworkInterface.getNetworkInterfaces;
@@ -56,7 +58,10 @@ import static java.util.Collections.list;
 /**
  * Operational monitoring buffer. This buffer is used for gathering
  * operational data and for periodically sending the data to the operational
- * monitoring daemon (using OpMonitoringDaemonSender).
+ * monitoring daemon (using OpMonitoringDaemonSender). The records are kept in a bounded ring buffer from which
+ * up to max-concurrent-messages messages are sent to the daemon at the same time. When records accumulate faster
+ * than they can be sent, the messages grow up to max-records-in-message-under-load records, so that a slow
+ * daemon receives more records per round trip instead of the buffer overflowing.
  */
 @Slf4j
 public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
@@ -69,6 +74,10 @@ public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
 
     private static final int MAX_RECORDS_IN_MESSAGE =
             OpMonitoringSystemProperties.getOpMonitorBufferMaxRecordsInMessage();
+    private static final int MAX_RECORDS_IN_MESSAGE_UNDER_LOAD = Math.max(MAX_RECORDS_IN_MESSAGE,
+            OpMonitoringSystemProperties.getOpMonitorBufferMaxRecordsInMessageUnderLoad());
+    private static final int MAX_CONCURRENT_MESSAGES =
+            Math.max(1, OpMonitoringSystemProperties.getOpMonitorBufferMaxConcurrentMessages());
     private static final long SENDING_INTERVAL_SECONDS =
             OpMonitoringSystemProperties.getOpMonitorBufferSendingIntervalSeconds();
 
@@ -78,27 +87,17 @@ public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
     private static final int CLIENT_SOCKET_TIMEOUT_MILLISECONDS = TimeUtils.secondsToMillis(
             OpMonitoringSystemProperties.getOpMonitorBufferSocketTimeoutSeconds());
 
-    private static final Gson GSON = JsonUtils.getSerializer();
-
     private Cancellable tick;
 
-    final Map<Long, OpMonitoringData> buffer =
-            new LinkedHashMap<Long, OpMonitoringData>() {
-                @Override
-                protected boolean removeEldestEntry(Map.Entry eldest) {
-                    boolean overflow = size() > MAX_BUFFER_SIZE;
-
-                    if (overflow) {
-                        log.warn("Operational monitoring buffer overflow, removing eldest record: {}", eldest.getKey());
-                    }
+    /** Records waiting to be sent, eldest first. */
+    final Deque<OpMonitoringData> buffer = new ArrayDeque<>();
 
-                    return overflow;
-                }
-            };
+    /** Records of the messages being sent, by message id. */
+    final Map<Long, List<OpMonitoringData>> inFlight = new HashMap<>();
 
-    private long bufferIndex = 0;
+    private int inFlightRecordCount = 0;
 
-    private final Set<Long> processedBufferIndices = new HashSet<>();
+    private long messageId = 0;
 
     private final CloseableHttpClient httpClient;
 
@@ -123,12 +122,14 @@ public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
     }
 
     CloseableHttpClient createHttpClient() throws Exception {
-        return OpMonitoringDaemonHttpClient.createHttpClient(ServerConf.getSSLKey(), 1, 1,
+        return OpMonitoringDaemonHttpClient.createHttpClient(ServerConf.getSSLKey(),
+                MAX_CONCURRENT_MESSAGES, MAX_CONCURRENT_MESSAGES,
                 CLIENT_CONNECTION_TIMEOUT_MILLISECONDS, CLIENT_SOCKET_TIMEOUT_MILLISECONDS);
     }
 
     ActorRef createSender() {
-        return getContext().system().actorOf(Props.create(OpMonitoringDaemonSender.class, httpClient),
+        return getContext().system().actorOf(new BalancingPool(MAX_CONCURRENT_MESSAGES)
+                        .props(Props.create(OpMonitoringDaemonSender.class, httpClient)),
                 OP_MONITORING_DAEMON_SENDER);
     }
 
@@ -140,64 +141,116 @@ public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
 
         data.setSecurityServerInternalIp(getIpAddress());
 
-        buffer.put(getNextBufferIndex(), data);
+        add(data);
 
         send();
     }
 
-    @Override
-    protected void send() throws Exception {
-        if (!canSend()) {
-            return;
+    void add(OpMonitoringData data) {
+        if (buffer.size() + inFlightRecordCount >= MAX_BUFFER_SIZE) {
+            if (buffer.isEmpty()) {
+                log.warn("Operational monitoring buffer overflow, all buffered records are being sent, "
+                        + "discarding new record");
+
+                return;
+            }
+
+            log.warn("Operational monitoring buffer overflow, removing eldest record");
+
+            buffer.removeFirst();
         }
 
-        String json = prepareMonitoringMessage();
+        buffer.addLast(data);
+    }
 
-        sender.tell(json, getSelf());
+    @Override
+    protected void send() throws Exception {
+        while (canSend()) {
+            sender.tell(prepareMonitoringMessage(), getSelf());
+        }
     }
 
     private boolean canSend() {
-        return !buffer.isEmpty() && processedBufferIndices.isEmpty();
+        return !buffer.isEmpty() && inFlight.size() < MAX_CONCURRENT_MESSAGES;
     }
 
-    private String prepareMonitoringMessage() {
+    private OpMonitoringDaemonSender.Message prepareMonitoringMessage() {
         StoreOpMonitoringDataRequest request = new StoreOpMonitoringDataRequest();
+        int maxRecords = getMaxRecordsInMessage(buffer.size(), MAX_RECORDS_IN_MESSAGE,
+                MAX_RECORDS_IN_MESSAGE_UNDER_LOAD, MAX_CONCURRENT_MESSAGES);
+        List<OpMonitoringData> records = new ArrayList<>(Math.min(buffer.size(), maxRecords));
 
-        for (Map.Entry<Long, OpMonitoringData> entry : buffer.entrySet()) {
-            processedBufferIndices.add(entry.getKey());
-            request.addRecord(entry.getValue().getData());
+        while (!buffer.isEmpty() && records.size() < maxRecords) {
+            OpMonitoringData data = buffer.removeFirst();
 
-            if (request.getRecords().size() == MAX_RECORDS_IN_MESSAGE) {
-                break;
-            }
+            records.add(data);
+            request.addRecord(data.getData());
         }
 
-        log.debug("Op monitoring buffer records count: {}", buffer.size());
+        long id = getNextMessageId();
+
+        inFlight.put(id, records);
+        inFlightRecordCount += records.size();
 
-        return GSON.toJson(request);
+        log.debug("Op monitoring buffer records count: {}, in flight: {}", buffer.size(), inFlightRecordCount);
+
+        return new OpMonitoringDaemonSender.Message(id, request);
     }
 
-    @Override
-    protected void sendingSuccess() throws Exception {
-        processedBufferIndices.forEach(buffer::remove);
-        processedBufferIndices.clear();
+    /**
+     * Returns the maximum number of records in the next message. The buffered records are spread over the
+     * concurrent messages, so that the messages grow with the backlog from the normal size up to the size
+     * allowed under load.
+     * @param bufferedRecords number of records waiting to be sent
+     * @param maxRecords maximum number of records in a message normally
+     * @param maxRecordsUnderLoad maximum number of records in a message under load
+     * @param concurrentMessages maximum number of messages sent concurrently
+     * @return the maximum number of records in the next message
+     */
+    static int getMaxRecordsInMessage(int bufferedRecords, int maxRecords, int maxRecordsUnderLoad,
+            int concurrentMessages) {
+        int recordsPerMessage = (bufferedRecords + concurrentMessages - 1) / concurrentMessages;
 
-        if (canSend()) {
+        return Math.max(maxRecords, Math.min(recordsPerMessage, maxRecordsUnderLoad));
+    }
+
+    @Override
+    protected void sendingSuccess(long id) throws Exception {
+        if (removeInFlight(id) != null) {
             send();
         }
     }
 
     @Override
-    protected void sendingFailure() throws Exception {
-        processedBufferIndices.clear();
+    protected void sendingFailure(long id) throws Exception {
+        List<OpMonitoringData> records = removeInFlight(id);
+
+        if (records != null) {
+            // Put the records back to the head of the buffer in the original order
+            ListIterator<OpMonitoringData> it = records.listIterator(records.size());
+
+            while (it.hasPrevious()) {
+                buffer.addFirst(it.previous());
+            }
+        }
 
         // Do not worry, scheduled sending retries..
     }
 
-    long getNextBufferIndex() {
-        bufferIndex = bufferIndex == Long.MAX_VALUE ? 0 : bufferIndex + 1;
+    private List<OpMonitoringData> removeInFlight(long id) {
+        List<OpMonitoringData> records = inFlight.remove(id);
+
+        if (records != null) {
+            inFlightRecordCount -= records.size();
+        }
+
+        return records;
+    }
+
+    private long getNextMessageId() {
+        messageId = messageId == Long.MAX_VALUE ? 0 : messageId + 1;
 
-        return bufferIndex;
+        return messageId;
     }
 
     private void scheduleSendMonitoringData() {
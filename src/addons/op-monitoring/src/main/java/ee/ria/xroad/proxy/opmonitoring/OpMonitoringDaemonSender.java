@@ -24,9 +24,12 @@
  */
 package ee.ria.xroad.proxy.opmonitoring;
 
-import ee.ria.xroad.common.opmonitoring.AbstractOpMonitoringBuffer;
+import ee.ria.xroad.common.opmonitoring.AbstractOpMonitoringBuffer.SendingFailure;
+import ee.ria.xroad.common.opmonitoring.AbstractOpMonitoringBuffer.SendingSuccess;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringDaemonEndpoints;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
+import ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataCodec;
+import ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataRequest;
 import ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataResponse;
 import ee.ria.xroad.common.util.HttpSender;
 import ee.ria.xroad.common.util.JsonUtils;
@@ -37,11 +40,14 @@ import ee.ria.xroad.common.util.TimeUtils;
 import akka.actor.ActorRef;
 import akka.actor.UntypedAbstractActor;
 import com.google.gson.Gson;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.impl.client.CloseableHttpClient;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 
@@ -50,7 +56,8 @@ import static ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataResponse.STA
 
 /**
  * Actor for sending operational data to the operational monitoring daemon. This actor is used by the
- * OpMonitoringBuffer class for periodically forwarding operational data gathered in the buffer.
+ * OpMonitoringBuffer class for periodically forwarding operational data gathered in the buffer. The buffer runs a
+ * pool of these actors for sending several messages concurrently.
  */
 @Slf4j
 public class OpMonitoringDaemonSender extends UntypedAbstractActor {
@@ -63,6 +70,8 @@ public class OpMonitoringDaemonSender extends UntypedAbstractActor {
     private static final int SOCKET_TIMEOUT_MILLISECONDS = TimeUtils.secondsToMillis(
             OpMonitoringSystemProperties.getOpMonitorBufferSocketTimeoutSeconds());
 
+    private static final boolean BINARY_ENCODING = OpMonitoringSystemProperties.isOpMonitorBufferBinaryEncoding();
+
     private CloseableHttpClient httpClient;
 
     OpMonitoringDaemonSender(CloseableHttpClient httpClient) {
@@ -71,38 +80,46 @@ public class OpMonitoringDaemonSender extends UntypedAbstractActor {
 
     @Override
     public void onReceive(Object message) throws Exception {
-        if (message instanceof String) {
-            String json = (String) message;
+        if (message instanceof Message) {
+            Message msg = (Message) message;
 
-            log.trace("onReceive: {}", json);
+            log.trace("onReceive: message {} with {} records", msg.getId(), msg.getRequest().getRecords().size());
 
             try {
-                send(json);
-                success();
+                send(msg.getRequest());
+                success(msg.getId());
             } catch (Exception e) {
                 log.error("Sending operational monitoring data failed", e);
 
-                failure();
+                failure(msg.getId());
             }
         } else {
             unhandled(message);
         }
     }
 
-    private void success() {
-        getSender().tell(AbstractOpMonitoringBuffer.SENDING_SUCCESS, ActorRef.noSender());
+    private void success(long messageId) {
+        getSender().tell(new SendingSuccess(messageId), ActorRef.noSender());
     }
 
-    private void failure() {
-        getSender().tell(AbstractOpMonitoringBuffer.SENDING_FAILURE, ActorRef.noSender());
+    private void failure(long messageId) {
+        getSender().tell(new SendingFailure(messageId), ActorRef.noSender());
     }
 
-    private void send(String json) throws Exception {
+    private void send(StoreOpMonitoringDataRequest request) throws Exception {
         try (HttpSender sender = new HttpSender(httpClient)) {
             sender.setConnectionTimeout(CONNECTION_TIMEOUT_MILLISECONDS);
             sender.setSocketTimeout(SOCKET_TIMEOUT_MILLISECONDS);
 
-            sender.doPost(getAddress(), json, MimeTypes.JSON);
+            if (BINARY_ENCODING) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                StoreOpMonitoringDataCodec.encode(request, out);
+
+                sender.doPost(getAddress(), new ByteArrayInputStream(out.toByteArray()), out.size(),
+                        MimeTypes.OP_MONITORING_DATA);
+            } else {
+                sender.doPost(getAddress(), GSON.toJson(request), MimeTypes.JSON);
+            }
 
             String responseJson = IOUtils.toString(sender.getResponseContent(), MimeUtils.UTF8);
             StoreOpMonitoringDataResponse response;
@@ -133,4 +150,13 @@ public class OpMonitoringDaemonSender extends UntypedAbstractActor {
                 OpMonitoringSystemProperties.getOpMonitorHost(), OpMonitoringSystemProperties.getOpMonitorPort(),
                 OpMonitoringDaemonEndpoints.STORE_DATA_PATH, null, null);
     }
+
+    /**
+     * Message of operational data to be sent to the operational monitoring daemon.
+     */
+    @Value
+    static class Message {
+        long id;
+        StoreOpMonitoringDataRequest request;
+    }
 }
@@ -30,9 +30,13 @@ import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
 import akka.testkit.TestActorRef;
+import akka.testkit.TestProbe;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -41,6 +45,15 @@ import static org.junit.Assert.assertEquals;
 public class OpMonitoringBufferTest {
     private static final ActorSystem ACTOR_SYSTEM = ActorSystem.create();
 
+    private static final TestProbe SENDER = new TestProbe(ACTOR_SYSTEM);
+
+    static {
+        System.setProperty("xroad.op-monitor-buffer.size", "5");
+        System.setProperty("xroad.op-monitor-buffer.max-records-in-message", "2");
+        System.setProperty("xroad.op-monitor-buffer.max-records-in-message-under-load", "2");
+        System.setProperty("xroad.op-monitor-buffer.max-concurrent-messages", "2");
+    }
+
     private static class TestOpMonitoringBuffer extends OpMonitoringBuffer {
         TestOpMonitoringBuffer() throws Exception {
             super();
@@ -53,35 +66,98 @@ public class OpMonitoringBufferTest {
 
         @Override
         ActorRef createSender() {
-            return null;
+            return SENDER.ref();
         }
 
         @Override
         protected void store(OpMonitoringData data) throws Exception {
-            buffer.put(getNextBufferIndex(), data);
+            add(data);
         }
     }
 
     @Test
     public void bufferOverflow() throws Exception {
-        System.setProperty("xroad.op-monitor-buffer.size", "2");
+        TestOpMonitoringBuffer opMonitoringBuffer = createBuffer("bufferOverflow");
+
+        OpMonitoringData[] data = createData(6);
+
+        for (OpMonitoringData d : data) {
+            opMonitoringBuffer.store(d);
+        }
+
+        assertEquals(Arrays.asList(data[1], data[2], data[3], data[4], data[5]),
+                new ArrayList<>(opMonitoringBuffer.buffer));
+    }
+
+    @Test
+    public void concurrentMessages() throws Exception {
+        TestOpMonitoringBuffer opMonitoringBuffer = createBuffer("concurrentMessages");
+
+        OpMonitoringData[] data = createData(5);
+
+        for (OpMonitoringData d : data) {
+            opMonitoringBuffer.store(d);
+        }
+
+        opMonitoringBuffer.send();
+
+        OpMonitoringDaemonSender.Message first = SENDER.expectMsgClass(OpMonitoringDaemonSender.Message.class);
+        OpMonitoringDaemonSender.Message second = SENDER.expectMsgClass(OpMonitoringDaemonSender.Message.class);
 
+        assertEquals(2, first.getRequest().getRecords().size());
+        assertEquals(2, second.getRequest().getRecords().size());
+        assertEquals(Arrays.asList(data[4]), new ArrayList<>(opMonitoringBuffer.buffer));
+
+        // In-flight records count towards the buffer size
+        OpMonitoringData overflow = createData(1)[0];
+        opMonitoringBuffer.store(overflow);
+
+        assertEquals(Arrays.asList(overflow), new ArrayList<>(opMonitoringBuffer.buffer));
+
+        // Records of a failed message are returned to the head of the buffer
+        opMonitoringBuffer.sendingFailure(first.getId());
+
+        assertEquals(Arrays.asList(data[0], data[1], overflow), new ArrayList<>(opMonitoringBuffer.buffer));
+
+        opMonitoringBuffer.sendingSuccess(second.getId());
+
+        OpMonitoringDaemonSender.Message third = SENDER.expectMsgClass(OpMonitoringDaemonSender.Message.class);
+
+        OpMonitoringDaemonSender.Message fourth = SENDER.expectMsgClass(OpMonitoringDaemonSender.Message.class);
+
+        assertEquals(Arrays.asList(data[0].getData(), data[1].getData()), third.getRequest().getRecords());
+        assertEquals(Arrays.asList(overflow.getData()), fourth.getRequest().getRecords());
+        assertEquals(0, opMonitoringBuffer.buffer.size());
+    }
+
+    @Test
+    public void growMessagesUnderLoad() {
+        // Few buffered records are sent in messages of normal size
+        assertEquals(100, OpMonitoringBuffer.getMaxRecordsInMessage(0, 100, 1000, 4));
+        assertEquals(100, OpMonitoringBuffer.getMaxRecordsInMessage(250, 100, 1000, 4));
+
+        // Accumulated records are spread over the concurrent messages
+        assertEquals(500, OpMonitoringBuffer.getMaxRecordsInMessage(2000, 100, 1000, 4));
+        assertEquals(251, OpMonitoringBuffer.getMaxRecordsInMessage(1001, 100, 1000, 4));
+
+        // Up to the limit under load
+        assertEquals(1000, OpMonitoringBuffer.getMaxRecordsInMessage(20000, 100, 1000, 4));
+    }
+
+    private static TestOpMonitoringBuffer createBuffer(String name) {
         final Props props = Props.create(TestOpMonitoringBuffer.class);
-        final TestActorRef<TestOpMonitoringBuffer> testActorRef =
-                TestActorRef.create(ACTOR_SYSTEM, props, "testActorRef");
+        final TestActorRef<TestOpMonitoringBuffer> testActorRef = TestActorRef.create(ACTOR_SYSTEM, props, name);
 
-        TestOpMonitoringBuffer opMonitoringBuffer =
-                testActorRef.underlyingActor();
+        return testActorRef.underlyingActor();
+    }
 
-        OpMonitoringData opMonitoringData = new OpMonitoringData(
-                OpMonitoringData.SecurityServerType.CLIENT, 100);
+    private static OpMonitoringData[] createData(int count) {
+        OpMonitoringData[] data = new OpMonitoringData[count];
 
-        opMonitoringBuffer.store(opMonitoringData);
-        opMonitoringBuffer.store(opMonitoringData);
-        opMonitoringBuffer.store(opMonitoringData);
+        for (int i = 0; i < count; i++) {
+            data[i] = new OpMonitoringData(OpMonitoringData.SecurityServerType.CLIENT, i);
+        }
 
-        assertEquals(2, opMonitoringBuffer.buffer.size());
-        assertEquals(true, opMonitoringBuffer.buffer.containsKey(2L));
-        assertEquals(true, opMonitoringBuffer.buffer.containsKey(3L));
+        return data;
     }
 }
@@ -33,6 +33,8 @@ import org.bouncycastle.operator.DigestCalculator;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
@@ -70,6 +72,8 @@ import static org.apache.commons.lang.StringUtils.isBlank;
  */
 final class AsicHelper {
 
+    private static final int ENTRY_BUFFER_SIZE = 8192;
+
     private AsicHelper() {
     }
 
@@ -120,17 +124,19 @@ final class AsicHelper {
                 continue;
             }
 
-            String data = asic.get(name);
+            if (ENTRY_TIMESTAMP.equalsIgnoreCase(name)) {
+                // If the timestamp is batch timestamp, add the timestamp.tst
+                // to the container, else the timestamp is in the signature.
+                // Checked first, so that the signature is not parsed for a timestamp that is not written.
+                TimestampData timestamp = asic.getTimestamp();
 
-            if (data != null) {
-                if (ENTRY_TIMESTAMP.equalsIgnoreCase(name)) {
-                    // If the timestamp is batch timestamp, add the timestamp.tst
-                    // to the container, else the timestamp is in the signature
-                    if (asic.getTimestamp() != null) {
-                        byte[] binary = decodeBase64(data);
-                        addEntry(zip, name, binary);
-                    }
-                } else {
+                if (timestamp != null && timestamp.getTimestampBase64() != null) {
+                    addEntry(zip, name, decodeBase64(timestamp.getTimestampBase64()));
+                }
+            } else {
+                String data = asic.get(name);
+
+                if (data != null) {
                     addEntry(zip, name, data);
                 }
             }
@@ -223,7 +229,21 @@ final class AsicHelper {
     }
 
     private static void addEntry(ZipOutputStream zip, String name, String data) throws IOException {
-        addEntry(zip, name, data.getBytes(StandardCharsets.UTF_8));
+        zip.putNextEntry(new ZipEntry(name));
+
+        // Encoded in chunks instead of copying the whole (possibly large) message to a byte array.
+        // The writer is not closed, since that would close the ZIP stream.
+        Writer writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+        char[] buffer = new char[Math.min(data.length(), ENTRY_BUFFER_SIZE)];
+
+        for (int offset = 0; offset < data.length(); offset += buffer.length) {
+            int length = Math.min(buffer.length, data.length() - offset);
+
+            data.getChars(offset, offset + length, buffer, 0);
+            writer.write(buffer, 0, length);
+        }
+
+        writer.flush();
     }
 
     private static void addEntry(ZipOutputStream zip, String name, byte[] data) throws IOException {
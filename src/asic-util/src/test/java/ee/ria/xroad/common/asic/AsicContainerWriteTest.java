@@ -0,0 +1,68 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.asic;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests to verify ASiC containers are written as expected.
+ */
+public class AsicContainerWriteTest {
+
+    /**
+     * Test to ensure a large message with multi-byte characters is written to the container intact.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void writeLargeMessage() throws Exception {
+        AsicContainer template;
+
+        try (FileInputStream in = new FileInputStream("src/test/resources/valid-signed-message.asice")) {
+            template = AsicContainer.read(in);
+        }
+
+        // Multi-byte characters cross the boundaries of the chunks the entries are written in
+        String message = "<message>" + StringUtils.repeat("\u00f5\u00e4\u20ac\ud83d\ude00x", 10000) + "</message>";
+
+        AsicContainer container = new AsicContainer(message, template.getSignature(), template.getTimestamp(),
+                null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        container.write(out);
+
+        AsicContainer written = AsicContainer.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(message, written.getMessage());
+        assertEquals(template.getSignature().getSignatureXml(), written.getSignature().getSignatureXml());
+        assertEquals(container.getManifest(), written.getManifest());
+    }
+}
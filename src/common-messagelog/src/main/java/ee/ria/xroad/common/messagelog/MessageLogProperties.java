@@ -53,7 +53,17 @@ public final class MessageLogProperties {
 
     private static final int DEFAULT_TIMESTAMP_RETRY_DELAY = 60;
 
+    private static final int DEFAULT_TIMESTAMP_MAX_INFLIGHT_BATCHES = 4;
+
+    private static final int DEFAULT_TIMESTAMP_TARGET_LATENCY = 5000;
+
     private static final int DEFAULT_ARCHIVE_TRANSACTION_BATCH_SIZE = 10000;
+
+    private static final int DEFAULT_ARCHIVE_THREADS = 4;
+
+    private static final int DEFAULT_WRITER_THREADS = 2;
+    private static final int DEFAULT_WRITE_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_WRITE_BATCH_SIZE = 100;
     private static final int DEFAULT_CLEAN_TRANSACTION_BATCH_SIZE = 10000;
 
     private static final long DEFAULT_MAX_LOGGABLE_MESSAGE_BODY_SIZE = 10 * 1024 * 1024;
@@ -74,6 +84,12 @@ public final class MessageLogProperties {
     /** Property name of the timestamp retry delay (seconds). */
     public static final String TIMESTAMP_RETRY_DELAY = PREFIX + "timestamp-retry-delay";
 
+    /** Property name of the maximum number of time-stamping batches in progress at the same time. */
+    public static final String TIMESTAMP_MAX_INFLIGHT_BATCHES = PREFIX + "timestamp-max-inflight-batches";
+
+    /** Property name of the time-stamping latency (milliseconds) the batch size is adjusted towards. */
+    public static final String TIMESTAMP_TARGET_LATENCY = PREFIX + "timestamp-target-latency";
+
     public static final String ACCEPTABLE_TIMESTAMP_FAILURE_PERIOD = PREFIX + "acceptable-timestamp-failure-period";
 
     public static final String KEEP_RECORDS_FOR = PREFIX + "keep-records-for";
@@ -86,12 +102,30 @@ public final class MessageLogProperties {
 
     public static final String ARCHIVE_TRANSACTION_BATCH = PREFIX + "archive-transaction-batch";
 
+    /** Property name of the number of threads building ASiC containers when archiving. */
+    public static final String ARCHIVE_THREADS = PREFIX + "archive-threads";
+
     public static final String CLEAN_INTERVAL = PREFIX + "clean-interval";
 
     private static final String CLEAN_TRANSACTION_BATCH = "clean-transaction-batch";
 
+    /** Property name for storing the log records in daily partitions of the log record table. */
+    public static final String PARTITIONED_STORAGE = PREFIX + "partitioned-storage";
+
     public static final String HASH_ALGO_ID = PREFIX + "hash-algo-id";
 
+    /** Property name of the number of threads writing message records to the database. */
+    public static final String WRITER_THREADS = PREFIX + "writer-threads";
+
+    /** Property name of the maximum number of message records waiting to be written to the database. */
+    public static final String WRITE_QUEUE_SIZE = PREFIX + "write-queue-size";
+
+    /** Property name of the maximum number of message records written to the database in one transaction. */
+    public static final String WRITE_BATCH_SIZE = PREFIX + "write-batch-size";
+
+    /** Property name for acknowledging logged messages before the message records have been committed. */
+    public static final String RELAXED_DURABILITY = PREFIX + "relaxed-durability";
+
     public static final String ARCHIVE_TRANSFER_COMMAND = PREFIX + "archive-transfer-command";
 
     /**
@@ -172,6 +206,23 @@ public final class MessageLogProperties {
         return getInt(System.getProperty(TIMESTAMP_RECORDS_LIMIT), DEFAULT_TIMESTAMP_RECORDS_LIMIT);
     }
 
+    /**
+     * @return the maximum number of time-stamping batches in progress at the same time, '4' by default.
+     */
+    public static int getTimestampMaxInflightBatches() {
+        return Math.max(1, getInt(System.getProperty(TIMESTAMP_MAX_INFLIGHT_BATCHES),
+                DEFAULT_TIMESTAMP_MAX_INFLIGHT_BATCHES));
+    }
+
+    /**
+     * @return the time-stamping latency in milliseconds the batch size is adjusted towards. Batches that take longer
+     * are halved and batches that complete in less than half of the target are doubled, up to
+     * 'timestamp-records-limit'. '5000' by default.
+     */
+    public static int getTimestampTargetLatency() {
+        return getInt(System.getProperty(TIMESTAMP_TARGET_LATENCY), DEFAULT_TIMESTAMP_TARGET_LATENCY);
+    }
+
     /**
      * @return the time period in seconds, how long is time-stamping allowed to be failed before message log stops
      * accepting any more messages.
@@ -181,6 +232,39 @@ public final class MessageLogProperties {
                 DEFAULT_ACCEPTABLE_TIMESTAMP_FAILURE_PERIOD);
     }
 
+    /**
+     * @return the number of threads that write message records to the database, committing the records logged
+     * concurrently in one transaction. Zero writes every message record in its own transaction in the log manager.
+     * '2' by default.
+     */
+    public static int getWriterThreads() {
+        return getInt(System.getProperty(WRITER_THREADS), DEFAULT_WRITER_THREADS);
+    }
+
+    /**
+     * @return the maximum number of message records waiting to be written to the database. Logging blocks while
+     * the queue is full. '10000' by default.
+     */
+    public static int getWriteQueueSize() {
+        return getInt(System.getProperty(WRITE_QUEUE_SIZE), DEFAULT_WRITE_QUEUE_SIZE);
+    }
+
+    /**
+     * @return the maximum number of message records written to the database in one transaction. '100' by default.
+     */
+    public static int getWriteBatchSize() {
+        return getInt(System.getProperty(WRITE_BATCH_SIZE), DEFAULT_WRITE_BATCH_SIZE);
+    }
+
+    /**
+     * @return true if a logged message is acknowledged as soon as its message record has been queued for writing,
+     * instead of after the record has been committed to the database. Messages with a logged REST body are always
+     * acknowledged after the commit. 'false' by default.
+     */
+    public static boolean isRelaxedDurability() {
+        return "true".equalsIgnoreCase(System.getProperty(RELAXED_DURABILITY, "false"));
+    }
+
     /**
      * @return the time interval as Cron expression for archiving time-stamped records.
      */
@@ -195,6 +279,13 @@ public final class MessageLogProperties {
         return getInt(System.getProperty(ARCHIVE_TRANSACTION_BATCH), DEFAULT_ARCHIVE_TRANSACTION_BATCH_SIZE);
     }
 
+    /**
+     * @return the number of threads building ASiC containers when archiving, '4' by default.
+     */
+    public static int getArchiveThreads() {
+        return Math.max(1, getInt(System.getProperty(ARCHIVE_THREADS), DEFAULT_ARCHIVE_THREADS));
+    }
+
     /**
      * @return the time interval as Cron expression for cleaning archived records from online database.
      */
@@ -209,6 +300,14 @@ public final class MessageLogProperties {
         return getInt(System.getProperty(KEEP_RECORDS_FOR), DEFAULT_KEEP_RECORDS_FOR);
     }
 
+    /**
+     * @return whether log records are stored in daily partitions of the log record table (PostgreSQL only),
+     * 'false' by default.
+     */
+    public static boolean isPartitionedStorage() {
+        return Boolean.parseBoolean(System.getProperty(PARTITIONED_STORAGE, "false"));
+    }
+
     /**
      * @return the maximum size for archived files in bytes. Defaults to 32 MB.
      */
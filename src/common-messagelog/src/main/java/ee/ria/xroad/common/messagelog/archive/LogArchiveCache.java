@@ -97,6 +97,18 @@ class LogArchiveCache implements Closeable {
         }
     }
 
+    void addEntry(LogArchiveEntry entry) throws Exception {
+        try {
+            validateMessageRecord(entry != null ? entry.getRecord() : null);
+            handleRotation();
+            updateCreationTime(entry.getRecord());
+            addEntryToArchive(entry);
+            updateState();
+        } catch (Exception e) {
+            handleCacheError(e);
+        }
+    }
+
     Path getArchiveFile() throws IOException {
         try {
             addLinkingInfoToArchive(archiveTmp);
@@ -165,8 +177,13 @@ class LogArchiveCache implements Closeable {
         reset();
     }
 
-    @SuppressWarnings("checkstyle:InnerAssignment")
     private void cacheRecord(MessageRecord messageRecord) throws Exception {
+        updateCreationTime(messageRecord);
+        addContainerToArchive(messageRecord);
+    }
+
+    @SuppressWarnings("checkstyle:InnerAssignment")
+    private void updateCreationTime(MessageRecord messageRecord) {
         final Date creationTime = new Date(messageRecord.getTime());
 
         if (minCreationTime == null && maxCreationTime == null) {
@@ -176,7 +193,6 @@ class LogArchiveCache implements Closeable {
         } else if (creationTime.after(maxCreationTime)) {
             maxCreationTime = creationTime;
         }
-        addContainerToArchive(messageRecord);
     }
 
     private void updateState() {
@@ -187,11 +203,14 @@ class LogArchiveCache implements Closeable {
         return archivesTotalSize > getArchiveMaxFilesize();
     }
 
+    private String getArchiveFilename(MessageRecord record) {
+        return nameGenerator.getArchiveFilename(record.getQueryId(),
+                record.isResponse() ? AsicContainerNameGenerator.TYPE_RESPONSE
+                        : AsicContainerNameGenerator.TYPE_REQUEST);
+    }
+
     private void addContainerToArchive(MessageRecord record) throws Exception {
-        String archiveFilename =
-                nameGenerator.getArchiveFilename(record.getQueryId(),
-                        record.isResponse() ? AsicContainerNameGenerator.TYPE_RESPONSE
-                                : AsicContainerNameGenerator.TYPE_REQUEST);
+        String archiveFilename = getArchiveFilename(record);
 
         final MessageDigest digest = MessageDigest.getInstance(MessageLogProperties.getHashAlg());
         archiveTmp.putNextEntry(new ZipEntry(archiveFilename));
@@ -208,6 +227,17 @@ class LogArchiveCache implements Closeable {
         linkingInfoBuilder.addNextFile(archiveFilename, digest.digest());
     }
 
+    private void addEntryToArchive(LogArchiveEntry entry) throws IOException {
+        String archiveFilename = getArchiveFilename(entry.getRecord());
+
+        archiveTmp.putNextEntry(new ZipEntry(archiveFilename));
+        archiveTmp.write(entry.getContainer());
+        archiveTmp.closeEntry();
+
+        archivesTotalSize += entry.getContainer().length;
+        linkingInfoBuilder.addNextFile(archiveFilename, entry.getDigest());
+    }
+
     private void reset() {
         try {
             resetArchive();
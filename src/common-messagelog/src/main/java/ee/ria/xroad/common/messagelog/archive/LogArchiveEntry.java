@@ -0,0 +1,68 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.messagelog.archive;
+
+import ee.ria.xroad.common.messagelog.MessageLogProperties;
+import ee.ria.xroad.common.messagelog.MessageRecord;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+
+/**
+ * ASiC container of a message record prepared for a log archive. Preparing the container does not depend on the
+ * archive it is added to, so the entries can be prepared in parallel and added to the archive in order afterwards.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class LogArchiveEntry {
+
+    private final MessageRecord record;
+    private final byte[] container;
+    private final byte[] digest;
+
+    /**
+     * Builds the ASiC container of the message record and calculates its digest.
+     * @param record the message record, must not refer to an open database session
+     * @return the prepared entry
+     * @throws Exception if the container cannot be created
+     */
+    public static LogArchiveEntry create(MessageRecord record) throws Exception {
+        if (record == null) {
+            throw new IllegalArgumentException("Message record to be archived must not be null");
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        record.toAsicContainer().write(out);
+
+        byte[] container = out.toByteArray();
+        byte[] digest = MessageDigest.getInstance(MessageLogProperties.getHashAlg()).digest(container);
+
+        return new LogArchiveEntry(record, container, digest);
+    }
+}
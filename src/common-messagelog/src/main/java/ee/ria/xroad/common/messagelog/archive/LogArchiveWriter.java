@@ -109,6 +109,29 @@ public class LogArchiveWriter implements Closeable {
         return false;
     }
 
+    /**
+     * Write a message log record whose ASiC container has already been prepared.
+     * @param entry the prepared log archive entry
+     * @return true if the a archive file was rotated
+     * @throws Exception in case of any errors
+     */
+    public boolean write(LogArchiveEntry entry) throws Exception {
+        if (entry == null) {
+            throw new IllegalArgumentException("log archive entry must not be null");
+        }
+
+        if (log.isTraceEnabled()) log.trace("write({})", entry.getRecord().getId());
+
+        logArchiveCache.addEntry(entry);
+        archiveBase.markRecordArchived(entry.getRecord());
+
+        if (logArchiveCache.isRotating()) {
+            rotate();
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public void close() throws IOException {
         log.trace("Closing log archive writer ...");
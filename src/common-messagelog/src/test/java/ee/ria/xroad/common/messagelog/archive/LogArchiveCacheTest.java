@@ -56,6 +56,7 @@ import java.util.function.Supplier;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -127,6 +128,31 @@ public class LogArchiveCacheTest {
         assertZip(expectedNormalSizeRequestEntryName(), getArchiveBytes());
     }
 
+    /**
+     * Test to ensure an entry whose container has been prepared beforehand is added like the message record itself.
+     *
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void addPreparedEntryOfNormalSize() throws Exception {
+        // Given
+        setMaxArchiveSizeDefault();
+        LogArchiveEntry entry = LogArchiveEntry.create(createRequestRecordNormal());
+
+        // When
+        cache.addEntry(entry);
+
+        // Then
+        assertFalse(
+                "Should not rotate, as entry is small enough to fit in.",
+                cache.isRotating());
+        assertArrayEquals(containerOfNormalSize(), entry.getContainer());
+        Date expectedCreationTime = normalRequestCreationTime();
+        assertEquals(expectedCreationTime, cache.getStartTime());
+        assertEquals(expectedCreationTime, cache.getEndTime());
+        assertZip(expectedNormalSizeRequestEntryName(), getArchiveBytes());
+    }
+
     /**
      * Test to ensure log archive is rotated if an entry is too large.
      *
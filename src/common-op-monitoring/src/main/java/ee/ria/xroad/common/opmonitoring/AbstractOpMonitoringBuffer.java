@@ -25,6 +25,7 @@
 package ee.ria.xroad.common.opmonitoring;
 
 import akka.actor.UntypedAbstractActor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -34,8 +35,6 @@ import lombok.extern.slf4j.Slf4j;
 public abstract class AbstractOpMonitoringBuffer extends UntypedAbstractActor {
 
     public static final String SEND_MONITORING_DATA = "sendMonitoringData";
-    public static final String SENDING_SUCCESS = "sendingSuccess";
-    public static final String SENDING_FAILURE = "sendingFailure";
 
     private static final String LOGGING_FORMAT = "onReceive: {}";
 
@@ -52,14 +51,14 @@ public abstract class AbstractOpMonitoringBuffer extends UntypedAbstractActor {
                 log.trace(LOGGING_FORMAT, SEND_MONITORING_DATA);
 
                 send();
-            } else if (message.equals(SENDING_SUCCESS)) {
-                log.trace(LOGGING_FORMAT, SENDING_SUCCESS);
+            } else if (message instanceof SendingSuccess) {
+                log.trace(LOGGING_FORMAT, message);
 
-                sendingSuccess();
-            } else if (message.equals(SENDING_FAILURE)) {
-                log.trace(LOGGING_FORMAT, SENDING_FAILURE);
+                sendingSuccess(((SendingSuccess) message).getMessageId());
+            } else if (message instanceof SendingFailure) {
+                log.trace(LOGGING_FORMAT, message);
 
-                sendingFailure();
+                sendingFailure(((SendingFailure) message).getMessageId());
             } else {
                 unhandled(message);
             }
@@ -72,8 +71,24 @@ public abstract class AbstractOpMonitoringBuffer extends UntypedAbstractActor {
 
     protected abstract void send() throws Exception;
 
-    protected abstract void sendingSuccess() throws Exception;
+    protected abstract void sendingSuccess(long messageId) throws Exception;
 
-    protected abstract void sendingFailure() throws Exception;
+    protected abstract void sendingFailure(long messageId) throws Exception;
+
+    /**
+     * Reply to the buffer about a message successfully sent to the operational monitoring daemon.
+     */
+    @Value
+    public static class SendingSuccess {
+        long messageId;
+    }
+
+    /**
+     * Reply to the buffer about a message that could not be sent to the operational monitoring daemon.
+     */
+    @Value
+    public static class SendingFailure {
+        long messageId;
+    }
 
 }
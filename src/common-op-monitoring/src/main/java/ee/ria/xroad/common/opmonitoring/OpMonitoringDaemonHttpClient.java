@@ -120,9 +120,12 @@ public final class OpMonitoringDaemonHttpClient {
                 .setConnectionRequestTimeout(connectionTimeoutMilliseconds)
                 .setSocketTimeout(socketTimeoutMilliseconds);
 
+        // The connections are authenticated with the same internal TLS key, so they do not carry per-user state.
+        // Without this, connections with a TLS client certificate would not be reused from the pool.
         HttpClientBuilder cb = HttpClients.custom()
                 .setConnectionManager(cm)
-                .setDefaultRequestConfig(rb.build());
+                .setDefaultRequestConfig(rb.build())
+                .disableConnectionState();
 
         // Disable request retry
         cb.setRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
@@ -66,46 +66,46 @@ public class OpMonitoringData {
     public static final String SERVICE_MEMBER_CODE = "serviceMemberCode";
     public static final String SERVICE_SUBSYSTEM_CODE = "serviceSubsystemCode";
 
-    private static final String SERVICE_CODE = "serviceCode";
-    private static final String SERVICE_VERSION = "serviceVersion";
+    public static final String SERVICE_CODE = "serviceCode";
+    public static final String SERVICE_VERSION = "serviceVersion";
 
-    private static final String SECURITY_SERVER_TYPE = "securityServerType";
+    public static final String SECURITY_SERVER_TYPE = "securityServerType";
 
     // Unix timestamps in milliseconds.
-    private static final String REQUEST_IN_TIMESTAMP = "requestInTs";
-    private static final String REQUEST_OUT_TIMESTAMP = "requestOutTs";
-    private static final String RESPONSE_IN_TIMESTAMP = "responseInTs";
-    private static final String RESPONSE_OUT_TIMESTAMP = "responseOutTs";
+    public static final String REQUEST_IN_TIMESTAMP = "requestInTs";
+    public static final String REQUEST_OUT_TIMESTAMP = "requestOutTs";
+    public static final String RESPONSE_IN_TIMESTAMP = "responseInTs";
+    public static final String RESPONSE_OUT_TIMESTAMP = "responseOutTs";
 
-    private static final String REPRESENTED_PARTY_CLASS =
+    public static final String REPRESENTED_PARTY_CLASS =
             "representedPartyClass";
-    private static final String REPRESENTED_PARTY_CODE =
+    public static final String REPRESENTED_PARTY_CODE =
             "representedPartyCode";
 
-    private static final String MESSAGE_ID = "messageId";
-    private static final String MESSAGE_USER_ID = "messageUserId";
-    private static final String MESSAGE_ISSUE = "messageIssue";
-    private static final String MESSAGE_PROTOCOL_VERSION =
+    public static final String MESSAGE_ID = "messageId";
+    public static final String MESSAGE_USER_ID = "messageUserId";
+    public static final String MESSAGE_ISSUE = "messageIssue";
+    public static final String MESSAGE_PROTOCOL_VERSION =
             "messageProtocolVersion";
 
-    private static final String X_REQUEST_ID = "xRequestId";
-    private static final String REQUEST_MIME_SIZE = "requestMimeSize";
+    public static final String X_REQUEST_ID = "xRequestId";
+    public static final String REQUEST_MIME_SIZE = "requestMimeSize";
 
-    private static final String REQUEST_ATTACHMENT_COUNT =
+    public static final String REQUEST_ATTACHMENT_COUNT =
             "requestAttachmentCount";
 
-    private static final String RESPONSE_MIME_SIZE = "responseMimeSize";
-    private static final String REQUEST_SIZE = "requestSize";
-    private static final String RESPONSE_SIZE = "responseSize";
-    private static final String RESPONSE_ATTACHMENT_COUNT =
+    public static final String RESPONSE_MIME_SIZE = "responseMimeSize";
+    public static final String REQUEST_SIZE = "requestSize";
+    public static final String RESPONSE_SIZE = "responseSize";
+    public static final String RESPONSE_ATTACHMENT_COUNT =
             "responseAttachmentCount";
 
-    private static final String SUCCEEDED = "succeeded";
-    private static final String REST_RESPONSE_STATUS_CODE = "statusCode";
+    public static final String SUCCEEDED = "succeeded";
+    public static final String REST_RESPONSE_STATUS_CODE = "statusCode";
 
-    private static final String SOAP_FAULT_CODE = "faultCode";
-    private static final String SOAP_FAULT_STRING = "faultString";
-    private static final String SERVICE_TYPE = "serviceType";
+    public static final String SOAP_FAULT_CODE = "faultCode";
+    public static final String SOAP_FAULT_STRING = "faultString";
+    public static final String SERVICE_TYPE = "serviceType";
 
     /**
      * The supported types of security servers in the context of operational
@@ -54,6 +54,13 @@ public final class OpMonitoringSystemProperties {
     private static final String OP_MONITOR_BUFFER_MAX_RECORDS_IN_MESSAGE =
             PREFIX + "op-monitor-buffer.max-records-in-message";
 
+    /**
+     * Property name of the maximum records in message sent by the operational monitoring buffer to the
+     * operational monitoring daemon when records are accumulating in the buffer.
+     */
+    private static final String OP_MONITOR_BUFFER_MAX_RECORDS_IN_MESSAGE_UNDER_LOAD =
+            PREFIX + "op-monitor-buffer.max-records-in-message-under-load";
+
     /**
      * Property name of the operational monitoring buffer sending interval seconds.
      */
@@ -73,6 +80,20 @@ public final class OpMonitoringSystemProperties {
     private static final String OP_MONITOR_BUFFER_CONNECTION_TIMEOUT_SECONDS =
             PREFIX + "op-monitor-buffer.connection-timeout-seconds";
 
+    /**
+     * Property name of the maximum number of messages the operational monitoring buffer sends concurrently
+     * to the operational monitoring daemon.
+     */
+    private static final String OP_MONITOR_BUFFER_MAX_CONCURRENT_MESSAGES =
+            PREFIX + "op-monitor-buffer.max-concurrent-messages";
+
+    /**
+     * Property name of the flag for sending operational data to the operational monitoring daemon in compact
+     * binary encoding instead of JSON.
+     */
+    private static final String OP_MONITOR_BUFFER_BINARY_ENCODING =
+            PREFIX + "op-monitor-buffer.binary-encoding";
+
     // Operational monitoring service ---------------------------------------//
 
     /**
@@ -152,6 +173,20 @@ public final class OpMonitoringSystemProperties {
     private static final String OP_MONITOR_MAX_RECORDS_IN_PAYLOAD =
             PREFIX + "op-monitor.max-records-in-payload";
 
+    /**
+     * Property name of the flag for storing operational data records in bulk (PostgreSQL COPY or batched JDBC
+     * inserts) instead of one Hibernate save at a time.
+     */
+    private static final String OP_MONITOR_BULK_INSERT =
+            PREFIX + "op-monitor.bulk-insert";
+
+    /**
+     * Property name of the flag for storing operational data records in daily partitions of the operational data
+     * table, which are dropped as a whole when outdated.
+     */
+    private static final String OP_MONITOR_PARTITIONED_STORAGE =
+            PREFIX + "op-monitor.partitioned-storage";
+
     private OpMonitoringSystemProperties() {
     }
 
@@ -170,6 +205,14 @@ public final class OpMonitoringSystemProperties {
         return Integer.parseInt(System.getProperty(OP_MONITOR_BUFFER_MAX_RECORDS_IN_MESSAGE, "100"));
     }
 
+    /**
+     * @return max records in message sent to the operational monitoring daemon when records are accumulating in
+     * the buffer faster than they can be sent in messages of max-records-in-message records, '1000' by default.
+     */
+    public static int getOpMonitorBufferMaxRecordsInMessageUnderLoad() {
+        return Integer.parseInt(System.getProperty(OP_MONITOR_BUFFER_MAX_RECORDS_IN_MESSAGE_UNDER_LOAD, "1000"));
+    }
+
     /**
      * @return the interval in seconds at which operational monitoring buffer additionally tries to send records to the
      * operational monitoring daemon, '5' by default.
@@ -192,6 +235,21 @@ public final class OpMonitoringSystemProperties {
         return Integer.parseInt(System.getProperty(OP_MONITOR_BUFFER_CONNECTION_TIMEOUT_SECONDS, "30"));
     }
 
+    /**
+     * @return max number of messages sent concurrently to the operational monitoring daemon, '4' by default.
+     */
+    public static int getOpMonitorBufferMaxConcurrentMessages() {
+        return Integer.parseInt(System.getProperty(OP_MONITOR_BUFFER_MAX_CONCURRENT_MESSAGES, "4"));
+    }
+
+    /**
+     * @return whether operational data is sent to the operational monitoring daemon in gzip compressed binary
+     * encoding instead of JSON, 'false' by default.
+     */
+    public static boolean isOpMonitorBufferBinaryEncoding() {
+        return Boolean.parseBoolean(System.getProperty(OP_MONITOR_BUFFER_BINARY_ENCODING, "false"));
+    }
+
     /**
      * @return the operational monitoring service HTTP client SO_TIMEOUT in seconds, '60' by default.
      */
@@ -290,4 +348,20 @@ public final class OpMonitoringSystemProperties {
     public static int getOpMonitorRecordsAvailableTimestampOffsetSeconds() {
         return Integer.parseInt(System.getProperty(OP_MONITOR_RECORDS_AVAILABLE_TIMESTAMP_OFFSET_SECONDS, "60"));
     }
+
+    /**
+     * @return whether operational data records are stored in bulk using PostgreSQL COPY (batched JDBC inserts
+     * on other databases), 'false' by default.
+     */
+    public static boolean isOpMonitorBulkInsert() {
+        return Boolean.parseBoolean(System.getProperty(OP_MONITOR_BULK_INSERT, "false"));
+    }
+
+    /**
+     * @return whether operational data records are stored in daily partitions of the operational data table
+     * (PostgreSQL only), 'false' by default.
+     */
+    public static boolean isOpMonitorPartitionedStorage() {
+        return Boolean.parseBoolean(System.getProperty(OP_MONITOR_PARTITIONED_STORAGE, "false"));
+    }
 }
@@ -0,0 +1,265 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.opmonitoring;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact binary encoding of store operational monitoring data requests. The encoded request is a gzip compressed
+ * stream that starts with the format version and the number of records, followed by the records. Each record
+ * consists of the number of fields and the fields as name, type tag and value.
+ * <p>
+ * The decoder does not trust the counts and lengths read from the stream: the decompressed request is limited to
+ * {@link #MAX_DECODED_SIZE} bytes and every count or length must fit in the part of the limit not yet read.
+ */
+public final class StoreOpMonitoringDataCodec {
+
+    /** The maximum size of a decompressed request in bytes. */
+    public static final long MAX_DECODED_SIZE = 64L * 1024 * 1024;
+
+    private static final int FORMAT_VERSION = 1;
+
+    // The field count of an empty record
+    private static final int MIN_RECORD_SIZE = 2;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_INTEGER = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+
+    private StoreOpMonitoringDataCodec() {
+    }
+
+    /**
+     * Writes the binary encoding of the request to the given output stream.
+     * @param request the request to encode
+     * @param out the output stream, not closed by this method
+     * @throws IOException if writing fails or a record contains a value of an unsupported type
+     */
+    public static void encode(StoreOpMonitoringDataRequest request, OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        DataOutputStream data = new DataOutputStream(gzip);
+
+        data.writeByte(FORMAT_VERSION);
+        data.writeInt(request.getRecords().size());
+
+        for (Map<String, Object> record : request.getRecords()) {
+            data.writeShort(record.size());
+
+            for (Map.Entry<String, Object> field : record.entrySet()) {
+                data.writeUTF(field.getKey());
+                writeValue(data, field.getValue());
+            }
+        }
+
+        data.flush();
+        gzip.finish();
+    }
+
+    /**
+     * Reads a request in binary encoding of unknown length from the given input stream.
+     * @param in the input stream
+     * @return the decoded request
+     * @throws IOException if reading fails or the input is not a valid encoded request
+     */
+    public static StoreOpMonitoringDataRequest decode(InputStream in) throws IOException {
+        return decode(in, -1);
+    }
+
+    /**
+     * Reads a request in binary encoding from the given input stream.
+     * @param in the input stream
+     * @param contentLength the declared length of the encoded request in bytes, or a negative value if unknown
+     * @return the decoded request
+     * @throws IOException if reading fails, the input is longer than declared or the input is not a valid encoded
+     * request
+     */
+    public static StoreOpMonitoringDataRequest decode(InputStream in, long contentLength) throws IOException {
+        InputStream encoded = contentLength < 0 ? in : new LimitedInputStream(in, contentLength);
+        LimitedInputStream decoded = new LimitedInputStream(new GZIPInputStream(encoded), MAX_DECODED_SIZE);
+        DataInputStream data = new DataInputStream(decoded);
+
+        int version = data.readUnsignedByte();
+
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported operational monitoring data format version " + version);
+        }
+
+        StoreOpMonitoringDataRequest request = new StoreOpMonitoringDataRequest();
+        int recordCount = data.readInt();
+
+        if (recordCount < 0 || (long) recordCount * MIN_RECORD_SIZE > decoded.getRemaining()) {
+            throw new IOException("Invalid operational monitoring data record count " + recordCount);
+        }
+
+        for (int i = 0; i < recordCount; i++) {
+            int fieldCount = data.readUnsignedShort();
+            Map<String, Object> record = new HashMap<>(fieldCount * 2);
+
+            for (int j = 0; j < fieldCount; j++) {
+                record.put(data.readUTF(), readValue(data, decoded));
+            }
+
+            request.addRecord(record);
+        }
+
+        return request;
+    }
+
+    private static void writeValue(DataOutputStream data, Object value) throws IOException {
+        if (value == null) {
+            data.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            data.writeByte(TYPE_STRING);
+            writeString(data, (String) value);
+        } else if (value instanceof Long) {
+            data.writeByte(TYPE_LONG);
+            data.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            data.writeByte(TYPE_INTEGER);
+            data.writeInt((Integer) value);
+        } else if (value instanceof Boolean) {
+            data.writeByte(TYPE_BOOLEAN);
+            data.writeBoolean((Boolean) value);
+        } else {
+            throw new IOException("Unsupported operational monitoring data value type " + value.getClass());
+        }
+    }
+
+    private static Object readValue(DataInputStream data, LimitedInputStream decoded) throws IOException {
+        byte type = data.readByte();
+
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString(data, decoded.getRemaining());
+            case TYPE_LONG:
+                return data.readLong();
+            case TYPE_INTEGER:
+                return data.readInt();
+            case TYPE_BOOLEAN:
+                return data.readBoolean();
+            default:
+                throw new IOException("Unknown operational monitoring data value type " + type);
+        }
+    }
+
+    // Values are not limited to the 64 KiB supported by writeUTF (e.g. SOAP fault strings)
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(DataInputStream data, long remaining) throws IOException {
+        int length = data.readInt();
+
+        if (length < 0 || length > remaining) {
+            throw new IOException("Invalid operational monitoring data string length " + length);
+        }
+
+        byte[] bytes = new byte[length];
+
+        data.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fails reading past the given number of bytes instead of silently ending the stream.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+
+            this.remaining = limit;
+        }
+
+        long getRemaining() {
+            return remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+
+            if (b >= 0) {
+                consume(1);
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            // Read one byte past the limit to detect overlong input
+            int n = super.read(b, off, (int) Math.min(len, remaining + 1));
+
+            if (n > 0) {
+                consume(n);
+            }
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining + 1));
+
+            consume(skipped);
+
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void consume(long n) throws IOException {
+            remaining -= n;
+
+            if (remaining < 0) {
+                throw new IOException("Operational monitoring data exceeds the allowed length");
+            }
+        }
+    }
+}
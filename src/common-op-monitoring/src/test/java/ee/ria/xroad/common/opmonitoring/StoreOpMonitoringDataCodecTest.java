@@ -0,0 +1,140 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.opmonitoring;
+
+import ee.ria.xroad.common.identifier.ClientId;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the binary encoding of store operational monitoring data requests.
+ */
+public class StoreOpMonitoringDataCodecTest {
+
+    @Test
+    public void encodeAndDecode() throws Exception {
+        OpMonitoringData data = new OpMonitoringData(OpMonitoringData.SecurityServerType.CLIENT, 100);
+        data.setClientId(ClientId.create("EE", "GOV", "1234"));
+        data.setRequestSize(1024L);
+        data.setRequestAttachmentCount(2);
+        data.setSucceeded(true);
+
+        Map<String, Object> record = new HashMap<>();
+        record.put("faultString", StringUtils.repeat('x', 70000));
+
+        StoreOpMonitoringDataRequest request = new StoreOpMonitoringDataRequest();
+        request.addRecord(data.getData());
+        request.addRecord(record);
+
+        byte[] encoded = encode(request);
+
+        StoreOpMonitoringDataRequest decoded = StoreOpMonitoringDataCodec.decode(
+                new ByteArrayInputStream(encoded), encoded.length);
+
+        assertEquals(request.getRecords(), decoded.getRecords());
+    }
+
+    @Test(expected = IOException.class)
+    public void unsupportedValueType() throws Exception {
+        Map<String, Object> record = new HashMap<>();
+        record.put("requestSize", 1.5);
+
+        StoreOpMonitoringDataRequest request = new StoreOpMonitoringDataRequest();
+        request.addRecord(record);
+
+        encode(request);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectNegativeRecordCount() throws Exception {
+        StoreOpMonitoringDataCodec.decode(new ByteArrayInputStream(compress(data -> {
+            data.writeByte(1);
+            data.writeInt(-1);
+        })));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectRecordCountExceedingContent() throws Exception {
+        StoreOpMonitoringDataCodec.decode(new ByteArrayInputStream(compress(data -> {
+            data.writeByte(1);
+            data.writeInt(Integer.MAX_VALUE);
+        })));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectStringLengthExceedingContent() throws Exception {
+        StoreOpMonitoringDataCodec.decode(new ByteArrayInputStream(compress(data -> {
+            data.writeByte(1);
+            data.writeInt(1);
+            data.writeShort(1);
+            data.writeUTF("faultString");
+            data.writeByte(1);
+            data.writeInt(Integer.MAX_VALUE);
+        })));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectContentLongerThanDeclared() throws Exception {
+        StoreOpMonitoringDataRequest request = new StoreOpMonitoringDataRequest();
+        request.addRecord(new OpMonitoringData(OpMonitoringData.SecurityServerType.CLIENT, 100).getData());
+
+        byte[] encoded = encode(request);
+
+        StoreOpMonitoringDataCodec.decode(new ByteArrayInputStream(encoded), encoded.length - 1);
+    }
+
+    @FunctionalInterface
+    private interface RawWriter {
+        void write(DataOutputStream data) throws IOException;
+    }
+
+    private static byte[] compress(RawWriter writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (DataOutputStream data = new DataOutputStream(new GZIPOutputStream(out))) {
+            writer.write(data);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static byte[] encode(StoreOpMonitoringDataRequest request) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StoreOpMonitoringDataCodec.encode(request, out);
+
+        return out.toByteArray();
+    }
+}
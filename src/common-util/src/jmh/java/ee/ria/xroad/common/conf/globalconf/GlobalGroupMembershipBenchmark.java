@@ -0,0 +1,120 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.GlobalGroupType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.GlobalGroupId;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares global group membership checks done by scanning the group member list against the
+ * lookups served from the membership index built by {@link SharedParametersV2}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+public class GlobalGroupMembershipBenchmark {
+
+    private static final String SHARED_PARAMS = "src/test/resources/globalconf_good_v2/EE/shared-params.xml";
+
+    @Param({"10000", "100000"})
+    private int memberCount;
+
+    private SharedParametersV2 sharedParameters;
+    private GlobalGroupId groupId;
+    private ClientId subjectId;
+
+    /**
+     * Loads shared parameters whose test global group has been populated with the requested number of members.
+     * @throws Exception if the shared parameters cannot be loaded
+     */
+    @Setup
+    public void setup() throws Exception {
+        SharedParametersV2 template = new SharedParametersV2();
+        template.load(SHARED_PARAMS);
+
+        GlobalGroupType group = template.getGlobalGroups().get(0);
+        List<ClientId> members = group.getGroupMember();
+
+        for (int i = 0; i < memberCount; i++) {
+            members.add(ClientId.create(template.getInstanceIdentifier(), "BENCH", "member" + i));
+        }
+
+        Path file = Files.createTempFile("shared-params", ".xml");
+
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                template.save(out);
+            }
+
+            sharedParameters = new SharedParametersV2();
+            sharedParameters.load(file.toString());
+        } finally {
+            Files.delete(file);
+        }
+
+        groupId = template.createGlobalGroupId(group);
+        subjectId = members.get(members.size() - 1);
+    }
+
+    /**
+     * Membership check that scans the member list of the group.
+     * @return whether the subject is a member
+     */
+    @Benchmark
+    public boolean linearLookup() {
+        GlobalGroupType group = sharedParameters.getGlobalGroups().stream()
+                .filter(g -> g.getGroupCode().equals(groupId.getGroupCode()))
+                .findFirst().orElse(null);
+
+        return group != null && group.getGroupMember().stream().anyMatch(m -> m.equals(subjectId));
+    }
+
+    /**
+     * Membership check that uses the membership index.
+     * @return whether the subject is a member
+     */
+    @Benchmark
+    public boolean indexedLookup() {
+        return sharedParameters.isSubjectInGlobalGroup(subjectId, groupId);
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.hashchain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA256_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+
+/**
+ * Measures building the batch signature hash tree with {@link HashChainBuilder} for batches of different sizes.
+ * Every input is a message with one attachment, so that hash chains can be constructed for a single input, too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class HashChainBuilderBenchmark {
+
+    private static final String DATA_FILE_NAME = "/message.xml";
+
+    @Param({"1", "16", "128", "512", "1024", "4096"})
+    private int batchSize;
+
+    private byte[][][] inputs;
+
+    /**
+     * Creates the input hashes of the batch.
+     * @throws Exception if hashing fails
+     */
+    @Setup
+    public void setup() throws Exception {
+        inputs = new byte[batchSize][][];
+
+        for (int i = 0; i < batchSize; i++) {
+            inputs[i] = new byte[][] {
+                calculateDigest(SHA256_ID, ("message" + i).getBytes(StandardCharsets.UTF_8)),
+                calculateDigest(SHA256_ID, ("attachment" + i).getBytes(StandardCharsets.UTF_8))
+            };
+        }
+    }
+
+    /**
+     * Builds the tree and the hash chain result, as needed for creating the signature.
+     * @return the hash chain result
+     * @throws Exception if building fails
+     */
+    @Benchmark
+    public String buildTree() throws Exception {
+        return build().getHashChainResult(DATA_FILE_NAME);
+    }
+
+    /**
+     * Builds the tree and constructs the hash chain of one input.
+     * @return the hash chain
+     * @throws Exception if building fails
+     */
+    @Benchmark
+    public String buildTreeAndOneHashChain() throws Exception {
+        HashChainBuilder builder = build();
+
+        builder.getHashChainResult(DATA_FILE_NAME);
+
+        return builder.getHashChain(DATA_FILE_NAME, batchSize - 1);
+    }
+
+    /**
+     * Builds the tree and constructs the hash chains of all the inputs.
+     * @return the hash chains
+     * @throws Exception if building fails
+     */
+    @Benchmark
+    public String[] buildTreeAndAllHashChains() throws Exception {
+        HashChainBuilder builder = build();
+
+        builder.getHashChainResult(DATA_FILE_NAME);
+
+        return builder.getHashChains(DATA_FILE_NAME);
+    }
+
+    private HashChainBuilder build() throws Exception {
+        HashChainBuilder builder = new HashChainBuilder(SHA256_ID);
+
+        for (byte[][] input : inputs) {
+            builder.addInputHash(input);
+        }
+
+        builder.finishBuilding();
+
+        return builder;
+    }
+}
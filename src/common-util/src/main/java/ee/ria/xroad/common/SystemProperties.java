@@ -265,6 +265,33 @@ public final class SystemProperties {
     private static final String CLIENTPROXY_POOL_REUSE_CONNECTIONS =
             PREFIX + "proxy.pool-enable-connection-reuse";
 
+    /**
+     * Property name for processing SOAP requests entirely on the client proxy request thread instead of handing
+     * the request parsing over to a separate handler thread
+     */
+    private static final String CLIENTPROXY_SINGLE_THREAD_SOAP_PROCESSING =
+            PREFIX + "proxy.client-single-thread-soap-processing";
+
+    /**
+     * Property name for the maximum size of attachment data (in bytes) that is cached in memory before it is
+     * written to a temporary file
+     */
+    private static final String ATTACHMENT_CACHE_MEMORY_THRESHOLD =
+            PREFIX + "proxy.attachment-cache-memory-threshold";
+
+    /**
+     * Property name for the maximum total size of attachment data (in bytes) that is cached in memory by all
+     * messages processed at the same time
+     */
+    public static final String ATTACHMENT_CACHE_MEMORY_BUDGET =
+            PREFIX + "proxy.attachment-cache-memory-budget";
+
+    /**
+     * Property name for streaming parsing of SOAP messages, where the message content is cached like attachments
+     * instead of being kept in memory as a whole
+     */
+    private static final String PROXY_SOAP_STREAMING = PREFIX + "proxy.soap-streaming";
+
     private static final String PROXY_HEALTH_CHECK_INTERFACE = PREFIX + "proxy.health-check-interface";
 
     private static final String PROXY_HEALTH_CHECK_PORT = PREFIX + "proxy.health-check-port";
@@ -323,6 +350,14 @@ public final class SystemProperties {
      **/
     private static final String DEFAULT_CLIENTPROXY_POOL_REUSE_CONNECTIONS = "false";
 
+    private static final String DEFAULT_CLIENTPROXY_SINGLE_THREAD_SOAP_PROCESSING = "false";
+
+    private static final String DEFAULT_ATTACHMENT_CACHE_MEMORY_THRESHOLD = "262144";
+
+    private static final String DEFAULT_ATTACHMENT_CACHE_MEMORY_BUDGET = "67108864";
+
+    private static final String DEFAULT_PROXY_SOAP_STREAMING = "false";
+
     private static final String DEFAULT_PROXY_HEALTH_CHECK_INTERFACE = "0.0.0.0";
 
     private static final String DEFAULT_PROXY_HEALTH_CHECK_PORT = "0";
@@ -334,6 +369,11 @@ public final class SystemProperties {
 
     private static final int OCSP_VERIFIER_CACHE_PERIOD_MAX = 180;
 
+    private static final String OCSP_VERIFIER_CACHE_SIZE =
+            PREFIX + "proxy.ocsp-verifier-cache-size";
+
+    private static final String DEFAULT_OCSP_VERIFIER_CACHE_SIZE = "10000";
+
 
     // Signer -----------------------------------------------------------------
 
@@ -379,6 +419,18 @@ public final class SystemProperties {
 
     private static final String DEFAULT_SIGNER_OCSP_RETRY_DELAY = "60";
 
+    /** Property name of the number of concurrent requests the signer sends to a single OCSP responder. */
+    public static final String SIGNER_OCSP_FETCH_PARALLELISM =
+            PREFIX + "signer.ocsp-fetch-parallelism";
+
+    private static final String DEFAULT_SIGNER_OCSP_FETCH_PARALLELISM = "4";
+
+    /** Property name of the maximum number of requests per second the signer sends to a single OCSP responder. */
+    public static final String SIGNER_OCSP_FETCH_RATE_LIMIT =
+            PREFIX + "signer.ocsp-fetch-rate-limit";
+
+    private static final String DEFAULT_SIGNER_OCSP_FETCH_RATE_LIMIT = "0";
+
     public static final String SIGNER_MODULE_MANAGER_UPDATE_INTERVAL =
             PREFIX + "signer.module-manager-update-interval";
 
@@ -421,6 +473,32 @@ public final class SystemProperties {
     public static final String CONFIGURATION_CLIENT_ALLOWED_FEDERATIONS =
             PREFIX + "configuration-client.allowed-federations";
 
+    /**
+     * Property name of the number of configuration content parts that are downloaded concurrently.
+     */
+    public static final String CONFIGURATION_CLIENT_DOWNLOAD_PARALLELISM =
+            PREFIX + "configuration-client.download-parallelism";
+
+    private static final String DEFAULT_CONFIGURATION_CLIENT_DOWNLOAD_PARALLELISM = "4";
+
+    /**
+     * Property name of the number of configuration sources (e.g. federated X-Road instances) that are
+     * downloaded concurrently.
+     */
+    public static final String CONFIGURATION_CLIENT_SOURCE_DOWNLOAD_PARALLELISM =
+            PREFIX + "configuration-client.source-download-parallelism";
+
+    private static final String DEFAULT_CONFIGURATION_CLIENT_SOURCE_DOWNLOAD_PARALLELISM = "4";
+
+    /**
+     * Property name of the delay in milliseconds after which the configuration is requested also from the next
+     * configuration location if the previous one has not responded.
+     */
+    public static final String CONFIGURATION_CLIENT_HEDGE_DELAY =
+            PREFIX + "configuration-client.hedge-delay";
+
+    private static final String DEFAULT_CONFIGURATION_CLIENT_HEDGE_DELAY = "5000";
+
     /**
      * A constant to describe the X-Road instances this security server federates with.
      * {@link #CUSTOM} means a list of named, comma-separated X-Road instances to allow.
@@ -914,6 +992,24 @@ public final class SystemProperties {
                 DEFAULT_SIGNER_OCSP_RETRY_DELAY));
     }
 
+    /**
+     * @return the number of concurrent requests the signer sends to a single OCSP responder during
+     * an OCSP-response refresh, 4 by default
+     */
+    public static int getOcspFetchParallelism() {
+        return Integer.parseInt(System.getProperty(SIGNER_OCSP_FETCH_PARALLELISM,
+                DEFAULT_SIGNER_OCSP_FETCH_PARALLELISM));
+    }
+
+    /**
+     * @return the maximum number of requests per second the signer sends to a single OCSP responder during
+     * an OCSP-response refresh, 0 (unlimited) by default
+     */
+    public static double getOcspFetchRateLimit() {
+        return Double.parseDouble(System.getProperty(SIGNER_OCSP_FETCH_RATE_LIMIT,
+                DEFAULT_SIGNER_OCSP_FETCH_RATE_LIMIT));
+    }
+
     /**
      * @return the module manager update interval in seconds that should be set for signer, 60 by default
      */
@@ -951,6 +1047,33 @@ public final class SystemProperties {
         return System.getProperty(CONFIGURATION_CLIENT_ALLOWED_FEDERATIONS, AllowedFederationMode.NONE.name());
     }
 
+    /**
+     * @return the number of configuration content parts that configuration client downloads concurrently,
+     * '4' by default.
+     */
+    public static int getConfigurationClientDownloadParallelism() {
+        return Integer.parseInt(System.getProperty(CONFIGURATION_CLIENT_DOWNLOAD_PARALLELISM,
+                DEFAULT_CONFIGURATION_CLIENT_DOWNLOAD_PARALLELISM));
+    }
+
+    /**
+     * @return the number of configuration sources that configuration client downloads concurrently, '4' by default.
+     */
+    public static int getConfigurationClientSourceDownloadParallelism() {
+        return Integer.parseInt(System.getProperty(CONFIGURATION_CLIENT_SOURCE_DOWNLOAD_PARALLELISM,
+                DEFAULT_CONFIGURATION_CLIENT_SOURCE_DOWNLOAD_PARALLELISM));
+    }
+
+    /**
+     * @return the delay in milliseconds after which configuration client requests the configuration also from the
+     * next configuration location if the previous one has not responded, '5000' by default. Zero or a negative
+     * value disables hedged requests.
+     */
+    public static long getConfigurationClientHedgeDelay() {
+        return Long.parseLong(System.getProperty(CONFIGURATION_CLIENT_HEDGE_DELAY,
+                DEFAULT_CONFIGURATION_CLIENT_HEDGE_DELAY));
+    }
+
     /**
      * @return the HTTP port on which the server proxy OCSP responder is listening, '5577' by default.
      */
@@ -1326,6 +1449,13 @@ public final class SystemProperties {
         return period < OCSP_VERIFIER_CACHE_PERIOD_MAX ? period : OCSP_VERIFIER_CACHE_PERIOD_MAX;
     }
 
+    /**
+     * @return maximum number of verified OCSP responses to keep cached in the OCSP verifier, 10000 by default.
+     */
+    public static long getOcspVerifierCacheSize() {
+        return Long.parseLong(System.getProperty(OCSP_VERIFIER_CACHE_SIZE, DEFAULT_OCSP_VERIFIER_CACHE_SIZE));
+    }
+
     /**
      * @return serverproxy initial idle time (used until the request processing starts)
      */
@@ -1467,6 +1597,41 @@ public final class SystemProperties {
                 DEFAULT_CLIENTPROXY_POOL_VALIDATE_CONNECTIONS_AFTER_INACTIVITY_OF_MS));
     }
 
+    /**
+     * @return true if the client proxy should parse, sign and stream SOAP requests to the server proxy on the
+     * request thread, false if a separate handler thread and piped streams should be used
+     */
+    public static boolean isClientProxySingleThreadSoapProcessing() {
+        return Boolean.parseBoolean(System.getProperty(CLIENTPROXY_SINGLE_THREAD_SOAP_PROCESSING,
+                DEFAULT_CLIENTPROXY_SINGLE_THREAD_SOAP_PROCESSING));
+    }
+
+    /**
+     * @return the maximum size of attachment data (in bytes) that is cached in memory, larger attachments are
+     * cached in temporary files. 0 caches all attachments in temporary files.
+     */
+    public static long getAttachmentCacheMemoryThreshold() {
+        return Long.parseLong(System.getProperty(ATTACHMENT_CACHE_MEMORY_THRESHOLD,
+                DEFAULT_ATTACHMENT_CACHE_MEMORY_THRESHOLD));
+    }
+
+    /**
+     * @return the maximum total size of attachment data (in bytes) that is cached in memory by all messages
+     * together, attachments that do not fit are cached in temporary files. 64 MiB by default.
+     */
+    public static long getAttachmentCacheMemoryBudget() {
+        return Long.parseLong(System.getProperty(ATTACHMENT_CACHE_MEMORY_BUDGET,
+                DEFAULT_ATTACHMENT_CACHE_MEMORY_BUDGET));
+    }
+
+    /**
+     * @return true if the proxy should parse SOAP messages in streaming mode, caching the message content like
+     * attachments (see {@link #getAttachmentCacheMemoryThreshold()}) instead of keeping it in memory, false by default
+     */
+    public static boolean isProxySoapStreaming() {
+        return Boolean.parseBoolean(System.getProperty(PROXY_SOAP_STREAMING, DEFAULT_PROXY_SOAP_STREAMING));
+    }
+
     /**
      * @return the {@link #NODE_TYPE} in a cluster for this Server.
      */
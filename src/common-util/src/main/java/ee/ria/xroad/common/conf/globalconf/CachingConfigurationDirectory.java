@@ -28,8 +28,11 @@ import ee.ria.xroad.common.SystemProperties;
 
 import lombok.extern.slf4j.Slf4j;
 
+import static ee.ria.xroad.common.ErrorCodes.translateException;
+
 /**
- * Caching configuration directory
+ * Caching configuration directory. The cached values are read without locking; only reloading the directory is
+ * serialized.
  */
 @Slf4j
 public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
@@ -76,11 +79,12 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
      *
      */
     @Override
-    public synchronized String getInstanceIdentifier() {
-        if (!cache.isValid(INSTANCE_IDENTIFIER)) {
-            cache.setValue(INSTANCE_IDENTIFIER, super.getInstanceIdentifier());
+    public String getInstanceIdentifier() {
+        try {
+            return cache.getValue(INSTANCE_IDENTIFIER, super::getInstanceIdentifier);
+        } catch (Exception e) {
+            throw translateException(e);
         }
-        return (String) cache.getValue(INSTANCE_IDENTIFIER);
     }
 
     /**
@@ -92,13 +96,10 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
      * @throws Exception if an error occurs while reading parameters
      */
     @Override
-    public synchronized PrivateParametersV2 getPrivate(String instanceId)
+    public PrivateParametersV2 getPrivate(String instanceId)
             throws Exception {
-        final String key = String.format("%s-%s", PRIVATE_PARAMS, instanceId);
-        if (!cache.isValid(key)) {
-            cache.setValue(key, super.getPrivate(instanceId));
-        }
-        return (PrivateParametersV2) cache.getValue(key);
+        final String key = PRIVATE_PARAMS + "-" + instanceId;
+        return cache.getValue(key, () -> super.getPrivate(instanceId));
     }
 
     /**
@@ -110,13 +111,10 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
      * @throws Exception if an error occurs while reading parameters
      */
     @Override
-    public synchronized SharedParametersV2 getShared(String instanceId)
+    public SharedParametersV2 getShared(String instanceId)
             throws Exception {
-        final String key = String.format("%s-%s", SHARED_PARAMS, instanceId);
-        if (!cache.isValid(key)) {
-            cache.setValue(key, super.getShared(instanceId));
-        }
-        return (SharedParametersV2) cache.getValue(key);
+        final String key = SHARED_PARAMS + "-" + instanceId;
+        return cache.getValue(key, () -> super.getShared(instanceId));
     }
 
     /**
@@ -124,7 +122,7 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
      * configuration files is too old.
      */
     @Override
-    public synchronized void verifyUpToDate() throws Exception {
+    public void verifyUpToDate() throws Exception {
         if (!cache.isValid(VERIFY_UP_TO_DATE)) {
             super.verifyUpToDate();
             cache.setValue(VERIFY_UP_TO_DATE, 1);
@@ -143,7 +141,15 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
         // cache value is meaningless in this case
         if (cache != null && !cache.isValid(RELOAD_CONF_DIR)) {
             cache.setValue(RELOAD_CONF_DIR, 1);
+            long version = getVersion();
             super.reload();
+            // the instance identifier is reread on every reload
+            cache.remove(INSTANCE_IDENTIFIER::equals);
+
+            if (getVersion() != version) {
+                // cached values may refer to parameters that were replaced by the reload
+                cache.remove(key -> !RELOAD_CONF_DIR.equals(key));
+            }
         }
     }
 }
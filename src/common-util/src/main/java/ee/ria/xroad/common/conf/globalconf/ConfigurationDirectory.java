@@ -42,6 +42,7 @@ import java.nio.file.StandardCopyOption;
 public interface ConfigurationDirectory {
     String FILES = "files";
     String METADATA_SUFFIX = ".metadata";
+    String INDEX_SUFFIX = ".index";
     String INSTANCE_IDENTIFIER_FILE = "instance-identifier";
 
     // Logger specified here because annotation does not work in interface.
@@ -75,6 +76,35 @@ public interface ConfigurationDirectory {
         saveMetadata(fileName, expirationDate);
     }
 
+    /**
+     * Moves the already written content file in place along with corresponding expiration date file.
+     * The content file must reside in the same file system as the file to save.
+     *
+     * @param fileName the name of the file to save
+     * @param content the file holding the content
+     * @param expirationDate the file expiration date
+     * @throws Exception if an error occurs
+     */
+    static void save(Path fileName, Path content, ConfigurationPartMetadata expirationDate) throws Exception {
+        if (fileName == null) {
+            return;
+        }
+
+        Path parent = fileName.getParent();
+
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        LOG.info("Saving content to file {}", fileName);
+
+        // Move the content in place.
+        Files.move(content, fileName, StandardCopyOption.ATOMIC_MOVE);
+
+        // Save the content metadata date to disk.
+        saveMetadata(fileName, expirationDate);
+    }
+
     /**
      * Saves the expiration date for the given file.
      *
@@ -103,7 +133,7 @@ public interface ConfigurationDirectory {
     }
 
     /**
-     * Deletes the file and accompanying expire date.
+     * Deletes the file and accompanying expire date and index.
      *
      * @param fileName the file name
      */
@@ -120,6 +150,12 @@ public interface ConfigurationDirectory {
             LOG.error("Failed to delete file {}", metadataFile);
         }
 
+        File indexFile = new File(fileName + INDEX_SUFFIX);
+
+        if (indexFile.exists() && !indexFile.delete()) {
+            LOG.error("Failed to delete file {}", indexFile);
+        }
+
         File directory = file.getParentFile();
 
         if (directory.isDirectory()) {
@@ -27,8 +27,10 @@ package ee.ria.xroad.common.conf.globalconf;
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.conf.ConfProvider;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.joda.time.DateTime;
@@ -41,11 +43,21 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.ErrorCodes.X_MALFORMED_GLOBALCONF;
@@ -58,6 +70,13 @@ import static ee.ria.xroad.common.conf.globalconf.ConfigurationUtils.escapeInsta
  *
  * When querying the parameters from this class, the parameters XML is checked for modifications and if the XML has
  * been modified, the parameters are reloaded from the XML.
+ *
+ * The loaded parameters are published as an immutable snapshot, so readers never block. Reloading builds a new
+ * snapshot and swaps it in; parameters that have changed on disk are loaded into new instances instead of modifying
+ * the instances that readers may still be using. With automatic reload, the files are checked for changes on a
+ * background thread (at most once per {@link #RECHECK_INTERVAL_MILLIS}), readers are served the current snapshot
+ * without waiting for the check. Parameters of an instance that are not in the snapshot yet but exist on disk are
+ * loaded right away.
  */
 @Slf4j
 public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
@@ -65,15 +84,28 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
     public static final String PRIVATE_PARAMETERS_XML = "private-params.xml";
     public static final String SHARED_PARAMETERS_XML = "shared-params.xml";
 
+    /** The minimum interval between checking the parameter files for changes, with automatic reload. */
+    public static final long RECHECK_INTERVAL_MILLIS = 1000;
+
+    private static final int CHANGE_LOG_SIZE = 16;
+
+    private static final ExecutorService RECHECK_EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("conf-dir-recheck-%d").setDaemon(true).build());
+
     @Getter
     @Setter
-    private Path path;
+    private volatile Path path;
     private final boolean reloadIfChanged;
 
-    private String instanceIdentifier;
+    private volatile String instanceIdentifier;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
 
-    private Map<String, PrivateParametersV2> privateParameters = new HashMap<>();
-    private Map<String, SharedParametersV2> sharedParameters = new HashMap<>();
+    private final AtomicBoolean recheckScheduled = new AtomicBoolean();
+    private volatile long nextRecheck;
+
+    // Shared parameters changes of the most recently published versions, guarded by this
+    private final Deque<VersionChanges> changeLog = new ArrayDeque<>();
 
     // ------------------------------------------------------------------------
 
@@ -104,12 +136,53 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
     /**
      * @return the instance identifier of this configuration. The instance identifier is lazy initialized.
      */
-    public synchronized String getInstanceIdentifier() {
-        if (instanceIdentifier == null) {
-            loadInstanceIdentifier();
+    public String getInstanceIdentifier() {
+        String identifier = instanceIdentifier;
+
+        if (identifier == null) {
+            identifier = loadInstanceIdentifier();
+            instanceIdentifier = identifier;
         }
 
-        return instanceIdentifier;
+        return identifier;
+    }
+
+    /**
+     * Returns the version of the loaded parameters. The version is increased every time (re)loaded parameters are
+     * published, so comparing versions is a cheap way to detect that the configuration has changed.
+     *
+     * @return the version of the currently published parameters
+     */
+    public long getVersion() {
+        return snapshot.get().getVersion();
+    }
+
+    /**
+     * Returns the changes of the shared parameters made after the given version was published. If the changes
+     * are no longer known, {@link SharedParametersChanges#ALL} is returned.
+     *
+     * @param version the version of the parameters
+     * @return the shared parameters changes since the version
+     */
+    public synchronized SharedParametersChanges getChangesSince(long version) {
+        long currentVersion = snapshot.get().getVersion();
+        long nextVersion = version + 1;
+        SharedParametersChanges changes = SharedParametersChanges.NONE;
+
+        for (VersionChanges entry : changeLog) {
+            if (entry.getVersion() < nextVersion) {
+                continue;
+            }
+
+            if (entry.getVersion() != nextVersion) {
+                return SharedParametersChanges.ALL;
+            }
+
+            changes = changes.merge(entry.getChanges());
+            nextVersion++;
+        }
+
+        return nextVersion > currentVersion ? changes : SharedParametersChanges.ALL;
     }
 
     /**
@@ -117,32 +190,41 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
      *
      * @throws Exception if an error occurs during reload
      */
-    public synchronized void reload() throws Exception {
+    public void reload() throws Exception {
+        loadParameters();
+    }
+
+    private synchronized void loadParameters() throws Exception {
         Map<String, PrivateParametersV2> privateParams = new HashMap<>();
         Map<String, SharedParametersV2> sharedParams = new HashMap<>();
 
         log.trace("Reloading configuration from {}", path);
 
-        instanceIdentifier = null;
+        Snapshot current = snapshot.get();
 
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, Files::isDirectory)) {
             for (Path instanceDir : stream) {
                 log.trace("Loading parameters from {}", instanceDir);
                 try {
-                    loadPrivateParameters(instanceDir, privateParams);
+                    loadPrivateParameters(instanceDir, current.getPrivateParameters(), privateParams);
                 } catch (Exception e) {
                     log.error("Unable to load private parameters from {}", instanceDir, e);
                 }
                 try {
-                    loadSharedParameters(instanceDir, sharedParams);
+                    loadSharedParameters(instanceDir, current.getSharedParameters(), sharedParams);
                 } catch (Exception e) {
                     log.error("Unable to load shared parameters from {}", instanceDir, e);
                 }
             }
         }
 
-        privateParameters = privateParams;
-        sharedParameters = sharedParams;
+        // Map equality compares the parameter instances, which are only replaced if their files have changed
+        if (!privateParams.equals(current.getPrivateParameters())
+                || !sharedParams.equals(current.getSharedParameters())) {
+            publish(current, privateParams, sharedParams);
+        }
+
+        instanceIdentifier = null;
     }
 
     /**
@@ -152,26 +234,12 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
      * @return private parameters or null, if no private parameters exist for given instance identifier
      * @throws Exception if an error occurs while reading parameters
      */
-    public synchronized PrivateParametersV2 getPrivate(String instanceId) throws Exception {
+    public PrivateParametersV2 getPrivate(String instanceId) throws Exception {
         String safeInstanceId = escapeInstanceIdentifier(instanceId);
 
         log.trace("getPrivate(instance = {}, directory = {})", instanceId, safeInstanceId);
 
-        PrivateParametersV2 parameters = privateParameters.get(safeInstanceId);
-
-        if (!reloadIfChanged) {
-            return parameters;
-        }
-
-        if (parameters != null && parameters.hasChanged()) {
-            parameters.reload();
-        } else if (parameters == null) {
-            // Parameters not cached, attempt to load it from disk.
-            Path instanceDir = Paths.get(path.toString(), safeInstanceId);
-            loadPrivateParameters(instanceDir, privateParameters);
-        }
-
-        return privateParameters.get(safeInstanceId);
+        return getParameters(safeInstanceId, PRIVATE_PARAMETERS_XML, Snapshot::getPrivateParameters);
     }
 
     /**
@@ -181,33 +249,35 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
      * @return shared parameters or null, if no shared parameters exist for given instance identifier
      * @throws Exception if an error occurs while reading parameters
      */
-    public synchronized SharedParametersV2 getShared(String instanceId) throws Exception {
+    public SharedParametersV2 getShared(String instanceId) throws Exception {
         String safeInstanceId = escapeInstanceIdentifier(instanceId);
 
         log.trace("getShared(instance = {}, directory = {})", instanceId, safeInstanceId);
 
-        SharedParametersV2 parameters = sharedParameters.get(safeInstanceId);
+        return getParameters(safeInstanceId, SHARED_PARAMETERS_XML, Snapshot::getSharedParameters);
+    }
+
+    private <T> T getParameters(String safeInstanceId, String fileName,
+            Function<Snapshot, Map<String, T>> parameters) throws Exception {
+        scheduleRecheck();
 
-        if (!reloadIfChanged) {
-            return parameters;
-        }
+        T result = parameters.apply(snapshot.get()).get(safeInstanceId);
 
-        if (parameters != null && parameters.hasChanged()) {
-            parameters.reload();
-        } else if (parameters == null) {
-            // Parameters not cached, attempt to load it from disk.
-            Path instanceDir = Paths.get(path.toString(), safeInstanceId);
-            loadSharedParameters(instanceDir, sharedParameters);
+        if (result == null && reloadIfChanged && Files.exists(path.resolve(safeInstanceId).resolve(fileName))) {
+            // parameters added after the last reload, do not wait for the background check
+            loadParameters();
+
+            result = parameters.apply(snapshot.get()).get(safeInstanceId);
         }
 
-        return sharedParameters.get(safeInstanceId);
+        return result;
     }
 
     /**
      * @return all known shared parameters
      */
-    public synchronized List<SharedParametersV2> getShared() {
-        return new ArrayList<>(sharedParameters.values());
+    public List<SharedParametersV2> getShared() {
+        return new ArrayList<>(snapshot.get().getSharedParameters().values());
     }
 
     /**
@@ -216,7 +286,7 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
      * @param consumer the function instance that should be applied to
      * @throws Exception if an error occurs
      */
-    protected synchronized void eachFile(final Consumer<Path> consumer) throws Exception {
+    protected void eachFile(final Consumer<Path> consumer) throws Exception {
         getConfigurationFiles().forEach(consumer);
     }
 
@@ -241,7 +311,7 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
      * configuration directory.
      * @throws Exception if an error occurs
      */
-    public synchronized void eachFile(FileConsumer consumer) throws Exception {
+    public void eachFile(FileConsumer consumer) throws Exception {
         eachFile(filepath -> {
             try (InputStream is = new FileInputStream(filepath.toFile())) {
                 log.trace("Processing '{}'", filepath);
@@ -328,13 +398,69 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
 
     // ------------------------------------------------------------------------
 
-    private void loadInstanceIdentifier() {
+    // With automatic reload, checks the parameter files for changes on the background thread, unless a check is
+    // already scheduled or the previous check was made less than the recheck interval ago.
+    private void scheduleRecheck() {
+        if (!reloadIfChanged || System.currentTimeMillis() < nextRecheck
+                || !recheckScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        RECHECK_EXECUTOR.execute(() -> {
+            try {
+                reload();
+            } catch (Exception e) {
+                log.error("Failed to reload configuration from {}", path, e);
+            } finally {
+                nextRecheck = System.currentTimeMillis() + RECHECK_INTERVAL_MILLIS;
+                recheckScheduled.set(false);
+            }
+        });
+    }
+
+    // Publishes the parameters as the next version and records the shared parameters changes of the version.
+    private synchronized void publish(Snapshot current, Map<String, PrivateParametersV2> privateParams,
+            Map<String, SharedParametersV2> sharedParams) {
+        Snapshot next = new Snapshot(current.getVersion() + 1, privateParams, sharedParams);
+
+        changeLog.addLast(new VersionChanges(next.getVersion(),
+                getChanges(current.getSharedParameters(), sharedParams)));
+
+        if (changeLog.size() > CHANGE_LOG_SIZE) {
+            changeLog.removeFirst();
+        }
+
+        snapshot.set(next);
+    }
+
+    // Reloaded shared parameters have computed their changes against the instances they replace.
+    private static SharedParametersChanges getChanges(Map<String, SharedParametersV2> previousParams,
+            Map<String, SharedParametersV2> sharedParams) {
+        Set<String> instanceIds = new HashSet<>(previousParams.keySet());
+        instanceIds.addAll(sharedParams.keySet());
+
+        SharedParametersChanges changes = SharedParametersChanges.NONE;
+
+        for (String instanceId : instanceIds) {
+            SharedParametersV2 previous = previousParams.get(instanceId);
+            SharedParametersV2 params = sharedParams.get(instanceId);
+
+            if (previous != params) {
+                changes = changes.merge(previous != null && params != null
+                        ? params.getChanges() : SharedParametersChanges.ALL);
+            }
+        }
+
+        return changes;
+    }
+
+    private String loadInstanceIdentifier() {
         Path file = Paths.get(path.toString(), INSTANCE_IDENTIFIER_FILE);
 
         log.trace("Loading instance identifier from {}", file);
 
         try {
-            instanceIdentifier = FileUtils.readFileToString(file.toFile()).trim();
+            return FileUtils.readFileToString(file.toFile()).trim();
         } catch (Exception e) {
             log.error("Failed to read instance identifier from " + file, e);
 
@@ -343,8 +469,8 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
         }
     }
 
-    private void loadPrivateParameters(Path instanceDir, Map<String, PrivateParametersV2> privateParams)
-            throws Exception {
+    private static void loadPrivateParameters(Path instanceDir, Map<String, PrivateParametersV2> existingParams,
+            Map<String, PrivateParametersV2> privateParams) throws Exception {
         String instanceId = instanceDir.getFileName().toString();
 
         Path privateParametersPath = Paths.get(instanceDir.toString(), PRIVATE_PARAMETERS_XML);
@@ -353,38 +479,73 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
             log.trace("Loading private parameters from {}", privateParametersPath);
 
             privateParams.put(instanceId, loadParameters(privateParametersPath, PrivateParametersV2.class,
-                    privateParameters.get(instanceId)));
+                    existingParams.get(instanceId)));
         } else {
             log.trace("Not loading private parameters from {}, file does not exist", privateParametersPath);
         }
     }
 
-    private void loadSharedParameters(Path instanceDir, Map<String, SharedParametersV2> sharedParams) throws Exception {
+    private static void loadSharedParameters(Path instanceDir, Map<String, SharedParametersV2> existingParams,
+            Map<String, SharedParametersV2> sharedParams) throws Exception {
         String instanceId = instanceDir.getFileName().toString();
 
         Path sharedParametersPath = Paths.get(instanceDir.toString(), SHARED_PARAMETERS_XML);
         if (Files.exists(sharedParametersPath)) {
             log.trace("Loading shared parameters from {}", sharedParametersPath);
 
-            sharedParams.put(instanceId, loadParameters(sharedParametersPath, SharedParametersV2.class,
-                    sharedParameters.get(instanceId)));
+            SharedParametersV2 existingInstance = existingParams.get(instanceId);
+
+            // An index written after the parameters were loaded takes the lookups it serves off the heap
+            if (existingInstance != null && !existingInstance.hasChanged() && !existingInstance.hasIndexChanged()) {
+                sharedParams.put(instanceId, existingInstance);
+            } else {
+                log.trace("Loading SharedParametersV2 from {}", sharedParametersPath);
+
+                SharedParametersV2 params = new SharedParametersV2();
+                params.load(sharedParametersPath.toString(), existingInstance);
+
+                sharedParams.put(instanceId, params);
+            }
         } else {
             log.trace("Not loading shared parameters from {}, file does not exist", sharedParametersPath);
         }
     }
 
-    // Loads the parameters from file if the file has changed.
-    // Returns the parameters or null if the file does not exist.
+    // Loads the parameters from file into a new instance if the file has changed.
+    // Returns the existing instance if the file has not changed.
     private static <T extends ConfProvider> T loadParameters(Path path, Class<T> clazz, T existingInstance)
             throws Exception {
-        T params = existingInstance != null ? existingInstance : (T) clazz.newInstance();
+        if (existingInstance != null && !existingInstance.hasChanged()) {
+            return existingInstance;
+        }
 
-        if (params.hasChanged()) {
-            log.trace("Loading {} from {}", clazz.getSimpleName(), path);
+        log.trace("Loading {} from {}", clazz.getSimpleName(), path);
 
-            params.load(path.toString());
-        }
+        T params = clazz.newInstance();
+        params.load(path.toString());
 
         return params;
     }
+
+    @Value
+    private static class VersionChanges {
+        private final long version;
+        private final SharedParametersChanges changes;
+    }
+
+    @Value
+    private static class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(0, Collections.emptyMap(), Collections.emptyMap());
+
+        private final long version;
+        private final Map<String, PrivateParametersV2> privateParameters;
+        private final Map<String, SharedParametersV2> sharedParameters;
+
+        Snapshot(long version, Map<String, PrivateParametersV2> privateParameters,
+                Map<String, SharedParametersV2> sharedParameters) {
+            this.version = version;
+            this.privateParameters = Collections.unmodifiableMap(privateParameters);
+            this.sharedParameters = Collections.unmodifiableMap(sharedParameters);
+        }
+    }
 }
@@ -0,0 +1,137 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.SecurityServerId;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Describes what has changed in the shared parameters between two loaded versions, so that caches depending
+ * on the shared parameters can invalidate only the affected entries.
+ */
+@ToString
+public final class SharedParametersChanges {
+
+    /** No changes. */
+    public static final SharedParametersChanges NONE =
+            new SharedParametersChanges(false, Collections.emptySet(), Collections.emptySet(), false);
+
+    /** The changes are not known, everything must be considered changed. */
+    public static final SharedParametersChanges ALL =
+            new SharedParametersChanges(true, Collections.emptySet(), Collections.emptySet(), true);
+
+    @Getter
+    private final boolean all;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final Set<ClientId> changedClients;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final Set<SecurityServerId> changedServers;
+
+    private final boolean caChanged;
+
+    SharedParametersChanges(Set<ClientId> changedClients, Set<SecurityServerId> changedServers, boolean caChanged) {
+        this(false, changedClients, changedServers, caChanged);
+    }
+
+    private SharedParametersChanges(boolean all, Set<ClientId> changedClients, Set<SecurityServerId> changedServers,
+            boolean caChanged) {
+        this.all = all;
+        this.changedClients = Collections.unmodifiableSet(changedClients);
+        this.changedServers = Collections.unmodifiableSet(changedServers);
+        this.caChanged = caChanged;
+    }
+
+    /**
+     * @return true if nothing has changed
+     */
+    public boolean isEmpty() {
+        return !all && !caChanged && changedClients.isEmpty() && changedServers.isEmpty();
+    }
+
+    /**
+     * Returns true if the member or subsystem has changed. A client is considered changed if it has been added,
+     * removed or modified, or if any of the security servers it is registered on has changed.
+     * @param clientId the member or subsystem identifier
+     * @return true if the client has changed
+     */
+    public boolean isClientChanged(ClientId clientId) {
+        return all || changedClients.contains(clientId);
+    }
+
+    /**
+     * Returns true if the security server has been added, removed or modified (address, authentication
+     * certificates or clients).
+     * @param serverId the security server identifier
+     * @return true if the security server has changed
+     */
+    public boolean isServerChanged(SecurityServerId serverId) {
+        return all || changedServers.contains(serverId);
+    }
+
+    /**
+     * @return true if the approved certification authorities (certificates, OCSP responders or profiles)
+     * have changed
+     */
+    public boolean isCaChanged() {
+        return all || caChanged;
+    }
+
+    /**
+     * Combines these changes with the given changes.
+     * @param other the changes to combine with
+     * @return changes containing both these and the other changes
+     */
+    public SharedParametersChanges merge(SharedParametersChanges other) {
+        if (all || other.all) {
+            return ALL;
+        }
+
+        if (other.isEmpty()) {
+            return this;
+        }
+
+        if (isEmpty()) {
+            return other;
+        }
+
+        Set<ClientId> clients = new HashSet<>(changedClients);
+        clients.addAll(other.changedClients);
+
+        Set<SecurityServerId> servers = new HashSet<>(changedServers);
+        servers.addAll(other.changedServers);
+
+        return new SharedParametersChanges(clients, servers, caChanged || other.caChanged);
+    }
+}
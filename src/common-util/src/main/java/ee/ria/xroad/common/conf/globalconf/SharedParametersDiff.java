@@ -0,0 +1,161 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.CaInfoType;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.SecurityServerType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.SecurityServerId;
+
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the structural difference between two versions of shared parameters. Members and security servers
+ * are compared by their identifiers, so the changes can be expressed in terms of the affected identifiers.
+ * The compared states are collected by {@link SharedParametersV2} while it is loaded.
+ */
+final class SharedParametersDiff {
+
+    private SharedParametersDiff() {
+    }
+
+    /**
+     * @param previous the previously loaded shared parameters
+     * @param current the newly loaded shared parameters
+     * @return the changes from the previous to the current shared parameters
+     */
+    static SharedParametersChanges compute(SharedParametersV2 previous, SharedParametersV2 current) {
+        if (!previous.getInstanceIdentifier().equals(current.getInstanceIdentifier())) {
+            return SharedParametersChanges.ALL;
+        }
+
+        Set<ClientId> changedClients = changedKeys(previous.getMemberNames(), current.getMemberNames());
+
+        Map<SecurityServerId, ServerState> previousServers = previous.getServerStates();
+        Map<SecurityServerId, ServerState> currentServers = current.getServerStates();
+        Set<SecurityServerId> changedServers = changedKeys(previousServers, currentServers);
+
+        // The addresses and authentication certificates of the clients come from their security servers
+        for (SecurityServerId serverId : changedServers) {
+            addClients(changedClients, previousServers.get(serverId));
+            addClients(changedClients, currentServers.get(serverId));
+        }
+
+        boolean caChanged = !previous.getCaStates().equals(current.getCaStates());
+
+        return new SharedParametersChanges(changedClients, changedServers, caChanged);
+    }
+
+    /**
+     * @param server the security server
+     * @param clients the owner and the clients of the security server
+     * @return the state of the security server that is compared between versions
+     */
+    static ServerState getServerState(SecurityServerType server, Set<ClientId> clients) {
+        Set<ByteBuffer> authCertHashes = server.getAuthCertHash().stream()
+                .map(ByteBuffer::wrap)
+                .collect(Collectors.toSet());
+
+        return new ServerState(server.getAddress(), authCertHashes, clients);
+    }
+
+    /**
+     * @param parameters the shared parameters
+     * @return the states of the approved CAs that are compared between versions
+     */
+    static List<CaState> getCaStates(SharedParametersV2 parameters) {
+        return parameters.getApprovedCAs().stream()
+                .map(ca -> new CaState(ca.getName(), ca.isAuthenticationOnly(), ca.getCertificateProfileInfo(),
+                        getCaInfo(ca.getTopCA()), getCaInfos(ca.getIntermediateCA())))
+                .collect(Collectors.toList());
+    }
+
+    private static <K, V> Set<K> changedKeys(Map<K, V> previous, Map<K, V> current) {
+        Set<K> changed = new HashSet<>();
+
+        previous.forEach((key, value) -> {
+            if (!value.equals(current.get(key))) {
+                changed.add(key);
+            }
+        });
+
+        current.keySet().stream().filter(key -> !previous.containsKey(key)).forEach(changed::add);
+
+        return changed;
+    }
+
+    private static void addClients(Set<ClientId> changedClients, ServerState server) {
+        if (server != null) {
+            changedClients.addAll(server.getClients());
+        }
+    }
+
+    private static List<CaInfoState> getCaInfos(List<CaInfoType> caInfos) {
+        return caInfos.stream().map(SharedParametersDiff::getCaInfo).collect(Collectors.toList());
+    }
+
+    private static CaInfoState getCaInfo(CaInfoType caInfo) {
+        List<OcspState> ocsp = caInfo.getOcsp().stream()
+                .map(o -> new OcspState(o.getUrl(), o.getCert() != null ? ByteBuffer.wrap(o.getCert()) : null))
+                .collect(Collectors.toList());
+
+        return new CaInfoState(ByteBuffer.wrap(caInfo.getCert()), ocsp);
+    }
+
+    @Value
+    static class ServerState {
+        String address;
+        Set<ByteBuffer> authCertHashes;
+        Set<ClientId> clients;
+    }
+
+    @Value
+    static class CaState {
+        String name;
+        Boolean authenticationOnly;
+        String certificateProfileInfo;
+        CaInfoState topCa;
+        List<CaInfoState> intermediateCas;
+    }
+
+    @Value
+    private static class CaInfoState {
+        ByteBuffer cert;
+        List<OcspState> ocsp;
+    }
+
+    @Value
+    private static class OcspState {
+        String url;
+        ByteBuffer cert;
+    }
+}
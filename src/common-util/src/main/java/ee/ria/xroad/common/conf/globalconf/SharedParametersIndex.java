@@ -0,0 +1,445 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.SecurityServerId;
+import ee.ria.xroad.common.identifier.XRoadObjectType;
+import ee.ria.xroad.common.util.AtomicSave;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-only binary index of the most frequently used shared parameters lookups: the addresses of
+ * service providers, the security servers by authentication certificate hash and the clients of
+ * security servers.
+ *
+ * The configuration client writes the index next to the shared parameters file, and the other
+ * processes memory-map it instead of building the corresponding maps on their own heap. The mapped
+ * pages are shared by all the processes that use the index. The index is used only if it was built
+ * from the current version of the shared parameters file, as identified by the size and the modification
+ * time of the file, so that opening the index does not require reading the file.
+ *
+ * The index consists of open addressing hash tables whose keys and values are UTF-8 strings:
+ * <pre>
+ * header:  magic, format version, content size, content modification time, table count, table offsets
+ * table:   slot count (a power of two), entry offset per slot (0 if the slot is empty)
+ * entry:   key length, key, value count, value length and value per value
+ * </pre>
+ */
+@Slf4j
+final class SharedParametersIndex {
+
+    static final String INDEX_SUFFIX = ConfigurationDirectory.INDEX_SUFFIX;
+
+    private static final int MAGIC = 0x58524749;
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int MEMBER_ADDRESSES = 0;
+    private static final int SERVERS_BY_AUTH_CERT = 1;
+    private static final int SERVER_CLIENTS = 2;
+    private static final int TABLE_COUNT = 3;
+
+    private static final int HASH_SEED = 31;
+    private static final int HASH_SPREAD_SHIFT = 16;
+
+    private static final char SEPARATOR = '\0';
+
+    private final ByteBuffer buffer;
+    private final int tablesOffset;
+
+    private SharedParametersIndex(ByteBuffer buffer, int tablesOffset) {
+        this.buffer = buffer;
+        this.tablesOffset = tablesOffset;
+    }
+
+    /**
+     * Returns the index file of the given shared parameters file.
+     * @param sharedParametersFile the shared parameters file
+     * @return the index file
+     */
+    static Path getIndexFile(Path sharedParametersFile) {
+        return Paths.get(sharedParametersFile.toString() + INDEX_SUFFIX);
+    }
+
+    /**
+     * @param sharedParametersFile the shared parameters file
+     * @return the modification time of the index file of the given shared parameters file, or null if the
+     * index does not exist
+     */
+    static FileTime getIndexLastModifiedTime(Path sharedParametersFile) {
+        try {
+            return Files.getLastModifiedTime(getIndexFile(sharedParametersFile));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Memory-maps the index of the given shared parameters file.
+     * @param sharedParametersFile the shared parameters file
+     * @return the index, or null if the index does not exist or does not match the version of the file
+     */
+    static SharedParametersIndex open(Path sharedParametersFile) {
+        Path indexFile = getIndexFile(sharedParametersFile);
+
+        if (!Files.exists(indexFile)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(indexFile)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != FORMAT_VERSION) {
+                log.warn("Ignoring index {}, unsupported format", indexFile);
+
+                return null;
+            }
+
+            int position = 2 * Integer.BYTES;
+            ContentVersion version = new ContentVersion(buffer.getLong(position),
+                    buffer.getLong(position + Long.BYTES));
+            position += 2 * Long.BYTES;
+
+            if (!version.equals(ContentVersion.of(sharedParametersFile))) {
+                log.info("Ignoring index {}, it does not match {}", indexFile, sharedParametersFile);
+
+                return null;
+            }
+
+            if (buffer.getInt(position) != TABLE_COUNT) {
+                log.warn("Ignoring index {}, unexpected table count", indexFile);
+
+                return null;
+            }
+
+            return new SharedParametersIndex(buffer, position + Integer.BYTES);
+        } catch (Exception e) {
+            log.warn("Ignoring index {}", indexFile, e);
+
+            return null;
+        }
+    }
+
+    /**
+     * Builds the index of the given shared parameters file and saves it next to the file.
+     * @param sharedParametersFile the shared parameters file
+     * @throws Exception if loading the shared parameters or saving the index fails
+     */
+    static void write(Path sharedParametersFile) throws Exception {
+        ContentVersion version = ContentVersion.of(sharedParametersFile);
+
+        SharedParametersV2 parameters = new SharedParametersV2(false);
+        parameters.load(sharedParametersFile.toString());
+
+        if (!version.equals(ContentVersion.of(sharedParametersFile))) {
+            log.info("Not saving shared parameters index, {} was replaced while building the index",
+                    sharedParametersFile);
+
+            return;
+        }
+
+        byte[] index = build(parameters, version);
+
+        log.debug("Saving shared parameters index ({} bytes) to {}", index.length,
+                getIndexFile(sharedParametersFile));
+
+        AtomicSave.execute(getIndexFile(sharedParametersFile).toString(), "index", index);
+    }
+
+    /**
+     * @param clientId the client identifier
+     * @return the addresses of the security servers of the client, or null if there are none
+     */
+    Set<String> getProviderAddresses(ClientId clientId) {
+        int entry = find(MEMBER_ADDRESSES, utf8(key(clientId)));
+
+        return entry < 0 ? null : new HashSet<>(readValues(entry));
+    }
+
+    /**
+     * @param authCertHash the base64 encoded hash of the authentication certificate
+     * @return the identifier of the security server that owns the certificate, or null if there is none
+     */
+    SecurityServerId getServerIdByAuthCertHash(String authCertHash) {
+        int entry = find(SERVERS_BY_AUTH_CERT, utf8(authCertHash));
+
+        if (entry < 0) {
+            return null;
+        }
+
+        Iterator<String> fields = Arrays.asList(readValues(entry).get(0).split(String.valueOf(SEPARATOR), -1))
+                .iterator();
+
+        // Skip the object type.
+        fields.next();
+
+        return SecurityServerId.create(fields.next(), fields.next(), fields.next(), fields.next());
+    }
+
+    /**
+     * @param clientId the client identifier
+     * @param serverId the security server identifier
+     * @return true if the client is a client of the security server
+     */
+    boolean isSecurityServerClient(ClientId clientId, SecurityServerId serverId) {
+        return find(SERVER_CLIENTS, utf8(key(serverId) + SEPARATOR + key(clientId))) >= 0;
+    }
+
+    // ------------------------------------------------------------------------
+
+    static byte[] build(SharedParametersV2 parameters, ContentVersion version) throws IOException {
+        List<Map<String, List<String>>> tables = new ArrayList<>();
+
+        Map<String, List<String>> memberAddresses = new HashMap<>();
+        parameters.getMemberAddresses().forEach((client, addresses) ->
+                memberAddresses.put(key(client), new ArrayList<>(addresses)));
+        tables.add(memberAddresses);
+
+        Map<String, List<String>> serversByAuthCert = new HashMap<>();
+        parameters.getServerByAuthCert().forEach((hash, server) -> serversByAuthCert.put(hash,
+                Collections.singletonList(key(parameters.createSecurityServerId(server)))));
+        tables.add(serversByAuthCert);
+
+        Map<String, List<String>> serverClients = new HashMap<>();
+
+        for (Map.Entry<SecurityServerId, Set<ClientId>> entry : parameters.getSecurityServerClients().entrySet()) {
+            for (ClientId client : entry.getValue()) {
+                serverClients.put(key(entry.getKey()) + SEPARATOR + key(client), Collections.emptyList());
+            }
+        }
+
+        tables.add(serverClients);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(version.getSize());
+        out.writeLong(version.getLastModified());
+        out.writeInt(tables.size());
+
+        int tableOffsetsPosition = out.size();
+
+        for (int i = 0; i < tables.size(); i++) {
+            out.writeInt(0);
+        }
+
+        int[] tableOffsets = new int[tables.size()];
+
+        for (int i = 0; i < tables.size(); i++) {
+            tableOffsets[i] = out.size();
+            writeTable(out, tables.get(i));
+        }
+
+        out.flush();
+
+        ByteBuffer result = ByteBuffer.wrap(bytes.toByteArray());
+
+        for (int i = 0; i < tableOffsets.length; i++) {
+            result.putInt(tableOffsetsPosition + i * Integer.BYTES, tableOffsets[i]);
+        }
+
+        return result.array();
+    }
+
+    private static void writeTable(DataOutputStream out, Map<String, List<String>> table) throws IOException {
+        int slotCount = Integer.highestOneBit(Math.max(1, table.size() * 2 - 1)) << 1;
+        int[] slots = new int[slotCount];
+
+        // Entries are laid out right after the slots.
+        int position = out.size() + Integer.BYTES + slotCount * Integer.BYTES;
+        List<byte[]> entries = new ArrayList<>(table.size());
+
+        for (Map.Entry<String, List<String>> entry : table.entrySet()) {
+            byte[] key = utf8(entry.getKey());
+            int slot = hash(key) & (slotCount - 1);
+
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+
+            byte[] encoded = encodeEntry(key, entry.getValue());
+            slots[slot] = position;
+            position += encoded.length;
+            entries.add(encoded);
+        }
+
+        out.writeInt(slotCount);
+
+        for (int slot : slots) {
+            out.writeInt(slot);
+        }
+
+        for (byte[] entry : entries) {
+            out.write(entry);
+        }
+    }
+
+    private static byte[] encodeEntry(byte[] key, List<String> values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(key.length);
+        out.write(key);
+        out.writeInt(values.size());
+
+        for (String value : values) {
+            byte[] encoded = utf8(value);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        }
+
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    private int find(int table, byte[] key) {
+        int tableOffset = buffer.getInt(tablesOffset + table * Integer.BYTES);
+        int slotCount = buffer.getInt(tableOffset);
+        int slot = hash(key) & (slotCount - 1);
+
+        for (int i = 0; i < slotCount; i++) {
+            int entry = buffer.getInt(tableOffset + Integer.BYTES + slot * Integer.BYTES);
+
+            if (entry == 0) {
+                return -1;
+            }
+
+            if (keyEquals(entry, key)) {
+                return entry;
+            }
+
+            slot = (slot + 1) & (slotCount - 1);
+        }
+
+        return -1;
+    }
+
+    private boolean keyEquals(int entry, byte[] key) {
+        if (buffer.getInt(entry) != key.length) {
+            return false;
+        }
+
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(entry + Integer.BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private List<String> readValues(int entry) {
+        int position = entry + Integer.BYTES + buffer.getInt(entry);
+        int count = buffer.getInt(position);
+        position += Integer.BYTES;
+
+        List<String> values = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            byte[] value = new byte[buffer.getInt(position)];
+            position += Integer.BYTES;
+
+            for (int j = 0; j < value.length; j++) {
+                value[j] = buffer.get(position + j);
+            }
+
+            position += value.length;
+            values.add(new String(value, StandardCharsets.UTF_8));
+        }
+
+        return values;
+    }
+
+    private static int hash(byte[] key) {
+        int h = 1;
+
+        for (byte b : key) {
+            h = HASH_SEED * h + b;
+        }
+
+        return h ^ (h >>> HASH_SPREAD_SHIFT);
+    }
+
+    // The size and the modification time (in nanoseconds) of a shared parameters file
+    @Value
+    static class ContentVersion {
+        private final long size;
+        private final long lastModified;
+
+        static ContentVersion of(Path file) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+            return new ContentVersion(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    private static String key(SecurityServerId serverId) {
+        return join(XRoadObjectType.SERVER.name(), serverId.getXRoadInstance(), serverId.getMemberClass(),
+                serverId.getMemberCode(), serverId.getServerCode());
+    }
+
+    private static String key(ClientId clientId) {
+        return clientId.getSubsystemCode() == null
+                ? join(XRoadObjectType.MEMBER.name(), clientId.getXRoadInstance(), clientId.getMemberClass(),
+                        clientId.getMemberCode())
+                : join(XRoadObjectType.SUBSYSTEM.name(), clientId.getXRoadInstance(), clientId.getMemberClass(),
+                        clientId.getMemberCode(), clientId.getSubsystemCode());
+    }
+
+    private static String join(String... fields) {
+        return String.join(String.valueOf(SEPARATOR), fields);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -50,16 +50,21 @@ import org.bouncycastle.cert.X509CertificateHolder;
 import javax.xml.bind.JAXBElement;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
@@ -90,9 +95,35 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
     private final List<X509Certificate> verificationCaCerts = new ArrayList<>();
     private final Set<String> knownAddresses = new HashSet<>();
     private final Map<SecurityServerId, SecurityServerType> securityServersById = new HashMap<>();
+    private final Map<GlobalGroupId, GlobalGroupType> globalGroupsById = new HashMap<>();
+    private final Map<GlobalGroupId, Set<ClientId>> globalGroupMembers = new HashMap<>();
+    private final Map<ByteBuffer, X509Certificate> caCertsByEncoding = new HashMap<>();
+
+    // The states compared with the next loaded version of the shared parameters, see SharedParametersDiff
+    private final Map<ClientId, String> memberNames = new HashMap<>();
+    private final Map<SecurityServerId, SharedParametersDiff.ServerState> serverStates = new HashMap<>();
+    private List<SharedParametersDiff.CaState> caStates = Collections.emptyList();
+
+    // Changes compared to the previously loaded version of the shared parameters
+    private SharedParametersChanges changes = SharedParametersChanges.ALL;
+
+    // Serves the provider address, server by auth cert and server client lookups instead of the maps above
+    private final boolean useIndex;
+    private SharedParametersIndex index;
+    private FileTime indexLastModifiedTime;
 
     SharedParametersV2() {
+        this(true);
+    }
+
+    /**
+     * @param useIndex whether the lookups should be served from the index file of the shared parameters,
+     * if there is an up-to-date one
+     */
+    SharedParametersV2(boolean useIndex) {
         super(ObjectFactory.class, SharedParametersSchemaValidatorV2.class);
+
+        this.useIndex = useIndex;
     }
 
     ClientId createMemberId(MemberType member) {
@@ -106,6 +137,14 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
                 subsystem.getSubsystemCode());
     }
 
+    SecurityServerId createSecurityServerId(SecurityServerType securityServer) {
+        MemberType owner = getOwner(securityServer);
+
+        return SecurityServerId.create(confType.getInstanceIdentifier(),
+                owner.getMemberClass().getCode(), owner.getMemberCode(),
+                securityServer.getServerCode());
+    }
+
     GlobalGroupId createGlobalGroupId(GlobalGroupType globalGroup) {
         return GlobalGroupId.create(confType.getInstanceIdentifier(),
                 globalGroup.getGroupCode());
@@ -143,15 +182,66 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         return confType.getGlobalSettings();
     }
 
+    Map<ClientId, Set<String>> getMemberAddresses() {
+        checkNotIndexed();
+
+        return memberAddresses;
+    }
+
+    Map<String, SecurityServerType> getServerByAuthCert() {
+        checkNotIndexed();
+
+        return serverByAuthCert;
+    }
+
+    Map<SecurityServerId, Set<ClientId>> getSecurityServerClients() {
+        checkNotIndexed();
+
+        return securityServerClients;
+    }
+
+    /**
+     * @return true if the lookups are not served from an index, but the index file of the shared parameters
+     * has been written or replaced after the parameters were loaded
+     */
+    boolean hasIndexChanged() {
+        return useIndex && index == null && confFileName != null
+                && !Objects.equals(indexLastModifiedTime,
+                        SharedParametersIndex.getIndexLastModifiedTime(Paths.get(confFileName)));
+    }
+
     GlobalGroupType findGlobalGroup(GlobalGroupId groupId) {
-        if (!groupId.getXRoadInstance().equals(
-                confType.getInstanceIdentifier())) {
-            return null;
+        return globalGroupsById.get(groupId);
+    }
+
+    boolean isSubjectInGlobalGroup(ClientId subjectId, GlobalGroupId groupId) {
+        Set<ClientId> members = globalGroupMembers.get(groupId);
+
+        return members != null && members.contains(subjectId);
+    }
+
+    Collection<String> getProviderAddresses(ClientId clientId) {
+        return index != null ? index.getProviderAddresses(clientId) : memberAddresses.get(clientId);
+    }
+
+    SecurityServerId getServerIdByAuthCertHash(String authCertHash) {
+        if (index != null) {
+            return index.getServerIdByAuthCertHash(authCertHash);
         }
 
-        return confType.getGlobalGroup().stream()
-                .filter(g -> g.getGroupCode().equals(groupId.getGroupCode()))
-                .findFirst().orElse(null);
+        SecurityServerType server = serverByAuthCert.get(authCertHash);
+
+        return server != null ? createSecurityServerId(server) : null;
+    }
+
+    boolean isSecurityServerClient(ClientId clientId, SecurityServerId securityServerId) {
+        if (index != null) {
+            return index.isSecurityServerClient(clientId, securityServerId);
+        }
+
+        Set<ClientId> clients = securityServerClients.get(securityServerId);
+
+        return clients != null && clients.contains(clientId);
     }
 
     X509Certificate getCaCertForSubject(X509Certificate subject)
@@ -167,6 +257,24 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
 
     @Override
     public void load(String fileName) throws Exception {
+        load(fileName, null);
+    }
+
+    /**
+     * Loads the shared parameters and computes the changes compared to the previously loaded version of the
+     * same shared parameters. The CA certificates and the states of the security servers that are unchanged are
+     * taken over from the previous version instead of building them again.
+     * <p>
+     * The lookup maps are rebuilt rather than updated with the changes: the previous version is still in use
+     * while the new one is loaded, so its maps would have to be copied, which costs as much as building them.
+     * The members and security servers are walked once, and the changes are computed from the states collected
+     * during the walk.
+     *
+     * @param fileName the shared parameters file
+     * @param previous the previously loaded version of the shared parameters or null, if there is none
+     * @throws Exception if loading fails
+     */
+    void load(String fileName, SharedParametersV2 previous) throws Exception {
         super.load(fileName);
 
         if (fileName == null) {
@@ -174,10 +282,29 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         }
 
         try {
+            boolean hasPrevious = previous != null && previous != this;
+            Map<ByteBuffer, X509Certificate> previousCaCerts = hasPrevious
+                    ? previous.caCertsByEncoding : Collections.emptyMap();
+            Map<SecurityServerId, SharedParametersDiff.ServerState> previousServerStates = hasPrevious
+                    ? previous.serverStates : Collections.emptyMap();
+
             clearCache();
-            cacheCaCerts();
+
+            if (useIndex) {
+                indexLastModifiedTime = SharedParametersIndex.getIndexLastModifiedTime(Paths.get(fileName));
+                index = SharedParametersIndex.open(Paths.get(fileName));
+            } else {
+                index = null;
+            }
+
+            cacheCaCerts(previousCaCerts);
             cacheKnownAddresses();
-            cacheSecurityServers();
+            cacheSecurityServers(previousServerStates);
+            cacheGlobalGroups();
+
+            caStates = SharedParametersDiff.getCaStates(this);
+
+            changes = hasPrevious ? SharedParametersDiff.compute(previous, this) : SharedParametersChanges.ALL;
         } catch (Exception e) {
             throw translateException(e);
         }
@@ -193,6 +320,13 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
 
     // ------------------------------------------------------------------------
 
+    // The maps of the lookups that are served from the index are left empty
+    private void checkNotIndexed() {
+        if (index != null) {
+            throw new IllegalStateException("The lookups are served from the shared parameters index");
+        }
+    }
+
     private void clearCache() {
         subjectsAndCaCerts.clear();
         caCertsAndCertProfiles.clear();
@@ -205,22 +339,26 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         verificationCaCerts.clear();
         knownAddresses.clear();
         securityServersById.clear();
+        globalGroupsById.clear();
+        globalGroupMembers.clear();
+        caCertsByEncoding.clear();
+        memberNames.clear();
+        serverStates.clear();
+        caStates = Collections.emptyList();
     }
 
-    private void cacheCaCerts() throws CertificateException, IOException {
+    private void cacheCaCerts(Map<ByteBuffer, X509Certificate> previousCaCerts)
+            throws CertificateException, IOException {
         List<X509Certificate> allCaCerts = new ArrayList<>();
 
         for (ApprovedCATypeV2 caType : confType.getApprovedCA()) {
             List<CaInfoType> topCAs = Arrays.asList(caType.getTopCA());
             List<CaInfoType> intermediateCAs = caType.getIntermediateCA();
 
-            cacheOcspData(topCAs);
-            cacheOcspData(intermediateCAs);
-
             List<X509Certificate> pkiCaCerts = new ArrayList<>();
 
-            pkiCaCerts.addAll(getTopOrIntermediateCaCerts(topCAs));
-            pkiCaCerts.addAll(getTopOrIntermediateCaCerts(intermediateCAs));
+            pkiCaCerts.addAll(cacheTopOrIntermediateCaCerts(topCAs, previousCaCerts));
+            pkiCaCerts.addAll(cacheTopOrIntermediateCaCerts(intermediateCAs, previousCaCerts));
 
             Boolean authenticationOnly = caType.isAuthenticationOnly();
             if (authenticationOnly == null || !authenticationOnly) {
@@ -249,86 +387,129 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
             .forEach(knownAddresses::add);
     }
 
-    private void cacheSecurityServers() {
+    private void cacheSecurityServers(Map<SecurityServerId, SharedParametersDiff.ServerState> previousServerStates) {
         // Map of XML ID fields mapped to client IDs
-        Map<String, ClientId> clientIds = getClientIds();
+        Map<String, ClientId> clientIds = cacheMembers();
 
         for (SecurityServerType securityServer : confType.getSecurityServer()) {
-            // Cache the server.
-            for (byte[] certHash: securityServer.getAuthCertHash()) {
-                serverByAuthCert.put(encodeBase64(certHash),
-                        securityServer);
-            }
-
-            // Add owner of the security server.
-            MemberType owner = (MemberType) securityServer.getOwner();
-            addServerClient(createMemberId(owner), securityServer);
+            SecurityServerId serverId = createSecurityServerId(securityServer);
 
-            // cache security server information by serverId
-            SecurityServerId securityServerId = SecurityServerId.create(
-                    confType.getInstanceIdentifier(),
-                    owner.getMemberClass().getCode(),
-                    owner.getMemberCode(), securityServer.getServerCode());
-            securityServersById.put(securityServerId, securityServer);
-
-            // Add clients of the security server.
-            for (JAXBElement<?> client : securityServer.getClient()) {
-                Object val = client.getValue();
-
-                if (val instanceof MemberType) {
-                    addServerClient(createMemberId((MemberType) val),
-                            securityServer);
-                } else if (val instanceof SubsystemType) {
-                    addServerClient(
-                            clientIds.get(((SubsystemType) val).getId()),
+            // Cache the server, unless it is served from the index.
+            if (index == null) {
+                for (byte[] certHash : securityServer.getAuthCertHash()) {
+                    serverByAuthCert.put(encodeBase64(certHash),
                             securityServer);
                 }
             }
+
+            // cache security server information by serverId
+            securityServersById.put(serverId, securityServer);
+
+            SharedParametersDiff.ServerState state = SharedParametersDiff.getServerState(
+                    securityServer, getServerClients(securityServer, clientIds));
+            SharedParametersDiff.ServerState previousState = previousServerStates.get(serverId);
+
+            if (state.equals(previousState)) {
+                state = previousState;
+            }
+
+            serverStates.put(serverId, state);
+
+            for (ClientId client : state.getClients()) {
+                addServerClient(client, serverId, securityServer);
+            }
         }
     }
 
-    private void addServerClient(ClientId client, SecurityServerType server) {
-        // Add the mapping from client to security server address.
-        if (isNotBlank(server.getAddress())) {
-            addToMap(memberAddresses, client, server.getAddress());
-        }
+    // The owner and the clients of the security server
+    private Set<ClientId> getServerClients(SecurityServerType securityServer, Map<String, ClientId> clientIds) {
+        Set<ClientId> clients = new HashSet<>();
+        clients.add(createMemberId(getOwner(securityServer)));
 
-        // Add the mapping from client to authentication certificate.
-        for (byte[] authCert : server.getAuthCertHash()) {
-            addToMap(memberAuthCerts, client, authCert);
-        }
+        for (JAXBElement<?> client : securityServer.getClient()) {
+            Object val = client.getValue();
 
-        MemberType owner = getOwner(server);
-        SecurityServerId securityServerId = SecurityServerId.create(
-                confType.getInstanceIdentifier(),
-                owner.getMemberClass().getCode(),
-                owner.getMemberCode(), server.getServerCode());
+            if (val instanceof MemberType) {
+                clients.add(createMemberId((MemberType) val));
+            } else if (val instanceof SubsystemType) {
+                clients.add(clientIds.get(((SubsystemType) val).getId()));
+            }
+        }
 
-        addToMap(securityServerClients, securityServerId, client);
+        return Collections.unmodifiableSet(clients);
     }
 
-    private Map<String, ClientId> getClientIds() {
-        Map<String, ClientId> ret = new HashMap<>();
+    // Caches the names of the members and subsystems, returns the XML ID fields mapped to client IDs
+    private Map<String, ClientId> cacheMembers() {
+        Map<String, ClientId> clientIds = new HashMap<>();
 
         for (MemberType member : confType.getMember()) {
-            ret.put(member.getId(), createMemberId(member));
+            ClientId memberId = createMemberId(member);
+
+            clientIds.put(member.getId(), memberId);
+            memberNames.put(memberId, member.getName());
 
             for (SubsystemType subsystem : member.getSubsystem()) {
-                ret.put(subsystem.getId(),
-                        createSubsystemId(member, subsystem));
+                ClientId subsystemId = createSubsystemId(member, subsystem);
+
+                clientIds.put(subsystem.getId(), subsystemId);
+                memberNames.put(subsystemId, member.getName());
             }
         }
 
-        return ret;
+        return clientIds;
     }
 
-    private void cacheOcspData(List<CaInfoType> typesUnderCA)
-            throws CertificateException, IOException {
+    private void cacheGlobalGroups() {
+        for (GlobalGroupType globalGroup : confType.getGlobalGroup()) {
+            GlobalGroupId groupId = createGlobalGroupId(globalGroup);
+
+            if (globalGroupsById.putIfAbsent(groupId, globalGroup) != null) {
+                continue;
+            }
+
+            globalGroupMembers.put(groupId, new HashSet<>(globalGroup.getGroupMember()));
+        }
+    }
+
+    private void addServerClient(ClientId client, SecurityServerId serverId, SecurityServerType server) {
+        // Add the mapping from client to authentication certificate.
+        for (byte[] authCert : server.getAuthCertHash()) {
+            addToMap(memberAuthCerts, client, authCert);
+        }
+
+        if (index != null) {
+            // The addresses and clients are served from the index.
+            return;
+        }
+
+        // Add the mapping from client to security server address.
+        if (isNotBlank(server.getAddress())) {
+            addToMap(memberAddresses, client, server.getAddress());
+        }
+
+        addToMap(securityServerClients, serverId, client);
+    }
+
+    private List<X509Certificate> cacheTopOrIntermediateCaCerts(List<CaInfoType> typesUnderCA,
+            Map<ByteBuffer, X509Certificate> previousCaCerts) {
+        List<X509Certificate> caCerts = new ArrayList<>();
+
         for (CaInfoType caType : typesUnderCA) {
-            X509Certificate cert = readCertificate(caType.getCert());
+            ByteBuffer encoding = ByteBuffer.wrap(caType.getCert());
+
+            X509Certificate cert = caCertsByEncoding.computeIfAbsent(encoding, e -> {
+                X509Certificate previousCert = previousCaCerts.get(e);
+
+                return previousCert != null ? previousCert : readCertificate(caType.getCert());
+            });
             List<OcspInfoType> caOcspTypes = caType.getOcsp();
             caCertsAndOcspData.put(cert, caOcspTypes);
+
+            caCerts.add(cert);
         }
+
+        return caCerts;
     }
 
     private static <K, V> void addToMap(Map<K, Set<V>> map, K key, V value) {
@@ -339,11 +520,4 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         }
         coll.add(value);
     }
-
-    private static List<X509Certificate> getTopOrIntermediateCaCerts(
-            List<CaInfoType> typesUnderCA) {
-        return typesUnderCA.stream()
-                .map(c -> readCertificate(c.getCert()))
-                .collect(Collectors.toList());
-    }
 }
@@ -28,11 +28,13 @@ import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 /**
- * Simple last time based object cache
+ * Simple last time based object cache. The cache is safe for concurrent use.
  */
 @Slf4j
 public class TimeBasedObjectCache {
@@ -45,7 +47,7 @@ public class TimeBasedObjectCache {
 
     private final int expireSeconds;
 
-    private Map<String, TimeAndValue> values = new HashMap<>();
+    private final Map<String, TimeAndValue> values = new ConcurrentHashMap<>();
 
     /**
      * Constructor.
@@ -62,9 +64,7 @@ public class TimeBasedObjectCache {
      * Check if cache value is valid
      */
     public boolean isValid(String key) {
-        TimeAndValue timeAndValue = values.get(key);
-        LocalDateTime now = LocalDateTime.now().minusSeconds(expireSeconds);
-        return timeAndValue != null && timeAndValue.getTime().isAfter(now);
+        return isValid(values.get(key));
     }
 
     /**
@@ -74,10 +74,62 @@ public class TimeBasedObjectCache {
         return values.get(key).getValue();
     }
 
+    /**
+     * Get a valid value from cache, or load and cache a new value if the cached value is missing or has expired.
+     * The value of a key is loaded by one caller at a time, concurrent callers wait for the loaded value.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getValue(String key, Callable<T> valueLoader) throws Exception {
+        TimeAndValue timeAndValue = values.get(key);
+
+        if (isValid(timeAndValue)) {
+            return (T) timeAndValue.getValue();
+        }
+
+        try {
+            return (T) values.compute(key, (k, current) -> isValid(current)
+                    ? current : new TimeAndValue(LocalDateTime.now(), load(valueLoader))).getValue();
+        } catch (LoadException e) {
+            throw e.getCause();
+        }
+    }
+
     /**
      * Set cache value.
      */
     public void setValue(String key, Object value) {
         values.put(key, new TimeAndValue(LocalDateTime.now(), value));
     }
+
+    /**
+     * Remove the cache values whose keys match the given filter.
+     */
+    public void remove(Predicate<String> keyFilter) {
+        values.keySet().removeIf(keyFilter);
+    }
+
+    private static Object load(Callable<?> valueLoader) {
+        try {
+            return valueLoader.call();
+        } catch (Exception e) {
+            throw new LoadException(e);
+        }
+    }
+
+    // Carries the exception thrown by a value loader out of the map computation
+    private static final class LoadException extends RuntimeException {
+        LoadException(Exception cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized Exception getCause() {
+            return (Exception) super.getCause();
+        }
+    }
+
+    private boolean isValid(TimeAndValue timeAndValue) {
+        LocalDateTime now = LocalDateTime.now().minusSeconds(expireSeconds);
+        return timeAndValue != null && timeAndValue.getTime().isAfter(now);
+    }
 }
@@ -32,11 +32,15 @@ import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Marshaller;
 
 import java.io.StringWriter;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
+import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.hashchain.DigestList.digestHashStep;
 import static ee.ria.xroad.common.util.CryptoUtils.getDigestAlgorithmURI;
 import static ee.ria.xroad.common.util.MessageFileNames.attachment;
@@ -62,14 +66,29 @@ import static java.lang.Integer.numberOfLeadingZeros;
  *
  * Physically, the tree is stored in two separate arrays: inputs (leaf nodes)
  * and nodes (non-leaf nodes). In terms of index calculations these are
- * treated as a single array consisting of nodes+inputs.
+ * treated as a single array consisting of nodes+inputs. The non-leaf nodes
+ * all have the length of the hash algorithm output and are stored back to
+ * back in a single flat byte array.
  *
- * For incomplete binary trees, some inputs and nodes can be null.
+ * The tree is hashed level by level, bottom-up. Levels that are wide enough
+ * are hashed in parallel, as the hash steps of a level are independent.
+ *
+ * For incomplete binary trees, some inputs and nodes can be missing.
+ *
+ * Hash chains are XML-encoded only when requested, either one by one
+ * (getHashChain) or all at once (getHashChains).
  */
 public final class HashChainBuilder {
 
     private static final int INTEGER_BITS = 32;
 
+    /**
+     * Minimum number of hash steps on a tree level for hashing the level
+     * in parallel. Below this, the overhead of splitting the work exceeds
+     * the gain.
+     */
+    private static final int PARALLEL_THRESHOLD = 256;
+
     private static final Logger LOG =
             LoggerFactory.getLogger(HashChainBuilder.class);
 
@@ -101,8 +120,20 @@ public final class HashChainBuilder {
     /** The file name to be used for data refs. */
     private String dataRefFileName;
 
-    /** Array of intermediate Merkle tree nodes. */
-    private byte[][] nodes;
+    /** Whether the tree has been finished. */
+    private boolean finished;
+
+    /** Number of intermediate Merkle tree nodes, including missing ones. */
+    private int nodesCount;
+
+    /** Length of an intermediate node (hash algorithm output) in bytes. */
+    private int digestLength;
+
+    /** Intermediate Merkle tree nodes, stored back to back. */
+    private byte[] nodes;
+
+    /** Indicates which of the intermediate nodes are present. */
+    private boolean[] presentNodes;
 
     /** Maximum index a tree node can have. */
     private int maxIndex;
@@ -124,10 +155,6 @@ public final class HashChainBuilder {
     public HashChainBuilder(String hashAlgorithm) throws Exception {
         this.hashAlgorithm = hashAlgorithm;
         hashAlgorithmUri = getDigestAlgorithmURI(hashAlgorithm);
-
-        marshaller = jaxbCtx.createMarshaller();
-        // Format the XML, good for debugging.
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
     }
 
     /**
@@ -135,7 +162,7 @@ public final class HashChainBuilder {
      * @param hash input hash to add
      */
     public void addInputHash(byte[] hash) {
-        if (nodes != null) {
+        if (finished) {
             throw new IllegalStateException(
                     "Cannot add inputs to finished tree");
         }
@@ -150,7 +177,7 @@ public final class HashChainBuilder {
      * @throws Exception in case of errors
      */
     public void addInputHash(byte[][] hashes) throws Exception {
-        if (nodes != null) {
+        if (finished) {
             throw new IllegalStateException(
                     "Cannot add inputs to finished tree");
         }
@@ -170,15 +197,20 @@ public final class HashChainBuilder {
      * @throws Exception in case of errors
      */
     public void finishBuilding() throws Exception {
-        // Create array for intermediate nodes.
-        nodes = new byte[getNodesCount()][];
+        nodesCount = getNodesCount();
+        finished = true;
 
         // For special cases of 0 or 1 inputs, we behave differently.
         if (inputs.size() < 2) {
             return;
         }
 
-        maxIndex = nodes.length + inputs.size();
+        // Create array for intermediate nodes.
+        digestLength = MessageDigest.getInstance(hashAlgorithm).getDigestLength();
+        nodes = new byte[nodesCount * digestLength];
+        presentNodes = new boolean[nodesCount];
+
+        maxIndex = nodesCount + inputs.size();
 
         // Hash input data items to produce lowest level of non-leaf nodes.
         hashInputs();
@@ -201,7 +233,7 @@ public final class HashChainBuilder {
      */
     public String getHashChainResult(String hashChainFileName)
             throws Exception {
-        if (nodes == null) {
+        if (!finished) {
             throw new IllegalStateException("Tree must be finished");
         }
 
@@ -232,12 +264,57 @@ public final class HashChainBuilder {
      * @throws Exception in case of any errors
      */
     public String[] getHashChains(String dataFileName) throws Exception {
-        if (nodes == null) {
+        if (!hashChainsAvailable(dataFileName)) {
+            return null;
+        }
+
+        String[] ret = new String[inputs.size()];
+
+        for (int i = 0; i < inputs.size(); ++i) {
+            ret[i] = getHashChain(dataFileName, i);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns XML-encoded hash chain for the input data item with the given
+     * index (in the order the items were added). Only the requested hash
+     * chain is constructed.
+     * @param dataFileName name of the file containing data input items
+     * @param itemIndex index of the input data item
+     * @return XML-encoded hash chain for the input data item or null, if the
+     * tree is empty
+     * @throws Exception in case of any errors
+     */
+    public String getHashChain(String dataFileName, int itemIndex)
+            throws Exception {
+        if (!hashChainsAvailable(dataFileName)) {
+            return null;
+        }
+
+        if (itemIndex < 0 || itemIndex >= inputs.size()) {
+            throw new IndexOutOfBoundsException(
+                    "No input data item with index " + itemIndex);
+        }
+
+        this.dataRefFileName = dataFileName;
+
+        if (inputs.size() > 1) {
+            return makeHashChain(itemIndex);
+        } else {
+            // Special case for one input.
+            return makeSingleInputHashChain();
+        }
+    }
+
+    private boolean hashChainsAvailable(String dataFileName) {
+        if (!finished) {
             throw new IllegalStateException("Tree must be finished");
         }
 
         if (inputs.isEmpty()) {
-            return null;
+            return false;
         }
 
         if (inputs.size() == 1 && multiparts.isEmpty()) {
@@ -246,50 +323,37 @@ public final class HashChainBuilder {
                             + "without attachments.");
         }
 
-        this.dataRefFileName = dataFileName;
         if (dataFileName == null) {
             throw new IllegalArgumentException(
                     "dataRefFileName must not be null");
         }
 
-        String[] ret = new String[inputs.size()];
-
-        if (inputs.size() > 1) {
-            for (int i = 0; i < inputs.size(); ++i) {
-                ret[i] = makeHashChain(i);
-            }
-        } else {
-            // Special case for one input.
-            ret[0] = makeSingleInputHashChain();
-        }
-
-        return ret;
+        return true;
     }
 
     /**
      * Hashes the non-leaf nodes of the tree, breadth-first, bottom-up.
      */
     private void hashNodes() throws Exception {
+        // The nodes present on a level are the leftmost ones, starting
+        // with the ones created by hashInputs.
+        int levelNodes = inputs.size() / 2;
+
         // levelStart -- index of first node for this level (depth)
-        for (int levelStart = nodes.length / 2; levelStart > 0;
+        for (int levelStart = nodesCount / 2; levelStart > 0;
                 levelStart /= 2) {
-            // End of nodes for this level.
-            int levelEnd = levelStart * 2;
-
-            LOG.trace("Combining: {}-{}", levelStart, levelEnd);
-            // Walk through the pairs in this level.
-            for (int i = levelStart;
-                    i < levelEnd && nodes[i] != null && nodes[i + 1] != null;
-                    i += 2) {
-                // Combine nodes[i] and nodes[i + 1]
-                LOG.trace("Nodes: Combining {} and {}", i, i + 1);
-                byte[] stepDigest = digestHashStep(hashAlgorithm,
-                        nodes[i], nodes[i + 1]);
-
-                // Store the digest as parent of two inputs.
-                LOG.trace("Storing at {}", parentIdx(i));
-                nodes[parentIdx(i)] = stepDigest;
-            }
+            int firstIdx = levelStart;
+            int firstParentIdx = parentIdx(levelStart);
+            int pairs = levelNodes / 2;
+
+            LOG.trace("Combining: {} pairs from {}", pairs, levelStart);
+            // Combine nodes[i] and nodes[i + 1] of every pair in this level
+            // and store the digest as their parent.
+            hashLevel(pairs, pair -> setNode(firstParentIdx + pair,
+                    digestHashStep(hashAlgorithm, getNode(firstIdx + 2 * pair),
+                            getNode(firstIdx + 2 * pair + 1))));
+
+            levelNodes = pairs;
         }
     }
 
@@ -298,19 +362,71 @@ public final class HashChainBuilder {
      * level of non-leaf nodes.
      */
     private void hashInputs() throws Exception {
-        for (int i = 0; i < inputs.size() - 1; i += 2) {
-            // Compute the index for nodes.
-            int itemIdx = nodes.length + i;
+        int firstParentIdx = parentIdx(nodesCount);
+
+        LOG.trace("Inputs: Combining {} pairs", inputs.size() / 2);
+        // Combine inputs[i] and inputs[i + 1] and store the digest as
+        // parent of two inputs.
+        hashLevel(inputs.size() / 2, pair -> setNode(firstParentIdx + pair,
+                digestHashStep(hashAlgorithm, inputs.get(2 * pair),
+                        inputs.get(2 * pair + 1))));
+    }
 
-            // Combine inputs[i] and inputs[i + 1]
-            LOG.trace("Inputs: Combining {} and {}", i, i + 1);
-            byte[] stepDigest = digestHashStep(hashAlgorithm,
-                    inputs.get(i), inputs.get(i + 1));
+    /**
+     * Performs the hash steps of a tree level, in parallel if the level
+     * is wide enough.
+     */
+    private static void hashLevel(int stepCount, HashStep step)
+            throws Exception {
+        if (stepCount < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < stepCount; i++) {
+                step.hash(i);
+            }
 
-            // Store the digest as parent of two inputs.
-            LOG.trace("Storing at {}", parentIdx(itemIdx));
-            nodes[parentIdx(itemIdx)] = stepDigest;
+            return;
         }
+
+        IntStream.range(0, stepCount).parallel().forEach(i -> {
+            try {
+                step.hash(i);
+            } catch (Exception e) {
+                throw translateException(e);
+            }
+        });
+    }
+
+    /**
+     * Hash step of a tree level.
+     */
+    @FunctionalInterface
+    private interface HashStep {
+        void hash(int index) throws Exception;
+    }
+
+    /**
+     * Stores an intermediate node.
+     */
+    private void setNode(int index, byte[] digest) {
+        if (digest.length != digestLength) {
+            throw new IllegalStateException("Unexpected digest length "
+                    + digest.length + ", expected " + digestLength);
+        }
+
+        System.arraycopy(digest, 0, nodes, index * digestLength, digestLength);
+        presentNodes[index] = true;
+    }
+
+    /**
+     * Returns an intermediate node or null, if the node is missing.
+     */
+    private byte[] getNode(int index) {
+        if (!presentNodes[index]) {
+            return null;
+        }
+
+        int offset = index * digestLength;
+
+        return Arrays.copyOfRange(nodes, offset, offset + digestLength);
     }
 
     /**
@@ -322,7 +438,7 @@ public final class HashChainBuilder {
             // and directly return the input.
             return inputs.get(0);
         } else {
-            return nodes[ROOT_IDX];
+            return getNode(ROOT_IDX);
         }
     }
 
@@ -371,7 +487,7 @@ public final class HashChainBuilder {
                 leftValue, rightValue);
         LOG.trace("Fixing: {} + {} -> {}", new Object[] {
                 leftIdx(nodeIdx), rightIdx(nodeIdx), nodeIdx });
-        nodes[nodeIdx] = stepDigest;
+        setNode(nodeIdx, stepDigest);
         return stepDigest;
     }
 
@@ -380,10 +496,10 @@ public final class HashChainBuilder {
      * at a given index.
      */
     private byte[] get(int index) {
-        if (index < nodes.length) {
-            return nodes[index];
+        if (index < nodesCount) {
+            return getNode(index);
         } else if (index < maxIndex) {
-            return inputs.get(index - nodes.length);
+            return inputs.get(index - nodesCount);
         } else {
             return null;
         }
@@ -423,7 +539,7 @@ public final class HashChainBuilder {
         int currentLevel = ceilingLog2(inputs.size()) - 1;
 
         // Walk the tree downwards from the root node.
-        while (currentNodeIdx < nodes.length) {
+        while (currentNodeIdx < nodesCount) {
             // Indicates whether we are interested in
             // left (0) or right (1) child.
             int myDirection = (itemIndex & (1 << currentLevel)) >> currentLevel;
@@ -571,6 +687,13 @@ public final class HashChainBuilder {
      */
     private <T> String elementToString(JAXBElement<T> element)
             throws Exception {
+        if (marshaller == null) {
+            marshaller = jaxbCtx.createMarshaller();
+            // Format the XML, good for debugging.
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT,
+                    Boolean.TRUE);
+        }
+
         StringWriter writer = new StringWriter();
         marshaller.marshal(element, writer);
         return writer.toString();
@@ -608,7 +731,7 @@ public final class HashChainBuilder {
      * Returns true, if node identified by nodeIdx is a leaf node.
      */
     private boolean isLeaf(int nodeIdx) {
-        return nodeIdx >= nodes.length;
+        return nodeIdx >= nodesCount;
     }
 
     /**
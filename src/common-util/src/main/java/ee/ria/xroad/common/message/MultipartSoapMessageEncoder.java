@@ -27,6 +27,7 @@ package ee.ria.xroad.common.message;
 import ee.ria.xroad.common.util.MimeTypes;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -86,19 +87,38 @@ public class MultipartSoapMessageEncoder implements SoapMessageEncoder {
                      Map<String, String> additionalHeaders) throws Exception {
         multipart.startPart(soapMessage.getContentType(),
                 convertHeaders(additionalHeaders));
-        multipart.write(soapMessage.getBytes());
+        IOUtils.copy(soapMessage.getContent(), multipart);
     }
 
     @Override
     public void attachment(String contentType, InputStream content,
                            Map<String, String> additionalHeaders) throws Exception {
+        try (OutputStream out = attachment(contentType, additionalHeaders)) {
+            IOUtils.copy(content, out);
+        }
+    }
+
+    /**
+     * Starts an attachment part and returns the stream for writing its
+     * content, so that the content does not have to be available as a whole
+     * up front. The content must be written before the next part is started
+     * or the encoder is closed. Closing the returned stream does not close
+     * the underlying output stream.
+     * @param contentType the content type of the attachment
+     * @param additionalHeaders additional part headers, may be null
+     * @return output stream for the attachment content
+     * @throws Exception if starting the part fails
+     */
+    public OutputStream attachment(String contentType,
+                                   Map<String, String> additionalHeaders) throws Exception {
         String[] headers = {};
         if (additionalHeaders != null && !additionalHeaders.isEmpty()) {
             headers = convertHeaders(additionalHeaders);
         }
 
         multipart.startPart(contentType, headers);
-        IOUtils.copy(content, multipart);
+
+        return new CloseShieldOutputStream(multipart);
     }
 
     private static String[] convertHeaders(Map<String, String> headers) {
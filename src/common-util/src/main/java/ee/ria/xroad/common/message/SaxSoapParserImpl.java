@@ -30,6 +30,8 @@ import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
 import ee.ria.xroad.common.identifier.ServiceId;
 import ee.ria.xroad.common.identifier.XRoadObjectType;
+import ee.ria.xroad.common.util.CachingStream;
+import ee.ria.xroad.common.util.CryptoUtils;
 import ee.ria.xroad.common.util.MimeUtils;
 import ee.ria.xroad.common.util.XmlUtils;
 
@@ -38,10 +40,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.BOMInputStream;
 import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.bouncycastle.operator.DigestCalculator;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
@@ -55,7 +61,9 @@ import javax.xml.soap.SOAPException;
 
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.Arrays;
@@ -80,6 +88,10 @@ import static ee.ria.xroad.common.util.MimeUtils.hasUtf8Charset;
 
 /**
  * SOAP message parser that does not construct a DOM tree of the message.
+ *
+ * In streaming mode, only the SOAP header is buffered in memory. Once the SOAP body starts, the XML that will
+ * be the content of the message (either the raw or the processed XML) is written to a {@link CachingStream}
+ * and the message hash is calculated while the message is parsed.
  */
 @Slf4j
 public class SaxSoapParserImpl implements SoapParser {
@@ -170,6 +182,24 @@ public class SaxSoapParserImpl implements SoapParser {
 
     private static final SAXParserFactory PARSER_FACTORY = createSaxParserFactory();
 
+    private final boolean streaming;
+
+    /**
+     * Creates a parser that keeps the parsed message in memory.
+     */
+    public SaxSoapParserImpl() {
+        this(false);
+    }
+
+    /**
+     * Creates a parser.
+     * @param streaming if true, the content of parsed messages is cached like attachments instead of being
+     * kept in memory, see {@link SoapMessageImpl#consume()}
+     */
+    public SaxSoapParserImpl(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     @Override
     public Soap parse(String contentType, InputStream is) {
         String mimeType = MimeUtils.getBaseContentType(contentType);
@@ -184,7 +214,9 @@ public class SaxSoapParserImpl implements SoapParser {
         }
 
         try {
-            return parseMessage(is, mimeType, contentType, charset);
+            return streaming
+                    ? parseMessageStreaming(is, mimeType, contentType, charset)
+                    : parseMessage(is, mimeType, contentType, charset);
         } catch (Exception e) {
             throw translateException(e);
         }
@@ -198,11 +230,11 @@ public class SaxSoapParserImpl implements SoapParser {
 
         InputStream proxyStream = excludeUtf8Bom(contentType, new TeeInputStream(is, rawXml));
         Writer outputWriter = new OutputStreamWriter(processedXml, charset);
-        XRoadSoapHandler handler = handleSoap(outputWriter, proxyStream);
+        XRoadSoapHandler handler = handleSoap(outputWriter, proxyStream, null);
 
         CodedException fault = handler.getFault();
         if (fault != null) {
-            return createSoapFault(charset, rawXml, fault);
+            return createSoapFault(charset, rawXml.toByteArray(), fault);
         }
 
         byte[] xmlBytes = isProcessedXmlRequired() ? processedXml.toByteArray() : rawXml.toByteArray();
@@ -210,10 +242,43 @@ public class SaxSoapParserImpl implements SoapParser {
         return createSoapMessage(contentType, charset, handler, xmlBytes);
     }
 
-    private XRoadSoapHandler handleSoap(Writer writer, InputStream inputStream)
+    private Soap parseMessageStreaming(InputStream is, String mimeType, String contentType, String charset)
+            throws Exception {
+        log.trace("parseMessageStreaming({}, {})", mimeType, charset);
+
+        CachingStream content = new CachingStream();
+
+        try {
+            ContentSpool spool = new ContentSpool(content);
+
+            InputStream proxyStream = excludeUtf8Bom(contentType, new TeeInputStream(is, spool.getRawXml()));
+            Writer outputWriter = new OutputStreamWriter(spool.getProcessedXml(), charset);
+            XRoadSoapHandler handler = handleSoap(outputWriter, proxyStream, spool);
+
+            // Messages without a body are spooled once parsing has finished
+            spool.select(isProcessedXmlRequired());
+
+            CodedException fault = handler.getFault();
+            if (fault != null) {
+                byte[] xmlBytes = IOUtils.toByteArray(content.getCachedContents());
+                content.consume();
+
+                return createSoapFault(charset, xmlBytes, fault);
+            }
+
+            return new SoapMessageImpl(content, spool.getDigest(), charset, handler.getHeader(),
+                    handler.getServiceName(), handler.isRpc(), contentType);
+        } catch (Exception e) {
+            content.consume();
+
+            throw e;
+        }
+    }
+
+    private XRoadSoapHandler handleSoap(Writer writer, InputStream inputStream, ContentSpool spool)
             throws Exception {
         try (BufferedWriter out = new BufferedWriter(writer)) {
-            XRoadSoapHandler handler = new XRoadSoapHandler(out);
+            XRoadSoapHandler handler = new XRoadSoapHandler(out, spool);
             SAXParser saxParser = PARSER_FACTORY.newSAXParser();
             XMLReader xmlReader = saxParser.getXMLReader();
             xmlReader.setProperty(LEXICAL_HANDLER_PROPERTY, handler);
@@ -235,10 +300,10 @@ public class SaxSoapParserImpl implements SoapParser {
     }
 
     private static Soap createSoapFault(String charset,
-            ByteArrayOutputStream rawXml, CodedException fault) {
+            byte[] rawXml, CodedException fault) {
         return new SoapFault(fault.getFaultCode(), fault.getFaultString(),
                 fault.getFaultActor(), fault.getFaultDetail(),
-                rawXml.toByteArray(), charset);
+                rawXml, charset);
     }
 
     @SneakyThrows
@@ -256,7 +321,8 @@ public class SaxSoapParserImpl implements SoapParser {
 
     /**
      * Determines whether the raw XML of the SOAP message should be re-encoded
-     * or if the original should be used in the output.
+     * or if the original should be used in the output. In streaming mode, the
+     * decision is made when the SOAP body starts.
      * @return false by default
      */
     protected boolean isProcessedXmlRequired() {
@@ -306,6 +372,9 @@ public class SaxSoapParserImpl implements SoapParser {
 
         private final BufferedWriter out;
 
+        // Not null in streaming mode
+        private final ContentSpool spool;
+
         private char[] xmlEntity;
 
         private Stack<XmlElementHandler> elementHandlers = new Stack<>();
@@ -352,6 +421,10 @@ public class SaxSoapParserImpl implements SoapParser {
             if (elementHandlers.isEmpty()) {
                 handleRootElement(attributes, element);
             } else {
+                if (spool != null && elementHandlers.size() == 1 && element.equals(QNAME_SOAP_BODY)) {
+                    selectContent();
+                }
+
                 handleElement(attributes, element);
             }
 
@@ -460,6 +533,13 @@ public class SaxSoapParserImpl implements SoapParser {
             throw translateException(e);
         }
 
+        // The header has been parsed, so the kind of XML written to the message content is known
+        @SneakyThrows
+        private void selectContent() {
+            out.flush();
+            spool.select(isProcessedXmlRequired());
+        }
+
         @SneakyThrows
         private void writeNewLine() {
             out.newLine();
@@ -1123,4 +1203,82 @@ public class SaxSoapParserImpl implements SoapParser {
         }
 
     }
+
+    /**
+     * Collects the content of a message parsed in streaming mode. Both the raw and the processed XML are
+     * buffered until the SOAP body starts, after that only the selected one is written to the content cache.
+     */
+    private static final class ContentSpool {
+        private final ByteArrayOutputStream rawXmlBuffer = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream processedXmlBuffer = new ByteArrayOutputStream();
+
+        @Getter
+        private final SwitchableOutputStream rawXml = new SwitchableOutputStream(rawXmlBuffer);
+        @Getter
+        private final SwitchableOutputStream processedXml = new SwitchableOutputStream(processedXmlBuffer);
+
+        private final DigestCalculator digestCalculator;
+        private final OutputStream content;
+
+        private boolean selected;
+
+        ContentSpool(CachingStream content) throws Exception {
+            this.digestCalculator = CryptoUtils.createDigestCalculator(SoapUtils.getHashAlgoId());
+            this.content = new TeeOutputStream(content, digestCalculator.getOutputStream());
+        }
+
+        void select(boolean processed) throws IOException {
+            if (selected) {
+                return;
+            }
+
+            selected = true;
+
+            if (processed) {
+                processedXmlBuffer.writeTo(content);
+                processedXml.setTarget(content);
+                rawXml.setTarget(NullOutputStream.NULL_OUTPUT_STREAM);
+            } else {
+                rawXmlBuffer.writeTo(content);
+                rawXml.setTarget(content);
+                processedXml.setTarget(NullOutputStream.NULL_OUTPUT_STREAM);
+            }
+        }
+
+        byte[] getDigest() {
+            return digestCalculator.getDigest();
+        }
+    }
+
+    /**
+     * Output stream that writes to a target that can be changed, closing the stream has no effect.
+     */
+    private static final class SwitchableOutputStream extends OutputStream {
+        @Setter
+        private OutputStream target;
+
+        SwitchableOutputStream(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() {
+            // the content cache is released by its owner
+        }
+    }
 }
@@ -28,6 +28,9 @@ import ee.ria.xroad.common.util.MimeTypes;
 
 import javax.xml.soap.SOAPMessage;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
 /**
  * Describes a Soap message that is received from the client or service.
  */
@@ -43,6 +46,21 @@ public interface SoapMessage extends Soap {
      */
     byte[] getBytes();
 
+    /**
+     * @return the raw content of the message as a stream. Unlike {@link #getBytes()}, this does not require
+     * the whole message to be held in memory.
+     */
+    default InputStream getContent() {
+        return new ByteArrayInputStream(getBytes());
+    }
+
+    /**
+     * @return the size of the raw content of the message in bytes.
+     */
+    default long getContentLength() {
+        return getBytes().length;
+    }
+
     /**
      * @return the original charset of the message.
      */
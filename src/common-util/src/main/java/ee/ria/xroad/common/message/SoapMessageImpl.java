@@ -28,26 +28,107 @@ import ee.ria.xroad.common.identifier.CentralServiceId;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
 import ee.ria.xroad.common.identifier.ServiceId;
+import ee.ria.xroad.common.util.CachingStream;
 
 import lombok.SneakyThrows;
+import org.apache.commons.io.IOUtils;
 
 import javax.xml.soap.SOAPMessage;
 
+import java.io.InputStream;
+
 import static ee.ria.xroad.common.message.SoapUtils.isResponseMessage;
 import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
 
 /**
  * This class represents the X-Road SOAP message.
+ *
+ * The message content is either held in memory or, for messages parsed in streaming mode, in a
+ * {@link CachingStream}. In the latter case {@link #getContent()} and {@link #getXml()} read the cached
+ * content and only {@link #getBytes()} loads it into memory, on first use.
  */
 public class SoapMessageImpl extends AbstractSoapMessage<SoapHeader> {
 
     private byte[] hash;
 
+    private final CachingStream content;
+    private final long contentLength;
+    private volatile byte[] contentBytes;
+
     SoapMessageImpl(byte[] rawXml, String charset, SoapHeader header,
             SOAPMessage soap, String serviceName, boolean isRpcEncoded,
             String originalContentType) throws Exception {
         super(rawXml, charset, header, soap, isResponseMessage(serviceName),
                 isRpcEncoded, originalContentType);
+
+        this.content = null;
+        this.contentLength = 0;
+    }
+
+    SoapMessageImpl(CachingStream content, byte[] hash, String charset,
+            SoapHeader header, String serviceName, boolean isRpcEncoded,
+            String originalContentType) throws Exception {
+        super(null, charset, header, null, isResponseMessage(serviceName),
+                isRpcEncoded, originalContentType);
+
+        this.content = content;
+        this.contentLength = content.getCachedContents().size();
+        this.hash = hash;
+    }
+
+    @Override
+    @SneakyThrows
+    public byte[] getBytes() {
+        if (content == null) {
+            return super.getBytes();
+        }
+
+        byte[] bytes = contentBytes;
+
+        if (bytes == null) {
+            bytes = IOUtils.toByteArray(content.getCachedContents());
+            contentBytes = bytes;
+        }
+
+        return bytes;
+    }
+
+    @Override
+    @SneakyThrows
+    public String getXml() {
+        if (content == null || contentBytes != null) {
+            return super.getXml();
+        }
+
+        return IOUtils.toString(content.getCachedContents(), getCharset());
+    }
+
+    @Override
+    public InputStream getContent() {
+        return content != null ? content.getCachedContents() : super.getContent();
+    }
+
+    @Override
+    public long getContentLength() {
+        return content != null ? contentLength : super.getContentLength();
+    }
+
+    /**
+     * @return true, if the message content is cached outside of this object and can be streamed
+     * without loading it into memory
+     */
+    public boolean isStreamed() {
+        return content != null;
+    }
+
+    /**
+     * Releases the resources used to cache the content of a streamed message.
+     * The content cannot be read after the message has been consumed.
+     */
+    public void consume() {
+        if (content != null) {
+            content.consume();
+        }
     }
 
     /**
@@ -58,7 +139,7 @@ public class SoapMessageImpl extends AbstractSoapMessage<SoapHeader> {
     @SneakyThrows
     public byte[] getHash() {
         if (hash == null) {
-            hash = calculateDigest(SoapUtils.getHashAlgoId(), getBytes());
+            hash = calculateDigest(SoapUtils.getHashAlgoId(), getContent());
         }
         return hash;
     }
@@ -28,7 +28,10 @@ import ee.ria.xroad.common.util.CryptoUtils;
 
 import lombok.Data;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.util.function.Supplier;
 
 
 /**
@@ -49,6 +52,43 @@ public final class MessagePart implements Serializable {
     /** Optionally holds the message if this is a message part */
     private final byte[] message;
 
+    /** Optionally supplies the message as a stream if it is not held in memory */
+    private final transient Supplier<InputStream> messageContent;
+
+    /**
+     * Creates a part that optionally holds the message in memory.
+     * @param name the name of the part
+     * @param hashAlgoId the identifier of the hash algorithm
+     * @param data the hash of the part
+     * @param message the message or null
+     */
+    public MessagePart(String name, String hashAlgoId, byte[] data, byte[] message) {
+        this(name, hashAlgoId, data, message, null);
+    }
+
+    /**
+     * Creates a part that supplies the message as a stream, so that the message does not have to be
+     * held in memory when it is digested.
+     * @param name the name of the part
+     * @param hashAlgoId the identifier of the hash algorithm
+     * @param data the hash of the part
+     * @param messageContent supplies a new stream of the message on each call
+     * @return the message part
+     */
+    public static MessagePart streamed(String name, String hashAlgoId, byte[] data,
+            Supplier<InputStream> messageContent) {
+        return new MessagePart(name, hashAlgoId, data, null, messageContent);
+    }
+
+    private MessagePart(String name, String hashAlgoId, byte[] data, byte[] message,
+            Supplier<InputStream> messageContent) {
+        this.name = name;
+        this.hashAlgoId = hashAlgoId;
+        this.data = data;
+        this.message = message;
+        this.messageContent = messageContent;
+    }
+
     /**
      * @return the raw data
      */
@@ -56,6 +96,24 @@ public final class MessagePart implements Serializable {
         return data;
     }
 
+    /**
+     * @return true if the part holds or supplies the message
+     */
+    public boolean hasMessage() {
+        return message != null || messageContent != null;
+    }
+
+    /**
+     * @return the message as a stream or null if the part does not hold or supply the message
+     */
+    public InputStream openMessage() {
+        if (message != null) {
+            return new ByteArrayInputStream(message);
+        }
+
+        return messageContent != null ? messageContent.get() : null;
+    }
+
     /**
      * @return the hash algorithm URI
      * @throws Exception if the algorithm is unknown
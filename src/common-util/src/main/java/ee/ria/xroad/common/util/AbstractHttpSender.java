@@ -47,6 +47,7 @@ import org.eclipse.jetty.http.HttpStatus;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
@@ -212,7 +213,9 @@ public abstract class AbstractHttpSender implements Closeable {
 
     protected static InputStreamEntity createInputStreamEntity(InputStream content, long contentLength,
             String contentType) {
-        InputStreamEntity entity = new InputStreamEntity(content, contentLength);
+        InputStreamEntity entity = content instanceof CacheInputStream && contentLength < 0
+                ? new CacheInputStreamEntity((CacheInputStream) content)
+                : new InputStreamEntity(content, contentLength);
 
         if (contentLength < 0) {
             entity.setChunked(true); // Just in case
@@ -292,4 +295,25 @@ public abstract class AbstractHttpSender implements Closeable {
             throw new CodedException(X_IO_ERROR, "Stream was aborted");
         }
     }
+
+    /**
+     * Entity that writes cached contents with {@link CacheInputStream#transferTo(OutputStream)}.
+     */
+    private static final class CacheInputStreamEntity extends InputStreamEntity {
+        private final CacheInputStream content;
+
+        CacheInputStreamEntity(CacheInputStream content) {
+            super(content);
+            this.content = content;
+        }
+
+        @Override
+        public void writeTo(OutputStream outstream) throws IOException {
+            try {
+                content.transferTo(outstream);
+            } finally {
+                content.close();
+            }
+        }
+    }
 }
@@ -26,24 +26,64 @@ package ee.ria.xroad.common.util;
 
 import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.channels.Channels;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Cache contents as an input stream
  */
 public final class CacheInputStream extends FilterInputStream {
     private final long size;
+    private final FileChannel channel;
 
-    CacheInputStream(SeekableByteChannel ch) throws IOException {
+    CacheInputStream(FileChannel ch) throws IOException {
         super(Channels.newInputStream(ch.position(0)));
         size = ch.size();
+        channel = ch;
+    }
+
+    CacheInputStream(List<byte[]> chunks, long size, AtomicBoolean released) {
+        super(new ChunkInputStream(chunks, size, released));
+        this.size = size;
+        channel = null;
     }
 
     public long size() {
         return size;
     }
 
+    /**
+     * Writes the remaining contents of this stream to the given output stream. Contents cached in a temporary file
+     * are transferred using {@link FileChannel#transferTo(long, long, WritableByteChannel)}, contents cached in
+     * memory are written without intermediate copies.
+     *
+     * @param out the output stream
+     * @return number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        if (channel == null) {
+            return ((ChunkInputStream) in).transferTo(out);
+        }
+
+        WritableByteChannel target = Channels.newChannel(out);
+        long start = channel.position();
+        long position = start;
+
+        while (position < size) {
+            position += channel.transferTo(position, size - position, target);
+        }
+
+        channel.position(position);
+
+        return position - start;
+    }
+
     @Override
     public void close() {
         //NOP
@@ -63,4 +103,84 @@ public final class CacheInputStream extends FilterInputStream {
     public boolean markSupported() {
         return false;
     }
+
+    private static final class ChunkInputStream extends InputStream {
+        private final List<byte[]> chunks;
+        private final long size;
+        private final AtomicBoolean released;
+        private long position;
+
+        ChunkInputStream(List<byte[]> chunks, long size, AtomicBoolean released) {
+            this.chunks = chunks;
+            this.size = size;
+            this.released = released;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+
+            return read(b, 0, 1) == -1 ? -1 : Byte.toUnsignedInt(b[0]);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkNotReleased();
+
+            if (position >= size) {
+                return -1;
+            }
+
+            int count = (int) Math.min(len, Math.min(size - position, chunkRemaining()));
+            System.arraycopy(currentChunk(), chunkOffset(), b, off, count);
+            position += count;
+
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            long count = Math.max(0, Math.min(n, size - position));
+            position += count;
+
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, size - position);
+        }
+
+        long transferTo(OutputStream out) throws IOException {
+            long start = position;
+
+            while (position < size) {
+                checkNotReleased();
+
+                int count = (int) Math.min(size - position, chunkRemaining());
+                out.write(currentChunk(), chunkOffset(), count);
+                position += count;
+            }
+
+            return position - start;
+        }
+
+        private byte[] currentChunk() {
+            return chunks.get((int) (position / CachingStream.CHUNK_SIZE));
+        }
+
+        private int chunkOffset() {
+            return (int) (position % CachingStream.CHUNK_SIZE);
+        }
+
+        private int chunkRemaining() {
+            return CachingStream.CHUNK_SIZE - chunkOffset();
+        }
+
+        private void checkNotReleased() throws IOException {
+            if (released.get()) {
+                throw new IOException("Cached contents have been released");
+            }
+        }
+    }
 }
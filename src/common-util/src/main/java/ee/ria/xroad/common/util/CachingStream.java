@@ -26,54 +26,115 @@ package ee.ria.xroad.common.util;
 
 import ee.ria.xroad.common.DefaultFilepaths;
 import ee.ria.xroad.common.ErrorCodes;
+import ee.ria.xroad.common.SystemProperties;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.nio.channels.Channels;
-import java.nio.channels.SeekableByteChannel;
-import java.nio.file.Files;
+import java.io.OutputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Caches stuff in a temporary file.
+ * Caches stuff in memory, or in a temporary file if the cached data exceeds the memory threshold
+ * (see {@link SystemProperties#getAttachmentCacheMemoryThreshold()}).
+ *
+ * The memory cache consists of fixed size chunks. The chunks of all caching streams together are limited by the
+ * memory budget (see {@link SystemProperties#getAttachmentCacheMemoryBudget()}), data that does not fit in the
+ * budget is cached in a temporary file as well. The chunks are never reused, since streams returned by
+ * {@link #getCachedContents()} may still be reading them after the cache is consumed.
  */
 @Slf4j
-public class CachingStream extends FilterOutputStream {
-    private SeekableByteChannel channel;
+public class CachingStream extends OutputStream {
+    static final int CHUNK_SIZE = 32 * 1024;
+
+    // The memory reserved for the chunks of all caching streams
+    private static final AtomicLong RESERVED_MEMORY = new AtomicLong();
+
+    // The reservations of streams that are not consumed yet, so that the reservations of streams that were never
+    // consumed can be released when the streams are garbage collected
+    private static final Set<Reservation> RESERVATIONS = ConcurrentHashMap.newKeySet();
+    private static final ReferenceQueue<CachingStream> COLLECTED = new ReferenceQueue<>();
+
+    private final long memoryThreshold;
+    private final long memoryBudget;
+
+    private final List<byte[]> chunks = new ArrayList<>();
+    private final AtomicBoolean released = new AtomicBoolean();
+    private int chunkPosition = CHUNK_SIZE;
+    private long size;
+    private Reservation reservation;
+
+    private FileChannel channel;
     private Path tempFile;
 
     /**
-     * Constructs a new caching stream that caches data in a temporary file.
+     * Constructs a new caching stream that caches data in memory, or in a temporary file if the data exceeds
+     * the configured memory threshold.
      *
      * @throws IOException if I/O errors occurred
      */
     public CachingStream() throws IOException {
-        // Construct the parent class with null stream and replace it later.
-        super(null);
+        this(SystemProperties.getAttachmentCacheMemoryThreshold());
+    }
 
-        tempFile = DefaultFilepaths.createTempFile("tmpattach", null);
-        channel = Files.newByteChannel(tempFile, StandardOpenOption.CREATE,
-                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
-                StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+    /**
+     * Constructs a new caching stream that caches data in memory, or in a temporary file if the data exceeds
+     * the given memory threshold.
+     *
+     * @param memoryThreshold maximum number of bytes to cache in memory
+     * @throws IOException if I/O errors occurred
+     */
+    public CachingStream(long memoryThreshold) throws IOException {
+        this.memoryThreshold = memoryThreshold;
+        this.memoryBudget = SystemProperties.getAttachmentCacheMemoryBudget();
 
-        // Now that we are set up, we can set the output stream in the
-        // parent class.
-        out = Channels.newOutputStream(channel);
+        if (memoryThreshold <= 0) {
+            createTempFile();
+        }
     }
 
     @Override
     public void close() throws IOException {
-        // we must not close the channel before reading it
-        flush();
+        // we must not release the cache before reading it
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
     }
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
-        // prevent FilterOutputStream from writing inefficiently
-        out.write(b, off, len);
+        if (channel == null && (size + len > memoryThreshold || !reserveChunks(len))) {
+            spillToFile();
+        }
+
+        if (channel != null) {
+            writeFully(ByteBuffer.wrap(b, off, len));
+        } else {
+            writeToChunks(b, off, len);
+        }
+
+        size += len;
+    }
+
+    /**
+     * @return true, if the cached data is kept in memory
+     */
+    public boolean isInMemory() {
+        return channel == null;
     }
 
     /**
@@ -83,7 +144,11 @@ public class CachingStream extends FilterOutputStream {
      */
     public CacheInputStream getCachedContents() {
         try {
-            return new CacheInputStream(channel);
+            if (channel != null) {
+                return new CacheInputStream(channel);
+            }
+
+            return new CacheInputStream(new ArrayList<>(chunks), size, released);
         } catch (IOException ex) { // the position shouldn't really throw
             throw ErrorCodes.translateException(ex);
         }
@@ -93,11 +158,127 @@ public class CachingStream extends FilterOutputStream {
      * Finalize caching stream. Use to avoid file handle leaks.
      */
     public void consume() {
-        try {
-            channel.close();
-        } catch (IOException e) {
-            log.warn("Error closing channel of the temporary file '{}'", tempFile.toString(), e);
+        if (released.compareAndSet(false, true)) {
+            chunks.clear();
+            releaseChunks();
+        }
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Error closing channel of the temporary file '{}'", tempFile.toString(), e);
+            }
         }
     }
 
+    private void writeToChunks(byte[] b, int off, int len) {
+        int offset = off;
+        int remaining = len;
+
+        while (remaining > 0) {
+            if (chunkPosition == CHUNK_SIZE) {
+                chunks.add(new byte[CHUNK_SIZE]);
+                chunkPosition = 0;
+            }
+
+            int count = Math.min(remaining, CHUNK_SIZE - chunkPosition);
+            System.arraycopy(b, offset, chunks.get(chunks.size() - 1), chunkPosition, count);
+
+            chunkPosition += count;
+            offset += count;
+            remaining -= count;
+        }
+    }
+
+    private void spillToFile() throws IOException {
+        log.trace("Cached data exceeds {} bytes, moving it to a temporary file", memoryThreshold);
+
+        createTempFile();
+
+        long remaining = size;
+
+        for (byte[] chunk : chunks) {
+            int count = (int) Math.min(remaining, CHUNK_SIZE);
+            writeFully(ByteBuffer.wrap(chunk, 0, count));
+            remaining -= count;
+        }
+
+        chunks.clear();
+        releaseChunks();
+    }
+
+    // Reserves the memory for the new chunks needed for writing len bytes, fails if the budget is exceeded
+    private boolean reserveChunks(int len) {
+        long newChunks = (Math.max(0, len - (CHUNK_SIZE - chunkPosition)) + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        long bytes = newChunks * CHUNK_SIZE;
+
+        if (bytes == 0) {
+            return true;
+        }
+
+        releaseCollected();
+
+        long current;
+
+        do {
+            current = RESERVED_MEMORY.get();
+
+            if (current + bytes > memoryBudget) {
+                return false;
+            }
+        } while (!RESERVED_MEMORY.compareAndSet(current, current + bytes));
+
+        if (reservation == null) {
+            reservation = new Reservation(this);
+            RESERVATIONS.add(reservation);
+        }
+
+        reservation.bytes += bytes;
+
+        return true;
+    }
+
+    private void releaseChunks() {
+        if (reservation != null) {
+            reservation.clear();
+            reservation.release();
+            reservation = null;
+        }
+    }
+
+    private static void releaseCollected() {
+        Reference<? extends CachingStream> collected;
+
+        while ((collected = COLLECTED.poll()) != null) {
+            ((Reservation) collected).release();
+        }
+    }
+
+    private static final class Reservation extends PhantomReference<CachingStream> {
+        private long bytes;
+
+        Reservation(CachingStream stream) {
+            super(stream, COLLECTED);
+        }
+
+        void release() {
+            if (RESERVATIONS.remove(this)) {
+                RESERVED_MEMORY.addAndGet(-bytes);
+            }
+        }
+    }
+
+    private void createTempFile() throws IOException {
+        tempFile = DefaultFilepaths.createTempFile("tmpattach", null);
+        channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
 }
@@ -51,6 +51,8 @@ public final class MimeTypes {
     public static final String JSON = "application/json";
     public static final String JSON_RPC = "application/json-rpc";
 
+    public static final String OP_MONITORING_DATA = "application/op-monitoring-data";
+
     public static final String XOP_XML = "application/xop+xml";
 
     public static final String TEXT_PLAIN = "text/plain";
@@ -26,24 +26,40 @@ package ee.ria.xroad.common.conf.globalconf;
 
 import ee.ria.xroad.common.util.ExpectedCodedException;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import static ee.ria.xroad.common.ErrorCodes.X_OUTDATED_GLOBALCONF;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests to verify configuration directories are read correctly.
  */
 public class ConfigurationDirectoryTest {
 
+    private static final long RELOAD_TIMEOUT = 10000;
+    private static final long POLL_INTERVAL = 10;
+
     @Rule
     public ExpectedCodedException thrown = ExpectedCodedException.none();
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     /**
      * Test to ensure a correct configuration directory is read properly.
      *
@@ -72,6 +88,95 @@ public class ConfigurationDirectoryTest {
         assertNull(dir.getShared("xxx"));
     }
 
+    /**
+     * Test to ensure that reloading replaces changed parameters with new instances and keeps unchanged ones.
+     *
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void reloadDirectoryV2() throws Exception {
+        File confDir = tempFolder.newFolder();
+        FileUtils.copyDirectory(new File("src/test/resources/globalconf_good_v2"), confDir);
+
+        ConfigurationDirectoryV2 dir = new ConfigurationDirectoryV2(confDir.getPath());
+
+        SharedParametersV2 foo = dir.getShared("foo");
+        SharedParametersV2 bar = dir.getShared("bar");
+
+        long version = dir.getVersion();
+
+        dir.reload();
+
+        assertEquals(version, dir.getVersion());
+
+        Path fooSharedParams = Paths.get(confDir.getPath(), "foo", ConfigurationDirectoryV2.SHARED_PARAMETERS_XML);
+        Files.write(fooSharedParams, "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        dir.reload();
+
+        assertNotSame(foo, dir.getShared("foo"));
+        assertEquals("foo", dir.getShared("foo").getInstanceIdentifier());
+        assertEquals("foo", foo.getInstanceIdentifier());
+        assertSame(bar, dir.getShared("bar"));
+        assertTrue(dir.getVersion() > version);
+
+        // Only the formatting changed, so the reloaded shared parameters have no changes
+        assertTrue(dir.getChangesSince(version).isEmpty());
+        assertTrue(dir.getChangesSince(dir.getVersion()).isEmpty());
+        assertTrue(dir.getChangesSince(0).isAll());
+    }
+
+    /**
+     * Test to ensure that with automatic reload, changed parameters are reloaded in the background while the
+     * current parameters are served.
+     *
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test(timeout = RELOAD_TIMEOUT)
+    public void reloadChangedDirectoryV2InBackground() throws Exception {
+        File confDir = tempFolder.newFolder();
+        FileUtils.copyDirectory(new File("src/test/resources/globalconf_good_v2"), confDir);
+
+        ConfigurationDirectoryV2 dir = new ConfigurationDirectoryV2(confDir.getPath(), true);
+
+        SharedParametersV2 foo = dir.getShared("foo");
+
+        Path fooSharedParams = Paths.get(confDir.getPath(), "foo", ConfigurationDirectoryV2.SHARED_PARAMETERS_XML);
+        Files.write(fooSharedParams, "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        while (dir.getShared("foo") == foo) {
+            Thread.sleep(POLL_INTERVAL);
+        }
+
+        assertEquals("foo", dir.getShared("foo").getInstanceIdentifier());
+    }
+
+    /**
+     * Test to ensure that with automatic reload, parameters of an instance added after the directory was loaded are
+     * available right away.
+     *
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void readInstanceAddedAfterLoadV2() throws Exception {
+        File confDir = tempFolder.newFolder();
+        FileUtils.copyDirectory(new File("src/test/resources/globalconf_good_v2"), confDir);
+        FileUtils.deleteDirectory(new File(confDir, "bar"));
+
+        ConfigurationDirectoryV2 dir = new ConfigurationDirectoryV2(confDir.getPath(), true);
+
+        assertNotNull(dir.getShared("foo"));
+        assertNull(dir.getShared("bar"));
+
+        FileUtils.copyDirectory(new File("src/test/resources/globalconf_good_v2/bar"), new File(confDir, "bar"));
+
+        SharedParametersV2 bar = dir.getShared("bar");
+
+        assertNotNull(bar);
+        assertEquals("bar", bar.getInstanceIdentifier());
+        assertNull(dir.getPrivate("bar"));
+    }
+
     /**
      * Test to ensure an empty configuration directory is read properly.
      *
@@ -0,0 +1,162 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.SecurityServerType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.SecurityServerId;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.cert.X509Certificate;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests to verify the changes between shared parameters versions are computed correctly.
+ */
+public class SharedParametersDiffTest {
+
+    private static final String SHARED_PARAMS = "src/test/resources/globalconf_good_v2/EE/shared-params.xml";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path sharedParamsFile;
+    private SharedParametersV2 previous;
+
+    /**
+     * Copies the shared parameters to a temporary directory and loads them.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Before
+    public void setUp() throws Exception {
+        sharedParamsFile = tempFolder.getRoot().toPath().resolve(ConfigurationDirectoryV2.SHARED_PARAMETERS_XML);
+        Files.copy(Paths.get(SHARED_PARAMS), sharedParamsFile);
+
+        previous = new SharedParametersV2(false);
+        previous.load(sharedParamsFile.toString());
+    }
+
+    /**
+     * Test to ensure reloading unchanged shared parameters reports no changes and reuses the CA certificates
+     * and the security server states.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void reloadUnchangedParameters() throws Exception {
+        assertTrue(previous.getChanges().isAll());
+
+        SharedParametersV2 reloaded = new SharedParametersV2(false);
+        reloaded.load(sharedParamsFile.toString(), previous);
+
+        assertTrue(reloaded.getChanges().isEmpty());
+        assertEquals(previous.getVerificationCaCerts().size(), reloaded.getVerificationCaCerts().size());
+
+        for (int i = 0; i < previous.getVerificationCaCerts().size(); i++) {
+            assertSame(previous.getVerificationCaCerts().get(i), reloaded.getVerificationCaCerts().get(i));
+        }
+
+        assertEquals(previous.getServerStates().keySet(), reloaded.getServerStates().keySet());
+
+        previous.getServerStates().forEach((serverId, state) ->
+                assertSame(state, reloaded.getServerStates().get(serverId)));
+    }
+
+    /**
+     * Test to ensure a modified security server and its clients are reported as changed.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void detectChangedSecurityServer() throws Exception {
+        SecurityServerType server = previous.getSecurityServers().get(0);
+        SecurityServerId serverId = previous.createSecurityServerId(server);
+        Set<ClientId> clients = previous.getSecurityServerClients().get(serverId);
+
+        SharedParametersV2 modified = new SharedParametersV2(false);
+        modified.load(sharedParamsFile.toString());
+        modified.getSecurityServers().get(0).setAddress("changed.example.org");
+        save(modified);
+
+        SharedParametersV2 reloaded = new SharedParametersV2(false);
+        reloaded.load(sharedParamsFile.toString(), previous);
+
+        SharedParametersChanges changes = reloaded.getChanges();
+
+        assertFalse(changes.isAll());
+        assertFalse(changes.isCaChanged());
+        assertEquals(1, changes.getChangedServers().size());
+        assertTrue(changes.isServerChanged(serverId));
+        assertEquals(clients, changes.getChangedClients());
+
+        for (ClientId client : clients) {
+            assertTrue(changes.isClientChanged(client));
+        }
+
+        assertFalse(changes.isClientChanged(ClientId.create("EE", "UNKNOWN", "member")));
+    }
+
+    /**
+     * Test to ensure a modified approved CA is reported as changed.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void detectChangedCa() throws Exception {
+        SharedParametersV2 modified = new SharedParametersV2(false);
+        modified.load(sharedParamsFile.toString());
+        modified.getApprovedCAs().get(0).getTopCA().getOcsp().get(0).setUrl("http://changed.example.org/ocsp");
+        save(modified);
+
+        SharedParametersV2 reloaded = new SharedParametersV2(false);
+        reloaded.load(sharedParamsFile.toString(), previous);
+
+        SharedParametersChanges changes = reloaded.getChanges();
+
+        assertTrue(changes.isCaChanged());
+        assertTrue(changes.getChangedServers().isEmpty());
+        assertTrue(changes.getChangedClients().isEmpty());
+
+        X509Certificate caCert = previous.getVerificationCaCerts().get(0);
+
+        assertSame(caCert, reloaded.getVerificationCaCerts().get(0));
+    }
+
+    private void save(SharedParametersV2 parameters) throws Exception {
+        try (OutputStream out = Files.newOutputStream(sharedParamsFile)) {
+            parameters.save(out);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.SecurityServerId;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests to verify the shared parameters lookups are served correctly from the index.
+ */
+public class SharedParametersIndexTest {
+
+    private static final String SHARED_PARAMS = "src/test/resources/globalconf_good_v2/EE/shared-params.xml";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path sharedParamsFile;
+    private SharedParametersV2 reference;
+
+    /**
+     * Copies the shared parameters to a temporary directory and loads them without the index.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Before
+    public void setUp() throws Exception {
+        sharedParamsFile = tempFolder.getRoot().toPath().resolve(ConfigurationDirectoryV2.SHARED_PARAMETERS_XML);
+        Files.copy(Paths.get(SHARED_PARAMS), sharedParamsFile);
+
+        reference = new SharedParametersV2(false);
+        reference.load(sharedParamsFile.toString());
+    }
+
+    /**
+     * Test to ensure the indexed lookups return the same results as the lookups from the shared parameters.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void indexedLookupsMatchSharedParameters() throws Exception {
+        SharedParametersIndex.write(sharedParamsFile);
+
+        SharedParametersV2 indexed = new SharedParametersV2();
+        indexed.load(sharedParamsFile.toString());
+
+        assertNotNull(indexed.getIndex());
+        assertServedFromIndex(indexed::getMemberAddresses);
+        assertServedFromIndex(indexed::getServerByAuthCert);
+        assertServedFromIndex(indexed::getSecurityServerClients);
+
+        assertFalse(reference.getMemberAddresses().isEmpty());
+
+        for (Map.Entry<ClientId, Set<String>> entry : reference.getMemberAddresses().entrySet()) {
+            assertEquals(entry.getValue(), indexed.getProviderAddresses(entry.getKey()));
+        }
+
+        assertFalse(reference.getServerByAuthCert().isEmpty());
+
+        for (String authCertHash : reference.getServerByAuthCert().keySet()) {
+            assertEquals(reference.getServerIdByAuthCertHash(authCertHash),
+                    indexed.getServerIdByAuthCertHash(authCertHash));
+        }
+
+        assertFalse(reference.getSecurityServerClients().isEmpty());
+
+        for (Map.Entry<SecurityServerId, Set<ClientId>> entry : reference.getSecurityServerClients().entrySet()) {
+            for (ClientId client : entry.getValue()) {
+                assertTrue(indexed.isSecurityServerClient(client, entry.getKey()));
+            }
+        }
+
+        ClientId unknownClient = ClientId.create("EE", "UNKNOWN", "member");
+        SecurityServerId server = reference.getSecurityServerClients().keySet().iterator().next();
+
+        assertNull(indexed.getProviderAddresses(unknownClient));
+        assertNull(indexed.getServerIdByAuthCertHash("unknown"));
+        assertFalse(indexed.isSecurityServerClient(unknownClient, server));
+    }
+
+    /**
+     * Test to ensure an index that was built from different content is not used.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void ignoreOutdatedIndex() throws Exception {
+        SharedParametersIndex.write(sharedParamsFile);
+
+        Files.write(sharedParamsFile, "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        SharedParametersV2 parameters = new SharedParametersV2();
+        parameters.load(sharedParamsFile.toString());
+
+        assertNull(parameters.getIndex());
+        assertEquals(reference.getMemberAddresses(), parameters.getMemberAddresses());
+    }
+
+    /**
+     * Test to ensure the configuration directory starts using an index that is written after the shared
+     * parameters were loaded.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void useIndexWrittenAfterLoad() throws Exception {
+        File confDir = tempFolder.newFolder();
+        FileUtils.copyDirectory(new File("src/test/resources/globalconf_good_v2"), confDir);
+
+        ConfigurationDirectoryV2 dir = new ConfigurationDirectoryV2(confDir.getPath());
+        SharedParametersV2 loaded = dir.getShared("EE");
+
+        assertNull(loaded.getIndex());
+        assertFalse(loaded.hasIndexChanged());
+
+        SharedParametersIndex.write(Paths.get(confDir.getPath(), "EE", ConfigurationDirectoryV2.SHARED_PARAMETERS_XML));
+
+        assertTrue(loaded.hasIndexChanged());
+
+        dir.reload();
+
+        assertNotNull(dir.getShared("EE").getIndex());
+        assertFalse(dir.getShared("EE").hasIndexChanged());
+    }
+
+    private static void assertServedFromIndex(Supplier<?> lookupMap) {
+        try {
+            lookupMap.get();
+
+            fail("Expected the lookup map to be unavailable");
+        } catch (IllegalStateException expected) {
+            // The lookups are served from the index.
+        }
+    }
+}
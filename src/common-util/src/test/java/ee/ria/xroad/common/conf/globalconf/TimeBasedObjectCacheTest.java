@@ -26,6 +26,16 @@ package ee.ria.xroad.common.conf.globalconf;
 
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -51,6 +61,46 @@ public class TimeBasedObjectCacheTest {
         assertTrue(cache.isValid("foo"));
     }
 
+    @Test
+    public void loadValueOnce() throws Exception {
+        final int expireSeconds = 60;
+        final int threads = 4;
+        TimeBasedObjectCache cache = new TimeBasedObjectCache(expireSeconds);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<Integer>> values = new ArrayList<>();
+
+            for (int i = 0; i < threads; i++) {
+                values.add(executor.submit(() -> cache.getValue("foo", () -> {
+                    loading.countDown();
+                    idle(100);
+
+                    return loads.incrementAndGet();
+                })));
+            }
+
+            loading.await();
+
+            for (Future<Integer> value : values) {
+                assertEquals(Integer.valueOf(1), value.get());
+            }
+
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void propagateLoaderException() throws Exception {
+        new TimeBasedObjectCache(1).getValue("foo", () -> {
+            throw new IOException();
+        });
+    }
+
     /**
      * Idles for given time period
      */
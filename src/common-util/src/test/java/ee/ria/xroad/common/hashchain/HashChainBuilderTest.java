@@ -130,6 +130,31 @@ public class HashChainBuilderTest {
         printChains(builder);
     }
 
+    /**
+     * Tests that a tree large enough to be hashed in parallel produces the
+     * same top hash as the sequential implementation and that the hash
+     * chains constructed one by one equal the ones constructed all at once.
+     * @throws Exception in case of unexpected errors
+     */
+    @Test
+    public void parallelTreeBuilding() throws Exception {
+        HashChainBuilder builder = new HashChainBuilder(SHA256_ID);
+
+        for (int i = 0; i < 1500; ++i) {
+            add(builder, String.valueOf(i));
+        }
+
+        builder.finishBuilding();
+
+        assertEquals("GAxstojy9AAbLI237Ycz91ZI8IFWMsQYxwLFam3pYjI=",
+                encodeBase64(builder.getTreeTop()));
+
+        String[] hashChains = builder.getHashChains("/foo");
+
+        assertEquals(hashChains[0], builder.getHashChain("/foo", 0));
+        assertEquals(hashChains[1499], builder.getHashChain("/foo", 1499));
+    }
+
     private static void printChains(HashChainBuilder builder) throws Exception {
         String[] chains = builder.getHashChains("foo.xml");
         LOG.debug("Hash chains:");
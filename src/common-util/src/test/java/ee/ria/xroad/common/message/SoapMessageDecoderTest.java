@@ -0,0 +1,119 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.message;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static ee.ria.xroad.common.message.SoapMessageTestUtil.QUERY_DIR;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the two-step (SOAP part first, attachments later) decoding of SOAP messages.
+ */
+public class SoapMessageDecoderTest {
+
+    private static final String MULTIPART_CONTENT_TYPE =
+            "multipart/related; charset=UTF-8; boundary=jetty771207119h3h10dty";
+
+    /**
+     * Test that parseSoap stops after the SOAP part and parseAttachments reads the rest.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void parseSoapAndAttachmentsSeparately() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        SoapMessageDecoder decoder = new SoapMessageDecoder(MULTIPART_CONTENT_TYPE, callback);
+
+        try (InputStream is = new FileInputStream(QUERY_DIR + "attachm.query")) {
+            decoder.parseSoap(is);
+
+            assertEquals(1, callback.events.size());
+            assertEquals("soap", callback.events.get(0));
+
+            decoder.parseAttachments();
+        }
+
+        assertEquals(3, callback.events.size());
+        assertEquals("attachment text/plain", callback.events.get(1));
+        assertEquals("completed", callback.events.get(2));
+    }
+
+    /**
+     * Test that a plain SOAP message is read completely by parseSoap.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void parseSoapWithoutAttachments() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        SoapMessageDecoder decoder = new SoapMessageDecoder("text/xml; charset=UTF-8", callback);
+
+        try (InputStream is = new FileInputStream(QUERY_DIR + "simple.query")) {
+            decoder.parseSoap(is);
+            decoder.parseAttachments();
+        }
+
+        assertEquals(2, callback.events.size());
+        assertEquals("soap", callback.events.get(0));
+        assertEquals("completed", callback.events.get(1));
+    }
+
+    private static class RecordingCallback implements SoapMessageDecoder.Callback {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void soap(SoapMessage message, Map<String, String> additionalHeaders) {
+            events.add("soap");
+        }
+
+        @Override
+        public void attachment(String contentType, InputStream content, Map<String, String> additionalHeaders)
+                throws Exception {
+            IOUtils.toByteArray(content);
+            events.add("attachment " + contentType);
+        }
+
+        @Override
+        public void fault(SoapFault fault) {
+            events.add("fault");
+        }
+
+        @Override
+        public void onCompleted() {
+            events.add("completed");
+        }
+
+        @Override
+        public void onError(Exception t) throws Exception {
+            throw t;
+        }
+    }
+}
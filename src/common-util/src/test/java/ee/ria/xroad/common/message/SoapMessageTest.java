@@ -41,6 +41,9 @@ import javax.xml.soap.SOAPException;
 
 import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
 
 import static ee.ria.xroad.common.ErrorCodes.X_DUPLICATE_HEADER_FIELD;
@@ -59,7 +62,9 @@ import static ee.ria.xroad.common.message.SoapMessageTestUtil.createSoapMessage;
 import static ee.ria.xroad.common.message.SoapMessageTestUtil.fileToBytes;
 import static ee.ria.xroad.common.message.SoapMessageTestUtil.messageToBytes;
 import static ee.ria.xroad.common.message.SoapUtils.getChildElements;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -68,6 +73,8 @@ import static org.junit.Assert.assertTrue;
  */
 public class SoapMessageTest {
 
+    private static final int LARGE_MESSAGE_ELEMENTS = 100000;
+
     @Rule
     public ExpectedCodedException thrown = ExpectedCodedException.none();
 
@@ -424,4 +431,88 @@ public class SoapMessageTest {
         thrown.expectError(X_INVALID_PROTOCOL_VERSION);
         createRequest("wrong-version.query");
     }
+
+    /**
+     * Test that a message parsed in streaming mode has the same content and hash as a message parsed in memory.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void streamingRequest() throws Exception {
+        byte[] xml = Files.readAllBytes(Paths.get(QUERY_DIR, "simple.query"));
+
+        assertStreamedAsInMemory(xml, new SaxSoapParserImpl(), new SaxSoapParserImpl(true));
+    }
+
+    /**
+     * Test that a large message parsed in streaming mode is cached outside of the heap and has the same content and
+     * hash as a message parsed in memory, both when the raw and when the processed XML is used.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void streamingLargeRequest() throws Exception {
+        String query = new String(Files.readAllBytes(Paths.get(QUERY_DIR, "simple.query")), StandardCharsets.UTF_8);
+
+        StringBuilder body = new StringBuilder();
+
+        for (int i = 0; i < LARGE_MESSAGE_ELEMENTS; i++) {
+            body.append("<name>foo &amp; bar ").append(i).append("</name>");
+        }
+
+        byte[] xml = query.replace("<name>foo</name>", body.toString()).getBytes(StandardCharsets.UTF_8);
+
+        assertStreamedAsInMemory(xml, new SaxSoapParserImpl(), new SaxSoapParserImpl(true));
+        assertStreamedAsInMemory(xml, new ProcessedXmlSoapParser(false), new ProcessedXmlSoapParser(true));
+    }
+
+    /**
+     * Tests that fault messages are parsed in streaming mode.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void streamingFaultMessage() throws Exception {
+        String soapFaultXml = SoapFault.createFaultXml("foo.bar", "baz", "xxx", "yyy");
+        Soap message = new SaxSoapParserImpl(true).parse(MimeTypes.TEXT_XML_UTF8,
+                new ByteArrayInputStream(soapFaultXml.getBytes()));
+
+        assertTrue(message instanceof SoapFault);
+        assertEquals("baz", ((SoapFault) message).getString());
+        assertEquals(soapFaultXml, message.getXml());
+    }
+
+    private static void assertStreamedAsInMemory(byte[] xml, SaxSoapParserImpl inMemoryParser,
+            SaxSoapParserImpl streamingParser) throws Exception {
+        SoapMessageImpl expected = (SoapMessageImpl) inMemoryParser.parse(MimeTypes.TEXT_XML_UTF8,
+                new ByteArrayInputStream(xml));
+        SoapMessageImpl streamed = (SoapMessageImpl) streamingParser.parse(MimeTypes.TEXT_XML_UTF8,
+                new ByteArrayInputStream(xml));
+
+        try {
+            assertFalse(expected.isStreamed());
+            assertTrue(streamed.isStreamed());
+
+            assertEquals(expected.getClient(), streamed.getClient());
+            assertEquals(expected.getService(), streamed.getService());
+            assertEquals(expected.getContentLength(), streamed.getContentLength());
+            assertArrayEquals(expected.getHash(), streamed.getHash());
+            assertEquals(expected.getXml(), streamed.getXml());
+            assertArrayEquals(expected.getBytes(), IOUtils.toByteArray(streamed.getContent()));
+            assertArrayEquals(expected.getBytes(), streamed.getBytes());
+        } finally {
+            streamed.consume();
+        }
+    }
+
+    /**
+     * Parser that re-encodes the whole message.
+     */
+    private static class ProcessedXmlSoapParser extends SaxSoapParserImpl {
+        ProcessedXmlSoapParser(boolean streaming) {
+            super(streaming);
+        }
+
+        @Override
+        protected boolean isProcessedXmlRequired() {
+            return true;
+        }
+    }
 }
@@ -0,0 +1,206 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link CachingStream}
+ */
+public class CachingStreamTest {
+    private static final int THRESHOLD = 3 * CachingStream.CHUNK_SIZE;
+
+    /**
+     * Use a temporary files directory under the build directory.
+     */
+    @BeforeClass
+    public static void setUp() {
+        System.setProperty(SystemProperties.TEMP_FILES_PATH, "build/tmp");
+    }
+
+    /**
+     * Test that content below the threshold is cached in memory.
+     */
+    @Test
+    public void cacheInMemory() throws IOException {
+        byte[] data = randomBytes(THRESHOLD);
+
+        CachingStream cache = writeInParts(data);
+
+        assertTrue(cache.isInMemory());
+        assertCachedContents(data, cache);
+
+        cache.consume();
+    }
+
+    /**
+     * Test that content above the threshold is moved to a temporary file.
+     */
+    @Test
+    public void cacheInFile() throws IOException {
+        byte[] data = randomBytes(THRESHOLD + 1);
+
+        CachingStream cache = writeInParts(data);
+
+        assertFalse(cache.isInMemory());
+        assertCachedContents(data, cache);
+
+        cache.consume();
+    }
+
+    /**
+     * Test that reading released contents fails.
+     */
+    @Test(expected = IOException.class)
+    public void readReleasedContents() throws IOException {
+        CachingStream cache = writeInParts(randomBytes(THRESHOLD));
+        CacheInputStream contents = cache.getCachedContents();
+
+        cache.consume();
+
+        IOUtils.toByteArray(contents);
+    }
+
+    /**
+     * Test that content that does not fit in the memory budget shared by all caches is moved to a temporary file.
+     */
+    @Test
+    public void cacheInFileWhenMemoryBudgetExceeded() throws IOException {
+        System.setProperty(SystemProperties.ATTACHMENT_CACHE_MEMORY_BUDGET, String.valueOf(THRESHOLD));
+
+        try {
+            CachingStream first = writeInParts(randomBytes(THRESHOLD));
+            byte[] data = randomBytes(1);
+            CachingStream second = writeInParts(data);
+
+            assertTrue(first.isInMemory());
+            assertFalse(second.isInMemory());
+            assertCachedContents(data, second);
+
+            first.consume();
+            second.consume();
+
+            CachingStream third = writeInParts(data);
+
+            assertTrue(third.isInMemory());
+
+            third.consume();
+        } finally {
+            System.clearProperty(SystemProperties.ATTACHMENT_CACHE_MEMORY_BUDGET);
+        }
+    }
+
+    /**
+     * Test that contents read while the cache is consumed are never overwritten by other caches.
+     */
+    @Test
+    public void readWhileConsumed() throws Exception {
+        CachingStream cache = writeInParts(filledBytes(THRESHOLD, (byte) 1));
+        List<CachingStream> others = new ArrayList<>();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                if (others.isEmpty()) {
+                    // The cache is consumed and other caches are written while a chunk is being read
+                    cache.consume();
+
+                    try {
+                        others.add(writeInParts(filledBytes(THRESHOLD, (byte) 2)));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+
+                super.write(b, off, len);
+            }
+        };
+
+        try {
+            cache.getCachedContents().transferTo(out);
+        } catch (IOException expected) {
+            // the contents were released before the next chunk was read
+        }
+
+        others.forEach(CachingStream::consume);
+
+        byte[] read = out.toByteArray();
+
+        assertEquals(CachingStream.CHUNK_SIZE, read.length);
+        assertArrayEquals(filledBytes(read.length, (byte) 1), read);
+    }
+
+    private static byte[] filledBytes(int length, byte value) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, value);
+
+        return data;
+    }
+
+    private static CachingStream writeInParts(byte[] data) throws IOException {
+        final int partSize = 1000;
+        CachingStream cache = new CachingStream(THRESHOLD);
+
+        for (int offset = 0; offset < data.length; offset += partSize) {
+            cache.write(data, offset, Math.min(partSize, data.length - offset));
+        }
+
+        cache.close();
+
+        return cache;
+    }
+
+    private static void assertCachedContents(byte[] expected, CachingStream cache) throws IOException {
+        assertEquals(expected.length, cache.getCachedContents().size());
+        assertArrayEquals(expected, IOUtils.toByteArray(cache.getCachedContents()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(expected.length, cache.getCachedContents().transferTo(out));
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random().nextBytes(data);
+
+        return data;
+    }
+}
@@ -44,6 +44,8 @@ import java.security.cert.X509Certificate;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.ErrorCodes.X_OUTDATED_GLOBALCONF;
@@ -69,6 +71,14 @@ public final class GlobalConf {
 
     private static volatile GlobalConfProvider instance;
 
+    private static final List<Runnable> CHANGE_LISTENERS = new CopyOnWriteArrayList<>();
+    private static final List<Consumer<SharedParametersChanges>> SHARED_PARAMETERS_CHANGE_LISTENERS =
+            new CopyOnWriteArrayList<>();
+
+    // Provider and version of the configuration the change listeners were last notified of
+    private static GlobalConfProvider notifiedInstance;
+    private static long notifiedVersion;
+
     private GlobalConf() {
     }
 
@@ -119,6 +129,8 @@ public final class GlobalConf {
             log.trace("reload called, create new GlobalConfImpl");
             instance = instanceFactory.createInstance(true);
         }
+
+        notifyChangeListeners();
     }
 
     /**
@@ -128,6 +140,8 @@ public final class GlobalConf {
     public static void reload(GlobalConfProvider conf) {
         log.trace("reload called with parameter class {}", conf.getClass());
         instance = conf;
+
+        notifyChangeListeners();
     }
 
     /**
@@ -142,6 +156,79 @@ public final class GlobalConf {
             } catch (Exception e) {
                 throw translateException(e);
             }
+
+            notifyChangeListeners();
+        }
+    }
+
+    /**
+     * Registers a listener that is called after the configuration has been reloaded and the reloaded
+     * configuration differs from the one the listeners were last notified of. Listeners are called on
+     * the reloading thread and should return quickly.
+     * @param listener the listener
+     */
+    public static void addChangeListener(Runnable listener) {
+        CHANGE_LISTENERS.add(listener);
+    }
+
+    /**
+     * Removes a previously registered change listener.
+     * @param listener the listener
+     */
+    public static void removeChangeListener(Runnable listener) {
+        CHANGE_LISTENERS.remove(listener);
+    }
+
+    /**
+     * Registers a listener that is called with the changes of the shared parameters after the configuration
+     * has been reloaded and the shared parameters have changed since the listeners were last notified.
+     * Listeners are called on the reloading thread and should return quickly.
+     * @param listener the listener
+     */
+    public static void addSharedParametersChangeListener(Consumer<SharedParametersChanges> listener) {
+        SHARED_PARAMETERS_CHANGE_LISTENERS.add(listener);
+    }
+
+    /**
+     * Removes a previously registered shared parameters change listener.
+     * @param listener the listener
+     */
+    public static void removeSharedParametersChangeListener(Consumer<SharedParametersChanges> listener) {
+        SHARED_PARAMETERS_CHANGE_LISTENERS.remove(listener);
+    }
+
+    private static synchronized void notifyChangeListeners() {
+        GlobalConfProvider current = instance;
+        long version = current.getVersion();
+
+        if (current == notifiedInstance && version == notifiedVersion) {
+            return;
+        }
+
+        SharedParametersChanges changes = current == notifiedInstance
+                ? current.getChangesSince(notifiedVersion) : SharedParametersChanges.ALL;
+
+        notifiedInstance = current;
+        notifiedVersion = version;
+
+        for (Runnable listener : CHANGE_LISTENERS) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("Error notifying globalconf change listener", e);
+            }
+        }
+
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        for (Consumer<SharedParametersChanges> listener : SHARED_PARAMETERS_CHANGE_LISTENERS) {
+            try {
+                listener.accept(changes);
+            } catch (Exception e) {
+                log.error("Error notifying globalconf shared parameters change listener", e);
+            }
         }
     }
 
@@ -258,7 +258,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
         }
 
         SharedParametersV2 p = getSharedParameters(clientId.getXRoadInstance());
-        return p.getMemberAddresses().get(clientId);
+        return p.getProviderAddresses(clientId);
     }
 
     @Override
@@ -434,13 +434,9 @@ public class GlobalConfImpl implements GlobalConfProvider {
         String b64 = encodeBase64(certHash(cert));
 
         for (SharedParametersV2 p : getSharedParameters()) {
-            SecurityServerType serverType = p.getServerByAuthCert().get(b64);
-            if (serverType != null) {
-                MemberType owner = SharedParametersV2.getOwner(serverType);
-                return SecurityServerId.create(p.getInstanceIdentifier(),
-                        owner.getMemberClass().getCode(),
-                        owner.getMemberCode(),
-                        serverType.getServerCode());
+            SecurityServerId serverId = p.getServerIdByAuthCertHash(b64);
+            if (serverId != null) {
+                return serverId;
             }
         }
 
@@ -567,17 +563,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
             log.warn("Got exception while getting shared parameters.", e);
         }
 
-        if (p == null) {
-            return false;
-        }
-
-        GlobalGroupType group = p.findGlobalGroup(groupId);
-        if (group == null) {
-            return false;
-        }
-
-        return group.getGroupMember().stream().filter(m -> m.equals(subjectId))
-                .findFirst().isPresent();
+        return p != null && p.isSubjectInGlobalGroup(subjectId, groupId);
     }
 
     @Override
@@ -585,9 +571,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
             SecurityServerId securityServerId) {
         SharedParametersV2 p = getSharedParameters(securityServerId
                 .getXRoadInstance());
-        return p.getSecurityServerClients().containsKey(securityServerId)
-                && p.getSecurityServerClients().get(securityServerId)
-                        .contains(clientId);
+        return p.isSecurityServerClient(clientId, securityServerId);
     }
 
     @Override
@@ -650,6 +634,16 @@ public class GlobalConfImpl implements GlobalConfProvider {
         return false;
     }
 
+    @Override
+    public long getVersion() {
+        return confDir.getVersion();
+    }
+
+    @Override
+    public SharedParametersChanges getChangesSince(long version) {
+        return confDir.getChangesSince(version);
+    }
+
     @Override
     public void load(String fileName) throws Exception {
         confDir.setPath(Paths.get(getConfigurationPath()));
@@ -56,6 +56,24 @@ public interface GlobalConfProvider extends ConfProvider {
      */
     boolean isValid();
 
+    /**
+     * Returns the version of the configuration. The version changes whenever changed configuration has been
+     * loaded, so it can be used to detect configuration changes without comparing the configuration itself.
+     * @return the version of the configuration
+     */
+    default long getVersion() {
+        return 0;
+    }
+
+    /**
+     * Returns the changes of the shared parameters made after the given version of the configuration.
+     * @param version the version of the configuration
+     * @return the shared parameters changes, {@link SharedParametersChanges#ALL} if the changes are not known
+     */
+    default SharedParametersChanges getChangesSince(long version) {
+        return SharedParametersChanges.ALL;
+    }
+
     /**
      * @return the instance identifier for this configuration source
      */
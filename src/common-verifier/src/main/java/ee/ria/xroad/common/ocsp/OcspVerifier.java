@@ -27,8 +27,12 @@ package ee.ria.xroad.common.ocsp;
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
-import ee.ria.xroad.common.conf.globalconf.TimeBasedObjectCache;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.xml.security.algorithms.MessageDigestAlgorithm;
 import org.bouncycastle.asn1.DERBitString;
@@ -52,10 +56,13 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.X_CERT_VALIDATION;
 import static ee.ria.xroad.common.ErrorCodes.X_INCORRECT_VALIDATION_INFO;
 import static ee.ria.xroad.common.util.CryptoUtils.SHA1_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.SHA256_ID;
 import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
 import static ee.ria.xroad.common.util.CryptoUtils.createCertId;
 import static ee.ria.xroad.common.util.CryptoUtils.createDefaultContentVerifier;
@@ -68,16 +75,17 @@ public final class OcspVerifier {
 
     private static final String ID_KP_OCSPSIGNING = "1.3.6.1.5.5.7.3.9";
 
-    private static final String SINGLE_RESP = "single_resp";
-    private static final String SIGNATURE = "signature";
-    private static final String CERTIFICATE = "certificate";
-
     private final int ocspFreshnessSeconds;
 
     private final OcspVerifierOptions options;
 
-    private static final TimeBasedObjectCache CACHE = new TimeBasedObjectCache(SystemProperties
-            .getOcspVerifierCachePeriod());;
+    // Caches the results of successful response validity checks, so that the OCSP response signatures of
+    // frequently used certificates are not verified over and over again.
+    private static final Cache<ResponseValidityKey, SingleResp> RESPONSE_VALIDITY_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(SystemProperties.getOcspVerifierCacheSize())
+            .expireAfterWrite(SystemProperties.getOcspVerifierCachePeriod(), TimeUnit.SECONDS)
+            .recordStats()
+            .build();
 
     /**
      * Constructor
@@ -182,15 +190,27 @@ public final class OcspVerifier {
         }
     }
 
-    private synchronized SingleResp verifyResponseValidityCached(OCSPResp response, X509Certificate subject,
-                                                                 X509Certificate issuer)
-            throws Exception {
-        String key = SINGLE_RESP + response.hashCode() + subject.hashCode() + issuer.hashCode();
-        if (!CACHE.isValid(key)) {
-            CACHE.setValue(key, verifyResponseValidity(response, subject, issuer));
+    private SingleResp verifyResponseValidityCached(OCSPResp response, X509Certificate subject,
+            X509Certificate issuer) throws Exception {
+        ResponseValidityKey key = new ResponseValidityKey(calculateDigest(SHA256_ID, response.getEncoded()),
+                subject, issuer);
+
+        try {
+            return RESPONSE_VALIDITY_CACHE.get(key, () -> verifyResponseValidity(response, subject, issuer));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
         }
+    }
 
-        return (SingleResp) CACHE.getValue(key);
+    /**
+     * @return hit and miss statistics of the OCSP response validity cache
+     */
+    public static CacheStats getResponseValidityCacheStats() {
+        return RESPONSE_VALIDITY_CACHE.stats();
     }
 
     private SingleResp verifyResponseValidity(OCSPResp response, X509Certificate subject, X509Certificate issuer)
@@ -400,4 +420,11 @@ public final class OcspVerifier {
 
         return false;
     }
+
+    @Value
+    private static class ResponseValidityKey {
+        private final byte[] responseDigest;
+        private final X509Certificate subject;
+        private final X509Certificate issuer;
+    }
 }
@@ -380,8 +380,8 @@ public class SignatureVerifier {
                 case MessageFileNames.MESSAGE:
                     MessagePart part = getPart(MessageFileNames.MESSAGE);
 
-                    if (part != null && part.getMessage() != null) {
-                        return new XMLSignatureInput(part.getMessage());
+                    if (part != null && part.hasMessage()) {
+                        return new XMLSignatureInput(part.openMessage());
                     }
 
                     break;
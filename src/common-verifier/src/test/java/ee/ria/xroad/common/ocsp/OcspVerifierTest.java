@@ -31,6 +31,7 @@ import ee.ria.xroad.common.TestSecurityUtil;
 import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 
+import com.google.common.cache.CacheStats;
 import org.bouncycastle.asn1.x509.CRLReason;
 import org.bouncycastle.cert.ocsp.CertificateStatus;
 import org.bouncycastle.cert.ocsp.OCSPResp;
@@ -49,6 +50,7 @@ import java.util.List;
 
 import static ee.ria.xroad.common.ErrorCodes.X_CERT_VALIDATION;
 import static ee.ria.xroad.common.ErrorCodes.X_INCORRECT_VALIDATION_INFO;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 /**
@@ -203,6 +205,30 @@ public class OcspVerifierTest {
         verifier.verifyValidityAndStatus(ocsp, subject, issuer);
     }
 
+    /**
+     * Tests that verifying the same response again is served from the response validity cache.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void responseValidityCached() throws Exception {
+        Date thisUpdate = new DateTime().plusDays(1).toDate();
+        OCSPResp ocsp = OcspTestUtils.createOCSPResponse(subject, issuer,
+                signer, signerKey, CertificateStatus.GOOD,
+                thisUpdate, null);
+
+        OcspVerifier verifier =
+                new OcspVerifier(GlobalConf.getOcspFreshnessSeconds(true), new OcspVerifierOptions(true));
+
+        verifier.verifyValidityAndStatus(ocsp, subject, issuer);
+
+        CacheStats before = OcspVerifier.getResponseValidityCacheStats();
+        verifier.verifyValidityAndStatus(new OCSPResp(ocsp.getEncoded()), subject, issuer);
+        CacheStats stats = OcspVerifier.getResponseValidityCacheStats().minus(before);
+
+        assertEquals(0, stats.missCount());
+        assertEquals(1, stats.hitCount());
+    }
+
     /**
      * Tests that verifying succeeds if certificate status is revoked.
      * @throws Exception if an error occurs
@@ -39,6 +39,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -103,6 +104,21 @@ public class SignatureVerifierTest {
         verifyValidSignature("../common-test/src/test/signatures/sign-0.xml");
     }
 
+    /**
+     * Tests that verifying a valid signature succeeds when the message is streamed to the verifier.
+     * @throws Exception if error occurs
+     */
+    @Test
+    public void verifyValidSignatureStreamedMessage() throws Exception {
+        byte[] messageBytes = fileToBytes("../common-test/src/test/signatures/message-0.xml");
+
+        SignatureVerifier verifier = createSignatureVerifier("../common-test/src/test/signatures/sign-0.xml");
+        verifier.addPart(MessagePart.streamed(MessageFileNames.MESSAGE, SHA512_ID,
+                calculateDigest(SHA512_ID, messageBytes), () -> new ByteArrayInputStream(messageBytes)));
+
+        verifier.verify(CONSUMER_ID, CORRECT_VALIDATION_DATE);
+    }
+
     /**
      * Tests that verifying a valid signature succeeds.
      * @throws Exception if error occurs
@@ -34,11 +34,15 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.FileNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INVALID_XML;
@@ -69,10 +73,19 @@ class ConfigurationClient {
             initConfigurationAnchor();
         }
 
-        downloadConfigurationFromAnchor();
+        downloader.beginStaging();
 
-        if (!additionalSources.isEmpty()) {
-            downloadConfigurationFromAdditionalSources();
+        try {
+            downloadConfigurationFromAnchor();
+
+            if (!additionalSources.isEmpty()) {
+                downloadConfigurationFromAdditionalSources();
+            }
+
+            // Persist the configuration downloaded from all the sources at once.
+            downloader.commitStaged();
+        } finally {
+            downloader.discardStaged();
         }
 
         // Only sync if download was successful.
@@ -149,17 +162,29 @@ class ConfigurationClient {
         FederationConfigurationSourceFilter filter =
                 new FederationConfigurationSourceFilterImpl(configurationAnchor.getInstanceIdentifier());
 
-        for (Set<ConfigurationSource> sources : additionalSources.values()) {
+        List<ConfigurationSource> sources = additionalSources.values().stream()
+                .flatMap(Set::stream)
+                .filter(source -> filter.shouldDownloadConfigurationFor(source.getInstanceIdentifier()))
+                .collect(Collectors.toList());
+
+        // The sources are downloaded concurrently, but the results are handled in order.
+        ExecutorService executor = ConfigurationDownloader.createExecutor(sources.size(),
+                SystemProperties.getConfigurationClientSourceDownloadParallelism(), "conf-source-%d");
+
+        try {
+            List<Future<DownloadResult>> results = new ArrayList<>();
+
             for (ConfigurationSource source : sources) {
-                if (!filter.shouldDownloadConfigurationFor(source.getInstanceIdentifier())) {
-                    continue;
-                }
+                results.add(executor.submit(() -> downloader.download(
+                        source, ConfigurationConstants.CONTENT_ID_SHARED_PARAMETERS)));
+            }
 
-                DownloadResult result = downloader.download(
-                        source, ConfigurationConstants.CONTENT_ID_SHARED_PARAMETERS);
-                handleResult(result, source.getInstanceIdentifier().equals(
+            for (int i = 0; i < sources.size(); i++) {
+                handleResult(results.get(i).get(), sources.get(i).getInstanceIdentifier().equals(
                         configurationAnchor.getInstanceIdentifier()));
             }
+        } finally {
+            executor.shutdownNow();
         }
     }
 
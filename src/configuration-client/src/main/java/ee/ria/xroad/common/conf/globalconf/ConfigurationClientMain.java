@@ -37,6 +37,7 @@ import org.apache.commons.cli.BasicParser;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.Options;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
@@ -46,6 +47,8 @@ import org.quartz.JobListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalTime;
 import java.util.concurrent.CountDownLatch;
@@ -160,6 +163,16 @@ public final class ConfigurationClientMain {
 
         System.setProperty(SystemProperties.CONFIGURATION_ANCHOR_FILE, configurationAnchorFile);
 
+        Path contentDir;
+
+        try {
+            contentDir = Files.createTempDirectory("conf-validate");
+        } catch (IOException e) {
+            log.error("Error when creating temporary directory for conf", e);
+
+            return ConfigurationClientUtils.getErrorCode(e);
+        }
+
         // Create configuration that does not persist files to disk.
         ConfigurationDownloader configuration = new ConfigurationDownloader(getDefaultFileNameProvider(),
                 SystemProperties.CURRENT_GLOBAL_CONFIGURATION_VERSION) {
@@ -171,7 +184,13 @@ public final class ConfigurationClientMain {
             }
 
             @Override
-            void persistContent(byte[] content, Path destination, ConfigurationFile file) throws Exception {
+            Path createContentFile(Path destination) throws Exception {
+                // the content is downloaded outside of the configuration directory
+                return Files.createTempFile(contentDir, "conf", null);
+            }
+
+            @Override
+            void persistContent(Path content, Path destination, ConfigurationFile file) throws Exception {
                 // empty cause we don't want to persist files to disk
             }
 
@@ -194,7 +213,13 @@ public final class ConfigurationClientMain {
             }
         };
 
-        int result = execute();
+        int result;
+
+        try {
+            result = execute();
+        } finally {
+            FileUtils.deleteQuietly(contentDir.toFile());
+        }
 
         // Check if downloaded configuration contained private parameters.
         if (result == RETURN_SUCCESS) {
@@ -25,30 +25,52 @@
 package ee.ria.xroad.common.conf.globalconf;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.DefaultFilepaths;
+import ee.ria.xroad.common.SystemProperties;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.Getter;
 import lombok.SneakyThrows;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang.StringUtils;
 import org.bouncycastle.operator.DigestCalculator;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.X_IO_ERROR;
 import static ee.ria.xroad.common.ErrorCodes.X_MALFORMED_GLOBALCONF;
@@ -56,6 +78,8 @@ import static ee.ria.xroad.common.util.CryptoUtils.createDigestCalculator;
 import static ee.ria.xroad.common.util.CryptoUtils.decodeBase64;
 import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
 import static ee.ria.xroad.common.util.CryptoUtils.getAlgorithmId;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 /**
  * Downloads configuration directory from a configuration location defined
@@ -67,6 +91,18 @@ import static ee.ria.xroad.common.util.CryptoUtils.getAlgorithmId;
  * then traversed to find the first location where configuration * can be
  * downloaded. The successful location is remembered and used first next time
  * the configuration is downloaded.
+ *
+ * The content parts that have changed are downloaded concurrently, each one
+ * streamed to a temporary file while its hash is calculated, and then handled
+ * and persisted in the order they appear in the configuration directory. The
+ * hashes of the local files are cached, so the content parts that have not
+ * changed are neither downloaded nor read from disk.
+ *
+ * If a configuration location does not respond within the hedge delay, the
+ * configuration directory is requested also from the next location and the
+ * one that responds first is used. Several configuration sources may be
+ * downloaded concurrently; while staging, the downloaded content parts are
+ * collected and persisted only when the whole download is committed.
  */
 @Slf4j
 class ConfigurationDownloader {
@@ -77,12 +113,20 @@ class ConfigurationDownloader {
     protected final String[] instanceIdentifiers;
     private final int version;
 
+    private final ContentHashCache hashCache = new ContentHashCache();
+    private final Map<ConfigurationFile, PendingDownload> pendingDownloads = new ConcurrentHashMap<>();
+    private final Map<Path, StagedPart> stagedParts = new ConcurrentHashMap<>();
+    private volatile boolean staging;
+
+    private final ExecutorService locationExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("conf-location-%d").setDaemon(true).build());
+
     private Map<ConfigurationSource, ConfigurationLocation>
-            lastSuccessfulLocation = new HashMap<>();
+            lastSuccessfulLocation = new ConcurrentHashMap<>();
 
     @Getter
     protected final Map<String, Set<ConfigurationSource>> additionalSources =
-            new HashMap<>();
+            new ConcurrentHashMap<>();
 
     ConfigurationDownloader(FileNameProvider fileNameProvider, int version,
             String... instanceIdentifiers) {
@@ -109,10 +153,14 @@ class ConfigurationDownloader {
     DownloadResult download(ConfigurationSource source,
             String... contentIdentifiers) {
         DownloadResult result = new DownloadResult();
+        Deque<ConfigurationLocation> locations = new ArrayDeque<>(getLocations(source));
+        Configuration config;
+
+        while ((config = parseFromFastestLocation(locations, contentIdentifiers, result)) != null) {
+            ConfigurationLocation location = config.getLocation();
 
-        for (ConfigurationLocation location : getLocations(source)) {
             try {
-                Configuration config = download(location, contentIdentifiers);
+                download(config);
 
                 rememberLastSuccessfulLocation(location);
                 return result.success(config);
@@ -125,6 +173,58 @@ class ConfigurationDownloader {
         return result.failure();
     }
 
+    /**
+     * Fetches the configuration directory from the remaining locations, starting with the first one. If
+     * a location has not responded within the hedge delay, the next location is requested alongside it.
+     * The locations that have been requested are removed from the given queue.
+     * @return the configuration directory from the location that responded first, or null if none did
+     */
+    private Configuration parseFromFastestLocation(Deque<ConfigurationLocation> locations,
+            String[] contentIdentifiers, DownloadResult result) {
+        CompletionService<Configuration> completionService = new ExecutorCompletionService<>(locationExecutor);
+        Map<Future<Configuration>, ConfigurationLocation> inProgress = new HashMap<>();
+        long hedgeDelay = SystemProperties.getConfigurationClientHedgeDelay();
+
+        try {
+            while (!locations.isEmpty() || !inProgress.isEmpty()) {
+                if (inProgress.isEmpty()) {
+                    startParse(completionService, locations.poll(), contentIdentifiers, inProgress);
+                }
+
+                Future<Configuration> done = hedgeDelay > 0 && !locations.isEmpty()
+                        ? completionService.poll(hedgeDelay, TimeUnit.MILLISECONDS)
+                        : completionService.take();
+
+                if (done == null) {
+                    log.debug("Configuration location did not respond in {} ms, trying next location",
+                            hedgeDelay);
+
+                    startParse(completionService, locations.poll(), contentIdentifiers, inProgress);
+                    continue;
+                }
+
+                ConfigurationLocation location = inProgress.remove(done);
+
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    result.addFailure(location, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inProgress.keySet().forEach(request -> request.cancel(true));
+        }
+
+        return null;
+    }
+
+    private void startParse(CompletionService<Configuration> completionService, ConfigurationLocation location,
+            String[] contentIdentifiers, Map<Future<Configuration>, ConfigurationLocation> inProgress) {
+        inProgress.put(completionService.submit(() -> parse(location, contentIdentifiers)), location);
+    }
+
     private void rememberLastSuccessfulLocation(ConfigurationLocation location) {
         log.trace("rememberLastSuccessfulLocation source={} location={}", location.getSource(), location);
         lastSuccessfulLocation.put(location.getSource(), location);
@@ -156,36 +256,99 @@ class ConfigurationDownloader {
         }
     }
 
-    Configuration download(ConfigurationLocation location,
+    Configuration parse(ConfigurationLocation location,
             String[] contentIdentifiers) throws Exception {
         log.info("Downloading configuration from {}",
                 location.getDownloadURL());
 
+        return getParser().parse(location, contentIdentifiers);
+    }
+
+    void download(Configuration configuration) throws Exception {
+        ConfigurationLocation location = configuration.getLocation();
+
         additionalSources.clear();
 
-        Configuration configuration =
-                getParser().parse(location, contentIdentifiers);
+        List<ConfigurationFile> changedFiles = getChangedFiles(location, configuration);
+        ExecutorService executor = createExecutor(changedFiles.size(),
+                SystemProperties.getConfigurationClientDownloadParallelism(), "conf-download-%d");
+
+        try {
+            for (ConfigurationFile file : changedFiles) {
+                PendingDownload download = new PendingDownload(location, file);
+                download.start(executor);
+                pendingDownloads.put(file, download);
+            }
+
+            configuration.eachFile(this::handle);
+        } catch (Exception e) {
+            discardStaged(configuration);
+
+            throw e;
+        } finally {
+            executor.shutdownNow();
+            discardPendingDownloads(configuration);
+        }
+    }
+
+    private List<ConfigurationFile> getChangedFiles(ConfigurationLocation location, Configuration configuration)
+            throws Exception {
+        List<ConfigurationFile> result = new ArrayList<>();
+
+        for (ConfigurationFile file : configuration.getFiles()) {
+            verifyInstanceIdentifier(location.getSource().getInstanceIdentifier(), file);
+
+            if (shouldDownload(file, getFileName(file))) {
+                result.add(file);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates an executor for running the given number of tasks with at most the given parallelism.
+     * The tasks are run in the submitting thread if they cannot be run in parallel.
+     */
+    static ExecutorService createExecutor(int taskCount, int parallelism, String threadNameFormat) {
+        int threads = Math.min(taskCount, parallelism);
+
+        if (threads <= 1) {
+            return MoreExecutors.newDirectExecutorService();
+        }
 
-        configuration.eachFile(this::handle);
+        return Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat(threadNameFormat).setDaemon(true).build());
+    }
 
-        return configuration;
+    private void discardPendingDownloads(Configuration configuration) {
+        configuration.getFiles().stream()
+                .map(pendingDownloads::remove)
+                .filter(Objects::nonNull)
+                .forEach(PendingDownload::discard);
     }
 
+    /**
+     * Handles a content part of the configuration directory being downloaded. The
+     * content parts that have changed have already been queued for download.
+     */
     @SneakyThrows
     void handle(ConfigurationLocation location, ConfigurationFile file) {
         log.trace("handle({})", file);
 
-        verifyInstanceIdentifier(location.getSource().getInstanceIdentifier(),
-                file);
-
         Path contentFileName = getFileName(file);
-        if (shouldDownload(file, contentFileName)) {
-            byte[] content = downloadContent(location, file);
+        PendingDownload download = pendingDownloads.remove(file);
 
-            verifyContent(content, file);
-            handleContent(content, file);
+        if (download != null) {
+            Path content = download.getContent();
+
+            try {
+                handleContent(content, file);
 
-            persistContent(content, contentFileName, file);
+                persistContent(content, contentFileName, file);
+            } finally {
+                Files.deleteIfExists(content);
+            }
         } else {
             log.trace("{} is up to date", file.getContentLocation());
 
@@ -201,8 +364,8 @@ class ConfigurationDownloader {
 
         if (Files.exists(file)) {
             String contentHash = configurationFile.getHash();
-            String existingHash = encodeBase64(hash(file,
-                    configurationFile.getHashAlgorithmId()));
+            String existingHash = hashCache.getHash(file,
+                    configurationFile.getHashAlgorithmId());
             if (!StringUtils.equals(existingHash, contentHash)) {
                 log.trace("Downloading {} because file has changed ({} != {})",
                         new Object[] {configurationFile.getContentLocation(),
@@ -218,24 +381,62 @@ class ConfigurationDownloader {
         return true;
     }
 
-    byte[] downloadContent(ConfigurationLocation location,
+    /**
+     * Downloads the content part to a temporary file next to the destination
+     * file, verifying the content hash on the fly.
+     * @return the temporary file holding the verified content
+     */
+    Path downloadContent(ConfigurationLocation location,
+            ConfigurationFile file, Path destination) throws Exception {
+        Path tempFile = createContentFile(destination);
+
+        try {
+            String algoId = getAlgorithmId(file.getHashAlgorithmId());
+            DigestCalculator dc = createDigestCalculator(algoId);
+
+            try (InputStream in = openContent(location, file);
+                    FileChannel channel = FileChannel.open(tempFile, WRITE, TRUNCATE_EXISTING);
+                    OutputStream out = new TeeOutputStream(Channels.newOutputStream(channel),
+                            dc.getOutputStream())) {
+                IOUtils.copyLarge(in, out);
+                channel.force(true);
+            }
+
+            verifyContent(dc.getDigest(), file);
+
+            return tempFile;
+        } catch (Exception e) {
+            Files.deleteIfExists(tempFile);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the temporary file the content part is downloaded to. The file is created in the directory of the
+     * destination file, so that it can be moved in place atomically.
+     * @param destination the destination file of the content part
+     * @return the created temporary file
+     * @throws Exception if creating the file fails
+     */
+    Path createContentFile(Path destination) throws Exception {
+        Path directory = destination.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        return DefaultFilepaths.createTempFile(directory, "conf", null);
+    }
+
+    InputStream openContent(ConfigurationLocation location,
             ConfigurationFile file) throws Exception {
         URLConnection connection = getDownloadURLConnection(getDownloadURL(location, file));
         log.info("Downloading content from {}", connection.getURL());
-        try (InputStream in = connection.getInputStream()) {
-            return IOUtils.toByteArray(in);
-        }
-    }
 
-    void verifyContent(byte[] content, ConfigurationFile file)
-            throws Exception {
-        String algoId = getAlgorithmId(file.getHashAlgorithmId());
-        log.trace("verifyContent({}, {})", file.getHash(), algoId);
+        return connection.getInputStream();
+    }
 
-        DigestCalculator dc = createDigestCalculator(algoId);
-        dc.getOutputStream().write(content);
+    void verifyContent(byte[] hash, ConfigurationFile file) {
+        log.trace("verifyContent({}, {})", file.getHash(), file.getHashAlgorithmId());
 
-        byte[] hash = dc.getDigest();
         if (!Arrays.equals(hash, decodeBase64(file.getHash()))) {
             log.trace("Content {} hash {} does not match expected hash {}",
                     new Object[] {
@@ -245,17 +446,17 @@ class ConfigurationDownloader {
         }
     }
 
-    void handleContent(byte[] content, ConfigurationFile file)
+    void handleContent(Path content, ConfigurationFile file)
             throws Exception {
         switch (file.getContentIdentifier()) {
             case ConfigurationConstants.CONTENT_ID_PRIVATE_PARAMETERS:
                 PrivateParametersV2 privateParameters = new PrivateParametersV2();
-                privateParameters.load(content);
+                privateParameters.load(Files.readAllBytes(content));
                 handlePrivateParameters(privateParameters, file);
                 break;
             case ConfigurationConstants.CONTENT_ID_SHARED_PARAMETERS:
                 SharedParametersV2 sharedParameters = new SharedParametersV2();
-                sharedParameters.load(content);
+                sharedParameters.load(Files.readAllBytes(content));
                 handleSharedParameters(sharedParameters, file);
                 break;
             default: // do nothing
@@ -294,11 +495,116 @@ class ConfigurationDownloader {
                 file);
     }
 
-    void persistContent(byte[] content, Path destination,
+    void persistContent(Path content, Path destination,
             ConfigurationFile file) throws Exception {
+        if (staging) {
+            stageContent(content, destination, file);
+
+            return;
+        }
+
+        saveContent(content, destination, file);
+    }
+
+    private void saveContent(Path content, Path destination, ConfigurationFile file) throws Exception {
         log.info("Saving {} to {}", file, destination);
 
+        boolean indexed = isIndexed(file);
+
+        if (indexed) {
+            // The index is rewritten for the new content.
+            Files.deleteIfExists(SharedParametersIndex.getIndexFile(destination));
+        }
+
         ConfigurationDirectory.save(destination, content, file.getMetadata());
+
+        hashCache.put(destination, file.getHashAlgorithmId(), file.getHash());
+
+        if (indexed) {
+            writeIndex(destination);
+        }
+    }
+
+    private static boolean isIndexed(ConfigurationFile file) {
+        return ConfigurationConstants.CONTENT_ID_SHARED_PARAMETERS.equals(file.getContentIdentifier());
+    }
+
+    private static void writeIndex(Path sharedParametersFile) {
+        try {
+            SharedParametersIndex.write(sharedParametersFile);
+        } catch (Exception e) {
+            // The processes fall back to looking up the shared parameters without the index.
+            log.error("Failed to write shared parameters index for {}", sharedParametersFile, e);
+        }
+    }
+
+    private void stageContent(Path content, Path destination, ConfigurationFile file) throws Exception {
+        log.trace("Staging {} for {}", file, destination);
+
+        Path stagedContent = DefaultFilepaths.createTempFile(content.getParent(), "staged", null);
+        Files.move(content, stagedContent, StandardCopyOption.REPLACE_EXISTING);
+
+        StagedPart previous = stagedParts.put(destination, new StagedPart(stagedContent, destination, file));
+
+        if (previous != null) {
+            Files.deleteIfExists(previous.getContent());
+        }
+    }
+
+    /**
+     * Starts collecting the downloaded content parts instead of persisting them right away, so that
+     * the configuration downloaded from several sources can be committed at once.
+     */
+    void beginStaging() {
+        discardStaged();
+
+        staging = true;
+    }
+
+    /**
+     * Persists the content parts collected since {@link #beginStaging()}.
+     * @throws Exception if persisting fails
+     */
+    void commitStaged() throws Exception {
+        staging = false;
+
+        try {
+            for (StagedPart part : stagedParts.values()) {
+                saveContent(part.getContent(), part.getDestination(), part.getFile());
+            }
+        } finally {
+            discardStaged();
+        }
+    }
+
+    /**
+     * Discards the content parts collected since {@link #beginStaging()}.
+     */
+    void discardStaged() {
+        staging = false;
+
+        stagedParts.values().forEach(ConfigurationDownloader::deleteStaged);
+        stagedParts.clear();
+    }
+
+    private void discardStaged(Configuration configuration) {
+        stagedParts.values().removeIf(part -> {
+            if (configuration.getFiles().contains(part.getFile())) {
+                deleteStaged(part);
+
+                return true;
+            }
+
+            return false;
+        });
+    }
+
+    private static void deleteStaged(StagedPart part) {
+        try {
+            Files.deleteIfExists(part.getContent());
+        } catch (IOException e) {
+            log.error("Failed to delete staged content {}", part.getContent(), e);
+        }
     }
 
     void updateExpirationDate(Path destination, ConfigurationFile file)
@@ -306,6 +612,10 @@ class ConfigurationDownloader {
         log.trace("{} expires {}", file, file.getExpirationDate());
 
         ConfigurationDirectory.saveMetadata(destination, file.getMetadata());
+
+        if (isIndexed(file) && !Files.exists(SharedParametersIndex.getIndexFile(destination))) {
+            writeIndex(destination);
+        }
     }
 
     void verifyInstanceIdentifier(String instanceIdentifier,
@@ -336,6 +646,83 @@ class ConfigurationDownloader {
 
     // ------------------------------------------------------------------------
 
+    /**
+     * A content part being downloaded. A discarded download deletes its content file, also when the download
+     * completes only after it has been discarded.
+     */
+    private final class PendingDownload implements Callable<Path> {
+        private final ConfigurationLocation location;
+        private final ConfigurationFile file;
+
+        private Future<Path> future;
+        private Path content;
+        private boolean discarded;
+
+        PendingDownload(ConfigurationLocation location, ConfigurationFile file) {
+            this.location = location;
+            this.file = file;
+        }
+
+        void start(ExecutorService executor) {
+            future = executor.submit(this);
+        }
+
+        @Override
+        public Path call() throws Exception {
+            Path downloaded = downloadContent(location, file, getFileName(file));
+
+            synchronized (this) {
+                if (discarded) {
+                    Files.deleteIfExists(downloaded);
+
+                    throw new CancellationException("Download of " + file + " has been discarded");
+                }
+
+                content = downloaded;
+            }
+
+            return downloaded;
+        }
+
+        Path getContent() throws Exception {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+
+                throw e;
+            }
+        }
+
+        /**
+         * Cancels the download without waiting for it. A download that has not started is never run.
+         */
+        void discard() {
+            future.cancel(true);
+
+            synchronized (this) {
+                discarded = true;
+
+                if (content != null) {
+                    try {
+                        Files.deleteIfExists(content);
+                    } catch (IOException e) {
+                        log.error("Failed to delete discarded content {}", content, e);
+                    }
+                }
+            }
+        }
+    }
+
+    @Value
+    private static class StagedPart {
+        private final Path content;
+        private final Path destination;
+        private final ConfigurationFile file;
+    }
+
     static byte[] hash(Path file, String algoId) throws Exception {
         DigestCalculator dc = createDigestCalculator(getAlgorithmId(algoId));
 
@@ -0,0 +1,96 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
+
+/**
+ * Remembers the hashes of the local configuration files, so that the files that have not changed
+ * are not read and hashed again on every download. A remembered hash is used for as long as the size
+ * and the modification time of the file stay the same.
+ */
+class ContentHashCache {
+
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the hash of the given file, calculating it only if the file has changed since the hash
+     * was last calculated or remembered.
+     * @param file the file
+     * @param hashAlgorithmId the hash algorithm identifier (URI)
+     * @return the base64 encoded hash of the file
+     * @throws Exception if the file cannot be read or the algorithm is not supported
+     */
+    String getHash(Path file, String hashAlgorithmId) throws Exception {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        Entry entry = entries.get(file);
+
+        if (entry != null && entry.matches(hashAlgorithmId, attributes)) {
+            return entry.getHash();
+        }
+
+        String hash = encodeBase64(ConfigurationDownloader.hash(file, hashAlgorithmId));
+        entries.put(file, Entry.of(hashAlgorithmId, attributes, hash));
+
+        return hash;
+    }
+
+    /**
+     * Remembers the already known hash of the given file.
+     * @param file the file
+     * @param hashAlgorithmId the hash algorithm identifier (URI)
+     * @param hash the base64 encoded hash of the file
+     * @throws IOException if the file attributes cannot be read
+     */
+    void put(Path file, String hashAlgorithmId, String hash) throws IOException {
+        entries.put(file, Entry.of(hashAlgorithmId, Files.readAttributes(file, BasicFileAttributes.class), hash));
+    }
+
+    @Value
+    private static class Entry {
+        private final String hashAlgorithmId;
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+
+        static Entry of(String hashAlgorithmId, BasicFileAttributes attributes, String hash) {
+            return new Entry(hashAlgorithmId, attributes.size(), attributes.lastModifiedTime().toMillis(), hash);
+        }
+
+        boolean matches(String algorithmId, BasicFileAttributes attributes) {
+            return hashAlgorithmId.equals(algorithmId) && size == attributes.size()
+                    && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+}
@@ -79,7 +79,8 @@ class DownloadedFiles {
         return stream.filter(Files::isRegularFile)
                 .filter(p -> !p.endsWith(ConfigurationDirectory.FILES))
                 .filter(p -> !p.endsWith(ConfigurationDirectory.INSTANCE_IDENTIFIER_FILE))
-                .filter(p -> !p.toString().endsWith(ConfigurationDirectory.METADATA_SUFFIX));
+                .filter(p -> !p.toString().endsWith(ConfigurationDirectory.METADATA_SUFFIX))
+                .filter(p -> !p.toString().endsWith(ConfigurationDirectory.INDEX_SUFFIX));
     }
 
     void delete(Path path) {
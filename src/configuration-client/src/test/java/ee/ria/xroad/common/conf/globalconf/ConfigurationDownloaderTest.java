@@ -27,21 +27,46 @@ package ee.ria.xroad.common.conf.globalconf;
 import ee.ria.xroad.common.SystemProperties;
 
 import lombok.Getter;
+import lombok.SneakyThrows;
 import lombok.Value;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeMatcher;
+import org.joda.time.DateTime;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static ee.ria.xroad.common.util.CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.DEFAULT_DIGEST_ALGORITHM_URI;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_CONTENT_LOCATION;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_CONTENT_TRANSFER_ENCODING;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_CONTENT_TYPE;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_HASH_ALGORITHM_ID;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -51,6 +76,16 @@ import static org.junit.Assert.assertTrue;
 public class ConfigurationDownloaderTest {
     private static final int MAX_ATTEMPTS = 5;
     private static final String LOCATION_URL_SUCCESS = "http://www.example.com/SUCCESS";
+    private static final long HEDGE_TEST_TIMEOUT = 10000;
+    private static final long DISCARD_TEST_TIMEOUT = 10000;
+    private static final long POLL_INTERVAL = 10;
+    private static final int PENDING_CONTENT_PARTS = 6;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Rule
+    public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
 
     /**
      * For better HA, the order of sources to be tried to download configuration
@@ -112,6 +147,180 @@ public class ConfigurationDownloaderTest {
         assertTrue(connection.getReadTimeout() > 0);
     }
 
+    /**
+     * Checks that only the content parts that have changed since the previous
+     * download are downloaded and that they are persisted intact.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void downloadOnlyChangedContentParts() throws Exception {
+        Path confDir = tempFolder.getRoot().toPath();
+        Map<String, byte[]> contents = new HashMap<>();
+        contents.put("foo.xml", bytes("foo"));
+        contents.put("bar.xml", bytes("bar"));
+        contents.put("baz.xml", bytes("baz"));
+
+        List<String> opened = Collections.synchronizedList(new ArrayList<>());
+        ConfigurationDownloader downloader = getContentDownloader(confDir, contents, contents, opened);
+        ConfigurationSource source = getSource(Arrays.asList(LOCATION_URL_SUCCESS));
+
+        assertTrue(downloader.download(source).isSuccess());
+        assertEquals(contents.size(), opened.size());
+
+        for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+            assertArrayEquals(entry.getValue(), Files.readAllBytes(confDir.resolve(entry.getKey())));
+        }
+
+        opened.clear();
+
+        assertTrue(downloader.download(source).isSuccess());
+        assertTrue(opened.isEmpty());
+
+        Files.write(confDir.resolve("bar.xml"), bytes("modified"));
+
+        assertTrue(downloader.download(source).isSuccess());
+        assertEquals(Arrays.asList("bar.xml"), opened);
+        assertArrayEquals(contents.get("bar.xml"), Files.readAllBytes(confDir.resolve("bar.xml")));
+    }
+
+    /**
+     * Checks that content whose hash does not match is neither persisted nor
+     * left behind as a temporary file.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void rejectContentWithInvalidHash() throws Exception {
+        Path confDir = tempFolder.getRoot().toPath();
+        Map<String, byte[]> expected = Collections.singletonMap("foo.xml", bytes("foo"));
+        Map<String, byte[]> served = Collections.singletonMap("foo.xml", bytes("tampered"));
+
+        ConfigurationDownloader downloader = getContentDownloader(confDir, expected, served,
+                Collections.synchronizedList(new ArrayList<>()));
+
+        assertFalse(downloader.download(getSource(Arrays.asList(LOCATION_URL_SUCCESS))).isSuccess());
+        assertEquals(0, confDir.toFile().list().length);
+    }
+
+    /**
+     * Checks that a failing content part does not leave the download waiting for the content parts that are
+     * still queued or being downloaded, when more content parts have changed than there are download threads.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test(timeout = DISCARD_TEST_TIMEOUT)
+    public void discardPendingDownloadsWhenContentPartFails() throws Exception {
+        System.setProperty(SystemProperties.CONFIGURATION_CLIENT_DOWNLOAD_PARALLELISM, "2");
+
+        Path confDir = tempFolder.getRoot().toPath();
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+
+        for (int i = 0; i < PENDING_CONTENT_PARTS; i++) {
+            contents.put("part" + i + ".xml", bytes("part" + i));
+        }
+
+        CountDownLatch released = new CountDownLatch(1);
+
+        ConfigurationDownloader downloader = getContentDownloader(confDir, contents, name -> {
+            if ("part0.xml".equals(name)) {
+                // The first content part handled fails the hash check
+                return new ByteArrayInputStream(bytes("tampered"));
+            }
+
+            // The other content parts are never served
+            released.await();
+
+            return new ByteArrayInputStream(contents.get(name));
+        });
+
+        try {
+            assertFalse(downloader.download(getSource(Arrays.asList(LOCATION_URL_SUCCESS))).isSuccess());
+
+            // The interrupted downloads delete their temporary files
+            while (confDir.toFile().list().length > 0) {
+                Thread.sleep(POLL_INTERVAL);
+            }
+        } finally {
+            released.countDown();
+        }
+    }
+
+    /**
+     * Checks that the configuration is requested also from the next location
+     * when the first location does not respond.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test(timeout = HEDGE_TEST_TIMEOUT)
+    public void hedgeRequestToNextLocationWhenFirstIsSlow() throws Exception {
+        System.setProperty(SystemProperties.CONFIGURATION_CLIENT_HEDGE_DELAY, "100");
+
+        CountDownLatch firstRequestReleased = new CountDownLatch(1);
+        List<String> requestedUrls = Collections.synchronizedList(new ArrayList<>());
+
+        ConfigurationDownloader downloader = new ConfigurationDownloader(file -> new File("f").toPath(),
+                SystemProperties.CURRENT_GLOBAL_CONFIGURATION_VERSION) {
+            @Override
+            ConfigurationParser getParser() {
+                return new ConfigurationParser() {
+                    @Override
+                    public Configuration parse(ConfigurationLocation location, String... contentIdentifiers)
+                            throws Exception {
+                        requestedUrls.add(location.getDownloadURL());
+
+                        if (requestedUrls.size() == 1) {
+                            // The first location does not respond until the test is over.
+                            firstRequestReleased.await();
+                        }
+
+                        return new Configuration(location);
+                    }
+                };
+            }
+        };
+
+        try {
+            DownloadResult result = downloader.download(getSource(getAllFailedLocationUrls()));
+
+            assertTrue(result.isSuccess());
+            assertEquals(2, requestedUrls.size());
+            assertEquals(requestedUrls.get(1), result.getConfiguration().getLocation().getDownloadURL());
+        } finally {
+            firstRequestReleased.countDown();
+        }
+    }
+
+    /**
+     * Checks that staged content parts are persisted only when committed.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void persistStagedContentOnlyOnCommit() throws Exception {
+        Path confDir = tempFolder.getRoot().toPath();
+        Map<String, byte[]> contents = Collections.singletonMap("foo.xml", bytes("foo"));
+
+        ConfigurationDownloader downloader = getContentDownloader(confDir, contents, contents,
+                Collections.synchronizedList(new ArrayList<>()));
+        ConfigurationSource source = getSource(Arrays.asList(LOCATION_URL_SUCCESS));
+
+        downloader.beginStaging();
+
+        assertTrue(downloader.download(source).isSuccess());
+        assertFalse(Files.exists(confDir.resolve("foo.xml")));
+
+        downloader.discardStaged();
+
+        assertEquals(0, confDir.toFile().list().length);
+
+        downloader.beginStaging();
+
+        assertTrue(downloader.download(source).isSuccess());
+        assertFalse(Files.exists(confDir.resolve("foo.xml")));
+
+        downloader.commitStaged();
+
+        assertArrayEquals(contents.get("foo.xml"), Files.readAllBytes(confDir.resolve("foo.xml")));
+        assertTrue(Files.exists(confDir.resolve("foo.xml" + ConfigurationDirectory.METADATA_SUFFIX)));
+        assertEquals(2, confDir.toFile().list().length);
+    }
+
     private void resetParser(ConfigurationDownloader downloader) {
         getParser(downloader).reset();
     }
@@ -241,6 +450,62 @@ public class ConfigurationDownloaderTest {
         };
     }
 
+    private ConfigurationDownloader getContentDownloader(Path confDir, Map<String, byte[]> expectedContents,
+            Map<String, byte[]> servedContents, List<String> opened) {
+        return getContentDownloader(confDir, expectedContents, name -> {
+            opened.add(name);
+
+            return new ByteArrayInputStream(servedContents.get(name));
+        });
+    }
+
+    private ConfigurationDownloader getContentDownloader(Path confDir, Map<String, byte[]> expectedContents,
+            ContentOpener opener) {
+        FileNameProvider fileNameProvider = file -> confDir.resolve(file.getContentLocation());
+
+        return new ConfigurationDownloader(fileNameProvider, SystemProperties.CURRENT_GLOBAL_CONFIGURATION_VERSION) {
+            @Override
+            ConfigurationParser getParser() {
+                return new ConfigurationParser() {
+                    @Override
+                    public Configuration parse(ConfigurationLocation location, String... contentIdentifiers) {
+                        Configuration configuration = new Configuration(location);
+                        expectedContents.forEach((name, content) ->
+                                configuration.getFiles().add(getConfigurationFile(name, content)));
+
+                        return configuration;
+                    }
+                };
+            }
+
+            @Override
+            InputStream openContent(ConfigurationLocation location, ConfigurationFile file) throws Exception {
+                return opener.open(file.getContentLocation());
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface ContentOpener {
+        InputStream open(String contentLocation) throws Exception;
+    }
+
+    @SneakyThrows
+    private static ConfigurationFile getConfigurationFile(String name, byte[] content) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(HEADER_CONTENT_TYPE, "application/octet-stream");
+        headers.put(HEADER_CONTENT_TRANSFER_ENCODING, "base64");
+        headers.put(HEADER_CONTENT_LOCATION, name);
+        headers.put(HEADER_HASH_ALGORITHM_ID, DEFAULT_DIGEST_ALGORITHM_URI);
+
+        return ConfigurationFile.of(headers, new DateTime().plusDays(1),
+                encodeBase64(calculateDigest(DEFAULT_DIGEST_ALGORITHM_ID, content)));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
     @Value
     private static class TestConfigurationSource implements ConfigurationSource {
 
@@ -0,0 +1,148 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
+
+/**
+ * Measures the throughput (records per second) of storing operational data records one Hibernate save at a time
+ * against storing them in bulk. Uses an in-memory HSQLDB database by default, a local PostgreSQL database can be
+ * used by pointing xroad.proxy.database-properties to a suitable properties file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+public class OperationalDataStoreBenchmark {
+
+    private static final String DATABASE_PROPERTIES = "src/jmh/resources/hibernate.properties";
+
+    /** The number of records in a store request of the operational monitoring buffer by default. */
+    private static final int RECORDS_PER_REQUEST = 100;
+
+    private static final long MONITORING_DATA_TS = 1474968965L;
+
+    @Param({"false", "true"})
+    private boolean bulkInsert;
+
+    /**
+     * Configures the database and the store mode.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        if (System.getProperty(SystemProperties.DATABASE_PROPERTIES) == null) {
+            System.setProperty(SystemProperties.DATABASE_PROPERTIES, DATABASE_PROPERTIES);
+        }
+
+        OperationalDataRecordManager.setBulkInsert(bulkInsert);
+    }
+
+    /**
+     * Removes the stored records so that every iteration starts with an empty table.
+     * @throws Exception if the records cannot be removed
+     */
+    @TearDown(Level.Iteration)
+    public void cleanup() throws Exception {
+        doInTransaction(session -> session.createQuery("delete OperationalDataRecord").executeUpdate());
+    }
+
+    /**
+     * Closes the database connections.
+     */
+    @TearDown(Level.Trial)
+    public void close() {
+        OpMonitorDaemonDatabaseCtx.get().closeSessionFactory();
+    }
+
+    /**
+     * Stores the records of one store request.
+     * @throws Exception if storing fails
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS_PER_REQUEST)
+    public void storeRecords() throws Exception {
+        List<OperationalDataRecord> records = new ArrayList<>(RECORDS_PER_REQUEST);
+
+        for (int i = 0; i < RECORDS_PER_REQUEST; i++) {
+            records.add(createRecord(i));
+        }
+
+        OperationalDataRecordManager.storeRecords(records, MONITORING_DATA_TS);
+    }
+
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private static OperationalDataRecord createRecord(long index) {
+        long requestInTs = TimeUnit.SECONDS.toMillis(MONITORING_DATA_TS) + index;
+
+        OperationalDataRecord record = new OperationalDataRecord();
+        record.setSecurityServerInternalIp("192.168.56.101");
+        record.setSecurityServerType(OpMonitoringData.SecurityServerType.CLIENT.getTypeString());
+        record.setRequestInTs(requestInTs);
+        record.setRequestOutTs(requestInTs + 1);
+        record.setResponseInTs(requestInTs + 2);
+        record.setResponseOutTs(requestInTs + 3);
+        record.setClientXRoadInstance("EE");
+        record.setClientMemberClass("GOV");
+        record.setClientMemberCode("00000001");
+        record.setClientSubsystemCode("System1");
+        record.setServiceXRoadInstance("EE");
+        record.setServiceMemberClass("GOV");
+        record.setServiceMemberCode("00000000");
+        record.setServiceSubsystemCode("Center");
+        record.setServiceCode("xroadGetRandom");
+        record.setServiceVersion("v1");
+        record.setMessageId(UUID.randomUUID().toString());
+        record.setMessageProtocolVersion("4.0");
+        record.setClientSecurityServerAddress("ss1");
+        record.setServiceSecurityServerAddress("ss2");
+        record.setRequestSize(1245L);
+        record.setResponseSize(1765L);
+        record.setSucceeded(true);
+        record.setServiceType("WSDL");
+
+        return record;
+    }
+}
@@ -114,8 +114,8 @@ class OpMonitorDaemonRequestHandler extends HandlerBase {
         }
     }
 
-    // Requests to store data are HTTP requests with JSON payload. Errors
-    // must be reported in JSON format.
+    // Requests to store data are HTTP requests with JSON or binary encoded
+    // payload. Errors must be reported in JSON format.
     private void handleStoreRequest(HttpServletRequest request,
             HttpServletResponse response) throws IOException {
         try {
@@ -126,7 +126,9 @@ class OpMonitorDaemonRequestHandler extends HandlerBase {
             String contentType = MimeUtils.getBaseContentType(
                     request.getContentType());
 
-            if (!MimeTypes.JSON.equalsIgnoreCase(contentType)) {
+            boolean binary = MimeTypes.OP_MONITORING_DATA.equalsIgnoreCase(contentType);
+
+            if (!binary && !MimeTypes.JSON.equalsIgnoreCase(contentType)) {
                 throw new RuntimeException(invalidContentTypeError(request,
                         MimeTypes.JSON));
             }
@@ -134,7 +136,7 @@ class OpMonitorDaemonRequestHandler extends HandlerBase {
             log.info("Received store request from {}", request.getRemoteAddr());
 
             new StoreRequestProcessor(
-                    request, healthMetricRegistry).process();
+                    request, healthMetricRegistry).process(binary);
         } catch (Throwable t) { // We want to catch serious errors as well
             log.error("Error while handling data store request", t);
 
@@ -0,0 +1,279 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.postgresql.PGConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
+
+/**
+ * Manages the daily partitions of the operational data table on PostgreSQL. The partitions are tables inheriting
+ * from the operational data table, with a check constraint on the monitoring data timestamp. Time range queries on
+ * the operational data table are thus pruned to the relevant partitions (constraint exclusion) and outdated
+ * partitions can be dropped as a whole instead of deleting their records. Table inheritance is used instead of
+ * declarative partitioning, because PostgreSQL 9.x is still supported.
+ */
+@Slf4j
+final class OperationalDataPartitions {
+
+    private static final long SECONDS_PER_DAY = TimeUnit.DAYS.toSeconds(1);
+
+    private static final DateTimeFormatter PARTITION_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    // Serializes the creation of partitions between concurrent store transactions
+    private static final long PARTITION_LOCK_ID = 0x6f706d6f6e000001L;
+
+    private static final boolean PARTITIONED_STORAGE = OpMonitoringSystemProperties.isOpMonitorPartitionedStorage();
+
+    // Partitions known to exist by day, so that storing records does not check the existence every time
+    private static final Map<Long, String> KNOWN_PARTITIONS = new ConcurrentHashMap<>();
+
+    private static volatile Boolean supported;
+
+    private OperationalDataPartitions() {
+    }
+
+    /**
+     * @return true if the records are stored in partitions, i.e. the partitioned storage is switched on and
+     * the database is PostgreSQL
+     * @throws Exception if checking the database fails
+     */
+    static boolean isEnabled() throws Exception {
+        if (!PARTITIONED_STORAGE) {
+            return false;
+        }
+
+        Boolean result = supported;
+
+        if (result == null) {
+            result = doInTransaction(session -> session.doReturningWork(c -> c.isWrapperFor(PGConnection.class)));
+
+            if (!result) {
+                log.warn("Partitioned storage of operational data records is supported on PostgreSQL only");
+            }
+
+            supported = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the partition for the records with the given monitoring data timestamp, creating the partition
+     * in a separate transaction if it does not exist.
+     * @param monitoringDataTs the monitoring data timestamp in seconds
+     * @return the table name of the partition
+     * @throws Exception if creating the partition fails
+     */
+    static String getPartition(long monitoringDataTs) throws Exception {
+        long day = Math.floorDiv(monitoringDataTs, SECONDS_PER_DAY);
+        String partition = KNOWN_PARTITIONS.get(day);
+
+        if (partition == null) {
+            partition = doInTransaction(session -> {
+                String name = getPartitionName(getTableName(session), monitoringDataTs);
+
+                createPartition(session, name, monitoringDataTs);
+
+                return name;
+            });
+
+            // The partition is known to exist only after the creating transaction has been committed
+            KNOWN_PARTITIONS.put(day, partition);
+        }
+
+        return partition;
+    }
+
+    /**
+     * Drops the partitions containing only records older than the given timestamp.
+     * @param session the Hibernate session
+     * @param before the timestamp in seconds
+     * @return the number of dropped partitions
+     */
+    static int dropPartitions(Session session, long before) {
+        String tableName = getTableName(session);
+
+        return session.doReturningWork(connection -> {
+            int dropped = 0;
+
+            for (String partition : getPartitions(connection, tableName)) {
+                Long end = getPartitionEnd(tableName, partition);
+
+                if (end != null && end <= before) {
+                    log.info("Dropping outdated operational data partition {}", partition);
+
+                    try (Statement stmt = connection.createStatement()) {
+                        stmt.execute("DROP TABLE " + partition);
+                    }
+
+                    KNOWN_PARTITIONS.values().remove(partition);
+                    dropped++;
+                }
+            }
+
+            return dropped;
+        });
+    }
+
+    /**
+     * Deletes the records older than the given timestamp from the operational data table itself, leaving the
+     * partitions intact. These are the records stored before the partitioned storage was switched on.
+     * @param session the Hibernate session
+     * @param before the timestamp in seconds
+     * @return the number of deleted records
+     */
+    static int deleteUnpartitionedRecords(Session session, long before) {
+        AbstractEntityPersister persister = getPersister(session);
+
+        return session.doReturningWork(connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM ONLY " + persister.getTableName()
+                    + " WHERE " + getMonitoringDataTsColumn(persister) + " < ?")) {
+                stmt.setLong(1, before);
+
+                return stmt.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * @param tableName the operational data table name
+     * @param monitoringDataTs the monitoring data timestamp in seconds
+     * @return the name of the partition of the records with the given timestamp
+     */
+    static String getPartitionName(String tableName, long monitoringDataTs) {
+        return tableName + "_" + LocalDate.ofEpochDay(Math.floorDiv(monitoringDataTs, SECONDS_PER_DAY))
+                .format(PARTITION_DATE);
+    }
+
+    /**
+     * @param tableName the operational data table name
+     * @param partition the partition name
+     * @return the (exclusive) end of the monitoring data timestamps of the partition in seconds or null,
+     * if the name is not a partition name
+     */
+    static Long getPartitionEnd(String tableName, String partition) {
+        String prefix = tableName + "_";
+
+        if (!partition.startsWith(prefix)) {
+            return null;
+        }
+
+        try {
+            return getDayStart(LocalDate.parse(partition.substring(prefix.length()), PARTITION_DATE).plusDays(1));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static long getDayStart(LocalDate day) {
+        return day.toEpochDay() * SECONDS_PER_DAY;
+    }
+
+    private static void createPartition(Session session, String partition, long monitoringDataTs) {
+        AbstractEntityPersister persister = getPersister(session);
+        String column = getMonitoringDataTsColumn(persister);
+        long start = Math.floorDiv(monitoringDataTs, SECONDS_PER_DAY) * SECONDS_PER_DAY;
+
+        session.doWork(connection -> {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("SELECT pg_advisory_xact_lock(" + PARTITION_LOCK_ID + ")");
+
+                if (partitionExists(connection, partition)) {
+                    return;
+                }
+
+                log.info("Creating operational data partition {}", partition);
+
+                stmt.execute("CREATE TABLE " + partition + " (CHECK (" + column + " >= " + start + " AND " + column
+                        + " < " + (start + SECONDS_PER_DAY) + ")) INHERITS (" + persister.getTableName() + ")");
+                stmt.execute("ALTER TABLE " + partition + " ADD PRIMARY KEY ("
+                        + persister.getIdentifierColumnNames()[0] + ")");
+                stmt.execute("CREATE INDEX idx_" + partition + "_ts ON " + partition + " (" + column + ")");
+            }
+        });
+    }
+
+    private static boolean partitionExists(Connection connection, String partition) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT 1 FROM pg_class WHERE relname = ? AND relkind = 'r' AND pg_table_is_visible(oid)")) {
+            stmt.setString(1, partition);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static List<String> getPartitions(Connection connection, String tableName) throws SQLException {
+        List<String> partitions = new ArrayList<>();
+
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT c.relname FROM pg_inherits i"
+                + " JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = CAST(? AS regclass)")) {
+            stmt.setString(1, tableName);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    partitions.add(rs.getString(1));
+                }
+            }
+        }
+
+        return partitions;
+    }
+
+    private static String getTableName(Session session) {
+        return getPersister(session).getTableName();
+    }
+
+    private static String getMonitoringDataTsColumn(AbstractEntityPersister persister) {
+        return persister.getPropertyColumnNames("monitoringDataTs")[0];
+    }
+
+    private static AbstractEntityPersister getPersister(Session session) {
+        return (AbstractEntityPersister) ((SharedSessionContractImplementor) session).getFactory().getMetamodel()
+                .entityPersister(OperationalDataRecord.class);
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.truncateStringProperties;
+
+/**
+ * Stores operational data records in bulk, bypassing the Hibernate session. On PostgreSQL the records are
+ * streamed to the database using the COPY command, on other databases a batch of plain JDBC inserts is used.
+ * Identifiers are still assigned by the identifier generator of the mapping so that the records stored
+ * in bulk are indistinguishable from the ones saved through Hibernate.
+ */
+@Slf4j
+final class OperationalDataRecordBulkInserter {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final SharedSessionContractImplementor session;
+    private final AbstractEntityPersister persister;
+    private final String[] columns;
+    private final Type[] types;
+
+    private OperationalDataRecordBulkInserter(Session session) {
+        this.session = (SharedSessionContractImplementor) session;
+        this.persister = (AbstractEntityPersister) this.session.getFactory().getMetamodel()
+                .entityPersister(OperationalDataRecord.class);
+
+        String[] propertyNames = persister.getPropertyNames();
+
+        columns = new String[propertyNames.length + 1];
+        types = new Type[propertyNames.length + 1];
+
+        columns[0] = persister.getIdentifierColumnNames()[0];
+        types[0] = persister.getIdentifierType();
+
+        for (int i = 0; i < propertyNames.length; i++) {
+            columns[i + 1] = persister.getPropertyColumnNames(i)[0];
+            types[i + 1] = persister.getPropertyTypes()[i];
+        }
+    }
+
+    /**
+     * Stores the records in the database within the transaction of the given session.
+     * @param session the Hibernate session
+     * @param records the records to store, their identifiers are assigned by this method
+     * @param batchSize the JDBC batch size used on databases other than PostgreSQL
+     */
+    static void insert(Session session, List<OperationalDataRecord> records, int batchSize) {
+        insert(session, records, batchSize, null);
+    }
+
+    /**
+     * Stores the records in the given table within the transaction of the given session.
+     * @param session the Hibernate session
+     * @param records the records to store, their identifiers are assigned by this method
+     * @param batchSize the JDBC batch size used on databases other than PostgreSQL
+     * @param tableName the table (partition) to store the records in, or null for the operational data table
+     */
+    static void insert(Session session, List<OperationalDataRecord> records, int batchSize, String tableName) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        OperationalDataRecordBulkInserter inserter = new OperationalDataRecordBulkInserter(session);
+        List<Object[]> rows = inserter.toRows(records);
+        String table = tableName != null ? tableName : inserter.persister.getTableName();
+
+        session.doWork(connection -> {
+            if (connection.isWrapperFor(PGConnection.class)) {
+                inserter.copy(connection.unwrap(PGConnection.class), table, rows);
+            } else {
+                inserter.insertBatch(connection, table, rows, batchSize);
+            }
+        });
+    }
+
+    private List<Object[]> toRows(List<OperationalDataRecord> records) {
+        String[] propertyNames = persister.getPropertyNames();
+        Type[] propertyTypes = persister.getPropertyTypes();
+        List<Object[]> rows = new ArrayList<>(records.size());
+
+        for (OperationalDataRecord record : records) {
+            record.setId((Long) persister.getIdentifierGenerator().generate(session, record));
+
+            Object[] state = persister.getPropertyValues(record);
+            truncateStringProperties(state, propertyNames, propertyTypes);
+
+            Object[] row = new Object[columns.length];
+            row[0] = record.getId();
+            System.arraycopy(state, 0, row, 1, state.length);
+
+            rows.add(row);
+        }
+
+        return rows;
+    }
+
+    private void copy(PGConnection connection, String table, List<Object[]> rows) throws SQLException {
+        String sql = "COPY " + table + " (" + String.join(", ", columns)
+                + ") FROM STDIN WITH (FORMAT csv)";
+
+        log.trace("copy({})", rows.size());
+
+        CopyIn copyIn = connection.getCopyAPI().copyIn(sql);
+
+        try {
+            StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE);
+
+            for (Object[] row : rows) {
+                appendCsvRow(buffer, row);
+
+                if (buffer.length() >= COPY_BUFFER_SIZE) {
+                    writeToCopy(copyIn, buffer);
+                }
+            }
+
+            writeToCopy(copyIn, buffer);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private static void appendCsvRow(StringBuilder buffer, Object[] row) {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+
+            Object value = row[i];
+
+            // Unquoted empty value is NULL, quoted empty value is an empty string
+            if (value instanceof String) {
+                buffer.append('"').append(((String) value).replace("\"", "\"\"")).append('"');
+            } else if (value != null) {
+                buffer.append(value);
+            }
+        }
+
+        buffer.append('\n');
+    }
+
+    private void insertBatch(Connection connection, String table, List<Object[]> rows, int batchSize)
+            throws SQLException {
+        log.trace("insertBatch({})", rows.size());
+
+        String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+
+        int storedCount = 0;
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    types[i].nullSafeSet(stmt, row[i], i + 1, session);
+                }
+
+                stmt.addBatch();
+
+                if (++storedCount % batchSize == 0) {
+                    stmt.executeBatch();
+                }
+            }
+
+            if (storedCount % batchSize != 0) {
+                stmt.executeBatch();
+            }
+        }
+    }
+}
@@ -42,7 +42,8 @@ import java.util.concurrent.TimeUnit;
 import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
 
 /**
- * Deletes outdated operational data records from the database.
+ * Deletes outdated operational data records from the database. If the records are stored in partitions,
+ * the outdated partitions are dropped.
  */
 @Slf4j
 final class OperationalDataRecordCleaner extends UntypedAbstractActor {
@@ -91,12 +92,27 @@ final class OperationalDataRecordCleaner extends UntypedAbstractActor {
     static int cleanRecords(DateTime before) throws Exception {
         log.trace("cleanRecords({})", before);
 
+        long beforeSeconds = TimeUnit.MILLISECONDS.toSeconds(before.getMillis());
+        boolean partitioned = OperationalDataPartitions.isEnabled();
+
+        if (partitioned) {
+            int dropped = doInTransaction(session -> OperationalDataPartitions.dropPartitions(session,
+                    beforeSeconds));
+
+            log.info("Dropped {} outdated operational data partitions", dropped);
+        }
+
         return doInTransaction(session -> {
-            String hql =
-                    "delete OperationalDataRecord r where r.monitoringDataTs < "
-                    + TimeUnit.MILLISECONDS.toSeconds(before.getMillis());
+            int removed;
 
-            int removed = session.createQuery(hql).executeUpdate();
+            if (partitioned) {
+                // Partitions are dropped only as a whole, delete the records stored before partitioning
+                removed = OperationalDataPartitions.deleteUnpartitionedRecords(session, beforeSeconds);
+            } else {
+                String hql = "delete OperationalDataRecord r where r.monitoringDataTs < " + beforeSeconds;
+
+                removed = session.createQuery(hql).executeUpdate();
+            }
 
             if (removed == 0) {
                 log.info("No outdated operational data records to remove from"
@@ -29,15 +29,20 @@ import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 
 import lombok.Setter;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
 
+import java.sql.Statement;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 
+import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
 import static ee.ria.xroad.opmonitordaemon.OperationalDataOutputSpecFields.MONITORING_DATA_TS;
 
@@ -49,17 +54,24 @@ import static ee.ria.xroad.opmonitordaemon.OperationalDataOutputSpecFields.MONIT
 final class OperationalDataRecordManager {
 
     private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int SCROLL_FETCH_SIZE = 1000;
 
     @Setter
     private static int maxRecordsInPayload = OpMonitoringSystemProperties.getOpMonitorMaxRecordsInPayload();
 
+    @Setter
+    private static boolean bulkInsert = OpMonitoringSystemProperties.isOpMonitorBulkInsert();
+
     private static int configuredBatchSize = 0;
 
     private OperationalDataRecordManager() {
     }
 
     static void storeRecords(List<OperationalDataRecord> records, long timestamp) throws Exception {
-        doInTransaction(session -> storeInTransaction(session, records, timestamp));
+        String partition = OperationalDataPartitions.isEnabled()
+                ? OperationalDataPartitions.getPartition(timestamp) : null;
+
+        doInTransaction(session -> storeInTransaction(session, records, timestamp, partition));
     }
 
     static OperationalDataRecords queryAllRecords() throws Exception {
@@ -85,10 +97,59 @@ final class OperationalDataRecordManager {
         return records;
     }
 
-    private static Void storeInTransaction(Session session, List<OperationalDataRecord> records, long timestamp) {
+    /**
+     * Queries the same operational data records as {@link #queryRecords(long, long, ClientId, ClientId, Set)},
+     * but only determines the size of the result and the overflow indication. The records themselves are read
+     * from the database with a cursor when they are iterated, so the returned instance holds no record data.
+     * At most the determined number of records is iterated. Query and iterate the records in
+     * {@link #doInSnapshot(Callable)} so that the iterated records are the ones that were counted.
+     */
+    static OperationalDataRecords queryStreamedRecords(long recordsFrom, long recordsTo, ClientId clientFilter,
+            ClientId serviceProviderFilter, Set<String> outputFields) throws Exception {
+        return doInTransaction(session -> queryStreamedOperationalDataInTransaction(session, recordsFrom, recordsTo,
+                clientFilter, serviceProviderFilter, outputFields));
+    }
+
+    /**
+     * Runs the given operation in a single REPEATABLE READ transaction. The operational data queries made by the
+     * operation, including the iteration of streamed records, join the transaction and see the same snapshot
+     * of the operational data.
+     * @param <T> the type of the result
+     * @param operation the operation
+     * @return the result of the operation
+     * @throws Exception if the operation fails
+     */
+    static <T> T doInSnapshot(Callable<T> operation) throws Exception {
+        return doInTransaction(session -> {
+            // Must be the first statement of the transaction, applies to the transaction only.
+            session.doWork(connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+                }
+            });
+
+            return call(operation);
+        });
+    }
+
+    @SneakyThrows
+    private static <T> T call(Callable<T> operation) {
+        return operation.call();
+    }
+
+    private static Void storeInTransaction(Session session, List<OperationalDataRecord> records, long timestamp,
+            String partition) {
         int storedCount = 0;
         int batchSize = getConfiguredBatchSize(session);
 
+        // Records are stored into a partition in bulk, since Hibernate saves them into the operational data table
+        if (bulkInsert || partition != null) {
+            records.forEach(record -> record.setMonitoringDataTs(timestamp));
+            OperationalDataRecordBulkInserter.insert(session, records, batchSize, partition);
+
+            return null;
+        }
+
         for (OperationalDataRecord record : records) {
             record.setMonitoringDataTs(timestamp);
             session.save(record);
@@ -163,6 +224,68 @@ final class OperationalDataRecordManager {
         return records;
     }
 
+    /**
+     * Applies the payload limit of {@link #queryOperationalDataInTransaction} without fetching the records: the
+     * result ends at the timestamp of the last record that fits into maxRecordsInPayload.
+     */
+    private static OperationalDataRecords queryStreamedOperationalDataInTransaction(Session session,
+            long recordsFrom, long recordsTo, ClientId clientFilter, ClientId serviceProviderFilter,
+            Set<String> outputFields) {
+        final OperationalDataRecordQuery last = new OperationalDataRecordQuery(session, clientFilter,
+                serviceProviderFilter, Collections.singleton(MONITORING_DATA_TS));
+        last.between(recordsFrom, recordsTo);
+        last.orderByAsc(MONITORING_DATA_TS);
+        last.setFirstRecord(maxRecordsInPayload - 1);
+        last.setMaxRecords(1);
+        List<OperationalDataRecord> lastRecord = last.list();
+
+        long recordsUpTo = recordsTo;
+        Long nextRecordsFrom = null;
+
+        if (!lastRecord.isEmpty()) {
+            long lastMonitoringDataTs = lastRecord.get(0).getMonitoringDataTs();
+            recordsUpTo = lastMonitoringDataTs;
+
+            if (recordsOverflow(session, lastMonitoringDataTs, recordsTo, clientFilter, serviceProviderFilter)) {
+                log.debug("Records overflow, set nextRecordsFrom to {}", lastMonitoringDataTs + 1);
+
+                nextRecordsFrom = lastMonitoringDataTs + 1;
+            }
+        }
+
+        final OperationalDataRecordQuery count = new OperationalDataRecordQuery(session, clientFilter,
+                serviceProviderFilter, Collections.singleton(MONITORING_DATA_TS));
+        count.between(recordsFrom, recordsUpTo);
+
+        OperationalDataRecords records = new ScrolledOperationalDataRecords(recordsFrom, recordsUpTo,
+                clientFilter, serviceProviderFilter, outputFields, (int) count.count());
+        records.setNextRecordsFrom(nextRecordsFrom);
+
+        return records;
+    }
+
+    private static Void scrollOperationalDataInTransaction(Session session, long recordsFrom, long recordsTo,
+            ClientId clientFilter, ClientId serviceProviderFilter, Set<String> outputFields, int maxRecords,
+            Consumer<OperationalDataRecord> consumer) {
+        final OperationalDataRecordQuery query =
+                new OperationalDataRecordQuery(session, clientFilter, serviceProviderFilter, outputFields);
+        query.between(recordsFrom, recordsTo);
+        query.orderByAsc(MONITORING_DATA_TS);
+        query.setMaxRecords(maxRecords);
+
+        boolean removeMonitoringDataTs = !outputFields.isEmpty() && !outputFields.contains(MONITORING_DATA_TS);
+
+        query.scroll(SCROLL_FETCH_SIZE, record -> {
+            if (removeMonitoringDataTs) {
+                record.setMonitoringDataTs(null);
+            }
+
+            consumer.accept(record);
+        });
+
+        return null;
+    }
+
     private static void removeMonitoringDataTsIfNotSpecified(OperationalDataRecords records, Set<String> outputFields) {
         if (!outputFields.isEmpty() && !outputFields.contains(MONITORING_DATA_TS)) {
             records.getRecords().forEach(i -> i.setMonitoringDataTs(null));
@@ -191,4 +314,47 @@ final class OperationalDataRecordManager {
 
         return query.list().size() > 0;
     }
+
+    /**
+     * Operational data records that are read from the database each time they are iterated.
+     */
+    private static final class ScrolledOperationalDataRecords extends OperationalDataRecords {
+        private final long recordsFrom;
+        private final long recordsTo;
+        private final ClientId clientFilter;
+        private final ClientId serviceProviderFilter;
+        private final Set<String> outputFields;
+        private final int size;
+
+        ScrolledOperationalDataRecords(long recordsFrom, long recordsTo, ClientId clientFilter,
+                ClientId serviceProviderFilter, Set<String> outputFields, int size) {
+            super(Collections.emptyList());
+
+            this.recordsFrom = recordsFrom;
+            this.recordsTo = recordsTo;
+            this.clientFilter = clientFilter;
+            this.serviceProviderFilter = serviceProviderFilter;
+            this.outputFields = outputFields;
+            this.size = size;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        void forEachRecord(Consumer<OperationalDataRecord> consumer) {
+            if (size == 0) {
+                return;
+            }
+
+            try {
+                doInTransaction(session -> scrollOperationalDataInTransaction(session, recordsFrom, recordsTo,
+                        clientFilter, serviceProviderFilter, outputFields, size, consumer));
+            } catch (Exception e) {
+                throw translateException(e);
+            }
+        }
+    }
 }
@@ -28,6 +28,8 @@ import ee.ria.xroad.common.identifier.ClientId;
 
 import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 
 import javax.persistence.Tuple;
@@ -47,6 +49,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.CLIENT_MEMBER_CLASS;
 import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.CLIENT_MEMBER_CODE;
@@ -72,6 +75,9 @@ final class OperationalDataRecordQuery {
     @Setter
     private int maxRecords = Integer.MAX_VALUE;
 
+    @Setter
+    private int firstRecord = 0;
+
     private Predicate pred;
     private List<Selection<?>> projection = new ArrayList<>();
     private javax.persistence.criteria.Order order = null;
@@ -161,10 +167,42 @@ final class OperationalDataRecordQuery {
         }
         return transform(session.createQuery(query)
                 .setReadOnly(true)
+                .setFirstResult(firstRecord)
                 .setMaxResults(maxRecords)
                 .getResultList());
     }
 
+    /**
+     * Passes the matching records to the consumer one by one, reading them with a forward-only cursor so that
+     * the result is never held in memory as a whole.
+     * @param fetchSize number of rows fetched from the database at a time
+     * @param consumer the record consumer
+     */
+    void scroll(int fetchSize, Consumer<OperationalDataRecord> consumer) {
+        query.multiselect(projection).where(pred);
+        if (order != null) {
+            query.orderBy(order);
+        }
+        try (ScrollableResults result = session.createQuery(query)
+                .setReadOnly(true)
+                .setFirstResult(firstRecord)
+                .setMaxResults(maxRecords)
+                .setFetchSize(fetchSize)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (result.next()) {
+                consumer.accept(transform((Tuple) result.get(0)));
+            }
+        }
+    }
+
+    long count() {
+        query.multiselect(cb.count(from)).where(pred);
+        return (Long) session.createQuery(query)
+                .setReadOnly(true)
+                .getSingleResult()
+                .get(0);
+    }
+
     void between(long fromTs, long toTs) {
         pred = cb.and(pred, cb.between(from.get(MONITORING_DATA_TS), fromTs, toTs));
     }
@@ -186,20 +224,24 @@ final class OperationalDataRecordQuery {
         List<OperationalDataRecord> tmp = new ArrayList<>(result.size());
 
         for (Tuple t : result) {
-            final OperationalDataRecord record = new OperationalDataRecord();
-            for (TupleElement<?> te : t.getElements()) {
-                final Method method = SETTERS.get(te.getAlias());
-                if (method != null) {
-                    try {
-                        method.invoke(record, t.get(te));
-                    } catch (InvocationTargetException | IllegalAccessException e) {
-                        throw new IllegalArgumentException("Unable to transform", e);
-                    }
+            tmp.add(transform(t));
+        }
+        return tmp;
+    }
+
+    private static OperationalDataRecord transform(Tuple tuple) {
+        final OperationalDataRecord record = new OperationalDataRecord();
+        for (TupleElement<?> te : tuple.getElements()) {
+            final Method method = SETTERS.get(te.getAlias());
+            if (method != null) {
+                try {
+                    method.invoke(record, tuple.get(te));
+                } catch (InvocationTargetException | IllegalAccessException e) {
+                    throw new IllegalArgumentException("Unable to transform", e);
                 }
             }
-            tmp.add(record);
         }
-        return tmp;
+        return record;
     }
 
     /*
@@ -28,12 +28,18 @@ import ee.ria.xroad.common.util.JsonUtils.Exclude;
 
 import com.google.gson.Gson;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Represents a payload of the request getSecurityServerOperationalData.
@@ -41,8 +47,10 @@ import java.util.List;
 @ToString
 class OperationalDataRecords {
 
+    private static final String RECORDS = "records";
+
     @Getter
-    @SerializedName("records")
+    @SerializedName(RECORDS)
     private List<OperationalDataRecord> records = new ArrayList<>();
 
     /**
@@ -77,4 +85,28 @@ class OperationalDataRecords {
     String getPayload(Gson gson) {
         return gson.toJson(this);
     }
+
+    /**
+     * Writes the same payload as {@link #getPayload(Gson)} to the given stream, serializing the records one
+     * at a time.
+     * @param gson the serializer
+     * @param out the output stream, left open
+     * @throws IOException if writing fails
+     */
+    void writePayload(Gson gson, OutputStream out) throws IOException {
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        writer.beginObject().name(RECORDS).beginArray();
+        forEachRecord(record -> gson.toJson(record, OperationalDataRecord.class, writer));
+        writer.endArray().endObject();
+        writer.flush();
+    }
+
+    /**
+     * Passes the records of the payload to the given consumer in payload order.
+     * @param consumer the record consumer
+     */
+    void forEachRecord(Consumer<OperationalDataRecord> consumer) {
+        records.forEach(consumer);
+    }
 }
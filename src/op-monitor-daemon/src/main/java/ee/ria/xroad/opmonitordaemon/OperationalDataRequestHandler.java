@@ -30,7 +30,6 @@ import ee.ria.xroad.common.conf.monitoringconf.MonitoringConf;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
 import ee.ria.xroad.common.message.MultipartSoapMessageEncoder;
-import ee.ria.xroad.common.message.SoapMessageEncoder;
 import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 import ee.ria.xroad.common.util.MimeTypes;
@@ -51,6 +50,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
 
 import static ee.ria.xroad.common.ErrorCodes.CLIENT_X;
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
@@ -101,13 +101,28 @@ class OperationalDataRequestHandler extends QueryRequestHandler {
                 clientId, recordsFrom, recordsTo, serviceProviderId,
                 outputFields);
 
-        GetSecurityServerOperationalDataResponseType opDataResponse =
-                buildOperationalDataResponse(
-                        getClientForFilter(clientId, serverId), recordsFrom,
-                        recordsTo, serviceProviderId, outputFields,
-                        recordsAvailableBefore);
+        ClientId filterByClient = getClientForFilter(clientId, serverId);
+
+        // The records are counted for the response and streamed into the
+        // attachment in the same snapshot, so that the count matches.
+        OperationalDataRecordManager.doInSnapshot(() -> {
+            GetSecurityServerOperationalDataResponseType opDataResponse =
+                    buildOperationalDataResponse(filterByClient, recordsFrom,
+                            recordsTo, serviceProviderId, outputFields,
+                            recordsAvailableBefore);
+
+            writeResponse(requestSoap, opDataResponse, out,
+                    contentTypeCallback);
 
-        try (SoapMessageEncoder responseEncoder = new MultipartSoapMessageEncoder(out)) {
+            return null;
+        });
+    }
+
+    private void writeResponse(SoapMessageImpl requestSoap,
+            GetSecurityServerOperationalDataResponseType opDataResponse,
+            OutputStream out, Consumer<String> contentTypeCallback)
+            throws Exception {
+        try (MultipartSoapMessageEncoder responseEncoder = new MultipartSoapMessageEncoder(out)) {
             contentTypeCallback.accept(responseEncoder.getContentType());
 
             SoapEncoderAttachmentMarshaller attachmentMarshaller =
@@ -164,7 +179,6 @@ class OperationalDataRequestHandler extends QueryRequestHandler {
             long recordsFrom, long recordsTo, ClientId filterByServiceProvider,
             Set<String> outputFields, long recordsAvailableBefore)
             throws IOException {
-        OperationalDataRecords responseRecords;
         GetSecurityServerOperationalDataResponseType opDataResponse =
                 OBJECT_FACTORY
                         .createGetSecurityServerOperationalDataResponseType();
@@ -179,17 +193,16 @@ class OperationalDataRequestHandler extends QueryRequestHandler {
             opDataResponse.setNextRecordsFrom(recordsAvailableBefore);
         }
 
-        responseRecords = getOperationalDataRecords(filterByClient,
-                recordsFrom, recordsTo, filterByServiceProvider, outputFields);
+        OperationalDataRecords responseRecords = getOperationalDataRecords(
+                filterByClient, recordsFrom, recordsTo, filterByServiceProvider,
+                outputFields);
 
         opDataResponse.setRecordsCount(responseRecords.size());
-        String payload = responseRecords.getPayload(GSON);
-
-        // Optimize memory usage: release records memory before compressing
-        // operation.
-        responseRecords.getRecords().clear();
 
-        opDataResponse.setRecords(createAttachmentDataSource(compress(payload),
+        // The payload is serialized and compressed while the attachment is
+        // being written to the response, one record at a time.
+        opDataResponse.setRecords(createAttachmentDataSource(
+                out -> writeCompressedPayload(responseRecords, out),
                 CID, MimeTypes.GZIP));
 
         if (responseRecords.getNextRecordsFrom() != null) {
@@ -200,6 +213,13 @@ class OperationalDataRequestHandler extends QueryRequestHandler {
         return opDataResponse;
     }
 
+    private static void writeCompressedPayload(OperationalDataRecords records,
+            OutputStream out) throws IOException {
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            records.writePayload(GSON, gzip);
+        }
+    }
+
     private static JAXBElement<?> createResponseElement(
             GetSecurityServerOperationalDataResponseType opDataResponse) {
         return OBJECT_FACTORY.createGetSecurityServerOperationalDataResponse(
@@ -210,9 +230,9 @@ class OperationalDataRequestHandler extends QueryRequestHandler {
             ClientId filterByClient, long recordsFrom, long recordsTo,
             ClientId filterByServiceProvider, Set<String> outputFields) {
         try {
-            return OperationalDataRecordManager.queryRecords(recordsFrom,
-                    recordsTo, filterByClient, filterByServiceProvider,
-                    outputFields);
+            return OperationalDataRecordManager.queryStreamedRecords(
+                    recordsFrom, recordsTo, filterByClient,
+                    filterByServiceProvider, outputFields);
         } catch (Exception e) {
             log.error("Failed to get records for response", e);
 
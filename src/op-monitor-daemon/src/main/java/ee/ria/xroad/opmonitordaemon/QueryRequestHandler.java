@@ -26,7 +26,7 @@ package ee.ria.xroad.opmonitordaemon;
 
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.message.JaxbUtils;
-import ee.ria.xroad.common.message.SoapMessageEncoder;
+import ee.ria.xroad.common.message.MultipartSoapMessageEncoder;
 import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.message.SoapUtils;
 import ee.ria.xroad.common.util.JsonUtils;
@@ -34,11 +34,9 @@ import ee.ria.xroad.common.util.ResourceUtils;
 import ee.ria.xroad.opmonitordaemon.message.ObjectFactory;
 
 import com.google.gson.Gson;
-import com.sun.istack.ByteArrayDataSource;
 import com.sun.xml.bind.api.AccessorException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.xml.sax.SAXException;
 
@@ -57,13 +55,11 @@ import javax.xml.validation.SchemaFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.function.Consumer;
-import java.util.zip.GZIPOutputStream;
 
 import static ee.ria.xroad.common.ErrorCodes.CLIENT_X;
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
@@ -181,27 +177,23 @@ abstract class QueryRequestHandler {
         return marshaller;
     }
 
+    /**
+     * Creates an attachment whose content is produced by the given writer
+     * only when the attachment is encoded into the response.
+     */
     static DataHandler createAttachmentDataSource(
-            byte[] payload, String cid, String contentType) {
-        return new DataHandler(new ByteArrayDataSource(payload, contentType)) {
+            AttachmentWriter writer, String cid, String contentType) {
+        return new DataHandler(writer, contentType) {
             @Override
             public String getName() {
                 return cid;
             }
-        };
-    }
 
-    static byte[] compress(String data) throws IOException {
-        byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
-
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream(
-                dataBytes.length)) {
-            GZIPOutputStream gzip = new GZIPOutputStream(bos);
-            gzip.write(dataBytes);
-            gzip.close();
-
-            return bos.toByteArray();
-        }
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                writer.writeTo(out);
+            }
+        };
     }
 
     private static Map<String, String> getAdditionalAttachmentHeaders(
@@ -214,20 +206,30 @@ abstract class QueryRequestHandler {
         return additionalHeaders;
     }
 
+    /**
+     * Writes the content of an attachment.
+     */
+    @FunctionalInterface
+    interface AttachmentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
     @RequiredArgsConstructor
     protected static final class SoapEncoderAttachmentMarshaller
             extends AttachmentMarshaller {
         private static final String CID_PREFIX = "cid:";
 
-        private final SoapMessageEncoder responseEncoder;
+        private final MultipartSoapMessageEncoder responseEncoder;
 
         private final Map<String, DataHandler> attachments = new HashMap<>();
 
         void encodeAttachments() throws Exception {
             for (Entry<String, DataHandler> attach : attachments.entrySet()) {
-                responseEncoder.attachment(attach.getValue().getContentType(),
-                        attach.getValue().getInputStream(),
-                        getAdditionalAttachmentHeaders(attach.getKey()));
+                try (OutputStream out = responseEncoder.attachment(
+                        attach.getValue().getContentType(),
+                        getAdditionalAttachmentHeaders(attach.getKey()))) {
+                    attach.getValue().writeTo(out);
+                }
             }
         }
 
@@ -24,6 +24,8 @@
  */
 package ee.ria.xroad.opmonitordaemon;
 
+import ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataCodec;
+import ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataRequest;
 import ee.ria.xroad.common.util.JsonUtils;
 
 import com.codahale.metrics.MetricRegistry;
@@ -34,19 +36,105 @@ import org.apache.commons.lang3.StringUtils;
 
 import javax.servlet.http.HttpServletRequest;
 
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.CLIENT_MEMBER_CLASS;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.CLIENT_MEMBER_CODE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.CLIENT_SECURITY_SERVER_ADDRESS;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.CLIENT_SUBSYSTEM_CODE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.CLIENT_XROAD_INSTANCE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.MESSAGE_ID;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.MESSAGE_ISSUE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.MESSAGE_PROTOCOL_VERSION;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.MESSAGE_USER_ID;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.REPRESENTED_PARTY_CLASS;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.REPRESENTED_PARTY_CODE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.REQUEST_ATTACHMENT_COUNT;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.REQUEST_IN_TIMESTAMP;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.REQUEST_MIME_SIZE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.REQUEST_OUT_TIMESTAMP;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.REQUEST_SIZE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.RESPONSE_ATTACHMENT_COUNT;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.RESPONSE_IN_TIMESTAMP;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.RESPONSE_MIME_SIZE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.RESPONSE_OUT_TIMESTAMP;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.RESPONSE_SIZE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.REST_RESPONSE_STATUS_CODE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SECURITY_SERVER_INTERNAL_IP;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SECURITY_SERVER_TYPE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SERVICE_CODE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SERVICE_MEMBER_CLASS;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SERVICE_MEMBER_CODE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SERVICE_SECURITY_SERVER_ADDRESS;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SERVICE_SUBSYSTEM_CODE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SERVICE_TYPE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SERVICE_VERSION;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SERVICE_XROAD_INSTANCE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SOAP_FAULT_CODE;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SOAP_FAULT_STRING;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.SUCCEEDED;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.X_REQUEST_ID;
 import static ee.ria.xroad.common.util.TimeUtils.getEpochSecond;
 
 /**
- * The processor class for store operational monitoring data (JSON) requests.
+ * The processor class for store operational monitoring data (JSON or
+ * binary encoded) requests.
  */
 @Slf4j
 class StoreRequestProcessor {
 
     private static final Gson GSON = JsonUtils.getSerializer();
 
+    // The setters of the record fields by the names used in the store
+    // requests.
+    private static final Map<String, BiConsumer<OperationalDataRecord, Object>>
+            SETTERS = new HashMap<>();
+
+    static {
+        SETTERS.put(SECURITY_SERVER_TYPE, (r, v) -> r.setSecurityServerType((String) v));
+        SETTERS.put(REQUEST_IN_TIMESTAMP, (r, v) -> r.setRequestInTs(toLong(v)));
+        SETTERS.put(REQUEST_OUT_TIMESTAMP, (r, v) -> r.setRequestOutTs(toLong(v)));
+        SETTERS.put(RESPONSE_IN_TIMESTAMP, (r, v) -> r.setResponseInTs(toLong(v)));
+        SETTERS.put(RESPONSE_OUT_TIMESTAMP, (r, v) -> r.setResponseOutTs(toLong(v)));
+        SETTERS.put(SECURITY_SERVER_INTERNAL_IP, (r, v) -> r.setSecurityServerInternalIp((String) v));
+        SETTERS.put(CLIENT_XROAD_INSTANCE, (r, v) -> r.setClientXRoadInstance((String) v));
+        SETTERS.put(CLIENT_MEMBER_CLASS, (r, v) -> r.setClientMemberClass((String) v));
+        SETTERS.put(CLIENT_MEMBER_CODE, (r, v) -> r.setClientMemberCode((String) v));
+        SETTERS.put(CLIENT_SUBSYSTEM_CODE, (r, v) -> r.setClientSubsystemCode((String) v));
+        SETTERS.put(SERVICE_XROAD_INSTANCE, (r, v) -> r.setServiceXRoadInstance((String) v));
+        SETTERS.put(SERVICE_MEMBER_CLASS, (r, v) -> r.setServiceMemberClass((String) v));
+        SETTERS.put(SERVICE_MEMBER_CODE, (r, v) -> r.setServiceMemberCode((String) v));
+        SETTERS.put(SERVICE_SUBSYSTEM_CODE, (r, v) -> r.setServiceSubsystemCode((String) v));
+        SETTERS.put(SERVICE_CODE, (r, v) -> r.setServiceCode((String) v));
+        SETTERS.put(SERVICE_VERSION, (r, v) -> r.setServiceVersion((String) v));
+        SETTERS.put(REPRESENTED_PARTY_CLASS, (r, v) -> r.setRepresentedPartyClass((String) v));
+        SETTERS.put(REPRESENTED_PARTY_CODE, (r, v) -> r.setRepresentedPartyCode((String) v));
+        SETTERS.put(MESSAGE_ID, (r, v) -> r.setMessageId((String) v));
+        SETTERS.put(MESSAGE_USER_ID, (r, v) -> r.setMessageUserId((String) v));
+        SETTERS.put(MESSAGE_ISSUE, (r, v) -> r.setMessageIssue((String) v));
+        SETTERS.put(MESSAGE_PROTOCOL_VERSION, (r, v) -> r.setMessageProtocolVersion((String) v));
+        SETTERS.put(CLIENT_SECURITY_SERVER_ADDRESS, (r, v) -> r.setClientSecurityServerAddress((String) v));
+        SETTERS.put(SERVICE_SECURITY_SERVER_ADDRESS, (r, v) -> r.setServiceSecurityServerAddress((String) v));
+        SETTERS.put(SOAP_FAULT_CODE, (r, v) -> r.setFaultCode((String) v));
+        SETTERS.put(SOAP_FAULT_STRING, (r, v) -> r.setFaultString((String) v));
+        SETTERS.put(X_REQUEST_ID, (r, v) -> r.setXRequestId((String) v));
+        SETTERS.put(SERVICE_TYPE, (r, v) -> r.setServiceType((String) v));
+        SETTERS.put(REQUEST_SIZE, (r, v) -> r.setRequestSize(toLong(v)));
+        SETTERS.put(RESPONSE_SIZE, (r, v) -> r.setResponseSize(toLong(v)));
+        SETTERS.put(REQUEST_MIME_SIZE, (r, v) -> r.setRequestMimeSize(toLong(v)));
+        SETTERS.put(RESPONSE_MIME_SIZE, (r, v) -> r.setResponseMimeSize(toLong(v)));
+        SETTERS.put(REQUEST_ATTACHMENT_COUNT, (r, v) -> r.setRequestAttachmentCount(toInteger(v)));
+        SETTERS.put(RESPONSE_ATTACHMENT_COUNT, (r, v) -> r.setResponseAttachmentCount(toInteger(v)));
+        SETTERS.put(REST_RESPONSE_STATUS_CODE, (r, v) -> r.setStatusCode(toInteger(v)));
+        SETTERS.put(SUCCEEDED, (r, v) -> r.setSucceeded((Boolean) v));
+    }
+
     /** The servlet request. */
     private HttpServletRequest servletRequest;
 
@@ -62,15 +150,24 @@ class StoreRequestProcessor {
     /**
      * Processes the incoming message: stores the data and updates the related
      * statistics.
+     * @param binary whether the message is in binary encoding
+     * (see {@link StoreOpMonitoringDataCodec}) instead of JSON
      * @throws Exception in case of any errors
      */
-    void process() throws Exception {
-        String rawJson = IOUtils.toString(servletRequest.getInputStream(),
-                StandardCharsets.UTF_8);
+    void process(boolean binary) throws Exception {
+        List<OperationalDataRecord> records;
 
-        log.trace("Incoming JSON: {}", rawJson);
+        if (binary) {
+            records = prepareBinaryStoreData(servletRequest.getInputStream(),
+                    servletRequest.getContentLengthLong());
+        } else {
+            String rawJson = IOUtils.toString(servletRequest.getInputStream(),
+                    StandardCharsets.UTF_8);
 
-        List<OperationalDataRecord> records = prepareRawStoreData(rawJson);
+            log.trace("Incoming JSON: {}", rawJson);
+
+            records = prepareRawStoreData(rawJson);
+        }
 
         log.debug("Process {} record{}", records.size(),
                 records.size() == 1 ? "" : "s");
@@ -100,4 +197,48 @@ class StoreRequestProcessor {
         return records.getRecords();
     }
 
+    private static List<OperationalDataRecord> prepareBinaryStoreData(
+            InputStream rawData, long contentLength) throws Exception {
+        try {
+            StoreOpMonitoringDataRequest request =
+                    StoreOpMonitoringDataCodec.decode(rawData, contentLength);
+
+            List<OperationalDataRecord> records =
+                    new ArrayList<>(request.getRecords().size());
+
+            for (Map<String, Object> fields : request.getRecords()) {
+                records.add(toRecord(fields));
+            }
+
+            return records;
+        } catch (Exception e) {
+            throw new Exception("Received invalid request", e);
+        }
+    }
+
+    // Fields unknown to the record are ignored and missing (null) fields
+    // are left unset, like in the JSON encoded requests.
+    static OperationalDataRecord toRecord(Map<String, Object> fields) {
+        OperationalDataRecord record = new OperationalDataRecord();
+
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            BiConsumer<OperationalDataRecord, Object> setter =
+                    SETTERS.get(field.getKey());
+
+            if (setter != null && field.getValue() != null) {
+                setter.accept(record, field.getValue());
+            }
+        }
+
+        return record;
+    }
+
+    private static Long toLong(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    private static Integer toInteger(Object value) {
+        return ((Number) value).intValue();
+    }
+
 }
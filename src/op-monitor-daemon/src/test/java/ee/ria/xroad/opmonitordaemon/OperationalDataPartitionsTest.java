@@ -0,0 +1,66 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the naming of the daily partitions of the operational data table.
+ */
+public class OperationalDataPartitionsTest {
+
+    private static final String TABLE = "operational_data";
+
+    // 2019-10-18T00:00:00Z and 2019-10-19T00:00:00Z
+    private static final long DAY_START = 1571356800L;
+    private static final long NEXT_DAY_START = 1571443200L;
+
+    /**
+     * Test to ensure the records of a day are stored in the same partition.
+     */
+    @Test
+    public void partitionByDay() {
+        assertEquals("operational_data_20191018", OperationalDataPartitions.getPartitionName(TABLE, DAY_START));
+        assertEquals("operational_data_20191018",
+                OperationalDataPartitions.getPartitionName(TABLE, NEXT_DAY_START - 1));
+        assertEquals("operational_data_20191019",
+                OperationalDataPartitions.getPartitionName(TABLE, NEXT_DAY_START));
+    }
+
+    /**
+     * Test to ensure the end of the partition is parsed from the partition name.
+     */
+    @Test
+    public void partitionEnd() {
+        assertEquals(Long.valueOf(NEXT_DAY_START),
+                OperationalDataPartitions.getPartitionEnd(TABLE, "operational_data_20191018"));
+
+        assertNull(OperationalDataPartitions.getPartitionEnd(TABLE, "operational_data_archive"));
+        assertNull(OperationalDataPartitions.getPartitionEnd(TABLE, "other_table_20191018"));
+    }
+}
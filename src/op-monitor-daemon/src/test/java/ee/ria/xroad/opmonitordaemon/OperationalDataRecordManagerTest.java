@@ -36,13 +36,20 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRecordManager.doInSnapshot;
 import static ee.ria.xroad.opmonitordaemon.OperationalDataRecordManager.queryAllRecords;
 import static ee.ria.xroad.opmonitordaemon.OperationalDataRecordManager.queryRecords;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRecordManager.queryStreamedRecords;
 import static ee.ria.xroad.opmonitordaemon.OperationalDataRecordManager.storeRecords;
 import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.GSON;
 import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.formatFullOperationalDataAsJson;
@@ -382,6 +389,72 @@ public class OperationalDataRecordManagerTest extends BaseTestUsingDB {
         assertEquals(1, result.size());
     }
 
+    @Test
+    public void queryStreamedDataAsInMemory() throws Exception {
+        ClientId client = ClientId.create(
+                "XTEE-CI-XM", "GOV", "00000001", "System1");
+        ClientId serviceProvider = ClientId.create(
+                "XTEE-CI-XM", "GOV", "00000000", "Center");
+
+        storeFullOperationalDataRecords(8, 1474968980L);
+        storeFullOperationalDataRecords(17, 1474968981L);
+        storeFullOperationalDataRecords(1, 1474968985L);
+        storeFullOperationalDataRecord(1474968986L, client, serviceProvider);
+        storeFullOperationalDataRecord(1474968987L, serviceProvider, client);
+
+        for (int maxRecords : new int[] {1, 5, 8, 10, 30}) {
+            OperationalDataRecordManager.setMaxRecordsInPayload(maxRecords);
+
+            assertStreamedAsInMemory(1474968960L, 1474968990L, null, null,
+                    new HashSet<>());
+            assertStreamedAsInMemory(1474968981L, 1474968981L, null, null,
+                    new HashSet<>());
+            assertStreamedAsInMemory(1474968960L, 1474968990L, client, null,
+                    Sets.newHashSet("requestInTs", "securityServerInternalIp"));
+            assertStreamedAsInMemory(1474968960L, 1474968990L, client,
+                    serviceProvider, new HashSet<>());
+        }
+    }
+
+    private static void assertStreamedAsInMemory(long recordsFrom,
+            long recordsTo, ClientId client, ClientId serviceProvider,
+            Set<String> outputFields) throws Exception {
+        OperationalDataRecords expected = queryRecords(recordsFrom, recordsTo,
+                client, serviceProvider, outputFields);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+        OperationalDataRecords result = doInSnapshot(() -> {
+            OperationalDataRecords records = queryStreamedRecords(recordsFrom,
+                    recordsTo, client, serviceProvider, outputFields);
+            records.writePayload(GSON, payload);
+
+            return records;
+        });
+
+        assertEquals(expected.size(), result.size());
+        assertEquals(expected.getNextRecordsFrom(),
+                result.getNextRecordsFrom());
+
+        assertEquals(expected.getPayload(GSON),
+                new String(payload.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void streamAtMostCountedRecords() throws Exception {
+        storeFullOperationalDataRecords(3, 1474968980L);
+
+        OperationalDataRecords result = queryStreamedRecords(1474968960L,
+                1474968990L, null, null, new HashSet<>());
+
+        storeFullOperationalDataRecords(2, 1474968980L);
+
+        List<OperationalDataRecord> streamed = new ArrayList<>();
+        result.forEachRecord(streamed::add);
+
+        assertEquals(3, result.size());
+        assertEquals(3, streamed.size());
+    }
+
     @Test
     public void cleanupLogRecords() throws Exception {
         storeFullOperationalDataRecords(1, 1474968970L);
@@ -429,4 +502,46 @@ public class OperationalDataRecordManagerTest extends BaseTestUsingDB {
         assertEquals(("2" + LONG_STRING).substring(0, 255),
                 updatedResultRecord.getMessageIssue());
     }
+
+    @Test
+    public void storeInBulk() throws Exception {
+        OperationalDataRecord full = GSON.fromJson(
+                formatFullOperationalDataAsJson(), OperationalDataRecord.class);
+        full.setMessageIssue(LONG_STRING);
+
+        List<OperationalDataRecord> records = new ArrayList<>();
+        records.add(full);
+
+        // More records than the JDBC batch size to execute several batches
+        for (int i = 0; i < 250; i++) {
+            records.add(OperationalDataTestUtil.fillMinimalOperationalData());
+        }
+
+        OperationalDataRecordManager.setBulkInsert(true);
+
+        try {
+            storeRecords(records, 1474968965L);
+        } finally {
+            OperationalDataRecordManager.setBulkInsert(false);
+        }
+
+        OperationalDataRecords result = queryAllRecords();
+
+        assertEquals(records.size(), result.size());
+        assertEquals(records.size(), result.getRecords().stream()
+                .map(OperationalDataRecord::getId).distinct().count());
+
+        OperationalDataRecord resultRecord = result.getRecords().stream()
+                .filter(r -> r.getId().equals(full.getId())).findFirst().get();
+
+        assertEquals(LONG_STRING.substring(0, 255), resultRecord.getMessageIssue());
+
+        full.setMessageIssue(resultRecord.getMessageIssue());
+        assertEquals(full, resultRecord);
+
+        // Records saved through Hibernate get ids that do not collide with the bulk inserted ones
+        storeFullOperationalDataRecords(1, 1474968966L);
+
+        assertEquals(records.size() + 1, queryAllRecords().size());
+    }
 }
@@ -46,15 +46,18 @@ import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 import org.w3c.dom.Element;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.GSON;
 import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.formatFullOperationalDataAsJson;
@@ -63,7 +66,7 @@ import static org.junit.Assert.assertEquals;
 /**
  * Tests for verifying query request handler behavior.
  */
-public class QueryRequestHandlerTest {
+public class QueryRequestHandlerTest extends BaseTestUsingDB {
 
     private static final String RECORDS = "records";
     private static final String OPERATIONAL_DATA_RESPONSE =
@@ -110,7 +113,7 @@ public class QueryRequestHandlerTest {
             }
         };
 
-        OutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
 
         handler.handle(request, out, ct -> testContentType = ct);
 
@@ -133,6 +136,8 @@ public class QueryRequestHandlerTest {
                     String expectedCid = "<" + OperationalDataRequestHandler.CID
                             + ">";
                     assertEquals(expectedCid, additionalHeaders.get("content-id"));
+                    assertEquals("{\"records\":[]}", IOUtils.toString(
+                            new GZIPInputStream(content), StandardCharsets.UTF_8));
                 }
 
                 @Override
@@ -151,7 +156,7 @@ public class QueryRequestHandlerTest {
                 }
             });
 
-        decoder.parse(IOUtils.toInputStream(out.toString()));
+        decoder.parse(new ByteArrayInputStream(out.toByteArray()));
     }
 
     @SneakyThrows
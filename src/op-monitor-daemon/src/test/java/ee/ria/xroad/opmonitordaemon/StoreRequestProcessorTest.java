@@ -0,0 +1,89 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.ServiceId;
+import ee.ria.xroad.common.message.RepresentedParty;
+import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+import ee.ria.xroad.common.util.JsonUtils;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests mapping the records of binary encoded store requests.
+ */
+public class StoreRequestProcessorTest {
+
+    private static final Gson GSON = JsonUtils.getSerializer();
+
+    private static final long TIMESTAMP = 1500000000000L;
+
+    @Test
+    public void mapRecordAsFromJson() {
+        OpMonitoringData data = new OpMonitoringData(OpMonitoringData.SecurityServerType.PRODUCER, TIMESTAMP);
+        data.setSecurityServerInternalIp("127.0.0.1");
+        data.setRequestOutTs(TIMESTAMP + 1);
+        data.setResponseInTs(TIMESTAMP + 2);
+        data.setResponseOutTs(TIMESTAMP + 3, true);
+        data.setClientId(ClientId.create("EE", "GOV", "1234", "CLIENT"));
+        data.setServiceId(ServiceId.create("EE", "COM", "5678", "SERVICE", "getState", "v1"));
+        data.setMessageId("id");
+        data.setMessageUserId("user");
+        data.setMessageIssue("issue");
+        data.setRepresentedParty(new RepresentedParty("COM", "9999"));
+        data.setMessageProtocolVersion("4.0");
+        data.setClientSecurityServerAddress("client.example.org");
+        data.setServiceSecurityServerAddress("service.example.org");
+        data.setRequestSize(10);
+        data.setResponseSize(20);
+        data.setRequestMimeSize(30);
+        data.setRequestAttachmentCount(1);
+        data.setResponseMimeSize(40);
+        data.setResponseAttachmentCount(2);
+        data.setSucceeded(false);
+        data.setRestResponseStatusCode(500);
+        data.setFaultCodeAndString(new CodedException("Server.Fault", "fault"));
+        data.setXRequestId("request");
+        data.setServiceType("WSDL");
+
+        OperationalDataRecords fromJson = GSON.fromJson(
+                GSON.toJson(Collections.singletonMap("records", Collections.singletonList(data.getData()))),
+                OperationalDataRecords.class);
+
+        assertEquals(fromJson.getRecords().get(0), StoreRequestProcessor.toRecord(data.getData()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectInvalidSecurityServerType() {
+        StoreRequestProcessor.toRecord(Collections.singletonMap("securityServerType", "UNKNOWN"));
+    }
+}
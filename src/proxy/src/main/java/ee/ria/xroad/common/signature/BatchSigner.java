@@ -42,13 +42,16 @@ import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.operator.OperatorCreationException;
-import scala.concurrent.Await;
 
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.SIGNER_X;
@@ -76,6 +79,7 @@ public class BatchSigner extends UntypedAbstractActor {
 
     private static final int TIMEOUT_MILLIS = SystemProperties.getSignerClientTimeout();
     private static final Timeout DEFAULT_TIMEOUT = new Timeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    private static final Duration ASK_TIMEOUT = Duration.ofMillis(TIMEOUT_MILLIS);
 
     // Holds the actor instance, which sends and receives messages.
     private static ActorRef instance;
@@ -92,7 +96,7 @@ public class BatchSigner extends UntypedAbstractActor {
     }
 
     /**
-     * Submits the given signing request for batch signing.
+     * Submits the given signing request for batch signing and waits for the result.
      *
      * @param keyId the signing key
      * @param signatureAlgorithmId ID of the signature algorithm to use
@@ -102,14 +106,50 @@ public class BatchSigner extends UntypedAbstractActor {
      */
     public static SignatureData sign(String keyId, String signatureAlgorithmId, SigningRequest request)
             throws Exception {
+        try {
+            return signAsync(keyId, signatureAlgorithmId, request).toCompletableFuture().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Submits the given signing request for batch signing without blocking the calling thread.
+     * The returned stage is completed by the actor system once the signature has been created,
+     * so dependent actions should not block.
+     *
+     * @param keyId the signing key
+     * @param signatureAlgorithmId ID of the signature algorithm to use
+     * @param request the signing request
+     * @return stage that is completed with the signature data or with the signing error
+     */
+    public static CompletionStage<SignatureData> signAsync(String keyId, String signatureAlgorithmId,
+            SigningRequest request) {
+        CompletableFuture<SignatureData> result = new CompletableFuture<>();
+
         if (instance == null) {
-            throw new IllegalStateException("BatchSigner is not initialized");
+            result.completeExceptionally(new IllegalStateException("BatchSigner is not initialized"));
+
+            return result;
         }
 
         // Send the signing request to the actor instance (itself)
-        return SignerClient.result(Await.result(Patterns.ask(instance, new SigningRequestWrapper(
-                keyId, signatureAlgorithmId, request), DEFAULT_TIMEOUT.duration().length()),
-                DEFAULT_TIMEOUT.duration()));
+        Patterns.ask(instance, new SigningRequestWrapper(keyId, signatureAlgorithmId, request), ASK_TIMEOUT)
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else if (response instanceof Throwable) {
+                        result.completeExceptionally((Throwable) response);
+                    } else {
+                        result.complete((SignatureData) response);
+                    }
+                });
+
+        return result;
     }
 
     @Override
@@ -38,9 +38,12 @@ import org.apache.xml.security.utils.resolver.ResourceResolverContext;
 import org.apache.xml.security.utils.resolver.ResourceResolverException;
 import org.apache.xml.security.utils.resolver.ResourceResolverSpi;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.util.CryptoUtils.getDigestAlgorithmId;
@@ -68,7 +71,7 @@ class SignatureCtx {
     private final String digestAlgorithmId;
 
     private String hashChainResult;
-    private String[] hashChains;
+    private HashChainBuilder hashChainBuilder;
 
     private SignatureXmlBuilder builder;
 
@@ -98,8 +101,11 @@ class SignatureCtx {
      * Returns the signature data for a given signer -- either normal signature
      * or batch signature with corresponding hash chain and hash chain result.
      */
+    @SneakyThrows
     synchronized SignatureData createSignatureData(String signature, int signerIndex) {
-        return new SignatureData(signature, hashChainResult, hashChains != null ? hashChains[signerIndex] : null);
+        // Hash chains are constructed only for the signers that ask for the signature data
+        return new SignatureData(signature, hashChainResult,
+                hashChainBuilder != null ? hashChainBuilder.getHashChain(MESSAGE, signerIndex) : null);
     }
 
     /**
@@ -119,22 +125,28 @@ class SignatureCtx {
 
         // If only one single hash (message), then no hash chain
         if (requests.size() == 1 && firstRequest.isSingleMessage()) {
-            return builder.createDataToBeSigned(MESSAGE, createResourceResolver(
-                    firstRequest.getParts().get(0).getMessage()), signatureAlgorithmUri);
+            MessagePart messagePart = firstRequest.getParts().get(0);
+
+            if (!messagePart.hasMessage()) {
+                throw new IllegalArgumentException("Data must not be null");
+            }
+
+            return builder.createDataToBeSigned(MESSAGE, createResourceResolver(messagePart::openMessage),
+                    signatureAlgorithmUri);
         }
 
         buildHashChain();
 
         byte[] hashChainResultBytes = hashChainResult.getBytes(StandardCharsets.UTF_8);
 
-        return builder.createDataToBeSigned(SIG_HASH_CHAIN_RESULT, createResourceResolver(hashChainResultBytes),
-                signatureAlgorithmUri);
+        return builder.createDataToBeSigned(SIG_HASH_CHAIN_RESULT,
+                createResourceResolver(() -> new ByteArrayInputStream(hashChainResultBytes)), signatureAlgorithmUri);
     }
 
     private void buildHashChain() throws Exception {
         log.trace("buildHashChain()");
 
-        HashChainBuilder hashChainBuilder = new HashChainBuilder(digestAlgorithmId);
+        hashChainBuilder = new HashChainBuilder(digestAlgorithmId);
 
         for (SigningRequest request : requests) {
             hashChainBuilder.addInputHash(getHashChainInputs(request));
@@ -143,7 +155,6 @@ class SignatureCtx {
         hashChainBuilder.finishBuilding();
 
         hashChainResult = hashChainBuilder.getHashChainResult(SIG_HASH_CHAIN);
-        hashChains = hashChainBuilder.getHashChains(MESSAGE);
     }
 
     private static byte[][] getHashChainInputs(SigningRequest request) {
@@ -153,13 +164,10 @@ class SignatureCtx {
     }
 
     /**
-     * This resource resolver will provide the message or hash chain data to be digested.
+     * This resource resolver will provide the message or hash chain data to be digested. The data is
+     * streamed to the digest, so a message does not have to be held in memory.
      */
-    private ResourceResolverSpi createResourceResolver(final byte[] data) {
-        if (data == null) {
-            throw new IllegalArgumentException("Data must not be null");
-        }
-
+    private ResourceResolverSpi createResourceResolver(final Supplier<InputStream> data) {
         return new ResourceResolverSpi() {
             @Override
             public boolean engineCanResolveURI(ResourceResolverContext context) {
@@ -175,7 +183,7 @@ class SignatureCtx {
             @Override
             public XMLSignatureInput engineResolveURI(ResourceResolverContext context)
                     throws ResourceResolverException {
-                return new XMLSignatureInput(data);
+                return new XMLSignatureInput(data.get());
             }
         };
     }
@@ -35,18 +35,28 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Manages the incoming connections and prevents system resource exhaustion.
+ *
+ * Every partner has its own connection queue and the partners with waiting connections take turns in
+ * round-robin order. Accepting a connection does not take a lock on the manager: the partner database is an
+ * immutable map that is replaced when the global configuration changes, and each partner is present in the
+ * round-robin queue at most once, which is tracked with a flag instead of searching the queue.
  */
 @Slf4j
 class AntiDosConnectionManager<T extends SocketChannelWrapper> {
 
     // Tiny wrapper class for active connections of a partner
     private class HostData {
-        final Deque<T> connections = new LinkedBlockingDeque<>();
+        final Deque<T> connections = new ConcurrentLinkedDeque<>();
+
+        // Whether the partner is currently in the active partners queue
+        final AtomicBoolean scheduled = new AtomicBoolean();
     }
 
     // The IP used for unknown members
@@ -55,17 +65,18 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
     // Holds the configuration
     protected final AntiDosConfiguration configuration;
 
-    // IP to HostData mapping
-    protected Map<String, HostData> database = new HashMap<>();
+    // IP to HostData mapping, replaced as a whole when known addresses change
+    protected volatile Map<String, HostData> database;
 
     // Buffer of partners with waiting connections
-    protected LinkedBlockingQueue<HostData> activePartners =
-            new LinkedBlockingQueue<>();
+    protected BlockingQueue<HostData> activePartners = new LinkedBlockingQueue<>();
 
     // Holds a cache of previously known member IPs.
     // Used to determine if should sync the database when conf changed.
     private Set<String> previousKnownOrganizations = new HashSet<>();
 
+    private final Runnable confChangeListener = this::syncDatabase;
+
     AntiDosConnectionManager(AntiDosConfiguration configuration) {
         if (configuration == null) {
             throw new IllegalArgumentException("configuration cannot be null");
@@ -73,12 +84,23 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
 
         this.configuration = configuration;
         this.previousKnownOrganizations.add(UNKNOWN_ORG_IP);
-        this.database.put(UNKNOWN_ORG_IP, new HostData());
+
+        Map<String, HostData> initialDatabase = new HashMap<>();
+        initialDatabase.put(UNKNOWN_ORG_IP, new HostData());
+
+        this.database = initialDatabase;
     }
 
     void init() throws Exception {
-        // Populate the database based on registered members' IPs.
+        // Populate the database based on registered members' IPs and
+        // keep it in sync with the global configuration.
         syncDatabase();
+
+        GlobalConf.addChangeListener(confChangeListener);
+    }
+
+    void destroy() {
+        GlobalConf.removeChangeListener(confChangeListener);
     }
 
     /**
@@ -94,10 +116,7 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
     /**
      * Adds the connection into the partner's connection queue.
      */
-    synchronized void accept(T connection) {
-        // We need to synchronize the database with the existing members.
-        syncDatabase();
-
+    void accept(T connection) {
         // Find the host data for the incoming connection and register
         // the new connection to this host data
         HostData currentPartner = getHostData(connection.getHostAddress());
@@ -105,9 +124,7 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
 
         // If the host data is not for an active partner,
         // add it to the connection buffer as the newest partner.
-        if (!activePartners.contains(currentPartner)) {
-            activePartners.add(currentPartner);
-        }
+        schedule(currentPartner);
     }
 
     /**
@@ -137,14 +154,23 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
 
         // Take the oldest connection.
         T sock = oldestPartner.connections.pollLast();
-        if (sock == null) {
-            return null;
-        }
 
         // If there are more connections left for this partner, add the partner
-        // back to the buffer as the first partner.
+        // back to the buffer as the newest partner.
         if (!oldestPartner.connections.isEmpty()) {
             activePartners.add(oldestPartner);
+        } else {
+            oldestPartner.scheduled.set(false);
+
+            // A connection may have been added after the emptiness check by
+            // a thread that still saw the partner as scheduled.
+            if (!oldestPartner.connections.isEmpty()) {
+                schedule(oldestPartner);
+            }
+        }
+
+        if (sock == null) {
+            return null;
         }
 
         // Processing a connection consumes file handles and other resources
@@ -181,11 +207,19 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
     }
 
     private HostData getHostData(String ip) {
-        return database.containsKey(ip)
-                ? database.get(ip) : database.get(UNKNOWN_ORG_IP);
+        Map<String, HostData> currentDatabase = database;
+        HostData hostData = currentDatabase.get(ip);
+
+        return hostData != null ? hostData : currentDatabase.get(UNKNOWN_ORG_IP);
+    }
+
+    private void schedule(HostData partner) {
+        if (partner.scheduled.compareAndSet(false, true)) {
+            activePartners.add(partner);
+        }
     }
 
-    private void syncDatabase() {
+    private synchronized void syncDatabase() {
         Set<String> knownAddresses = getAllAddresses();
 
         if (previousKnownOrganizations.equals(knownAddresses)) {
@@ -193,17 +227,18 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
             return;
         }
 
+        Map<String, HostData> currentDatabase = database;
         Map<String, HostData> newDatabase = new HashMap<>();
 
         // Retain existing members connections
-        database.keySet().stream()
+        currentDatabase.keySet().stream()
                 .filter(knownAddresses::contains)
                 .forEach(existingAddress -> newDatabase.put(
-                        existingAddress, database.get(existingAddress)));
+                        existingAddress, currentDatabase.get(existingAddress)));
 
         // Add new members
         knownAddresses.stream()
-                .filter(knownAddress -> !database.containsKey(knownAddress))
+                .filter(knownAddress -> !currentDatabase.containsKey(knownAddress))
                 .forEach(knownAddress ->
                         registerHostData(newDatabase, knownAddress));
 
@@ -243,8 +278,8 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
             addresses.addAll(GlobalConf.getKnownAddresses());
         } catch (Exception ignored) {
             // In case the conf was invalid, we do not sync. We should not
-            // log this exception, since this method might be
-            // called very frequently.
+            // log this exception, since the conf is read again on the
+            // next configuration change.
             ignored.getClass(); //dummy code
         }
 
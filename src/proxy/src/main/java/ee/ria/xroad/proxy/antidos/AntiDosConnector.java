@@ -101,6 +101,13 @@ public class AntiDosConnector extends ServerConnector {
         getExecutor().execute(new QueueManager());
     }
 
+    @Override
+    protected void doStop() throws Exception {
+        manager.destroy();
+
+        super.doStop();
+    }
+
     @Override
     public void accept(int acceptorID) throws IOException {
         if (manager.canAccept()) {
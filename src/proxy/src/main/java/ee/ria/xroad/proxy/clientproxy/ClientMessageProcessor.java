@@ -25,6 +25,7 @@
 package ee.ria.xroad.proxy.clientproxy;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.cert.CertChain;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.serverconf.IsAuthenticationData;
@@ -43,6 +44,7 @@ import ee.ria.xroad.common.monitoring.MessageInfo;
 import ee.ria.xroad.common.monitoring.MessageInfo.Origin;
 import ee.ria.xroad.common.monitoring.MonitorAgent;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+import ee.ria.xroad.common.util.CacheInputStream;
 import ee.ria.xroad.common.util.HttpSender;
 import ee.ria.xroad.common.util.MimeUtils;
 import ee.ria.xroad.proxy.conf.KeyConf;
@@ -55,6 +57,7 @@ import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.client.HttpClient;
+import org.apache.http.entity.AbstractHttpEntity;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.bouncycastle.util.Arrays;
 import org.xml.sax.Attributes;
@@ -65,6 +68,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.xml.namespace.QName;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.Writer;
@@ -92,6 +96,9 @@ import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_ORIGINAL_CONTENT_TYPE;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_ORIGINAL_SOAP_ACTION;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_REQUEST_ID;
+import static ee.ria.xroad.common.util.MimeUtils.getBoundary;
+import static ee.ria.xroad.common.util.MimeUtils.mpMixedContentType;
+import static ee.ria.xroad.common.util.MimeUtils.randomBoundary;
 import static ee.ria.xroad.common.util.TimeUtils.getEpochMillisecond;
 
 @Slf4j
@@ -118,11 +125,21 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
      */
     private final CountDownLatch httpSenderGate = new CountDownLatch(1);
 
+    /**
+     * If true, the request is parsed, signed and streamed to the server proxy
+     * on the calling thread without the handler thread and piped streams.
+     */
+    private final boolean singleThreadProcessing = SystemProperties.isClientProxySingleThreadSoapProcessing();
+
     /** Holds the incoming request SOAP message. */
     private volatile String originalSoapAction;
     private volatile SoapMessageImpl requestSoap;
+    private volatile Map<String, String> requestSoapHeaders;
     private volatile ServiceId requestServiceId;
 
+    /** Holds the request decoder while the attachments are still unread (single thread processing). */
+    private SoapMessageDecoder requestDecoder;
+
     /** If the request failed, will contain SOAP fault. */
     private volatile CodedException executionException;
 
@@ -157,8 +174,6 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             HttpClient httpClient, IsAuthenticationData clientCert, OpMonitoringData opMonitoringData)
             throws Exception {
         super(servletRequest, servletResponse, httpClient, clientCert, opMonitoringData);
-        this.reqIns = new PipedInputStream();
-        this.reqOuts = new PipedOutputStream(reqIns);
         this.xRequestId = UUID.randomUUID().toString();
     }
 
@@ -169,6 +184,17 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
         opMonitoringData.setXRequestId(xRequestId);
         updateOpMonitoringClientSecurityServerAddress();
 
+        if (singleThreadProcessing) {
+            processInRequestThread();
+        } else {
+            processInHandlerThread();
+        }
+    }
+
+    private void processInHandlerThread() throws Exception {
+        reqIns = new PipedInputStream();
+        reqOuts = new PipedOutputStream(reqIns);
+
         Future<?> soapHandler = SOAP_HANDLER_EXECUTOR.submit(this::handleSoap);
 
         try {
@@ -203,6 +229,39 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             if (response != null) {
                 response.consume();
             }
+
+            if (requestSoap != null) {
+                requestSoap.consume();
+            }
+        }
+    }
+
+    private void processInRequestThread() throws Exception {
+        try {
+            // Read only the request SOAP message, the attachments are read
+            // while the request is being written to the server proxy.
+            readSoap();
+
+            // Verify that the client is registered.
+            ClientId client = requestSoap.getClient();
+            verifyClientStatus(client);
+
+            // Check client authentication mode.
+            verifyClientAuthentication(client);
+
+            processRequest();
+
+            if (response != null) {
+                sendResponse();
+            }
+        } finally {
+            if (response != null) {
+                response.consume();
+            }
+
+            if (requestSoap != null) {
+                requestSoap.consume();
+            }
         }
     }
 
@@ -251,9 +310,21 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
             try {
                 opMonitoringData.setRequestOutTs(getEpochMillisecond());
-                httpSender.doPost(getServiceAddress(addresses), reqIns, CHUNKED_LENGTH, outputContentType);
+
+                if (singleThreadProcessing) {
+                    outputContentType = mpMixedContentType("xtop" + randomBoundary());
+                    httpSender.doPost(getServiceAddress(addresses), new ProxyMessageEntity());
+                } else {
+                    httpSender.doPost(getServiceAddress(addresses), reqIns, CHUNKED_LENGTH, outputContentType);
+                }
+
                 opMonitoringData.setResponseInTs(getEpochMillisecond());
             } catch (Exception e) {
+                // The request could not be read or signed, this is not a server proxy failure.
+                if (singleThreadProcessing) {
+                    checkError();
+                }
+
                 // Failed to connect to server proxy
                 MonitorAgent.serverProxyFailed(createRequestMessageInfo());
 
@@ -290,7 +361,7 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
     private void updateOpMonitoringDataByResponse(ProxyMessageDecoder decoder) {
         if (response.getSoap() != null) {
-            long responseSize = response.getSoap().getBytes().length;
+            long responseSize = response.getSoap().getContentLength();
 
             opMonitoringData.setResponseSize(responseSize);
             opMonitoringData.setResponseAttachmentCount(decoder.getAttachmentCount());
@@ -371,7 +442,11 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
         servletResponse.setContentType(response.getSoapContentType());
 
         try (InputStream is = response.getSoapContent()) {
-            IOUtils.copy(is, servletResponse.getOutputStream());
+            if (is instanceof CacheInputStream) {
+                ((CacheInputStream) is).transferTo(servletResponse.getOutputStream());
+            } else {
+                IOUtils.copy(is, servletResponse.getOutputStream());
+            }
         }
     }
 
@@ -392,6 +467,11 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
     private void waitForRequestSent() {
         log.trace("waitForRequestSent()");
 
+        if (singleThreadProcessing) {
+            // The request has been completely written by the time doPost returns.
+            return;
+        }
+
         try {
             httpSenderGate.await();
         } catch (InterruptedException e) {
@@ -439,6 +519,42 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
                 requestSoap.getQueryId());
     }
 
+    private void readSoap() throws Exception {
+        log.trace("readSoap()");
+
+        requestDecoder = new SoapMessageDecoder(servletRequest.getContentType(), new SoapMessageHandler(),
+                new RequestSoapParserImpl());
+        try {
+            originalSoapAction = validateSoapActionHeader(servletRequest.getHeader("SOAPAction"));
+            requestDecoder.parseSoap(servletRequest.getInputStream());
+        } catch (Exception ex) {
+            throw new ClientException(translateException(ex));
+        }
+
+        if (requestSoap == null) {
+            throw new ClientException(X_MISSING_SOAP, "Request does not contain SOAP message");
+        }
+    }
+
+    private void writeRequestSoap(Map<String, String> headers) throws Exception {
+        // In SSL mode, we need to send the OCSP response of our SSL cert.
+        if (isSslEnabled()) {
+            writeOcspResponses();
+        }
+
+        request.soap(requestSoap, headers);
+    }
+
+    private void writeOcspResponses() throws Exception {
+        CertChain chain = KeyConf.getAuthKey().getCertChain();
+        // exclude TopCA
+        List<OCSPResp> ocspResponses = KeyConf.getAllOcspResponses(chain.getAllCertsWithoutTrustedRoot());
+
+        for (OCSPResp ocsp : ocspResponses) {
+            request.ocspResponse(ocsp);
+        }
+    }
+
     public void handleSoap() {
         try (SoapMessageHandler handler = new SoapMessageHandler()) {
             SoapMessageDecoder soapMessageDecoder = new SoapMessageDecoder(servletRequest.getContentType(),
@@ -471,6 +587,13 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
             updateOpMonitoringDataBySoapMessage(opMonitoringData, requestSoap);
 
+            if (singleThreadProcessing) {
+                // The request is written once the connection to server proxy is open.
+                requestSoapHeaders = headers;
+
+                return;
+            }
+
             if (request == null) {
                 request = new ProxyMessageEncoder(reqOuts, SoapUtils.getHashAlgoId());
                 outputContentType = request.getContentType();
@@ -480,12 +603,7 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             // request to server proxy.
             continueProcessing();
 
-            // In SSL mode, we need to send the OCSP response of our SSL cert.
-            if (isSslEnabled()) {
-                writeOcspResponses();
-            }
-
-            request.soap(requestSoap, headers);
+            writeRequestSoap(headers);
         }
 
         @Override
@@ -526,7 +644,7 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             opMonitoringData.setRequestAttachmentCount(request.getAttachmentCount());
 
             if (request.getAttachmentCount() > 0) {
-                opMonitoringData.setRequestMimeSize(requestSoap.getBytes().length + request.getAttachmentsByteCount());
+                opMonitoringData.setRequestMimeSize(requestSoap.getContentLength() + request.getAttachmentsByteCount());
             }
         }
 
@@ -544,16 +662,6 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             throw e;
         }
 
-        private void writeOcspResponses() throws Exception {
-            CertChain chain = KeyConf.getAuthKey().getCertChain();
-            // exclude TopCA
-            List<OCSPResp> ocspResponses = KeyConf.getAllOcspResponses(chain.getAllCertsWithoutTrustedRoot());
-
-            for (OCSPResp ocsp : ocspResponses) {
-                request.ocspResponse(ocsp);
-            }
-        }
-
         @Override
         public void close() {
             if (request != null) {
@@ -566,6 +674,57 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
         }
     }
 
+    /**
+     * Request entity that encodes the proxy message directly to the server
+     * proxy connection. The attachments are read from the client request
+     * while the entity is being written, so the whole request is processed
+     * on the calling thread.
+     */
+    private class ProxyMessageEntity extends AbstractHttpEntity {
+
+        ProxyMessageEntity() {
+            setContentType(outputContentType);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public InputStream getContent() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void writeTo(OutputStream outstream) {
+            request = new ProxyMessageEncoder(outstream, SoapUtils.getHashAlgoId(), getBoundary(outputContentType));
+
+            try {
+                writeRequestSoap(requestSoapHeaders);
+                requestDecoder.parseAttachments();
+                request.close();
+            } catch (Exception ex) {
+                setError(new ClientException(translateException(ex)));
+            }
+
+            // Abort the request instead of sending an unsigned message.
+            if (executionException != null) {
+                throw executionException;
+            }
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return true;
+        }
+    }
+
     /**
      * Soap parser that changes the CentralServiceId to ServiceId in message
      * header.
@@ -587,6 +746,10 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
         private SoapHeaderHandler headerHandler;
 
+        RequestSoapParserImpl() {
+            super(SystemProperties.isProxySoapStreaming());
+        }
+
         // do not write processed XML beyond the header if not a central
         // service request, use raw request XML instead
         @Override
@@ -46,7 +46,6 @@ import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.http.Header;
 import org.apache.http.client.HttpClient;
@@ -278,7 +277,7 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
             servletResponse.addHeader(h.getName(), h.getValue());
         }
         if (response.hasRestBody()) {
-            IOUtils.copy(response.getRestBody(), servletResponse.getOutputStream());
+            response.getRestBody().transferTo(servletResponse.getOutputStream());
         }
     }
 
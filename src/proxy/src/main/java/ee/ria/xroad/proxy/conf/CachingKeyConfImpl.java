@@ -28,6 +28,8 @@ import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.cert.CertChain;
 import ee.ria.xroad.common.conf.globalconf.AuthKey;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.globalconf.SharedParametersChanges;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
@@ -80,6 +82,10 @@ class CachingKeyConfImpl extends KeyConfImpl {
                 .build();
     }
 
+    static {
+        GlobalConf.addSharedParametersChangeListener(CachingKeyConfImpl::invalidateChangedEntries);
+    }
+
     CachingKeyConfImpl() throws Exception {
         keyConfChangeChecker = getKeyConfChangeChecker();
     }
@@ -115,6 +121,21 @@ class CachingKeyConfImpl extends KeyConfImpl {
         SIGNING_INFO_CACHE.invalidateAll();
     }
 
+    /**
+     * Invalidates the cached entries of the members and security servers that have changed in the shared
+     * parameters. The cached certificate chains depend on the approved CAs, so a CA change invalidates everything.
+     * @param changes the shared parameters changes
+     */
+    static void invalidateChangedEntries(SharedParametersChanges changes) {
+        if (changes.isCaChanged()) {
+            invalidateCaches();
+            return;
+        }
+
+        SIGNING_INFO_CACHE.asMap().keySet().removeIf(changes::isClientChanged);
+        AUTH_KEY_CACHE.asMap().keySet().removeIf(changes::isServerChanged);
+    }
+
 
     private static final AuthKey NULL_AUTH_KEY = new AuthKey(null, null);
 
@@ -27,6 +27,9 @@ package ee.ria.xroad.proxy.conf;
 import ee.ria.xroad.common.signature.SignatureBuilder;
 import ee.ria.xroad.common.signature.SignatureData;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /**
  * Encapsulates security-related parameters of a given member,
  * such as currently used signing key and cert.
@@ -39,4 +42,22 @@ public interface SigningCtx {
      * @throws Exception in case of any errors
      */
     SignatureData buildSignature(SignatureBuilder builder) throws Exception;
+
+    /**
+     * Creates and signs the signature without blocking the calling thread while the signature
+     * is calculated. The default implementation builds the signature synchronously.
+     * @param builder the signature builder instance
+     * @return stage that is completed with the signature data or with the signing error
+     */
+    default CompletionStage<SignatureData> buildSignatureAsync(SignatureBuilder builder) {
+        CompletableFuture<SignatureData> result = new CompletableFuture<>();
+
+        try {
+            result.complete(buildSignature(builder));
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
 }
@@ -39,6 +39,8 @@ import org.bouncycastle.cert.ocsp.OCSPResp;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import static ee.ria.xroad.common.ErrorCodes.X_CANNOT_CREATE_SIGNATURE;
 
@@ -63,14 +65,32 @@ public class SigningCtxImpl implements SigningCtx {
 
     @Override
     public SignatureData buildSignature(SignatureBuilder builder) throws Exception {
+        prepare(builder);
+
+        return builder.build(key, DIGEST_ALGORITHM);
+    }
+
+    @Override
+    public CompletionStage<SignatureData> buildSignatureAsync(SignatureBuilder builder) {
+        try {
+            prepare(builder);
+        } catch (Exception e) {
+            CompletableFuture<SignatureData> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+
+            return result;
+        }
+
+        return builder.buildAsync(key, DIGEST_ALGORITHM);
+    }
+
+    private void prepare(SignatureBuilder builder) throws Exception {
         List<X509Certificate> extraCerts = getIntermediateCaCerts();
         List<OCSPResp> ocspResponses = getOcspResponses(extraCerts);
 
         builder.addExtraCertificates(extraCerts);
         builder.addOcspResponses(ocspResponses);
         builder.setSigningCert(cert);
-
-        return builder.build(key, DIGEST_ALGORITHM);
     }
 
     private List<OCSPResp> getOcspResponses(List<X509Certificate> certs) throws Exception {
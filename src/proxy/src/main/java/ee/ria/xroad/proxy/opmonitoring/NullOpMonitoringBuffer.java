@@ -44,12 +44,12 @@ class NullOpMonitoringBuffer extends AbstractOpMonitoringBuffer {
     }
 
     @Override
-    protected void sendingSuccess() throws Exception {
+    protected void sendingSuccess(long messageId) throws Exception {
         // do nothing
     }
 
     @Override
-    protected void sendingFailure() throws Exception {
+    protected void sendingFailure(long messageId) throws Exception {
         // do nothing
     }
 }
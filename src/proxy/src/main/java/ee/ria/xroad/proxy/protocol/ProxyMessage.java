@@ -143,7 +143,7 @@ public class ProxyMessage implements ProxyMessageConsumer {
             ByteArrayOutputStream out = new ByteArrayOutputStream();
             MultipartEncoder mp = new MultipartEncoder(out, originalMimeBoundary);
             mp.startPart(getSoap().getContentType(), MimeUtils.toHeaders(soapPartHeaders));
-            mp.write(getSoap().getBytes());
+            mp.write(getSoap().getContent());
             mp.close();
 
             return new ByteArrayInputStream(out.toByteArray());
@@ -155,7 +155,7 @@ public class ProxyMessage implements ProxyMessageConsumer {
 
             return attachmentCache.getCachedContents();
         } else {
-            return new ByteArrayInputStream(soapMessage.getBytes());
+            return soapMessage.getContent();
         }
     }
 
@@ -176,6 +176,10 @@ public class ProxyMessage implements ProxyMessageConsumer {
         if (attachmentCache != null) {
             attachmentCache.consume();
         }
+
+        if (soapMessage != null) {
+            soapMessage.consume();
+        }
     }
 
     @Override
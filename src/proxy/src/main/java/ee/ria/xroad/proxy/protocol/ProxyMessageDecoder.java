@@ -25,6 +25,7 @@
 package ee.ria.xroad.proxy.protocol;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.message.RestRequest;
 import ee.ria.xroad.common.message.RestResponse;
@@ -351,7 +352,7 @@ public class ProxyMessageDecoder {
                             bd.getMimeType());
             }
 
-            Soap soap = new SaxSoapParserImpl().parse(partContentType, is);
+            Soap soap = new SaxSoapParserImpl(SystemProperties.isProxySoapStreaming()).parse(partContentType, is);
             if (soap instanceof SoapFault) {
                 callback.fault((SoapFault) soap);
             } else {
@@ -240,11 +240,10 @@ public class ProxyMessageEncoder implements ProxyMessageConsumer {
             log.trace("writeSoapMessage({})", message.getXml());
         }
 
-        byte[] data = message.getBytes();
         try {
             mpEncoder.startPart(message.getContentType(),
                     toHeaders(additionalHeaders));
-            mpEncoder.write(data);
+            mpEncoder.write(message.getContent());
 
             signer.addMessagePart(hashAlgoId, message);
         } catch (Exception ex) {
@@ -169,6 +169,10 @@ class ServerMessageProcessor extends MessageProcessorBase {
             if (requestMessage != null) {
                 requestMessage.consume();
             }
+
+            if (responseSoap != null) {
+                responseSoap.consume();
+            }
         }
     }
 
@@ -307,7 +311,7 @@ class ServerMessageProcessor extends MessageProcessorBase {
             opMonitoringData.setRequestAttachmentCount(decoder.getAttachmentCount());
 
             if (decoder.getAttachmentCount() > 0) {
-                opMonitoringData.setRequestMimeSize(requestMessage.getSoap().getBytes().length
+                opMonitoringData.setRequestMimeSize(requestMessage.getSoap().getContentLength()
                         + decoder.getAttachmentsByteCount());
             }
         }
@@ -501,7 +505,7 @@ class ServerMessageProcessor extends MessageProcessorBase {
         opMonitoringData.setResponseAttachmentCount(encoder.getAttachmentCount());
 
         if (encoder.getAttachmentCount() > 0) {
-            opMonitoringData.setResponseMimeSize(responseSoap.getBytes().length + encoder.getAttachmentsByteCount());
+            opMonitoringData.setResponseMimeSize(responseSoap.getContentLength() + encoder.getAttachmentsByteCount());
         }
     }
 
@@ -657,7 +661,7 @@ class ServerMessageProcessor extends MessageProcessorBase {
         public void soap(SoapMessage message, Map<String, String> headers) throws Exception {
             responseSoap = (SoapMessageImpl) message;
 
-            opMonitoringData.setResponseSize(responseSoap.getBytes().length);
+            opMonitoringData.setResponseSize(responseSoap.getContentLength());
             opMonitoringData.setResponseOutTs(getEpochMillisecond(), true);
 
             encoder.soap(responseSoap, headers);
@@ -706,6 +710,10 @@ class ServerMessageProcessor extends MessageProcessorBase {
         private int bufferedOffset;
         private int bufferedLength;
 
+        ResponseSoapParserImpl() {
+            super(SystemProperties.isProxySoapStreaming());
+        }
+
         // force usage of processed XML since we need to write the request hash
         @Override
         protected boolean isProcessedXmlRequired() {
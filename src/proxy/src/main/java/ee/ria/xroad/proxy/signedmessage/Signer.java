@@ -69,8 +69,8 @@ public class Signer {
      * @param soap the message to be signed
      */
     public void addMessagePart(String hashMethod, SoapMessageImpl soap) {
-        builder.addPart(new MessagePart(MessageFileNames.MESSAGE, hashMethod,
-                soap.getHash(), soap.getBytes()));
+        // The message is streamed to the signature digest, so that a streamed message is not loaded into memory
+        builder.addPart(MessagePart.streamed(MessageFileNames.MESSAGE, hashMethod, soap.getHash(), soap::getContent));
     }
 
     /**
@@ -32,6 +32,9 @@ import ee.ria.xroad.common.util.CryptoUtils;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 import static ee.ria.xroad.common.ErrorCodes.X_CANNOT_CREATE_SIGNATURE;
 import static ee.ria.xroad.common.ErrorCodes.translateWithPrefix;
 
@@ -80,4 +83,33 @@ public class SignerSigningKey implements SigningKey {
             throw translateWithPrefix(X_CANNOT_CREATE_SIGNATURE, e);
         }
     }
+
+    @Override
+    public CompletionStage<SignatureData> calculateSignatureAsync(SigningRequest request, String digestAlgoId) {
+        CompletableFuture<SignatureData> result = new CompletableFuture<>();
+
+        try {
+            String signAlgoId = CryptoUtils.getSignatureAlgorithmId(digestAlgoId, signMechanismName);
+
+            log.trace("Calculating signature asynchronously using algorithm {}", signAlgoId);
+
+            if (SystemProperties.USE_DUMMY_SIGNATURE) {
+                result.complete(new SignatureData("dymmySignatureXML", "dummyHashChainResult", "dummyHashChain"));
+
+                return result;
+            }
+
+            BatchSigner.signAsync(keyId, signAlgoId, request).whenComplete((signature, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(translateWithPrefix(X_CANNOT_CREATE_SIGNATURE, error));
+                } else {
+                    result.complete(signature);
+                }
+            });
+        } catch (Exception e) {
+            result.completeExceptionally(translateWithPrefix(X_CANNOT_CREATE_SIGNATURE, e));
+        }
+
+        return result;
+    }
 }
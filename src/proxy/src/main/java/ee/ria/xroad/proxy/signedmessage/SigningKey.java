@@ -27,6 +27,9 @@ package ee.ria.xroad.proxy.signedmessage;
 import ee.ria.xroad.common.signature.SignatureData;
 import ee.ria.xroad.common.signature.SigningRequest;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /**
  * API for implementing signing key.
  */
@@ -40,4 +43,23 @@ public interface SigningKey {
      * @return the signature data
      */
     SignatureData calculateSignature(SigningRequest request, String digestAlgoId) throws Exception;
+
+    /**
+     * Calculates signature without blocking the calling thread. The default implementation
+     * calculates the signature synchronously.
+     * @param request singing request information
+     * @param digestAlgoId digest algorithm to use for signing
+     * @return stage that is completed with the signature data or with the signing error
+     */
+    default CompletionStage<SignatureData> calculateSignatureAsync(SigningRequest request, String digestAlgoId) {
+        CompletableFuture<SignatureData> result = new CompletableFuture<>();
+
+        try {
+            result.complete(calculateSignature(request, digestAlgoId));
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
 }
@@ -77,8 +77,7 @@ public class Verifier {
      * @param soap the signed message
      */
     public void addMessagePart(String hashMethod, SoapMessageImpl soap) {
-        parts.add(new MessagePart(MessageFileNames.MESSAGE, hashMethod,
-                soap.getHash(), soap.getBytes()));
+        parts.add(MessagePart.streamed(MessageFileNames.MESSAGE, hashMethod, soap.getHash(), soap::getContent));
     }
 
     /**
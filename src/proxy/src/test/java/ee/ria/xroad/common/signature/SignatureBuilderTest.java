@@ -167,4 +167,31 @@ public class SignatureBuilderTest {
                     data.getHashChain().getBytes("UTF-8"), CREATE, WRITE, TRUNCATE_EXISTING);
         }
     }
+
+    /**
+     * Test to ensure signature is built successfully through the asynchronous API.
+     * @throws Exception in case of any unexpected error
+     */
+    @Test
+    public void buildAsyncSuccessfully() throws Exception {
+        SignatureBuilder builder = new SignatureBuilder();
+
+        Date thisUpdate = new DateTime().plusDays(1).toDate();
+
+        OCSPResp ocsp = OcspTestUtils.createOCSPResponse(subjectCert, issuerCert, signerCert, signerKey,
+                CertificateStatus.GOOD, thisUpdate, null);
+
+        builder.addExtraCertificates(Collections.singletonList(subjectCert));
+        builder.addOcspResponses(Collections.singletonList(ocsp));
+
+        builder.setSigningCert(subjectCert);
+
+        SignatureData data = builder.buildAsync(new TestSigningKey(subjectKey), CryptoUtils.SHA512_ID)
+                .toCompletableFuture().get();
+
+        assertNotNull(data);
+        assertNotNull(data.getSignatureXml());
+        assertNotNull(data.getHashChainResult());
+        assertNotNull(data.getHashChain());
+    }
 }
@@ -0,0 +1,208 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.antidos;
+
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load test that simulates a connection burst from 1000 partner security servers
+ * and an unknown host flooding the connection manager.
+ */
+@Slf4j
+public class AntiDosConnectionManagerLoadTest {
+
+    private static final int PARTNERS = 1000;
+    private static final int CONNECTIONS_PER_PARTNER = 20;
+    private static final int ATTACKER_CONNECTIONS = 20000;
+    private static final int ACCEPTOR_THREADS = 4;
+
+    private static final String ATTACKER_ADDRESS = "attacker";
+
+    private final Set<String> partnerAddresses = new HashSet<>();
+
+    private AntiDosConnectionManager<TestSocketChannel> manager;
+    private ExecutorService acceptors;
+
+    /**
+     * Sets up the partners and the connection manager.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < PARTNERS; i++) {
+            partnerAddresses.add(partnerAddress(i));
+        }
+
+        GlobalConf.reload(new EmptyGlobalConf() {
+            @Override
+            public Set<String> getKnownAddresses() {
+                return partnerAddresses;
+            }
+        });
+
+        manager = new AntiDosConnectionManager<TestSocketChannel>(new TestConfiguration(0, 1.1)) {
+            @Override
+            protected long getFreeFileDescriptorCount() {
+                return Long.MAX_VALUE;
+            }
+
+            @Override
+            protected double getCpuLoad() {
+                return 0;
+            }
+
+            @Override
+            protected double getHeapUsage() {
+                return 0;
+            }
+        };
+        manager.init();
+
+        acceptors = Executors.newFixedThreadPool(ACCEPTOR_THREADS);
+    }
+
+    /**
+     * Stops the acceptor threads.
+     */
+    @After
+    public void tearDown() {
+        manager.destroy();
+        acceptors.shutdownNow();
+    }
+
+    /**
+     * Test to ensure every partner gets its turn before any partner or the flooding host
+     * gets a second connection processed, when the connections arrive concurrently.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void burstFromThousandPartners() throws Exception {
+        long start = System.nanoTime();
+
+        List<Future<?>> accepting = new ArrayList<>();
+
+        for (int t = 0; t < ACCEPTOR_THREADS; t++) {
+            final int acceptor = t;
+
+            accepting.add(acceptors.submit(() -> {
+                for (int round = 0; round < CONNECTIONS_PER_PARTNER; round++) {
+                    for (int i = acceptor; i < PARTNERS; i += ACCEPTOR_THREADS) {
+                        manager.accept(new TestSocketChannel(partnerAddress(i)));
+                    }
+                }
+
+                for (int i = acceptor; i < ATTACKER_CONNECTIONS; i += ACCEPTOR_THREADS) {
+                    manager.accept(new TestSocketChannel(ATTACKER_ADDRESS));
+                }
+            }));
+        }
+
+        for (Future<?> future : accepting) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+
+        long accepted = System.nanoTime();
+
+        int total = PARTNERS * CONNECTIONS_PER_PARTNER + ATTACKER_CONNECTIONS;
+
+        Set<String> firstRound = new HashSet<>();
+        int attackerConnections = 0;
+
+        for (int i = 0; i < total; i++) {
+            TestSocketChannel connection = manager.takeNextConnection();
+
+            if (ATTACKER_ADDRESS.equals(connection.getHostAddress())) {
+                attackerConnections++;
+            } else if (i <= PARTNERS) {
+                firstRound.add(connection.getHostAddress());
+            }
+        }
+
+        long taken = System.nanoTime();
+
+        log.info("Accepted {} connections in {} ms, took them in {} ms", total,
+                TimeUnit.NANOSECONDS.toMillis(accepted - start), TimeUnit.NANOSECONDS.toMillis(taken - accepted));
+
+        // All partners and the flooding host get one connection processed in the first round
+        assertEquals(partnerAddresses, firstRound);
+        assertEquals(ATTACKER_CONNECTIONS, attackerConnections);
+        assertTrue(manager.activePartners.isEmpty());
+    }
+
+    /**
+     * Test to ensure no connections are lost when connections are accepted and taken concurrently.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void concurrentAcceptAndTake() throws Exception {
+        int total = PARTNERS * CONNECTIONS_PER_PARTNER;
+
+        List<Future<?>> accepting = new ArrayList<>();
+
+        for (int t = 0; t < ACCEPTOR_THREADS; t++) {
+            final int acceptor = t;
+
+            accepting.add(acceptors.submit(() -> {
+                for (int round = 0; round < CONNECTIONS_PER_PARTNER; round++) {
+                    for (int i = acceptor; i < PARTNERS; i += ACCEPTOR_THREADS) {
+                        manager.accept(new TestSocketChannel(partnerAddress(i)));
+                    }
+                }
+            }));
+        }
+
+        for (int i = 0; i < total; i++) {
+            manager.takeNextConnection();
+        }
+
+        for (Future<?> future : accepting) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+
+        assertTrue(manager.activePartners.isEmpty());
+    }
+
+    private static String partnerAddress(int index) {
+        return "10.0." + (index >> Byte.SIZE) + "." + (index & 0xFF);
+    }
+}
@@ -156,6 +156,49 @@ public class AntiDosConnectionManagerTest {
         cm.assertEmpty();
     }
 
+    /**
+     * Test to ensure the known members are synchronized when the global configuration changes.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void syncKnownMembersOnConfigurationChange() throws Exception {
+        TestConfiguration conf = new TestConfiguration(5, 1.1);
+
+        TestSystemMetrics sm = new TestSystemMetrics();
+        sm.addLoad(7, 0.1);
+
+        TestSocketChannel member1 = createConnection("test1");
+        TestSocketChannel member4 = createConnection("test4");
+        TestSocketChannel attacker1 = createConnection("attacker1");
+
+        TestConnectionManager cm = createConnectionManager(conf, sm);
+
+        try {
+            // test4 is not known yet and shares the queue of unknown members
+            cm.accept(attacker1, attacker1, member4, member1);
+            cm.assertConnections(attacker1, member1, attacker1, member4);
+            cm.assertEmpty();
+
+            Set<String> changedAddresses = new HashSet<>(KNOWN_ADDRESSES);
+            changedAddresses.add("test4");
+
+            GlobalConf.reload(new EmptyGlobalConf() {
+                @Override
+                public Set<String> getKnownAddresses() {
+                    return changedAddresses;
+                }
+            });
+
+            // test4 is now a known member with its own queue
+            cm.accept(attacker1, attacker1, member4, member1);
+            cm.assertConnections(attacker1, member4, member1, attacker1);
+            cm.assertEmpty();
+        } finally {
+            cm.destroy();
+            reloadGlobalConf();
+        }
+    }
+
     // ------------------------------------------------------------------------
 
     private static TestConnectionManager createConnectionManager(
@@ -28,6 +28,7 @@ import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.conf.InternalSSLKey;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.globalconf.SharedParametersChanges;
 import ee.ria.xroad.common.conf.serverconf.model.ClientType;
 import ee.ria.xroad.common.conf.serverconf.model.DescriptionType;
 import ee.ria.xroad.common.conf.serverconf.model.EndpointType;
@@ -43,11 +44,13 @@ import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
 
+import java.lang.ref.WeakReference;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static ee.ria.xroad.common.ErrorCodes.X_UNKNOWN_SERVICE;
 
@@ -106,6 +109,7 @@ public class CachingServerConfImpl extends ServerConfImpl {
                 .recordStats()
                 .build();
 
+        GlobalConf.addSharedParametersChangeListener(new ChangeListener(this));
     }
 
     @Override
@@ -136,6 +140,34 @@ public class CachingServerConfImpl extends ServerConfImpl {
         }
     }
 
+    // The cached server identifier is rechecked if the security server has changed in the shared parameters
+    private synchronized void invalidateChangedEntries(SharedParametersChanges changes) {
+        if (serverId != null && changes.isServerChanged(serverId)) {
+            serverId = null;
+        }
+    }
+
+    // Holds the configuration weakly, so that a configuration replaced by ServerConf.reload() is not kept reachable
+    // by the global configuration. The listener removes itself once the configuration has been collected.
+    private static final class ChangeListener implements Consumer<SharedParametersChanges> {
+        private final WeakReference<CachingServerConfImpl> conf;
+
+        ChangeListener(CachingServerConfImpl conf) {
+            this.conf = new WeakReference<>(conf);
+        }
+
+        @Override
+        public void accept(SharedParametersChanges changes) {
+            CachingServerConfImpl current = conf.get();
+
+            if (current != null) {
+                current.invalidateChangedEntries(changes);
+            } else {
+                GlobalConf.removeSharedParametersChangeListener(this);
+            }
+        }
+    }
+
     @SuppressWarnings("checkstyle:innerassignment")
     private synchronized SecurityServerId getAndCacheServerId(final SecurityServerId current) {
         SecurityServerId id = serverId;
@@ -43,6 +43,7 @@ import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.lang.ref.WeakReference;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -140,6 +141,23 @@ public class CachingServerConfTest {
         assertEquals(expectedIdentifier, ServerConf.getIdentifier());
     }
 
+    /**
+     * Tests that a configuration that is no longer used (e.g. replaced by a reload) is not kept reachable by the
+     * global configuration.
+     */
+    @Test
+    public void releaseReplacedConfiguration() throws Exception {
+        final int maxCollections = 50;
+        WeakReference<CachingServerConfImpl> replaced = new WeakReference<>(new CachingServerConfImpl());
+
+        for (int i = 0; i < maxCollections && replaced.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(replaced.get());
+    }
+
     /**
      * Tests getting service address.
      */
@@ -0,0 +1,137 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.tokenmanager;
+
+import ee.ria.xroad.signer.protocol.dto.KeyInfo;
+import ee.ria.xroad.signer.protocol.dto.TokenInfoAndKeyId;
+import ee.ria.xroad.signer.tokenmanager.token.SoftwareTokenType;
+import ee.ria.xroad.signer.util.TokenAndKey;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
+import static ee.ria.xroad.common.util.CryptoUtils.readCertificate;
+
+/**
+ * Measures the throughput of the {@link TokenManager} lookups done for signing requests and OCSP queries
+ * when several threads look up keys of a software token holding the given number of keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(TokenManagerBenchmark.THREADS)
+@Fork(1)
+public class TokenManagerBenchmark {
+
+    static final int THREADS = 4;
+
+    private static final int KEY_SIZE = 2048;
+    private static final long VALIDITY_MILLIS = TimeUnit.DAYS.toMillis(365);
+
+    @Param({"1000"})
+    private int keyCount;
+
+    private String[] keyIds;
+    private String[] certHashes;
+
+    /**
+     * Creates a software token with the requested number of keys, each holding one certificate.
+     * @throws Exception if the certificates cannot be created
+     */
+    @Setup
+    public void setup() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(KEY_SIZE);
+        KeyPair keyPair = generator.generateKeyPair();
+        ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate());
+
+        TokenManager.createToken(new SoftwareTokenType());
+
+        keyIds = new String[keyCount];
+        certHashes = new String[keyCount];
+
+        for (int i = 0; i < keyCount; i++) {
+            keyIds[i] = "key" + i;
+
+            X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(new X500Name("CN=ca"),
+                    BigInteger.valueOf(i + 1), new Date(), new Date(System.currentTimeMillis() + VALIDITY_MILLIS),
+                    new X500Name("CN=" + keyIds[i]), keyPair.getPublic());
+            byte[] certBytes = builder.build(signer).getEncoded();
+
+            TokenManager.addKey(SoftwareTokenType.ID, keyIds[i], null);
+            TokenManager.addCert(keyIds[i], certBytes);
+
+            certHashes[i] = calculateCertHexHash(readCertificate(certBytes));
+        }
+    }
+
+    /**
+     * Lookup done for every signing request.
+     * @return the token and key
+     */
+    @Benchmark
+    public TokenAndKey findTokenAndKey() {
+        return TokenManager.findTokenAndKey(keyIds[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+
+    /**
+     * Lookup of the key holding a certificate.
+     * @return the token info and key id
+     */
+    @Benchmark
+    public TokenInfoAndKeyId findTokenAndKeyIdForCertHash() {
+        return TokenManager.findTokenAndKeyIdForCertHash(certHashes[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+
+    /**
+     * Lookup done when serving OCSP responses for a certificate.
+     * @return the key info
+     */
+    @Benchmark
+    public KeyInfo getKeyInfoForCertHash() {
+        return TokenManager.getKeyInfoForCertHash(certHashes[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+}
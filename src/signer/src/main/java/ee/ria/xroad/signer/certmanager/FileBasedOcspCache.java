@@ -41,6 +41,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Date;
+import java.util.Map;
 
 import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.SystemProperties.getOcspCachePath;
@@ -95,6 +96,34 @@ public class FileBasedOcspCache extends OcspCache {
         return response;
     }
 
+    /**
+     * Stores a batch of OCSP responses. All responses are stored in memory before any of them is
+     * written to disk, and a failure to write one response does not prevent writing the others.
+     * @param responses the OCSP responses mapped by certificate hash
+     */
+    public void putAll(Map<String, OCSPResp> responses) {
+        responses.forEach(super::put);
+
+        IOException failure = null;
+
+        for (Map.Entry<String, OCSPResp> e : responses.entrySet()) {
+            try {
+                saveResponseToFile(getOcspResponseFile(getOcspCachePath(), e.getKey()), e.getValue());
+            } catch (IOException ex) {
+                log.error("Failed to save OCSP response for cert hash {}", e.getKey(), ex);
+
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+
+        if (failure != null) {
+            // Failed to save OCSP response to file
+            throw translateException(failure);
+        }
+    }
+
     void reloadFromDisk() throws Exception {
         Path path = Paths.get(getOcspCachePath());
 
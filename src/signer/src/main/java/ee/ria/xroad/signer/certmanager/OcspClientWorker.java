@@ -99,11 +99,14 @@ public class OcspClientWorker extends AbstractSignerActor {
 
     private CertificationServiceDiagnostics certServDiagnostics;
 
+    private OcspFetchEngine fetchEngine;
+
     @Override
     public void preStart() throws Exception {
         super.preStart();
         changeChecker = new GlobalConfChangeChecker();
         certServDiagnostics = new CertificationServiceDiagnostics();
+        fetchEngine = new OcspFetchEngine();
     }
 
     @Override
@@ -210,24 +213,33 @@ public class OcspClientWorker extends AbstractSignerActor {
 
         log.info("Fetching OCSP responses for {} certificates", certs.size());
 
-        Boolean failed = false;
+        boolean failed = false;
         Map<String, OCSPResp> statuses = new HashMap<>();
 
-        for (X509Certificate subject : certs) {
-            try {
-                OCSPResp status = queryCertStatus(subject, new OcspVerifierOptions(
-                        GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate()));
-                if (status != null) {
-                    String subjectHash = calculateCertHexHash(subject);
-                    statuses.put(subjectHash, status);
+        try {
+            OcspVerifierOptions verifierOptions = new OcspVerifierOptions(
+                    GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate());
+
+            List<OCSPResp> responses = fetchEngine.fetch(certs, countResponders(certs),
+                    subject -> queryCertStatus(subject, verifierOptions));
+
+            for (int i = 0; i < certs.size(); i++) {
+                if (responses.get(i) != null) {
+                    statuses.put(calculateCertHexHash(certs.get(i)), responses.get(i));
                 } else {
                     failed = true;
                 }
-            } catch (Exception e) {
-                failed = true;
-
-                log.error("Error when querying certificate '{}'", subject.getSerialNumber(), e);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            failed = true;
+
+            log.error("OCSP-response refresh cycle was interrupted");
+        } catch (Exception e) {
+            failed = true;
+
+            log.error("Error when querying certificate statuses", e);
         }
 
         if (failed) {
@@ -305,7 +317,8 @@ public class OcspClientWorker extends AbstractSignerActor {
             try {
                 log.debug("Fetching response from: {}", responderURI);
 
-                response = OcspClient.fetchResponse(responderURI, subject, issuer, signerKey, signer, signAlgoId);
+                response = fetchEngine.send(responderURI,
+                        () -> OcspClient.fetchResponse(responderURI, subject, issuer, signerKey, signer, signAlgoId));
 
                 if (response != null) {
                     reportOcspDiagnostics(issuer, responderURI, DiagnosticsErrorCodes.RETURN_SUCCESS, LocalTime.now(),
@@ -350,7 +363,7 @@ public class OcspClientWorker extends AbstractSignerActor {
         }
     }
 
-    private void reportOcspDiagnostics(X509Certificate issuer, String responderURI, int statusCode,
+    private synchronized void reportOcspDiagnostics(X509Certificate issuer, String responderURI, int statusCode,
             LocalTime prevUpdate, LocalTime nextUpdate) {
 
         OcspResponderStatus responderStatus = new OcspResponderStatus(statusCode, responderURI, prevUpdate, nextUpdate);
@@ -445,6 +458,20 @@ public class OcspClientWorker extends AbstractSignerActor {
         return isCachedOcspResponse;
     }
 
+    private static int countResponders(List<X509Certificate> certs) {
+        Set<String> responderURIs = new HashSet<>();
+
+        for (X509Certificate cert : certs) {
+            try {
+                responderURIs.addAll(GlobalConf.getOcspResponderAddresses(cert));
+            } catch (Exception e) {
+                log.debug("Unable to get OCSP responder addresses for {}", cert.getSubjectX500Principal(), e);
+            }
+        }
+
+        return responderURIs.size();
+    }
+
     private List<X509Certificate> getCertChain(X509Certificate cert) {
         try {
             CertChain chain = GlobalConf.getCertChain(GlobalConf.getInstanceIdentifier(), cert);
@@ -0,0 +1,165 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.certmanager;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Executes the certificate status queries of an OCSP-response refresh cycle concurrently.
+ *
+ * Requests sent to a single OCSP responder are limited both by the number of simultaneous requests and
+ * by the request rate, so that a large number of certificates does not overload any responder.
+ */
+@Slf4j
+class OcspFetchEngine {
+
+    /**
+     * Queries the status of a single certificate.
+     */
+    @FunctionalInterface
+    interface CertStatusQuery {
+        OCSPResp query(X509Certificate subject) throws Exception;
+    }
+
+    /**
+     * Sends a single request to an OCSP responder.
+     */
+    @FunctionalInterface
+    interface ResponderRequest {
+        OCSPResp send() throws Exception;
+    }
+
+    private final int parallelism;
+    private final double rateLimit;
+
+    private final Map<String, ResponderLimits> responderLimits = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an engine that uses the parallelism and rate limit configured in the system properties.
+     */
+    OcspFetchEngine() {
+        this(SystemProperties.getOcspFetchParallelism(), SystemProperties.getOcspFetchRateLimit());
+    }
+
+    /**
+     * @param parallelism maximum number of concurrent requests per OCSP responder
+     * @param rateLimit maximum number of requests per second per OCSP responder, 0 for no limit
+     */
+    OcspFetchEngine(int parallelism, double rateLimit) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("OCSP fetch parallelism must be positive: " + parallelism);
+        }
+
+        this.parallelism = parallelism;
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * Queries the statuses of the given certificates concurrently and waits until all queries have completed.
+     * @param certs the certificates
+     * @param responderCount number of distinct OCSP responders the certificates are checked against
+     * @param query the status query executed for each certificate
+     * @return the responses in the order of the certificates, null for the certificates whose
+     * status could not be queried
+     * @throws InterruptedException if interrupted while waiting for the queries
+     */
+    List<OCSPResp> fetch(List<X509Certificate> certs, int responderCount, CertStatusQuery query)
+            throws InterruptedException {
+        int threads = Math.max(1, Math.min(certs.size(), parallelism * Math.max(1, responderCount)));
+
+        log.debug("Querying {} certificate statuses using {} threads", certs.size(), threads);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("ocsp-fetch-%d").setDaemon(true).build());
+
+        try {
+            List<Future<OCSPResp>> futures = new ArrayList<>(certs.size());
+
+            for (X509Certificate subject : certs) {
+                futures.add(executor.submit(() -> query.query(subject)));
+            }
+
+            List<OCSPResp> responses = new ArrayList<>(certs.size());
+
+            for (int i = 0; i < certs.size(); i++) {
+                try {
+                    responses.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    log.error("Error when querying certificate '{}'", certs.get(i).getSerialNumber(), e.getCause());
+
+                    responses.add(null);
+                }
+            }
+
+            return responses;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends a request to the given OCSP responder once the responder limits allow it.
+     * @param responderURI the OCSP responder URI
+     * @param request the request
+     * @return the response
+     * @throws Exception if the request fails
+     */
+    OCSPResp send(String responderURI, ResponderRequest request) throws Exception {
+        ResponderLimits limits = responderLimits.computeIfAbsent(responderURI, uri -> new ResponderLimits());
+
+        limits.permits.acquire();
+
+        try {
+            if (limits.rate != null) {
+                limits.rate.acquire();
+            }
+
+            return request.send();
+        } finally {
+            limits.permits.release();
+        }
+    }
+
+    private final class ResponderLimits {
+        private final Semaphore permits = new Semaphore(parallelism);
+        private final RateLimiter rate = rateLimit > 0 ? RateLimiter.create(rateLimit) : null;
+    }
+}
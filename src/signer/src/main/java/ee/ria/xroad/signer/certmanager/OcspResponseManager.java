@@ -41,6 +41,8 @@ import org.bouncycastle.cert.ocsp.OCSPResp;
 import java.io.Serializable;
 import java.security.cert.X509Certificate;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
@@ -169,10 +171,14 @@ public class OcspResponseManager extends AbstractSignerActor {
     void handleSetOcspResponses(SetOcspResponses message) throws Exception {
         log.trace("handleSetOcspResponses()");
 
+        Map<String, OCSPResp> responses = new HashMap<>();
+
         for (int i = 0; i < message.getCertHashes().length; i++) {
-            setResponse(message.getCertHashes()[i], new OCSPResp(
+            responses.put(message.getCertHashes()[i], new OCSPResp(
                     decodeBase64(message.getBase64EncodedResponses()[i])));
         }
+
+        setResponses(responses);
     }
 
     void handleIsCachedOcspResponse(IsCachedOcspResponse message)
@@ -195,6 +201,15 @@ public class OcspResponseManager extends AbstractSignerActor {
         }
     }
 
+    void setResponses(Map<String, OCSPResp> responses) throws Exception {
+        log.debug("Setting {} new responses to cache", responses.size());
+        try {
+            responseCache.putAll(responses);
+        } finally {
+            TokenManager.setOcspResponses(responses);
+        }
+    }
+
     @RequiredArgsConstructor
     private static class GetOcspResponseHandler extends AbstractSignerActor {
 
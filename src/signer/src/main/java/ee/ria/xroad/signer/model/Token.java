@@ -112,10 +112,19 @@ public final class Token {
      * @return the value object
      */
     public TokenInfo toDTO() {
+        return toDTO(getKeysAsDTOs());
+    }
+
+    /**
+     * Converts this object to value object using already converted keys.
+     * @param keyInfo the value objects of the keys of this token
+     * @return the value object
+     */
+    public TokenInfo toDTO(List<KeyInfo> keyInfo) {
         return new TokenInfo(type, friendlyName, id, readOnly, available,
                 active, serialNumber, label, slotIndex, status,
-                Collections.unmodifiableList(getKeysAsDTOs()),
-                Collections.unmodifiableMap(tokenInfo));
+                Collections.unmodifiableList(keyInfo),
+                Collections.unmodifiableMap(new LinkedHashMap<>(tokenInfo)));
     }
 
     /**
@@ -37,6 +37,10 @@ import ee.ria.xroad.signer.protocol.dto.KeyUsageInfo;
 import ee.ria.xroad.signer.protocol.dto.TokenInfo;
 import ee.ria.xroad.signer.protocol.dto.TokenInfoAndKeyId;
 import ee.ria.xroad.signer.protocol.dto.TokenStatusInfo;
+import ee.ria.xroad.signer.tokenmanager.TokenSnapshot.CertEntry;
+import ee.ria.xroad.signer.tokenmanager.TokenSnapshot.CertRequestEntry;
+import ee.ria.xroad.signer.tokenmanager.TokenSnapshot.KeyEntry;
+import ee.ria.xroad.signer.tokenmanager.TokenSnapshot.TokenEntry;
 import ee.ria.xroad.signer.tokenmanager.merge.MergeOntoFileTokensStrategy;
 import ee.ria.xroad.signer.tokenmanager.merge.TokenMergeAddedCertificatesListener;
 import ee.ria.xroad.signer.tokenmanager.merge.TokenMergeStrategy;
@@ -55,6 +59,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -64,15 +69,22 @@ import static ee.ria.xroad.signer.util.ExceptionHelper.certWithIdNotFound;
 import static ee.ria.xroad.signer.util.ExceptionHelper.csrWithIdNotFound;
 import static ee.ria.xroad.signer.util.ExceptionHelper.keyNotFound;
 import static ee.ria.xroad.signer.util.ExceptionHelper.tokenNotFound;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static java.util.Collections.unmodifiableList;
 
 /**
  * Manages the current state of tokens, their keys and certificates.
+ *
+ * Changes are applied to the token model while holding the class lock, after which a new immutable
+ * {@link TokenSnapshot} is published. Lookups are served from the current snapshot without locking.
  */
 @Slf4j
 public final class TokenManager {
 
-    private static volatile List<Token> currentTokens = new ArrayList<>();
+    private static List<Token> currentTokens = new ArrayList<>();
+
+    private static volatile TokenSnapshot snapshot = TokenSnapshot.EMPTY;
 
     private static boolean initialized;
 
@@ -87,7 +99,7 @@ public final class TokenManager {
      *
      * @throws Exception if an error occurs
      */
-    public static void init() throws Exception {
+    public static synchronized void init() throws Exception {
         try {
             TokenConf.getInstance().load();
         } catch (Exception e) {
@@ -95,6 +107,7 @@ public final class TokenManager {
         }
 
         currentTokens = new ArrayList<>(TokenConf.getInstance().getTokens());
+        snapshot = TokenSnapshot.of(currentTokens);
 
         initialized = true;
     }
@@ -135,6 +148,7 @@ public final class TokenManager {
             synchronized (TokenManager.class) {
                 result = mergeStrategy.merge(fileTokens, currentTokens);
                 currentTokens = result.getResultTokens();
+                snapshot = TokenSnapshot.of(currentTokens);
             }
             if (listener != null) {
                 listener.mergeDone(result.getAddedCertificates());
@@ -153,11 +167,8 @@ public final class TokenManager {
     /**
      * @return list of tokens
      */
-    public static synchronized List<TokenInfo> listTokens() {
-        return unmodifiableList(
-                currentTokens.stream()
-                        .map(t -> t.toDTO())
-                        .collect(Collectors.toList()));
+    public static List<TokenInfo> listTokens() {
+        return snapshot.getTokens();
     }
 
     /**
@@ -186,6 +197,7 @@ public final class TokenManager {
         token.setAvailable(true);
 
         currentTokens.add(token);
+        publish();
 
         return token.toDTO();
     }
@@ -208,13 +220,12 @@ public final class TokenManager {
      * @param tokenId the token id
      * @return the token info DTO for the token id or null of not found
      */
-    public static synchronized TokenInfo getTokenInfo(String tokenId) {
+    public static TokenInfo getTokenInfo(String tokenId) {
         log.trace("getTokenInfo({})", tokenId);
 
-        return currentTokens.stream()
-                .filter(t -> t.getId().equals(tokenId))
-                .map(t -> t.toDTO())
-                .findFirst().orElse(null);
+        TokenEntry token = snapshot.getToken(tokenId);
+
+        return token != null ? token.getInfo() : null;
     }
 
     /**
@@ -222,82 +233,86 @@ public final class TokenManager {
      * @return the token info DTO for the token
      * @throws Exception if key was not found
      */
-    public static synchronized TokenInfo findTokenInfoForKeyId(String keyId) {
+    public static TokenInfo findTokenInfoForKeyId(String keyId) {
         log.trace("getTokenInfoForKeyId({})", keyId);
-        String tokenId = findTokenIdForKeyId(keyId);
-        return getTokenInfo(tokenId);
+
+        return findKeyEntry(keyId).getToken().getInfo();
     }
 
     /**
      * @param keyId the key id
      * @return the token and key or throws exception if not found
      */
-    public static synchronized TokenAndKey findTokenAndKey(String keyId) {
+    public static TokenAndKey findTokenAndKey(String keyId) {
         log.trace("findTokenAndKey({})", keyId);
 
-        return forKey((t, k) -> k.getId().equals(keyId),
-                (t, k) -> new TokenAndKey(t.getId(), k.toDTO()))
-                .orElseThrow(() -> keyNotFound(keyId));
+        KeyEntry key = findKeyEntry(keyId);
+
+        return new TokenAndKey(key.getToken().getInfo().getId(), key.getInfo());
     }
 
     /**
      * @param certHash the certificate hash
      * @return the tokenInfo and key id, or throws exception if not found
      */
-    public static synchronized TokenInfoAndKeyId findTokenAndKeyIdForCertHash(String certHash) {
+    public static TokenInfoAndKeyId findTokenAndKeyIdForCertHash(String certHash) {
         log.trace("findTokenAndKeyIdForCertHash({})", certHash);
 
-        String keyId = forCert((k, c) -> certHash.equals(c.getHash()),
-                (k, c) -> k.getId())
-                .orElseThrow(() -> certWithHashNotFound(certHash));
+        TokenSnapshot current = snapshot;
+        CertEntry cert = current.getCertByHash(certHash);
 
-        return forKey((t, k) -> k.getId().equals(keyId),
-                (t, k) -> new TokenInfoAndKeyId(t.toDTO(), keyId))
-                .orElseThrow(() -> keyNotFound(keyId));
+        if (cert == null) {
+            throw certWithHashNotFound(certHash);
+        }
+
+        return toTokenInfoAndKeyId(current, cert.getKey().getInfo().getId());
     }
 
     /**
      * @param certRequestId the certificate request id
      * @return the tokenInfo and key id, or throws exception if not found
      */
-    public static synchronized TokenInfoAndKeyId findTokenAndKeyIdForCertRequestId(String certRequestId) {
+    public static TokenInfoAndKeyId findTokenAndKeyIdForCertRequestId(String certRequestId) {
         log.trace("findTokenAndKeyIdForCertRequestId({})", certRequestId);
 
-        String keyId = forCertRequest((k, c) -> certRequestId.equals(c.getId()),
-                (k, c) -> k.getId())
-                .orElseThrow(() -> csrWithIdNotFound(certRequestId));
+        TokenSnapshot current = snapshot;
+        CertRequestEntry certRequest = current.getCertRequest(certRequestId);
 
-        return forKey((t, k) -> k.getId().equals(keyId),
-                (t, k) -> new TokenInfoAndKeyId(t.toDTO(), keyId))
-                .orElseThrow(() -> keyNotFound(keyId));
+        if (certRequest == null) {
+            throw csrWithIdNotFound(certRequestId);
+        }
+
+        return toTokenInfoAndKeyId(current, certRequest.getKey().getInfo().getId());
     }
 
     /**
      * @param keyId the key id
      * @return the token id for the key id or throws exception if not found
      */
-    public static synchronized String findTokenIdForKeyId(String keyId) {
+    public static String findTokenIdForKeyId(String keyId) {
         log.trace("findTokenIdForKeyId({})", keyId);
 
-        return forKey((t, k) -> k.getId().equals(keyId),
-                (t, k) -> t.getId()).orElseThrow(() -> keyNotFound(keyId));
+        return findKeyEntry(keyId).getToken().getInfo().getId();
     }
 
     /**
      * @return the software token id
      */
-    public static synchronized String getSoftwareTokenId() {
-        return forToken(t -> t.getType().equals(SoftwareModuleType.TYPE),
-                t -> t.getId()).orElse(null);
+    public static String getSoftwareTokenId() {
+        return snapshot.getTokens().stream()
+                .filter(t -> t.getType().equals(SoftwareModuleType.TYPE))
+                .map(t -> t.getId())
+                .findFirst().orElse(null);
     }
 
     /**
      * @param tokenId the token id
      * @return the module id for the token id or null if not found
      */
-    public static synchronized String getModuleId(String tokenId) {
-        return forToken(t -> t.getId().equals(tokenId),
-                t -> t.getModuleId()).orElse(null);
+    public static String getModuleId(String tokenId) {
+        TokenEntry token = snapshot.getToken(tokenId);
+
+        return token != null ? token.getModuleId() : null;
     }
 
     /**
@@ -317,44 +332,45 @@ public final class TokenManager {
      * @param keyId the key id
      * @return the key info for the key id or null if not found
      */
-    public static synchronized KeyInfo getKeyInfo(String keyId) {
+    public static KeyInfo getKeyInfo(String keyId) {
         log.trace("getKeyInfo({})", keyId);
 
-        return forKey((t, k) -> k.getId().equals(keyId),
-                (t, k) -> k.toDTO()).orElse(null);
+        KeyEntry key = snapshot.getKey(keyId);
+
+        return key != null ? key.getInfo() : null;
     }
 
     /**
      * @param clientId the client id
      * @return the list of keys for the given client id
      */
-    public static synchronized List<KeyInfo> getKeyInfo(ClientId clientId) {
+    public static List<KeyInfo> getKeyInfo(ClientId clientId) {
         log.trace("getKeyInfo({})", clientId);
 
         List<KeyInfo> keyInfo = new ArrayList<>();
 
-        for (Token token : currentTokens) {
-            if (token.isInActive()) {
+        for (TokenInfo token : snapshot.getTokens()) {
+            if (!token.isActive() || !token.isAvailable()) {
                 // Ignore inactive (not usable) tokens
                 continue;
             }
 
-            for (Key key : token.getKeys()) {
-                if (!key.isValidForSigning()) {
+            for (KeyInfo key : token.getKeyInfo()) {
+                if (!key.isAvailable() || key.getUsage() != KeyUsageInfo.SIGNING) {
                     // Ignore authentication keys
                     continue;
                 }
 
-                for (Cert cert : key.getCerts()) {
-                    if (cert.isInvalid()) {
+                for (CertificateInfo cert : key.getCerts()) {
+                    if (!cert.isActive() || cert.getMemberId() == null) {
                         // Ignore inactive and invalid certificates
                         continue;
                     }
 
-                    if (certBelongsToMember(cert.toDTO(), clientId)) {
+                    if (certBelongsToMember(cert, clientId)) {
                         log.debug("Found key '{}' for client '{}'",
                                 key.getId(), cert.getMemberId());
-                        keyInfo.add(key.toDTO());
+                        keyInfo.add(key);
                     }
                 }
             }
@@ -381,48 +397,50 @@ public final class TokenManager {
      * @param certId the certificate id
      * @return the certificate info for the certificate id or null if not found
      */
-    public static synchronized CertificateInfo getCertificateInfo(
+    public static CertificateInfo getCertificateInfo(
             String certId) {
         log.trace("getCertificateInfo({})", certId);
 
-        return forCert((k, c) -> c.getId().equals(certId), (k, c) -> c.toDTO())
-                .orElse(null);
+        CertEntry cert = snapshot.getCert(certId);
+
+        return cert != null ? cert.getInfo() : null;
     }
 
     /**
      * @param certHash the certificate hash
      * @return the certificate info for the certificate hash or null
      */
-    public static synchronized CertificateInfo getCertificateInfoForCertHash(
+    public static CertificateInfo getCertificateInfoForCertHash(
             String certHash) {
         log.trace("getCertificateInfoForCertHash({})", certHash);
 
-        return forCert((k, c) -> certHash.equals(c.getHash()),
-                (k, c) -> c.toDTO()).orElse(null);
+        CertEntry cert = snapshot.getCertByHash(certHash);
+
+        return cert != null ? cert.getInfo() : null;
     }
 
     /**
      * @param certHash the certificate hash
      * @return the certificate for the certificate hash or null
      */
-    public static synchronized X509Certificate getCertificateForCertHash(
+    public static X509Certificate getCertificateForCertHash(
             String certHash) {
         log.trace("getCertificateForCertHash({})", certHash);
 
-        return forCert((k, c) -> certHash.equals(c.getHash()),
-                (k, c) -> c.getCertificate()).orElse(null);
+        CertEntry cert = snapshot.getCertByHash(certHash);
+
+        return cert != null ? cert.getCertificate() : null;
     }
 
     /**
      * @return all certificates
      */
-    public static synchronized List<CertificateInfo> getAllCerts() {
+    public static List<CertificateInfo> getAllCerts() {
         log.trace("getAllCerts()");
 
-        return currentTokens.stream()
-                .flatMap(t -> t.getKeys().stream())
+        return snapshot.getTokens().stream()
+                .flatMap(t -> t.getKeyInfo().stream())
                 .flatMap(k -> k.getCerts().stream())
-                .map(c -> c.toDTO())
                 .collect(Collectors.toList());
     }
 
@@ -439,8 +457,34 @@ public final class TokenManager {
         forCert((k, c) -> certHash.equals(c.getHash()),
                 (k, c) -> {
                     c.setOcspResponse(response);
-                    return null;
-                });
+                    return k;
+                }).ifPresent(TokenManager::publish);
+    }
+
+    /**
+     * Sets the OCSP responses for the certificates in one pass over the tokens.
+     *
+     * @param responses the OCSP responses mapped by certificate hash
+     */
+    public static synchronized void setOcspResponses(Map<String, OCSPResp> responses) {
+        log.trace("setOcspResponses({})", responses.size());
+
+        List<Key> changedKeys = new ArrayList<>();
+
+        for (Token token : currentTokens) {
+            for (Key key : token.getKeys()) {
+                for (Cert cert : key.getCerts()) {
+                    OCSPResp response = responses.get(cert.getHash());
+
+                    if (response != null) {
+                        cert.setOcspResponse(response);
+                        changedKeys.add(key);
+                    }
+                }
+            }
+        }
+
+        publish(changedKeys);
     }
 
     /**
@@ -448,49 +492,51 @@ public final class TokenManager {
      * @param memberId the member id
      * @return the certificate request info or null if not found
      */
-    public static synchronized CertRequestInfo getCertRequestInfo(String keyId,
-                                                                  ClientId memberId) {
+    public static CertRequestInfo getCertRequestInfo(String keyId,
+                                                     ClientId memberId) {
         log.trace("getCertRequestInfo({}, {})", keyId, memberId);
 
-        Key key = findKey(keyId);
+        KeyInfo key = findKeyEntry(keyId).getInfo();
         return key.getCertRequests().stream()
                 .filter(c -> key.getUsage() == KeyUsageInfo.AUTHENTICATION
                         || memberId.equals(c.getMemberId()))
-                .map(c -> c.toDTO()).findFirst().orElse(null);
+                .findFirst().orElse(null);
     }
 
     /**
      * @param certReqId cert request id
      * @return the certificate request info or null if not found
      */
-    public static synchronized CertRequestInfo getCertRequestInfo(String certReqId) {
+    public static CertRequestInfo getCertRequestInfo(String certReqId) {
         log.trace("getCertRequestInfo({})", certReqId);
 
-        return forCertRequest((k, c) -> certReqId.equals(c.getId()),
-                (k, c) -> c.toDTO())
-                .orElse(null);
+        CertRequestEntry certRequest = snapshot.getCertRequest(certReqId);
+
+        return certRequest != null ? certRequest.getInfo() : null;
     }
 
     /**
      * @param certHash the certificate hash
      * @return key info for the certificate hash
      */
-    public static synchronized KeyInfo getKeyInfoForCertHash(String certHash) {
+    public static KeyInfo getKeyInfoForCertHash(String certHash) {
         log.trace("getKeyInfoForCertHash({})", certHash);
 
-        return forCert((k, c) -> certHash.equals(c.getHash()),
-                (k, c) -> k.toDTO()).orElse(null);
+        CertEntry cert = snapshot.getCertByHash(certHash);
+
+        return cert != null ? cert.getKey().getInfo() : null;
     }
 
     /**
      * @param certId the certificate id
      * @return key info for certificate id
      */
-    public static synchronized KeyInfo getKeyInfoForCertId(String certId) {
+    public static KeyInfo getKeyInfoForCertId(String certId) {
         log.trace("getKeyInfoForCertId({})", certId);
 
-        return forCert((k, c) -> c.getId().equals(certId),
-                (k, c) -> k.toDTO()).orElse(null);
+        CertEntry cert = snapshot.getCert(certId);
+
+        return cert != null ? cert.getKey().getInfo() : null;
     }
 
     /**
@@ -508,20 +554,20 @@ public final class TokenManager {
      * @param tokenId the token id
      * @return true if token is available
      */
-    public static synchronized boolean isTokenAvailable(String tokenId) {
+    public static boolean isTokenAvailable(String tokenId) {
         log.trace("isTokenAvailable({})", tokenId);
 
-        return findToken(tokenId).isAvailable();
+        return findTokenInfo(tokenId).isAvailable();
     }
 
     /**
      * @param tokenId the token id
      * @return true if token is active (logged in)
      */
-    public static synchronized boolean isTokenActive(String tokenId) {
+    public static boolean isTokenActive(String tokenId) {
         log.trace("isTokenActive({})", tokenId);
 
-        return findToken(tokenId).isActive();
+        return findTokenInfo(tokenId).isActive();
     }
 
     /**
@@ -539,6 +585,8 @@ public final class TokenManager {
         Token token = findToken(tokenId);
         token.setAvailable(available);
         token.setModuleId(tokenType.getModuleType());
+
+        publish();
     }
 
     /**
@@ -551,6 +599,8 @@ public final class TokenManager {
         log.trace("setTokenAvailable({}, {})", tokenId, available);
 
         findToken(tokenId).setAvailable(available);
+
+        publish();
     }
 
     /**
@@ -564,6 +614,8 @@ public final class TokenManager {
         log.trace("setTokenActive({}, {})", tokenId, active);
 
         findToken(tokenId).setActive(active);
+
+        publish();
     }
 
     /**
@@ -577,16 +629,18 @@ public final class TokenManager {
         log.trace("setTokenFriendlyName({}, {})", tokenId, friendlyName);
 
         findToken(tokenId).setFriendlyName(friendlyName);
+
+        publish();
     }
 
     /**
      * @param tokenId the token if
      * @return the token status info
      */
-    public static synchronized TokenStatusInfo getTokenStatus(String tokenId) {
+    public static TokenStatusInfo getTokenStatus(String tokenId) {
         log.trace("getTokenStatus({})", tokenId);
 
-        return findToken(tokenId).getStatus();
+        return findTokenInfo(tokenId).getStatus();
     }
 
     /**
@@ -600,6 +654,8 @@ public final class TokenManager {
         log.trace("setTokenStatus({}, {})", tokenId, status);
 
         findToken(tokenId).setStatus(status);
+
+        publish();
     }
 
     /**
@@ -612,17 +668,20 @@ public final class TokenManager {
                                                     boolean available) {
         log.trace("setKeyAvailable({}, {})", keyId, available);
 
-        findKey(keyId).setAvailable(available);
+        Key key = findKey(keyId);
+        key.setAvailable(available);
+
+        publish(key);
     }
 
     /**
      * @param keyId the key id
      * @return true if key is available
      */
-    public static synchronized boolean isKeyAvailable(String keyId) {
+    public static boolean isKeyAvailable(String keyId) {
         log.trace("isKeyAvailable()");
 
-        return findKey(keyId).isAvailable();
+        return findKeyEntry(keyId).getInfo().isAvailable();
     }
 
     /**
@@ -635,7 +694,10 @@ public final class TokenManager {
                                                        String friendlyName) {
         log.trace("setKeyFriendlyName({}, {})", keyId, friendlyName);
 
-        findKey(keyId).setFriendlyName(friendlyName);
+        Key key = findKey(keyId);
+        key.setFriendlyName(friendlyName);
+
+        publish(key);
     }
 
     /**
@@ -647,7 +709,10 @@ public final class TokenManager {
     public static synchronized void setKeyLabel(String keyId, String label) {
         log.trace("setKeyLabel({}, {})", keyId, label);
 
-        findKey(keyId).setLabel(label);
+        Key key = findKey(keyId);
+        key.setLabel(label);
+
+        publish(key);
     }
 
     /**
@@ -660,7 +725,10 @@ public final class TokenManager {
                                                 KeyUsageInfo keyUsage) {
         log.trace("setKeyUsage({}, {})", keyId, keyUsage);
 
-        findKey(keyId).setUsage(keyUsage);
+        Key key = findKey(keyId);
+        key.setUsage(keyUsage);
+
+        publish(key);
     }
 
     /**
@@ -680,6 +748,7 @@ public final class TokenManager {
         key.setPublicKey(publicKeyBase64);
 
         token.addKey(key);
+        publish();
 
         return key.toDTO();
     }
@@ -693,8 +762,12 @@ public final class TokenManager {
     public static synchronized boolean removeKey(String keyId) {
         log.trace("removeKey({})", keyId);
 
-        return forKey((t, k) -> k.getId().equals(keyId),
+        boolean removed = forKey((t, k) -> k.getId().equals(keyId),
                 (t, k) -> t.getKeys().remove(k)).orElse(false);
+
+        publish();
+
+        return removed;
     }
 
     /**
@@ -707,7 +780,10 @@ public final class TokenManager {
                                                  String publicKeyBase64) {
         log.trace("setPublicKey({}, {})", keyId, publicKeyBase64);
 
-        findKey(keyId).setPublicKey(publicKeyBase64);
+        Key key = findKey(keyId);
+        key.setPublicKey(publicKeyBase64);
+
+        publish(key);
     }
 
     /**
@@ -725,6 +801,7 @@ public final class TokenManager {
         cert.setCertificate(certBytes);
 
         key.addCert(cert);
+        publish(key);
     }
 
     /**
@@ -748,6 +825,7 @@ public final class TokenManager {
         cert.setStatus(certInfo.getStatus());
 
         key.addCert(cert);
+        publish(key);
     }
 
     /**
@@ -760,7 +838,7 @@ public final class TokenManager {
                                                   boolean active) {
         log.trace("setCertActive({}, {})", certId, active);
 
-        findCert(certId).setActive(active);
+        updateCert(certId, c -> c.setActive(active));
     }
 
     /**
@@ -773,7 +851,7 @@ public final class TokenManager {
                                                   String status) {
         log.trace("setCertStatus({}, {})", certId, status);
 
-        findCert(certId).setStatus(status);
+        updateCert(certId, c -> c.setStatus(status));
     }
 
     /**
@@ -786,7 +864,12 @@ public final class TokenManager {
         log.trace("removeCert({})", certId);
 
         return forCert((k, c) -> c.getId().equals(certId),
-                (k, c) -> k.getCerts().remove(c)).orElse(false);
+                (k, c) -> {
+                    boolean removed = k.getCerts().remove(c);
+                    publish(k);
+
+                    return removed;
+                }).orElse(false);
     }
 
     /**
@@ -811,7 +894,10 @@ public final class TokenManager {
                     key.getUsage());
         }
 
-        key.setUsage(keyUsage);
+        if (key.getUsage() != keyUsage) {
+            key.setUsage(keyUsage);
+            publish(key);
+        }
 
         for (CertRequest certRequest : key.getCertRequests()) {
             ClientId crMember = certRequest.getMemberId();
@@ -829,6 +915,7 @@ public final class TokenManager {
 
         String certId = SignerUtil.randomId();
         key.addCertRequest(new CertRequest(certId, memberId, subjectName));
+        publish(key);
 
         log.info("Added new certificate request (memberId: {}, "
                         + "subjectId: {}) under key {}",
@@ -852,6 +939,8 @@ public final class TokenManager {
                         return null;
                     }
 
+                    publish(k);
+
                     return k.getId();
                 }).orElse(null);
     }
@@ -864,20 +953,68 @@ public final class TokenManager {
      */
     public static synchronized void setTokenInfo(String tokenId, Map<String, String> info) {
         findToken(tokenId).setInfo(info);
+
+        publish();
     }
 
     /**
      * @param tokenId the token id
      * @return true if batch signing is enabled for a token
      */
-    public static synchronized boolean isBatchSigningEnabled(String tokenId) {
+    public static boolean isBatchSigningEnabled(String tokenId) {
         log.trace("isBatchSigningEnabled({})", tokenId);
 
-        return findToken(tokenId).isBatchSigningEnabled();
+        TokenEntry token = snapshot.getToken(tokenId);
+
+        if (token == null) {
+            throw tokenNotFound(tokenId);
+        }
+
+        return token.isBatchSigningEnabled();
     }
 
     // ------------------------------------------------------------------------
 
+    /**
+     * Publishes a new snapshot after a change that did not affect any keys, certificates or
+     * certificate requests. Must be called while holding the class lock.
+     */
+    private static void publish() {
+        snapshot = snapshot.update(currentTokens, emptyList());
+    }
+
+    /**
+     * Publishes a new snapshot after a change to the given key, its certificates or certificate requests.
+     * Must be called while holding the class lock.
+     */
+    private static void publish(Key changedKey) {
+        snapshot = snapshot.update(currentTokens, singletonList(changedKey));
+    }
+
+    private static void publish(List<Key> changedKeys) {
+        snapshot = snapshot.update(currentTokens, changedKeys);
+    }
+
+    private static KeyEntry findKeyEntry(String keyId) {
+        KeyEntry key = snapshot.getKey(keyId);
+
+        if (key == null) {
+            throw keyNotFound(keyId);
+        }
+
+        return key;
+    }
+
+    private static TokenInfoAndKeyId toTokenInfoAndKeyId(TokenSnapshot current, String keyId) {
+        KeyEntry key = current.getKey(keyId);
+
+        if (key == null) {
+            throw keyNotFound(keyId);
+        }
+
+        return new TokenInfoAndKeyId(key.getToken().getInfo(), keyId);
+    }
+
     private static <T> Optional<T> forToken(Function<Token, Boolean> tester, Function<Token, T> mapper) {
         for (Token token : currentTokens) {
             if (tester.apply(token)) {
@@ -948,11 +1085,16 @@ public final class TokenManager {
                 .orElseThrow(() -> keyNotFound(keyId));
     }
 
-    private static Cert findCert(String certId) {
-        log.trace("findCert({})", certId);
+    private static void updateCert(String certId, Consumer<Cert> update) {
+        log.trace("updateCert({})", certId);
+
+        Key key = forCert((k, c) -> c.getId().equals(certId), (k, c) -> {
+            update.accept(c);
+
+            return k;
+        }).orElseThrow(() -> certWithIdNotFound(certId));
 
-        return forCert((k, c) -> c.getId().equals(certId), (k, c) -> c)
-                .orElseThrow(() -> certWithIdNotFound(certId));
+        publish(key);
     }
 
     private static String getDefaultFriendlyName(TokenType tokenType) {
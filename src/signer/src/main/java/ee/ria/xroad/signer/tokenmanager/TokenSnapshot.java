@@ -0,0 +1,219 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.tokenmanager;
+
+import ee.ria.xroad.signer.model.Cert;
+import ee.ria.xroad.signer.model.CertRequest;
+import ee.ria.xroad.signer.model.Key;
+import ee.ria.xroad.signer.model.Token;
+import ee.ria.xroad.signer.protocol.dto.CertRequestInfo;
+import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
+import ee.ria.xroad.signer.protocol.dto.KeyInfo;
+import ee.ria.xroad.signer.protocol.dto.TokenInfo;
+
+import lombok.Getter;
+import lombok.Value;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.newSetFromMap;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Immutable view of the tokens, keys, certificates and certificate requests managed by {@link TokenManager}.
+ *
+ * The snapshot holds the value objects of the model together with hash indexes by token id, key id,
+ * certificate id, certificate hash and certificate request id. A new snapshot is built from the model after
+ * every change, reusing the value objects of the keys that did not change, and published as a whole.
+ * Lookups therefore never need a lock and never see a partially applied change.
+ */
+final class TokenSnapshot {
+
+    static final TokenSnapshot EMPTY = new TokenSnapshot(Collections.emptyList(), Collections.emptyMap());
+
+    @Getter
+    private final List<TokenInfo> tokens;
+
+    private final Map<Key, KeyInfo> keyInfos;
+
+    private final Map<String, TokenEntry> tokensById = new HashMap<>();
+    private final Map<String, KeyEntry> keysById = new HashMap<>();
+    private final Map<String, CertEntry> certsById = new HashMap<>();
+    private final Map<String, CertEntry> certsByHash = new HashMap<>();
+    private final Map<String, CertRequestEntry> certRequestsById = new HashMap<>();
+
+    /**
+     * Token with the properties that are not part of its value object.
+     */
+    @Value
+    static class TokenEntry {
+        TokenInfo info;
+        String moduleId;
+        boolean batchSigningEnabled;
+    }
+
+    /**
+     * Key with its token.
+     */
+    @Value
+    static class KeyEntry {
+        TokenEntry token;
+        KeyInfo info;
+    }
+
+    /**
+     * Certificate with its key.
+     */
+    @Value
+    static class CertEntry {
+        KeyEntry key;
+        CertificateInfo info;
+        X509Certificate certificate;
+    }
+
+    /**
+     * Certificate request with its key.
+     */
+    @Value
+    static class CertRequestEntry {
+        KeyEntry key;
+        CertRequestInfo info;
+    }
+
+    private TokenSnapshot(List<Token> modelTokens, Map<Key, KeyInfo> previousKeyInfos) {
+        List<TokenInfo> tokenInfos = new ArrayList<>(modelTokens.size());
+
+        keyInfos = new IdentityHashMap<>();
+
+        for (Token token : modelTokens) {
+            List<KeyInfo> tokenKeyInfos = new ArrayList<>(token.getKeys().size());
+
+            for (Key key : token.getKeys()) {
+                KeyInfo keyInfo = previousKeyInfos.get(key);
+
+                if (keyInfo == null) {
+                    keyInfo = key.toDTO();
+                }
+
+                keyInfos.put(key, keyInfo);
+                tokenKeyInfos.add(keyInfo);
+            }
+
+            TokenEntry tokenEntry = new TokenEntry(token.toDTO(tokenKeyInfos), token.getModuleId(),
+                    token.isBatchSigningEnabled());
+
+            tokenInfos.add(tokenEntry.getInfo());
+            tokensById.putIfAbsent(token.getId(), tokenEntry);
+
+            for (int i = 0; i < token.getKeys().size(); i++) {
+                index(tokenEntry, token.getKeys().get(i), tokenKeyInfos.get(i));
+            }
+        }
+
+        tokens = unmodifiableList(tokenInfos);
+    }
+
+    private void index(TokenEntry tokenEntry, Key key, KeyInfo keyInfo) {
+        KeyEntry keyEntry = new KeyEntry(tokenEntry, keyInfo);
+
+        keysById.putIfAbsent(key.getId(), keyEntry);
+
+        for (int i = 0; i < key.getCerts().size(); i++) {
+            Cert cert = key.getCerts().get(i);
+            CertEntry certEntry = new CertEntry(keyEntry, keyInfo.getCerts().get(i), cert.getCertificate());
+
+            certsById.putIfAbsent(cert.getId(), certEntry);
+
+            if (cert.getHash() != null) {
+                certsByHash.putIfAbsent(cert.getHash(), certEntry);
+            }
+        }
+
+        for (int i = 0; i < key.getCertRequests().size(); i++) {
+            CertRequest certRequest = key.getCertRequests().get(i);
+
+            certRequestsById.putIfAbsent(certRequest.getId(),
+                    new CertRequestEntry(keyEntry, keyInfo.getCertRequests().get(i)));
+        }
+    }
+
+    /**
+     * Builds a snapshot of the given tokens converting all keys to value objects.
+     * @param modelTokens the tokens
+     * @return the snapshot
+     */
+    static TokenSnapshot of(List<Token> modelTokens) {
+        return new TokenSnapshot(modelTokens, Collections.emptyMap());
+    }
+
+    /**
+     * Builds a snapshot of the given tokens reusing the value objects of this snapshot for the keys
+     * that have not changed. Keys that are not part of this snapshot are always converted.
+     * @param modelTokens the tokens
+     * @param changedKeys the keys whose properties, certificates or certificate requests have changed
+     * @return the new snapshot
+     */
+    TokenSnapshot update(List<Token> modelTokens, Collection<Key> changedKeys) {
+        if (changedKeys.isEmpty()) {
+            return new TokenSnapshot(modelTokens, keyInfos);
+        }
+
+        Set<Key> changed = newSetFromMap(new IdentityHashMap<>());
+        changed.addAll(changedKeys);
+
+        Map<Key, KeyInfo> reusable = new IdentityHashMap<>(keyInfos);
+        reusable.keySet().removeAll(changed);
+
+        return new TokenSnapshot(modelTokens, reusable);
+    }
+
+    TokenEntry getToken(String tokenId) {
+        return tokensById.get(tokenId);
+    }
+
+    KeyEntry getKey(String keyId) {
+        return keysById.get(keyId);
+    }
+
+    CertEntry getCert(String certId) {
+        return certsById.get(certId);
+    }
+
+    CertEntry getCertByHash(String certHash) {
+        return certsByHash.get(certHash);
+    }
+
+    CertRequestEntry getCertRequest(String certRequestId) {
+        return certRequestsById.get(certRequestId);
+    }
+}
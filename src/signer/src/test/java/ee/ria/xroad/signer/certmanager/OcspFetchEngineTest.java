@@ -0,0 +1,340 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.certmanager;
+
+import ee.ria.xroad.common.OcspTestUtils;
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConfProvider;
+
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.TestActorRef;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+import org.mockito.Mockito;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs OCSP-response refresh cycles against a local stub OCSP responder that answers with a fixed delay.
+ */
+@Slf4j
+public class OcspFetchEngineTest {
+
+    private static final int CERT_COUNT = 1000;
+    private static final int RESPONDER_DELAY_MS = 20;
+    private static final int PARALLELISM = 8;
+
+    private static final ActorSystem ACTOR_SYSTEM = ActorSystem.create();
+
+    private static final List<X509Certificate> CERTS = new ArrayList<>();
+    private static final Map<BigInteger, byte[]> RESPONSES = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+    private static final AtomicInteger MAX_IN_FLIGHT = new AtomicInteger();
+    private static final AtomicInteger REQUEST_COUNT = new AtomicInteger();
+
+    private static Server ocspResponder;
+    private static String responderUri;
+
+    @Rule
+    public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+
+    private final Map<String, OCSPResp> statuses = new HashMap<>();
+
+    private List<X509Certificate> certs = CERTS;
+
+    private TestActorRef<TestOcspClient> testActor;
+
+    /**
+     * Test a refresh cycle of 1,000 certificates with a limited number of concurrent requests.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void refreshCycleForThousandCertificates() throws Exception {
+        OcspClientWorker worker = createWorker(PARALLELISM, 0);
+
+        long start = System.nanoTime();
+        worker.handleExecute();
+        long cycleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        log.info("Refreshed OCSP responses for {} certificates in {} ms (parallelism {}, responder delay {} ms)",
+                CERT_COUNT, cycleMillis, PARALLELISM, RESPONDER_DELAY_MS);
+
+        assertEquals(CERT_COUNT, statuses.size());
+        assertEquals(CERT_COUNT, REQUEST_COUNT.get());
+        assertTrue("Requests were not sent concurrently", MAX_IN_FLIGHT.get() > 1);
+        assertTrue("Too many concurrent requests: " + MAX_IN_FLIGHT.get(), MAX_IN_FLIGHT.get() <= PARALLELISM);
+        assertTrue("Refresh cycle took " + cycleMillis + " ms", cycleMillis < CERT_COUNT * RESPONDER_DELAY_MS);
+    }
+
+    /**
+     * Test that the requests to a responder do not exceed the rate limit.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void rateLimitedRefreshCycle() throws Exception {
+        final int certCount = 50;
+        final int rateLimit = 50;
+
+        certs = CERTS.subList(0, certCount);
+
+        OcspClientWorker worker = createWorker(PARALLELISM, rateLimit);
+
+        long start = System.nanoTime();
+        worker.handleExecute();
+        long cycleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(certCount, statuses.size());
+        // the first request is sent immediately, the remaining ones at the configured rate
+        assertTrue("Refresh cycle took " + cycleMillis + " ms",
+                cycleMillis >= TimeUnit.SECONDS.toMillis(certCount - 1) / rateLimit);
+    }
+
+    /**
+     * Test that a failed query does not prevent storing the other responses.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void failedQueriesDoNotAbortCycle() throws Exception {
+        OcspFetchEngine engine = new OcspFetchEngine(PARALLELISM, 0);
+        List<X509Certificate> subjects = CERTS.subList(0, 10);
+        OCSPResp good = new OCSPResp(RESPONSES.get(subjects.get(0).getSerialNumber()));
+
+        List<OCSPResp> responses = engine.fetch(subjects, 1, subject -> {
+            if (subject.equals(subjects.get(3))) {
+                throw new IOException("Responder unavailable");
+            }
+
+            return subject.equals(subjects.get(5)) ? null : good;
+        });
+
+        assertEquals(subjects.size(), responses.size());
+        assertNull(responses.get(3));
+        assertNull(responses.get(5));
+        assertEquals(8, responses.stream().filter(r -> r != null).count());
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * BeforeClass
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void doBeforeClass() throws Exception {
+        X509Certificate caCert = TestCertUtil.getCaCert();
+        X509Certificate ocspSignerCert = TestCertUtil.getOcspSigner().certChain[0];
+        Date thisUpdate = new DateTime().plusDays(1).toDate();
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        for (int i = 1; i <= CERT_COUNT; i++) {
+            X509Certificate cert = createCert(caCert, keyPair, BigInteger.valueOf(i));
+
+            CERTS.add(cert);
+            RESPONSES.put(cert.getSerialNumber(), OcspTestUtils.createOCSPResponse(cert, caCert, ocspSignerCert,
+                    TestCertUtil.getOcspSigner().key, CertificateStatus.GOOD, thisUpdate, null).getEncoded());
+        }
+
+        ocspResponder = new Server(0);
+        ocspResponder.setHandler(new StubOcspResponder());
+        ocspResponder.start();
+
+        responderUri = "http://127.0.0.1:" + ((ServerConnector) ocspResponder.getConnectors()[0]).getLocalPort();
+    }
+
+    /**
+     * Before
+     */
+    @Before
+    public void startup() {
+        IN_FLIGHT.set(0);
+        MAX_IN_FLIGHT.set(0);
+        REQUEST_COUNT.set(0);
+    }
+
+    /**
+     * After
+     */
+    @After
+    public void afterTest() {
+        if (testActor != null) {
+            testActor.stop();
+        }
+    }
+
+    /**
+     * AfterClass
+     * @throws Exception if an error occurs
+     */
+    @AfterClass
+    public static void shutdown() throws Exception {
+        Await.ready(ACTOR_SYSTEM.terminate(), Duration.Inf());
+
+        if (ocspResponder != null) {
+            try {
+                ocspResponder.stop();
+            } finally {
+                ocspResponder = null;
+            }
+        }
+    }
+
+    private OcspClientWorker createWorker(int parallelism, int rateLimit) throws Exception {
+        System.setProperty(SystemProperties.SIGNER_OCSP_FETCH_PARALLELISM, String.valueOf(parallelism));
+        System.setProperty(SystemProperties.SIGNER_OCSP_FETCH_RATE_LIMIT, String.valueOf(rateLimit));
+
+        GlobalConf.reload(getTestGlobalConf());
+
+        testActor = TestActorRef.create(ACTOR_SYSTEM, Props.create(TestOcspClient.class, this));
+
+        return testActor.underlyingActor();
+    }
+
+    private static X509Certificate createCert(X509Certificate issuer, KeyPair keyPair, BigInteger serial)
+            throws Exception {
+        Date notBefore = new DateTime().minusDays(1).toDate();
+        Date notAfter = new DateTime().plusYears(1).toDate();
+
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(
+                new X500Name(issuer.getSubjectX500Principal().getName()), serial, notBefore, notAfter,
+                new X500Name("CN=member" + serial), keyPair.getPublic());
+
+        return new JcaX509CertificateConverter().getCertificate(
+                builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate())));
+    }
+
+    private static GlobalConfProvider getTestGlobalConf() throws Exception {
+        GlobalConfProvider testConf = mock(GlobalConfProvider.class);
+
+        when(testConf.isValid()).thenReturn(true);
+
+        when(testConf.getOcspResponderAddresses(Mockito.any(X509Certificate.class))).thenReturn(
+                Arrays.asList(responderUri));
+
+        when(testConf.getOcspResponderCertificates()).thenReturn(
+                Arrays.asList(TestCertUtil.getOcspSigner().certChain[0]));
+
+        when(testConf.getCaCert(Mockito.any(String.class), Mockito.any(X509Certificate.class))).thenReturn(
+                TestCertUtil.getCaCert());
+
+        when(testConf.isOcspResponderCert(Mockito.any(X509Certificate.class),
+                Mockito.any(X509Certificate.class))).thenReturn(true);
+
+        return testConf;
+    }
+
+    private static class TestOcspClient extends OcspClientWorker {
+        private final OcspFetchEngineTest test;
+
+        TestOcspClient(OcspFetchEngineTest test) {
+            this.test = test;
+        }
+
+        @Override
+        List<X509Certificate> getCertsForOcsp() {
+            return test.certs;
+        }
+
+        @Override
+        void updateCertStatuses(Map<String, OCSPResp> newStatuses) {
+            test.statuses.putAll(newStatuses);
+        }
+    }
+
+    private static class StubOcspResponder extends AbstractHandler {
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request,
+                HttpServletResponse response) throws IOException {
+            int inFlight = IN_FLIGHT.incrementAndGet();
+            MAX_IN_FLIGHT.accumulateAndGet(inFlight, Math::max);
+            REQUEST_COUNT.incrementAndGet();
+
+            try {
+                OCSPReq ocspRequest = new OCSPReq(IOUtils.toByteArray(request.getInputStream()));
+                BigInteger serial = ocspRequest.getRequestList()[0].getCertID().getSerialNumber();
+
+                Thread.sleep(RESPONDER_DELAY_MS);
+
+                response.setContentType("application/ocsp-response");
+                response.getOutputStream().write(RESPONSES.get(serial));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                IN_FLIGHT.decrementAndGet();
+                baseRequest.setHandled(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.tokenmanager;
+
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.signer.model.Cert;
+import ee.ria.xroad.signer.model.CertRequest;
+import ee.ria.xroad.signer.model.Key;
+import ee.ria.xroad.signer.model.Token;
+import ee.ria.xroad.signer.protocol.dto.KeyInfo;
+import ee.ria.xroad.signer.protocol.dto.TokenInfo;
+import ee.ria.xroad.signer.tokenmanager.TokenSnapshot.CertEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the indexes and value object reuse of {@link TokenSnapshot}.
+ */
+public class TokenSnapshotTest {
+
+    private static final X509Certificate CERT = TestCertUtil.getConsumer().certChain[0];
+
+    private Token token1;
+    private Token token2;
+    private Key key1;
+    private Key key2;
+    private List<Token> tokens;
+
+    /**
+     * Creates two tokens with one key each.
+     */
+    @Before
+    public void setUp() {
+        token1 = new Token("softToken", "token1", null);
+        token2 = new Token("hwToken", "token2", null);
+        token2.setModuleId("module2");
+
+        key1 = new Key(token1, "key1");
+        key1.setAvailable(true);
+        token1.addKey(key1);
+
+        key2 = new Key(token2, "key2");
+        token2.addKey(key2);
+
+        Cert cert = new Cert("cert1");
+        cert.setCertificate(CERT);
+        key2.addCert(cert);
+
+        key2.addCertRequest(new CertRequest("csr1", ClientId.create("EE", "BUSINESS", "member"), "CN=member"));
+
+        tokens = Arrays.asList(token1, token2);
+    }
+
+    /**
+     * Test that tokens, keys, certificates and certificate requests are found by their ids.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void lookupsByIndex() throws Exception {
+        TokenSnapshot snapshot = TokenSnapshot.of(tokens);
+
+        assertEquals(2, snapshot.getTokens().size());
+        assertEquals("module2", snapshot.getToken("token2").getModuleId());
+        assertNull(snapshot.getToken("token3"));
+
+        assertEquals("token1", snapshot.getKey("key1").getToken().getInfo().getId());
+        assertTrue(snapshot.getKey("key1").getInfo().isAvailable());
+
+        CertEntry cert = snapshot.getCertByHash(calculateCertHexHash(CERT));
+        assertEquals("cert1", cert.getInfo().getId());
+        assertEquals("key2", cert.getKey().getInfo().getId());
+        assertEquals(CERT, cert.getCertificate());
+        assertSame(cert, snapshot.getCert("cert1"));
+
+        assertEquals("key2", snapshot.getCertRequest("csr1").getKey().getInfo().getId());
+        assertEquals("CN=member", snapshot.getCertRequest("csr1").getInfo().getSubjectName());
+    }
+
+    /**
+     * Test that an update converts only the changed keys and leaves the previous snapshot intact.
+     */
+    @Test
+    public void updateReusesUnchangedKeys() {
+        TokenSnapshot snapshot = TokenSnapshot.of(tokens);
+        KeyInfo key1Info = snapshot.getKey("key1").getInfo();
+        KeyInfo key2Info = snapshot.getKey("key2").getInfo();
+
+        key1.setAvailable(false);
+        TokenSnapshot updated = snapshot.update(tokens, Collections.singletonList(key1));
+
+        assertNotSame(key1Info, updated.getKey("key1").getInfo());
+        assertFalse(updated.getKey("key1").getInfo().isAvailable());
+        assertSame(key2Info, updated.getKey("key2").getInfo());
+
+        assertTrue(snapshot.getKey("key1").getInfo().isAvailable());
+    }
+
+    /**
+     * Test that token level changes are visible in the new snapshot without converting the keys again.
+     */
+    @Test
+    public void tokenChangeReusesKeys() {
+        TokenSnapshot snapshot = TokenSnapshot.of(tokens);
+        TokenInfo tokenInfo = snapshot.getToken("token1").getInfo();
+
+        token1.setFriendlyName("friendly");
+        token1.setInfo(Collections.singletonMap("label", "value"));
+        TokenSnapshot updated = snapshot.update(tokens, Collections.emptyList());
+
+        assertEquals("friendly", updated.getToken("token1").getInfo().getFriendlyName());
+        assertEquals("value", updated.getToken("token1").getInfo().getTokenInfo().get("label"));
+        assertSame(snapshot.getKey("key1").getInfo(), updated.getKey("key1").getInfo());
+
+        assertNull(tokenInfo.getFriendlyName());
+        assertTrue(tokenInfo.getTokenInfo().isEmpty());
+    }
+
+    /**
+     * Test that removed keys and certificates disappear from the indexes.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void removalsAreIndexed() throws Exception {
+        TokenSnapshot snapshot = TokenSnapshot.of(tokens);
+
+        key2.getCerts().clear();
+        token1.getKeys().remove(key1);
+        TokenSnapshot updated = snapshot.update(tokens, Collections.singletonList(key2));
+
+        assertNull(updated.getKey("key1"));
+        assertNull(updated.getCert("cert1"));
+        assertNull(updated.getCertByHash(calculateCertHexHash(CERT)));
+        assertTrue(updated.getKey("key2").getInfo().getCerts().isEmpty());
+        assertEquals("cert1", snapshot.getCert("cert1").getInfo().getId());
+    }
+}